@@ -0,0 +1,659 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.mail;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An asynchronous outbox of e-mails: {@link #enqueue(Email, Map)} returns as soon as the e-mail is written on a local
+ * spool file, and a pool of workers sends the spooled e-mails through an {@link EmailSender}, at most
+ * {@link #getMaxMessagesPerSecond()}, smoothing bursts of e-mails.
+ * <p/>
+ * The spool is an append-only file of checksummed records: each e-mail is appended (and synced, if
+ * {@link #isSyncOnWrite()}) when enqueued, and acknowledged by another record when sent or given up. On
+ * {@link #start()}, the e-mails not acknowledged are sent again, so the delivery is at least once: an e-mail sent right
+ * before a crash may be sent twice. A record partially written by a crash is discarded. The spool is compacted on
+ * start, and whenever the records of the acknowledged e-mails take over {@link #getCompactThreshold()} bytes and more
+ * than the pending ones, on a temporary file (the spool path plus <code>.tmp</code>) that replaces the spool once
+ * synced; a compaction interrupted by a crash is recovered on {@link #start()}. If a compaction fails, the spool is
+ * reopened as it was; if it can't be reopened either, the outbox is no longer {@link #isStarted() started} and must be
+ * stopped and started again.
+ * <p/>
+ * Each attempt is a single sending of the {@link EmailSender} (see {@link EmailSender#send(Email, Map)}). Failed
+ * e-mails are retried up to {@link #getMaxAttempts()} times, waiting {@link #getRetryDelay()} milliseconds, doubled on
+ * each attempt, without holding a worker. The e-mails and their params must be serializable.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class EmailOutbox {
+
+    private static final Logger LOGGER = Logger.getLogger(EmailOutbox.class.getName());
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_DELAY = 30000L;
+    public static final long DEFAULT_COMPACT_THRESHOLD = 1024L * 1024L;
+    private static final byte QUEUED = 1;
+    private static final byte SENT = 2;
+    private static final byte FAILED = 3;
+    /**
+     * The length of a record without its payload.
+     */
+    private static final int RECORD_OVERHEAD = 21;
+    private final EmailSender sender;
+    private final File spool;
+    private int workers = DEFAULT_WORKERS;
+    private double maxMessagesPerSecond = 0d;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private long compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private boolean syncOnWrite = true;
+    private final DelayQueue<OutboxEntry> queue = new DelayQueue<OutboxEntry>();
+    private final Map<Long, OutboxEntry> pending = new ConcurrentHashMap<Long, OutboxEntry>();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final Object spoolLock = new Object();
+    private final Object rateLock = new Object();
+    private FileOutputStream spoolStream;
+    private DataOutputStream spoolOut;
+    private long spoolLength;
+    /**
+     * The length of the records of the pending e-mails, on the spool.
+     */
+    private long pendingLength;
+    private long nextId;
+    private long nextSendNanos;
+    private ExecutorService pool;
+
+    /**
+     * Creates an outbox.
+     *
+     * @param sender The sender of the e-mails.
+     * @param spool  The spool file. Created if it doesn't exist.
+     */
+    public EmailOutbox(final EmailSender sender, final File spool) {
+        ArgumentUtils.rejectIfNull(sender);
+        ArgumentUtils.rejectIfNull(spool);
+        this.sender = sender;
+        this.spool = spool;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the number of threads sending e-mails. Takes effect on {@link #start()}.
+     *
+     * @param workers The number of workers.
+     */
+    public void setWorkers(final int workers) {
+        ArgumentUtils.rejectIfLessThan(workers, 1);
+        this.workers = workers;
+    }
+
+    public double getMaxMessagesPerSecond() {
+        return maxMessagesPerSecond;
+    }
+
+    /**
+     * Sets the maximum rate of sending, for all the workers.
+     *
+     * @param maxMessagesPerSecond The maximum e-mails sent per second, or 0 for no limit.
+     */
+    public void setMaxMessagesPerSecond(final double maxMessagesPerSecond) {
+        ArgumentUtils.rejectIfLessThan(maxMessagesPerSecond, 0d);
+        synchronized (rateLock) {
+            this.maxMessagesPerSecond = maxMessagesPerSecond;
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(final int maxAttempts) {
+        ArgumentUtils.rejectIfLessThan(maxAttempts, 1);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns the delay before the first retry of an e-mail, in milliseconds. It's doubled on each attempt.
+     *
+     * @return The retry delay.
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+        ArgumentUtils.rejectIfLessThan(retryDelay, 0L);
+        this.retryDelay = retryDelay;
+    }
+
+    public long getCompactThreshold() {
+        return compactThreshold;
+    }
+
+    /**
+     * Sets the length of the records of acknowledged e-mails (the e-mails and their acknowledgements) over which the
+     * spool is compacted, if they also take more than the records of the pending e-mails.
+     *
+     * @param compactThreshold The threshold, in bytes.
+     */
+    public void setCompactThreshold(final long compactThreshold) {
+        ArgumentUtils.rejectIfLessThan(compactThreshold, 0L);
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * Tells if the spool is synced to the disk on each write, so an enqueued e-mail survives a crash of the system, and
+     * not only of the application.
+     *
+     * @return <code>true</code> if the spool is synced on each write.
+     */
+    public boolean isSyncOnWrite() {
+        return syncOnWrite;
+    }
+
+    public void setSyncOnWrite(final boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Returns the number of e-mails enqueued and not sent or given up yet.
+     *
+     * @return The number of pending e-mails.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of e-mails sent since this outbox was created.
+     *
+     * @return The number of e-mails sent.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Returns the number of e-mails given up since this outbox was created.
+     *
+     * @return The number of e-mails failed.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Tells if the outbox is started and accepting e-mails: not if its spool could not be reopened after a failed
+     * compaction.
+     *
+     * @return <code>true</code> if started.
+     */
+    public boolean isStarted() {
+        synchronized (spoolLock) {
+            return pool != null && spoolOut != null;
+        }
+    }
+
+    /**
+     * Opens the spool, enqueueing the e-mails not sent yet, and starts the workers.
+     *
+     * @throws IOException If the spool can't be read or written.
+     */
+    public void start() throws IOException {
+        synchronized (spoolLock) {
+            if (pool != null) {
+                throw new IllegalStateException("Outbox already started");
+            }
+            for (OutboxEntry entry : readSpool()) {
+                pending.put(entry.id, entry);
+                queue.put(entry);
+                nextId = Math.max(nextId, entry.id + 1);
+            }
+            try {
+                rewriteSpool();
+            } catch (IOException ex) {
+                closeSpool();
+                queue.clear();
+                pending.clear();
+                throw ex;
+            }
+            final AtomicInteger threads = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "email-outbox-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            for (int i = 0; i < workers; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                });
+            }
+        }
+        if (!pending.isEmpty()) {
+            LOGGER.log(Level.INFO, "{0} e-mails recovered from the spool {1}", new Object[]{pending.size(), spool});
+        }
+    }
+
+    /**
+     * Stops the workers, waiting for the e-mails being sent, and closes the spool. The pending e-mails are kept on the
+     * spool, to be sent on the next start.
+     *
+     * @param timeout The maximum time to wait for the e-mails being sent, in milliseconds.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void stop(final long timeout) throws InterruptedException {
+        final ExecutorService workersPool;
+        synchronized (spoolLock) {
+            workersPool = pool;
+            pool = null;
+        }
+        if (workersPool == null) {
+            return;
+        }
+        workersPool.shutdownNow();
+        workersPool.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        synchronized (spoolLock) {
+            closeSpool();
+            queue.clear();
+            pending.clear();
+        }
+    }
+
+    /**
+     * Enqueues an e-mail to be sent. Returns once the e-mail is on the spool.
+     *
+     * @param email  The email to be sent.
+     * @param params The params to process the message content.
+     * @return The id of the e-mail on the outbox.
+     * @throws IllegalArgumentException If the e-mail or the params aren't serializable.
+     * @throws IllegalStateException    If the outbox isn't started.
+     */
+    public long enqueue(final Email email, final Map<String, Object> params) {
+        ArgumentUtils.rejectIfNull(email);
+        final Map<String, Object> paramsCopy = (params != null) ? new HashMap<String, Object>(params) : null;
+        final byte[] payload = serialize(email, paramsCopy);
+        final OutboxEntry entry;
+        synchronized (spoolLock) {
+            if (pool == null) {
+                throw new IllegalStateException("Outbox not started");
+            } else if (spoolOut == null) {
+                throw new IllegalStateException("The spool " + spool + " could not be reopened");
+            }
+            entry = new OutboxEntry(nextId++, email, paramsCopy, payload);
+            try {
+                appendRecord(QUEUED, entry.id, payload);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not write the e-mail on the spool " + spool, ex);
+            }
+            pendingLength += entry.getRecordLength();
+            pending.put(entry.id, entry);
+        }
+        queue.put(entry);
+        return entry.id;
+    }
+
+    private void work() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final OutboxEntry entry = queue.take();
+                awaitRate();
+                send(entry);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(final OutboxEntry entry) {
+        try {
+            sender.send(entry.email, entry.params);
+            acknowledge(entry, SENT);
+            sentCount.incrementAndGet();
+        } catch (Exception ex) {
+            entry.attempts++;
+            if (entry.attempts >= maxAttempts) {
+                LOGGER.log(Level.SEVERE, "Giving up the e-mail \"" + entry.email.getSubject() + "\" after "
+                                         + entry.attempts + " attempts", ex);
+                acknowledge(entry, FAILED);
+                failedCount.incrementAndGet();
+            } else {
+                LOGGER.log(Level.WARNING, "Could not send the e-mail \"{0}\" (attempt {1}): {2}",
+                           new Object[]{entry.email.getSubject(), entry.attempts, ex.getMessage()});
+                entry.due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelay << Math.min(entry.attempts - 1, 16));
+                queue.put(entry);
+            }
+        }
+    }
+
+    /**
+     * Waits for the next sending slot, so the workers don't send more than the maximum rate.
+     */
+    private void awaitRate() throws InterruptedException {
+        final long wait;
+        synchronized (rateLock) {
+            if (maxMessagesPerSecond <= 0d) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final long slot = Math.max(now, nextSendNanos);
+            nextSendNanos = slot + (long) (1000000000d / maxMessagesPerSecond);
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void acknowledge(final OutboxEntry entry, final byte status) {
+        synchronized (spoolLock) {
+            if (pending.remove(entry.id) == null || spoolOut == null) {
+                return; // stopped: will be sent again on the next start
+            }
+            pendingLength -= entry.getRecordLength();
+            try {
+                appendRecord(status, entry.id, null);
+                final long acknowledgedLength = spoolLength - pendingLength;
+                if (acknowledgedLength > compactThreshold && acknowledgedLength > pendingLength) {
+                    rewriteSpool();
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Could not acknowledge the e-mail on the spool " + spool, ex);
+            }
+        }
+    }
+
+    /**
+     * Appends a record: status, id, payload length, payload and the checksum of them all.
+     */
+    private void appendRecord(final byte status, final long id, final byte[] payload) throws IOException {
+        final byte[] data = (payload != null) ? payload : new byte[0];
+        final CRC32 crc = new CRC32();
+        crc.update(status);
+        crc.update(data);
+        spoolOut.writeByte(status);
+        spoolOut.writeLong(id);
+        spoolOut.writeInt(data.length);
+        spoolOut.write(data);
+        spoolOut.writeLong(crc.getValue() ^ id);
+        spoolOut.flush();
+        if (syncOnWrite) {
+            spoolStream.getFD().sync();
+        }
+        spoolLength += RECORD_OVERHEAD + data.length;
+    }
+
+    /**
+     * Reads the e-mails of the spool not acknowledged yet, in order, up to the first broken record.
+     */
+    private List<OutboxEntry> readSpool() throws IOException {
+        final Map<Long, OutboxEntry> entries = new LinkedHashMap<Long, OutboxEntry>();
+        recoverSpool();
+        if (!spool.exists()) {
+            return new ArrayList<OutboxEntry>();
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spool)));
+        try {
+            while (true) {
+                final byte status = in.readByte();
+                final long id = in.readLong();
+                final int length = in.readInt();
+                if (length < 0 || length > spool.length()) {
+                    break;
+                }
+                final byte[] data = new byte[length];
+                in.readFully(data);
+                final CRC32 crc = new CRC32();
+                crc.update(status);
+                crc.update(data);
+                if (in.readLong() != (crc.getValue() ^ id)) {
+                    break;
+                }
+                if (status == QUEUED) {
+                    entries.put(id, deserialize(id, data));
+                } else {
+                    entries.remove(id);
+                }
+            }
+        } catch (EOFException ex) {
+            // the end of the spool, or a record partially written
+        } finally {
+            in.close();
+        }
+        final List<OutboxEntry> result = new ArrayList<OutboxEntry>();
+        for (OutboxEntry entry : entries.values()) {
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recovers from a rewrite of the spool interrupted by a crash. The spool is only deleted (when it can't be replaced
+     * by a rename) once the temporary spool is complete and synced: a temporary spool without a spool is complete, and
+     * is restored; along with the spool it may be partial, and is discarded.
+     */
+    private void recoverSpool() throws IOException {
+        final File temp = getTempSpool();
+        if (!temp.exists()) {
+            return;
+        }
+        if (spool.exists()) {
+            if (!temp.delete()) {
+                throw new IOException("Could not delete the partial spool " + temp);
+            }
+        } else if (!temp.renameTo(spool)) {
+            throw new IOException("Could not restore the spool " + spool + " from " + temp);
+        } else {
+            LOGGER.log(Level.WARNING, "Spool {0} restored from an interrupted rewrite", spool);
+        }
+    }
+
+    /**
+     * Rewrites the spool with only the pending e-mails, and reopens it for appending. If the rewrite fails, the
+     * previous spool is reopened; if it can't be, the spool is left closed.
+     */
+    private void rewriteSpool() throws IOException {
+        closeSpool();
+        final List<OutboxEntry> entries = new ArrayList<OutboxEntry>(pending.values());
+        Collections.sort(entries);
+        final File temp = getTempSpool();
+        boolean replaced = false;
+        try {
+            openSpool(temp, false);
+            try {
+                for (OutboxEntry entry : entries) {
+                    appendRecord(QUEUED, entry.id, entry.payload);
+                }
+                spoolStream.getFD().sync();
+            } finally {
+                closeSpool();
+            }
+            // the rename replaces the spool on most systems; otherwise the spool is deleted first (see recoverSpool)
+            if (!temp.renameTo(spool) && !(spool.delete() && temp.renameTo(spool))) {
+                throw new IOException("Could not replace the spool " + spool);
+            }
+            replaced = true;
+        } finally {
+            if (!replaced) {
+                reopenSpool();
+            }
+        }
+        openSpool(spool, true);
+        pendingLength = spoolLength;
+    }
+
+    /**
+     * Reopens the spool after a failed rewrite, restoring it from the temporary spool if it was already deleted.
+     */
+    private void reopenSpool() {
+        try {
+            if (!spool.exists()) {
+                recoverSpool();
+            }
+            openSpool(spool, true);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Could not reopen the spool " + spool + ": the outbox must be restarted", ex);
+        }
+    }
+
+    private File getTempSpool() {
+        return new File(spool.getPath() + ".tmp");
+    }
+
+    private void openSpool(final File file, final boolean append) throws IOException {
+        spoolStream = new FileOutputStream(file, append);
+        spoolOut = new DataOutputStream(new BufferedOutputStream(spoolStream));
+        spoolLength = append ? file.length() : 0L;
+    }
+
+    private void closeSpool() {
+        if (spoolOut != null) {
+            try {
+                spoolOut.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Could not close the spool " + spool, ex);
+            }
+            spoolOut = null;
+            spoolStream = null;
+        }
+    }
+
+    private static byte[] serialize(final Email email, final Map<String, Object> params) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(email);
+            out.writeObject(params);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("The e-mail and its params must be serializable", ex);
+        }
+    }
+
+    private OutboxEntry deserialize(final long id, final byte[] payload) {
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload));
+            try {
+                final Email email = (Email) in.readObject();
+                return new OutboxEntry(id, email, copyParams((Map<?, ?>) in.readObject()), payload);
+            } finally {
+                in.close();
+            }
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, "Could not read the e-mail " + id + " of the spool " + spool + ", discarding it", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Copies the deserialized params, checking their keys.
+     */
+    private static Map<String, Object> copyParams(final Map<?, ?> params) {
+        if (params == null) {
+            return null;
+        }
+        final Map<String, Object> copy = new LinkedHashMap<String, Object>(params.size());
+        for (Map.Entry<?, ?> entry : params.entrySet()) {
+            copy.put((String) entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    /**
+     * An e-mail of the outbox, due to be sent at some time.
+     */
+    private static final class OutboxEntry implements Delayed {
+
+        final long id;
+        final Email email;
+        final Map<String, Object> params;
+        final byte[] payload;
+        volatile long due = System.nanoTime();
+        int attempts = 0;
+
+        OutboxEntry(final long id, final Email email, final Map<String, Object> params, final byte[] payload) {
+            this.id = id;
+            this.email = email;
+            this.params = params;
+            this.payload = payload;
+        }
+
+        long getRecordLength() {
+            return RECORD_OVERHEAD + payload.length;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            final OutboxEntry entry = (OutboxEntry) other;
+            if (due != entry.due) {
+                return due - entry.due < 0 ? -1 : 1;
+            }
+            return id < entry.id ? -1 : (id == entry.id ? 0 : 1);
+        }
+    }
+}
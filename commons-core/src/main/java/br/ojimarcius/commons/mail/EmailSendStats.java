@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.mail;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of a bulk sending: messages sent and failed, connections opened, retries and throughput.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class EmailSendStats implements Serializable {
+
+    private static final long serialVersionUID = -2380554181096725174L;
+    private final int sent;
+    private final int failed;
+    private final int connections;
+    private final int retries;
+    private final long elapsedNanos;
+
+    public EmailSendStats(final int sent, final int failed, final int connections, final int retries, final long elapsedNanos) {
+        this.sent = sent;
+        this.failed = failed;
+        this.connections = connections;
+        this.retries = retries;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the time spent sending, in milliseconds.
+     *
+     * @return The elapsed time.
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    /**
+     * Returns the throughput of the sending.
+     *
+     * @return The messages sent per second.
+     */
+    public double getMessagesPerSecond() {
+        return elapsedNanos <= 0 ? 0d : sent * 1000000000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return sent + " messages sent, " + failed + " failed, " + connections + " connections, " + retries + " retries, "
+               + getElapsedMillis() + " msecs (" + Math.round(getMessagesPerSecond()) + " messages/s)";
+    }
+}
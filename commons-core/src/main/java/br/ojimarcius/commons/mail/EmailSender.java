@@ -18,12 +18,28 @@
  */
 package br.ojimarcius.commons.mail;
 
+import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.ArrayUtils;
 import br.ojimarcius.commons.util.DateUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Multipart;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
@@ -33,50 +49,365 @@ import javax.mail.internet.MimeMultipart;
 
 /**
  * Class that sends e-mails.
+ * <p/>
+ * The javamail {@link Session} is created on the first sending, and again when the javamail configs change. The
+ * messages are sent over a small pool of connected {@link Transport Transports}, each one sending up to
+ * {@link #getMessagesPerConnection()} messages before reconnecting.
+ * <p/>
+ * Bulk sendings ({@link #sendAll(Collection, Map)} and {@link #sendToEach(Email, Map)}) are split in up to
+ * {@link #getPoolSize()} slices sent in parallel on the {@link #getExecutor() executor}, if any, each one over its own
+ * connection. Their failed messages are retried (reconnecting) up to {@link #getMaxRetries()} times, waiting
+ * {@link #getRetryDelay()} milliseconds, doubled on each attempt; messages rejected by the server (e.g. invalid
+ * addresses) are not retried. A failed message doesn't stop the sending: it's logged and counted on the returned
+ * {@link EmailSendStats}. A single sending ({@link #send(Email, Map)}) is attempted once, so its caller never waits
+ * for the retries.
  *
  * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
  * @version 1.0
  */
 public class EmailSender {
 
+    private static final Logger LOGGER = Logger.getLogger(EmailSender.class.getName());
+    public static final int DEFAULT_POOL_SIZE = 2;
+    public static final int DEFAULT_MESSAGES_PER_CONNECTION = 100;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY = 500L;
     /**
      * The javamail configs.
      */
     private Properties javamailProperties;
+    private volatile Session session;
+    private Executor executor;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private int messagesPerConnection = DEFAULT_MESSAGES_PER_CONNECTION;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private final BlockingQueue<PooledTransport> idleTransports = new LinkedBlockingQueue<PooledTransport>();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
 
     /**
-     * Sets the javamail configs.
+     * Sets the javamail configs. The pooled connections, if any, are closed.
      *
      * @param javamailProperties The javamail config entries.
      */
     public void setJavamailProperties(final Properties javamailProperties) {
         this.javamailProperties = javamailProperties;
+        this.session = null;
+        close();
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor of bulk sendings. Without one, bulk sendings run on the calling thread, over a single
+     * connection.
+     *
+     * @param executor The executor, or null.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
     }
 
     /**
-     * Sends an e-mail to someone.
+     * Sets the number of connections kept open, and of slices sent in parallel by bulk sendings.
+     *
+     * @param poolSize The pool size.
+     */
+    public void setPoolSize(final int poolSize) {
+        ArgumentUtils.rejectIfLessThan(poolSize, 1);
+        this.poolSize = poolSize;
+    }
+
+    public int getMessagesPerConnection() {
+        return messagesPerConnection;
+    }
+
+    /**
+     * Sets the number of messages sent over a connection before reconnecting, as servers usually limit it.
+     *
+     * @param messagesPerConnection The number of messages per connection.
+     */
+    public void setMessagesPerConnection(final int messagesPerConnection) {
+        ArgumentUtils.rejectIfLessThan(messagesPerConnection, 1);
+        this.messagesPerConnection = messagesPerConnection;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the number of times a failed message of a bulk sending is retried.
+     *
+     * @param maxRetries The number of retries, or zero to send each message once.
+     */
+    public void setMaxRetries(final int maxRetries) {
+        ArgumentUtils.rejectIfLessThan(maxRetries, 0);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns the delay before the first retry, in milliseconds. It's doubled on each attempt.
+     *
+     * @return The retry delay.
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+        ArgumentUtils.rejectIfLessThan(retryDelay, 0L);
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Returns the number of messages sent since this sender was created.
+     *
+     * @return The number of messages sent.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Returns the number of messages that failed since this sender was created.
+     *
+     * @return The number of failed messages.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of connections opened since this sender was created.
+     *
+     * @return The number of connections.
+     */
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Returns the number of retries since this sender was created.
+     *
+     * @return The number of retries.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Sends an e-mail to someone, with a single attempt.
      *
      * @param email  The email to be sent.
      * @param params The params to process the message content.
      * @throws Exception If anything goes wrong.
      */
     public void send(final Email email, final Map<String, Object> params) throws Exception {
+        ArgumentUtils.rejectIfNull(email);
+        final Counters counters = new Counters();
+        final PooledTransport transport = borrowTransport();
+        try {
+            send(transport, createMessage(email, email.getTo(), email.getContent(params)), 0, counters);
+        } catch (Exception ex) {
+            counters.failed++;
+            throw ex;
+        } finally {
+            releaseTransport(transport);
+            record(counters);
+        }
+    }
 
-        // create some properties and get the default Session
-        Session session = Session.getInstance(javamailProperties);
+    /**
+     * Sends many e-mails, processing their contents with the same params.
+     *
+     * @param emails The emails to be sent.
+     * @param params The params to process the messages contents.
+     * @return The statistics of the sending.
+     */
+    public EmailSendStats sendAll(final Collection<? extends Email> emails, final Map<String, Object> params) {
+        ArgumentUtils.rejectIfNull(emails);
+        final List<Delivery> deliveries = new ArrayList<Delivery>(emails.size());
+        for (Email email : emails) {
+            ArgumentUtils.rejectIfNull(email);
+            deliveries.add(new Delivery(email, email.getTo(), params));
+        }
+        return send(deliveries);
+    }
+
+    /**
+     * Sends an e-mail to each recipient, processing its content with the recipient's params. Each recipient gets its
+     * own message, addressed only to that recipient: the e-mail's destinations (including the copies) are ignored.
+     * <p/>
+     * The content of a {@link SimpleEmail} is parsed once for all the recipients.
+     *
+     * @param email             The email to be sent.
+     * @param paramsByRecipient The params to process the message content, by the recipient's address.
+     * @return The statistics of the sending.
+     */
+    public EmailSendStats sendToEach(final Email email, final Map<String, ? extends Map<String, Object>> paramsByRecipient) {
+        ArgumentUtils.rejectIfNull(email);
+        ArgumentUtils.rejectIfNull(paramsByRecipient);
+        final List<Delivery> deliveries = new ArrayList<Delivery>(paramsByRecipient.size());
+        for (Map.Entry<String, ? extends Map<String, Object>> entry : paramsByRecipient.entrySet()) {
+            deliveries.add(new Delivery(email, new String[]{entry.getKey()}, entry.getValue()));
+        }
+        return send(deliveries);
+    }
+
+    /**
+     * Closes the idle pooled connections.
+     */
+    public void close() {
+        PooledTransport transport = idleTransports.poll();
+        while (transport != null) {
+            transport.close();
+            transport = idleTransports.poll();
+        }
+    }
+
+    /**
+     * Returns the javamail session, created from a copy of the javamail configs. It is created again when the configs
+     * change, closing the connections of the previous one as they are released.
+     *
+     * @return The session.
+     */
+    protected Session getSession() {
+        final Properties properties = (javamailProperties != null) ? javamailProperties : new Properties();
+        Session current = session;
+        if (current == null || !current.getProperties().equals(properties)) {
+            current = Session.getInstance((Properties) properties.clone());
+            session = current;
+        }
+        return current;
+    }
+
+    private EmailSendStats send(final List<Delivery> deliveries) {
+        final long t0 = System.nanoTime();
+        final Counters total = new Counters();
+        if (executor == null || poolSize == 1 || deliveries.size() <= 1) {
+            total.add(sendSlice(deliveries));
+        } else {
+            final int sliceSize = (deliveries.size() + poolSize - 1) / poolSize;
+            final List<FutureTask<Counters>> tasks = new ArrayList<FutureTask<Counters>>();
+            for (int start = 0; start < deliveries.size(); start += sliceSize) {
+                final List<Delivery> slice = deliveries.subList(start, Math.min(start + sliceSize, deliveries.size()));
+                final FutureTask<Counters> task = new FutureTask<Counters>(new Callable<Counters>() {
+                    @Override
+                    public Counters call() throws Exception {
+                        return sendSlice(slice);
+                    }
+                });
+                executor.execute(task);
+                tasks.add(task);
+            }
+            try {
+                for (FutureTask<Counters> task : tasks) {
+                    total.add(task.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sending e-mails", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                } else if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw new IllegalStateException(ex.getCause());
+            } finally {
+                for (FutureTask<Counters> task : tasks) {
+                    task.cancel(false);
+                }
+            }
+        }
+        return new EmailSendStats(total.sent, total.failed, total.connections, total.retries, System.nanoTime() - t0);
+    }
+
+    /**
+     * Sends the deliveries over a single connection.
+     */
+    private Counters sendSlice(final List<Delivery> deliveries) {
+        final Counters counters = new Counters();
+        final PooledTransport transport = borrowTransport();
+        try {
+            for (Delivery delivery : deliveries) {
+                try {
+                    send(transport, createMessage(delivery.email, delivery.to, delivery.email.getContent(delivery.params)), maxRetries, counters);
+                } catch (Exception ex) {
+                    counters.failed++;
+                    LOGGER.log(Level.WARNING, "Could not send e-mail \"{0}\" to {1}: {2}",
+                               new Object[]{delivery.email.getSubject(), Arrays.toString(delivery.to), ex.getMessage()});
+                }
+            }
+        } finally {
+            releaseTransport(transport);
+            record(counters);
+        }
+        return counters;
+    }
+
+    /**
+     * Sends a message, (re)connecting if needed and retrying the failures that aren't rejections of the server.
+     */
+    private void send(final PooledTransport transport, final MimeMessage message, final int maxRetries, final Counters counters)
+            throws MessagingException {
+        message.saveChanges();
+        for (int attempt = 0;; attempt++) {
+            try {
+                if (transport.sent >= messagesPerConnection) {
+                    transport.close();
+                }
+                if (!transport.open) {
+                    transport.connect();
+                    counters.connections++;
+                }
+                transport.transport.sendMessage(message, message.getAllRecipients());
+                transport.sent++;
+                counters.sent++;
+                return;
+            } catch (MessagingException ex) {
+                if (ex instanceof SendFailedException && transport.isConnected()) {
+                    throw ex; // rejected by the server: retrying won't help
+                }
+                transport.close();
+                if (attempt >= maxRetries) {
+                    throw ex;
+                }
+                counters.retries++;
+                try {
+                    Thread.sleep(retryDelay << Math.min(attempt, 16));
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private MimeMessage createMessage(final Email email, final String[] to, final String content) throws Exception {
         // create a message
-        MimeMessage msg = new MimeMessage(session);
+        MimeMessage msg = new MimeMessage(getSession());
         msg.setFrom(new InternetAddress(email.getFrom()));
-        msg.setRecipients(Message.RecipientType.TO, getInternetAddresses(email.getTo()));
+        msg.setRecipients(Message.RecipientType.TO, getInternetAddresses(to));
 
-        if (!ArrayUtils.isEmptyOrNull(email.getCc())) {
+        if (to == email.getTo() && !ArrayUtils.isEmptyOrNull(email.getCc())) {
             msg.setRecipients(Message.RecipientType.CC, getInternetAddresses(email.getCc()));
         }
         msg.setSubject(email.getSubject());
 
         // create and fill the message part
         MimeBodyPart bodyPart = new MimeBodyPart();
-        bodyPart.setContent(email.getContent(params), email.getContentType());
+        bodyPart.setContent(content, email.getContentType());
 
         // create the Multipart and its parts to it
         Multipart mp = new MimeMultipart();
@@ -85,9 +416,41 @@ public class EmailSender {
         // add the Multipart to the message
         msg.setContent(mp);
         msg.setSentDate(DateUtils.now());
+        return msg;
+    }
+
+    /**
+     * Takes an idle pooled connection, checking if it's still open, or a new (not connected yet) one.
+     */
+    private PooledTransport borrowTransport() {
+        final Session current = getSession();
+        PooledTransport transport = idleTransports.poll();
+        while (transport != null) {
+            if (transport.session == current) {
+                if (!transport.isConnected()) {
+                    transport.close();
+                }
+                return transport;
+            }
+            // connected with previous configs
+            transport.close();
+            transport = idleTransports.poll();
+        }
+        return new PooledTransport(current);
+    }
+
+    private void releaseTransport(final PooledTransport transport) {
+        if (!transport.open || transport.session != session || idleTransports.size() >= poolSize
+            || !idleTransports.offer(transport)) {
+            transport.close();
+        }
+    }
 
-        // send the message
-        Transport.send(msg);
+    private void record(final Counters counters) {
+        sentCount.addAndGet(counters.sent);
+        failedCount.addAndGet(counters.failed);
+        connectionCount.addAndGet(counters.connections);
+        retryCount.addAndGet(counters.retries);
     }
 
     /**
@@ -107,4 +470,78 @@ public class EmailSender {
         }
         return iAddresses;
     }
+
+    /**
+     * An e-mail to be sent to some recipients, with its params.
+     */
+    private static final class Delivery {
+
+        final Email email;
+        final String[] to;
+        final Map<String, Object> params;
+
+        Delivery(final Email email, final String[] to, final Map<String, Object> params) {
+            this.email = email;
+            this.to = to;
+            this.params = params;
+        }
+    }
+
+    /**
+     * A transport of the pool, with the number of messages sent over its current connection.
+     */
+    private static final class PooledTransport {
+
+        final Session session;
+        Transport transport;
+        boolean open = false;
+        int sent = 0;
+
+        PooledTransport(final Session session) {
+            this.session = session;
+        }
+
+        void connect() throws MessagingException {
+            if (transport == null) {
+                final String protocol = session.getProperty("mail.transport.protocol");
+                transport = session.getTransport(protocol != null ? protocol : "smtp");
+            }
+            transport.connect();
+            open = true;
+            sent = 0;
+        }
+
+        boolean isConnected() {
+            return open && transport.isConnected();
+        }
+
+        void close() {
+            if (open) {
+                open = false;
+                try {
+                    transport.close();
+                } catch (MessagingException ex) {
+                    LOGGER.log(Level.FINE, "Could not close the mail connection", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counters of a sending.
+     */
+    private static final class Counters {
+
+        int sent;
+        int failed;
+        int connections;
+        int retries;
+
+        void add(final Counters other) {
+            sent += other.sent;
+            failed += other.failed;
+            connections += other.connections;
+            retries += other.retries;
+        }
+    }
 }
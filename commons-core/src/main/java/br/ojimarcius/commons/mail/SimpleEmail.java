@@ -18,8 +18,11 @@
  */
 package br.ojimarcius.commons.mail;
 
+import br.ojimarcius.commons.constants.Constants;
 import br.ojimarcius.commons.text.EnhancedStringBuilder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,6 +58,10 @@ public class SimpleEmail implements Email {
      * The message mimetype. Default is "text/html".
      */
     private String contentType = "text/html";
+    /**
+     * The raw content split on its params, parsed on the first {@link #getContent(Map)}.
+     */
+    private transient volatile ParsedContent parsedContent;
 
     // <editor-fold desc="Getters and Setters">
     @Override
@@ -100,6 +107,7 @@ public class SimpleEmail implements Email {
 
     public void setRawContent(final String rawContent) {
         this.rawContent = rawContent;
+        this.parsedContent = null;
     }
 
     @Override
@@ -112,9 +120,20 @@ public class SimpleEmail implements Email {
     }
     // </editor-fold>
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The raw content is parsed once, so rendering it for many recipients costs a single pass over the content for each
+     * one. Params not given are kept as they are, like {@link EnhancedStringBuilder#replaceParams(Map)} does.
+     */
     @Override
     public String getContent(final Map<String, Object> params) {
-        return (new EnhancedStringBuilder(getRawContent())).replaceParams(params).toString();
+        ParsedContent parsed = parsedContent;
+        if (parsed == null) {
+            parsed = new ParsedContent(getRawContent());
+            parsedContent = parsed;
+        }
+        return parsed.render(params);
     }
 
     @Override
@@ -158,4 +177,56 @@ public class SimpleEmail implements Email {
         }
         return true;
     }
+
+    /**
+     * The raw content split on the "${param}" markers.
+     */
+    private static final class ParsedContent {
+
+        /**
+         * Literal text on the even positions and param names on the odd ones.
+         */
+        private final String[] parts;
+        private final int length;
+
+        ParsedContent(final String rawContent) {
+            final List<String> list = new ArrayList<String>();
+            final String content = (rawContent != null) ? rawContent : "";
+            int position = 0;
+            int start = content.indexOf(Constants.DEFAULT_PARAM_START);
+            while (start >= 0) {
+                final int nameStart = start + Constants.DEFAULT_PARAM_START.length();
+                final int end = content.indexOf(Constants.DEFAULT_PARAM_END, nameStart);
+                if (end < 0) {
+                    break;
+                }
+                if (end > nameStart) {
+                    list.add(content.substring(position, start));
+                    list.add(content.substring(nameStart, end));
+                    position = end + Constants.DEFAULT_PARAM_END.length();
+                }
+                start = content.indexOf(Constants.DEFAULT_PARAM_START, end + Constants.DEFAULT_PARAM_END.length());
+            }
+            list.add(content.substring(position));
+            this.parts = list.toArray(new String[list.size()]);
+            this.length = content.length();
+        }
+
+        String render(final Map<String, Object> params) {
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            final EnhancedStringBuilder builder = new EnhancedStringBuilder(length + 16);
+            for (int i = 0; i < parts.length; i++) {
+                if (i % 2 == 0) {
+                    builder.append(parts[i]);
+                } else if (params != null && params.containsKey(parts[i])) {
+                    builder.append(params.get(parts[i]));
+                } else {
+                    builder.append(Constants.DEFAULT_PARAM_START, parts[i], Constants.DEFAULT_PARAM_END);
+                }
+            }
+            return builder.toString();
+        }
+    }
 }
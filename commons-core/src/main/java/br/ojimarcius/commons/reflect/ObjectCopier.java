@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.reflect;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Copies objects field by field, as {@link br.ojimarcius.commons.util.ReflectionUtils#cloneObject(Object)} does, with
+ * the copy plan of each class (its public default constructor and its fields, accessible) resolved once and cached.
+ * Primitive fields are copied without boxing.
+ * <p/>
+ * The fields copied are the instance fields of the class and its superclasses, except the transient and volatile ones.
+ * On a {@link Mode#SHALLOW shallow} copy the values are shared with the original. On a {@link Mode#DEEP deep} copy:
+ * <ul>
+ * <li>arrays, {@link Calendar Calendars} and {@link Date Dates} are copied;</li>
+ * <li><code>java.util</code> collections and maps are copied into new instances of the same class, with their elements
+ * copied; the ones that can't be instantiated (e.g. unmodifiable views) are shared;</li>
+ * <li>other <code>java.*</code> objects and enums are shared, as they're usually immutable;</li>
+ * <li>the other objects are deep copied by their own copier, or shared if they have no public default
+ * constructor.</li>
+ * </ul>
+ * Objects referenced many times (including cycles) are copied once.
+ * <p/>
+ * The copiers of the last 1024 classes used are kept; the least recently used one is evicted
+ * when a new class comes.
+ *
+ * @param <T> The type of the objects copied.
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public final class ObjectCopier<T> {
+
+    /**
+     * Maximum number of classes whose copiers are kept. The copiers hold their classes, so the cache is bounded instead
+     * of weakly keyed; call {@link #clearCache()} to release reloaded classes.
+     */
+    static final int MAX_CACHED_COPIERS = 1024;
+    /**
+     * The copiers by class, least recently used first. Guarded by itself.
+     */
+    private static final Map<Class<?>, ObjectCopier<?>> COPIERS = new LinkedHashMap<Class<?>, ObjectCopier<?>>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Class<?>, ObjectCopier<?>> eldest) {
+            return size() > MAX_CACHED_COPIERS;
+        }
+    };
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte CHAR = 8;
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final byte[] kinds;
+
+    /**
+     * The copy modes.
+     */
+    public enum Mode {
+
+        /**
+         * The values of the fields are shared with the original.
+         */
+        SHALLOW,
+        /**
+         * The values of the fields are copied, recursively.
+         */
+        DEEP
+    }
+
+    private ObjectCopier(final Class<T> type) {
+        this.type = type;
+        Constructor<T> defaultConstructor;
+        try {
+            defaultConstructor = type.getConstructor();
+            if (!defaultConstructor.isAccessible()) {
+                defaultConstructor.setAccessible(true);
+            }
+        } catch (NoSuchMethodException ex) {
+            defaultConstructor = null;
+        }
+        this.constructor = defaultConstructor;
+        final List<Field> copied = new ArrayList<Field>();
+        for (Class<?> c = type; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !Modifier.isVolatile(modifiers)) {
+                    if (!field.isAccessible()) {
+                        field.setAccessible(true);
+                    }
+                    copied.add(field);
+                }
+            }
+        }
+        this.fields = copied.toArray(new Field[copied.size()]);
+        this.kinds = new byte[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            kinds[i] = kindOf(fields[i].getType());
+        }
+    }
+
+    /**
+     * Returns the copier of the class, creating it on the first call.
+     *
+     * @param <T>  The type of the objects copied.
+     * @param type The class.
+     * @return The copier.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ObjectCopier<T> of(final Class<T> type) {
+        ArgumentUtils.rejectIfNull(type);
+        synchronized (COPIERS) {
+            final ObjectCopier<T> copier = (ObjectCopier<T>) COPIERS.get(type);
+            if (copier != null) {
+                return copier;
+            }
+        }
+        // the plan is resolved out of the lock; a concurrent one for the same class is dropped
+        final ObjectCopier<T> created = new ObjectCopier<T>(type);
+        synchronized (COPIERS) {
+            final ObjectCopier<T> existing = (ObjectCopier<T>) COPIERS.get(type);
+            if (existing != null) {
+                return existing;
+            }
+            COPIERS.put(type, created);
+            return created;
+        }
+    }
+
+    /**
+     * Clears the cached copiers, e.g. when classes are reloaded.
+     */
+    public static void clearCache() {
+        synchronized (COPIERS) {
+            COPIERS.clear();
+        }
+    }
+
+    /**
+     * Tells whether the copier of the class is cached, without touching its recency.
+     */
+    static boolean isCached(final Class<?> type) {
+        synchronized (COPIERS) {
+            return COPIERS.containsKey(type);
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns a shallow copy of the object.
+     *
+     * @param original The object. Must be of the exact class of this copier.
+     * @return The copy, or null if the object is null.
+     * @throws IllegalStateException If the class has no public default constructor.
+     */
+    public T copy(final T original) {
+        return copy(original, Mode.SHALLOW);
+    }
+
+    /**
+     * Returns a copy of the object.
+     *
+     * @param original The object. Must be of the exact class of this copier.
+     * @param mode     The copy mode.
+     * @return The copy, or null if the object is null.
+     * @throws IllegalStateException If the class has no public default constructor.
+     */
+    public T copy(final T original, final Mode mode) {
+        ArgumentUtils.rejectIfNull(mode);
+        if (original == null) {
+            return null;
+        }
+        checkType(original);
+        final T copy = newInstance();
+        if (mode == Mode.DEEP) {
+            final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+            copies.put(original, copy);
+            copyFields(original, copy, copies);
+        } else {
+            copyFields(original, copy, null);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the fields of an object on another one (shallow).
+     *
+     * @param source The object copied. Must be of the exact class of this copier.
+     * @param target The object changed. Must be of the exact class of this copier.
+     * @return The target.
+     */
+    public T copyInto(final T source, final T target) {
+        ArgumentUtils.rejectIfNull(source);
+        ArgumentUtils.rejectIfNull(target);
+        checkType(source);
+        checkType(target);
+        copyFields(source, target, null);
+        return target;
+    }
+
+    private void checkType(final Object object) {
+        if (object.getClass() != type) {
+            throw new IllegalArgumentException("Expecting a " + type.getName() + ", not a " + object.getClass().getName());
+        }
+    }
+
+    private T newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("The class " + type.getName() + " doesn't have a public default constructor.");
+        }
+        try {
+            return constructor.newInstance();
+        } catch (Exception ex) {
+            throw new RuntimeException("Could not instantiate " + type.getName(), ex);
+        }
+    }
+
+    /**
+     * Copies the fields, deep copying the objects if the map of copies (original to copy) is given.
+     */
+    private void copyFields(final Object source, final Object target, final Map<Object, Object> copies) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                final Field field = fields[i];
+                switch (kinds[i]) {
+                    case INT:
+                        field.setInt(target, field.getInt(source));
+                        break;
+                    case LONG:
+                        field.setLong(target, field.getLong(source));
+                        break;
+                    case BOOLEAN:
+                        field.setBoolean(target, field.getBoolean(source));
+                        break;
+                    case DOUBLE:
+                        field.setDouble(target, field.getDouble(source));
+                        break;
+                    case FLOAT:
+                        field.setFloat(target, field.getFloat(source));
+                        break;
+                    case SHORT:
+                        field.setShort(target, field.getShort(source));
+                        break;
+                    case BYTE:
+                        field.setByte(target, field.getByte(source));
+                        break;
+                    case CHAR:
+                        field.setChar(target, field.getChar(source));
+                        break;
+                    default:
+                        final Object value = field.get(source);
+                        field.set(target, (copies != null) ? deepCopy(value, copies) : value);
+                }
+            }
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object deepCopy(final Object value, final Map<Object, Object> copies) {
+        if (value == null) {
+            return null;
+        }
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        final Class<?> c = value.getClass();
+        if (c.isArray()) {
+            final int length = Array.getLength(value);
+            copy = Array.newInstance(c.getComponentType(), length);
+            copies.put(value, copy);
+            if (c.getComponentType().isPrimitive()) {
+                System.arraycopy(value, 0, copy, 0, length);
+            } else {
+                final Object[] values = (Object[]) value;
+                final Object[] copied = (Object[]) copy;
+                for (int i = 0; i < length; i++) {
+                    copied[i] = deepCopy(values[i], copies);
+                }
+            }
+        } else if (value instanceof Calendar) {
+            copy = ((Calendar) value).clone();
+            copies.put(value, copy);
+        } else if (value instanceof Date) {
+            copy = ((Date) value).clone();
+            copies.put(value, copy);
+        } else if (value instanceof Collection || value instanceof Map) {
+            copy = copyContainer(value, copies);
+        } else if (c.isEnum() || c.getName().startsWith("java.") || c.getName().startsWith("javax.")) {
+            copy = value;
+        } else {
+            final ObjectCopier<Object> copier = (ObjectCopier<Object>) of(c);
+            if (copier.constructor == null) {
+                copy = value;
+            } else {
+                copy = copier.newInstance();
+                copies.put(value, copy);
+                copier.copyFields(value, copy, copies);
+            }
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyContainer(final Object value, final Map<Object, Object> copies) {
+        final Class<?> c = value.getClass();
+        final Object copy;
+        if (c == TreeSet.class) {
+            copy = new TreeSet<Object>(((SortedSet<Object>) value).comparator());
+        } else if (c == TreeMap.class) {
+            copy = new TreeMap<Object, Object>(((SortedMap<Object, Object>) value).comparator());
+        } else if (!c.getName().startsWith("java.util.") || value instanceof SortedSet || value instanceof SortedMap) {
+            return value;
+        } else {
+            try {
+                copy = c.getConstructor().newInstance();
+            } catch (Exception ex) {
+                return value; // e.g. unmodifiable or synchronized views
+            }
+        }
+        copies.put(value, copy);
+        if (value instanceof Collection) {
+            final Collection<Object> copied = (Collection<Object>) copy;
+            for (Object element : (Collection<?>) value) {
+                copied.add(deepCopy(element, copies));
+            }
+        } else {
+            final Map<Object, Object> copied = (Map<Object, Object>) copy;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copied.put(deepCopy(entry.getKey(), copies), deepCopy(entry.getValue(), copies));
+            }
+        }
+        return copy;
+    }
+
+    private static byte kindOf(final Class<?> fieldType) {
+        if (!fieldType.isPrimitive()) {
+            return OBJECT;
+        } else if (fieldType == int.class) {
+            return INT;
+        } else if (fieldType == long.class) {
+            return LONG;
+        } else if (fieldType == boolean.class) {
+            return BOOLEAN;
+        } else if (fieldType == double.class) {
+            return DOUBLE;
+        } else if (fieldType == float.class) {
+            return FLOAT;
+        } else if (fieldType == short.class) {
+            return SHORT;
+        } else if (fieldType == byte.class) {
+            return BYTE;
+        }
+        return CHAR;
+    }
+}
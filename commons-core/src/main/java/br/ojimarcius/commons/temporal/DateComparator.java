@@ -50,17 +50,10 @@ public class DateComparator implements Comparator<Date> {
 
     @Override
     public int compare(final Date d1, final Date d2) {
-        return compare(CalendarUtils.castToCalendar(d1), CalendarUtils.castToCalendar(d2));
+        return CalendarUtils.compare(d1, d2, ignoreTime);
     }
 
     public int compare(final Calendar c1, final Calendar c2) {
-        if (c1 == c2) {
-            // both null or same instance.
-            return 0;
-        }
-        if (c1 == null || c2 == null) {
-            throw new IllegalArgumentException("Cannot compare with null.");
-        }
-        return ignoreTime ? CalendarUtils.truncatedCompareTo(c1, c2, Calendar.DAY_OF_MONTH) : c1.compareTo(c2);
+        return CalendarUtils.compare(c1, c2, ignoreTime);
     }
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.temporal;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import br.ojimarcius.commons.util.CalendarUtils;
+import br.ojimarcius.commons.util.EpochUtils;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An immutable period on epoch milliseconds, for computations that would otherwise clone {@link Period Periods} and
+ * allocate {@link Calendar Calendars}.
+ * <p/>
+ * The period is a closed interval, [start, end], as in {@link br.ojimarcius.commons.util.PeriodUtils}. Either side can
+ * be open ended (the null start/end of a {@link Period}): an open start is the infinite past and an open end the
+ * infinite future. A period whose start is after its end is invalid (empty).
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public final class EpochPeriod implements Serializable, Comparable<EpochPeriod> {
+
+    private static final long serialVersionUID = 6280613549160718342L;
+    /**
+     * The period open on both sides: all the time.
+     */
+    public static final EpochPeriod ALL = new EpochPeriod(0, 0, true, true);
+    private final long start;
+    private final long end;
+    private final boolean openStart;
+    private final boolean openEnd;
+
+    private EpochPeriod(final long start, final long end, final boolean openStart, final boolean openEnd) {
+        this.start = openStart ? Long.MIN_VALUE : start;
+        this.end = openEnd ? Long.MAX_VALUE : end;
+        this.openStart = openStart;
+        this.openEnd = openEnd;
+    }
+
+    /**
+     * Returns the period between the given epoch milliseconds.
+     *
+     * @param start The start.
+     * @param end   The end.
+     * @return The period.
+     */
+    public static EpochPeriod of(final long start, final long end) {
+        return new EpochPeriod(start, end, false, false);
+    }
+
+    /**
+     * Returns the period open ended on the future, from the given epoch milliseconds.
+     *
+     * @param start The start.
+     * @return The period.
+     */
+    public static EpochPeriod startingAt(final long start) {
+        return new EpochPeriod(start, 0, false, true);
+    }
+
+    /**
+     * Returns the period open ended on the past, until the given epoch milliseconds.
+     *
+     * @param end The end.
+     * @return The period.
+     */
+    public static EpochPeriod endingAt(final long end) {
+        return new EpochPeriod(0, end, true, false);
+    }
+
+    /**
+     * Returns the period between two dates. Null dates are open ends.
+     *
+     * @param start The start. Can be a {@link Date}, a {@link Calendar} or null.
+     * @param end   The end. Can be a {@link Date}, a {@link Calendar} or null.
+     * @return The period.
+     */
+    public static EpochPeriod valueOf(final Object start, final Object end) {
+        return new EpochPeriod(start == null ? 0 : EpochUtils.toEpochMillis(start),
+                               end == null ? 0 : EpochUtils.toEpochMillis(end),
+                               start == null, end == null);
+    }
+
+    /**
+     * Returns the epoch period of a {@link Period} (e.g. a {@link SimplePeriod} or a persistent one).
+     *
+     * @param period The period.
+     * @return The epoch period, or null if the period is null.
+     */
+    public static EpochPeriod valueOf(final Period period) {
+        if (period == null) {
+            return null;
+        }
+        return valueOf(period.getStart(), period.getEnd());
+    }
+
+    /**
+     * Returns the start, in epoch milliseconds, or {@link Long#MIN_VALUE} if it is open.
+     *
+     * @return The start.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end, in epoch milliseconds, or {@link Long#MAX_VALUE} if it is open.
+     *
+     * @return The end.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean isOpenStart() {
+        return openStart;
+    }
+
+    public boolean isOpenEnd() {
+        return openEnd;
+    }
+
+    /**
+     * Returns the start as a {@link Date}.
+     *
+     * @return The start, or null if it is open.
+     */
+    public Date getStartDate() {
+        return openStart ? null : new Date(start);
+    }
+
+    /**
+     * Returns the end as a {@link Date}.
+     *
+     * @return The end, or null if it is open.
+     */
+    public Date getEndDate() {
+        return openEnd ? null : new Date(end);
+    }
+
+    /**
+     * Tells if the start is not after the end.
+     *
+     * @return <code>true</code> if the period is valid.
+     */
+    public boolean isValid() {
+        return start <= end;
+    }
+
+    /**
+     * Returns the duration, in milliseconds.
+     *
+     * @return The duration, or {@link Long#MAX_VALUE} if the period is open ended.
+     */
+    public long getDuration() {
+        if (openStart || openEnd) {
+            return Long.MAX_VALUE;
+        }
+        return isValid() ? end - start : 0L;
+    }
+
+    /**
+     * Tells if the period contains the instant.
+     *
+     * @param millis The instant, in epoch milliseconds.
+     * @return <code>true</code> if the period contains it.
+     */
+    public boolean contains(final long millis) {
+        return start <= millis && millis <= end;
+    }
+
+    /**
+     * Tells if the period contains another one.
+     *
+     * @param other The other period.
+     * @return <code>true</code> if the period contains the other one.
+     */
+    public boolean contains(final EpochPeriod other) {
+        return start <= other.start && other.end <= end;
+    }
+
+    /**
+     * Tells if the periods overlap (share at least one instant).
+     *
+     * @param other The other period.
+     * @return <code>true</code> if the periods overlap.
+     */
+    public boolean overlaps(final EpochPeriod other) {
+        return isValid() && other.isValid() && start <= other.end && other.start <= end;
+    }
+
+    /**
+     * Returns the intersection of the periods.
+     *
+     * @param other The other period.
+     * @return The intersection, or null if the periods do not overlap.
+     */
+    public EpochPeriod intersection(final EpochPeriod other) {
+        if (!overlaps(other)) {
+            return null;
+        }
+        return new EpochPeriod(Math.max(start, other.start), Math.min(end, other.end),
+                               openStart && other.openStart, openEnd && other.openEnd);
+    }
+
+    /**
+     * Returns the smallest period containing both periods.
+     *
+     * @param other The other period.
+     * @return The container period.
+     */
+    public EpochPeriod span(final EpochPeriod other) {
+        return new EpochPeriod(Math.min(start, other.start), Math.max(end, other.end),
+                               openStart || other.openStart, openEnd || other.openEnd);
+    }
+
+    /**
+     * Returns the union of the periods, if it is a period.
+     *
+     * @param other The other period.
+     * @return The union, or null if the periods do not overlap (the union would have a gap).
+     */
+    public EpochPeriod union(final EpochPeriod other) {
+        if (!overlaps(other)) {
+            return null;
+        }
+        return span(other);
+    }
+
+    /**
+     * Returns the parts of this period not covered by the other one. The parts share their bounds with the other
+     * period, as in {@link PeriodIndex#getFreeSlots(Period)}.
+     *
+     * @param other The other period.
+     * @return The remaining parts, sorted: none, one or two periods.
+     */
+    public List<EpochPeriod> subtract(final EpochPeriod other) {
+        final List<EpochPeriod> result = new ArrayList<EpochPeriod>(2);
+        if (!isValid()) {
+            return result;
+        }
+        if (!overlaps(other)) {
+            result.add(this);
+            return result;
+        }
+        if (start < other.start) {
+            result.add(new EpochPeriod(start, other.start, openStart, false));
+        }
+        if (other.end < end) {
+            result.add(new EpochPeriod(other.end, end, false, openEnd));
+        }
+        return result;
+    }
+
+    /**
+     * Converts to a {@link SimplePeriod}, on the default time zone.
+     *
+     * @return The simple period.
+     */
+    public SimplePeriod toSimplePeriod() {
+        return copyTo(new SimplePeriod());
+    }
+
+    /**
+     * Sets the bounds of this period (on the default time zone) on the given one, e.g. a persistent period.
+     *
+     * @param <P>    The type of the period.
+     * @param period The period to set.
+     * @return The given period.
+     */
+    public <P extends Period> P copyTo(final P period) {
+        ArgumentUtils.rejectIfNull(period);
+        period.setStart(CalendarUtils.castToCalendar(getStartDate()));
+        period.setEnd(CalendarUtils.castToCalendar(getEndDate()));
+        return period;
+    }
+
+    @Override
+    public int compareTo(final EpochPeriod another) {
+        if (start != another.start) {
+            return start < another.start ? -1 : 1;
+        }
+        return end < another.end ? -1 : (end == another.end ? 0 : 1);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + (int) (start ^ (start >>> 32));
+        hash = 31 * hash + (int) (end ^ (end >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EpochPeriod other = (EpochPeriod) obj;
+        return start == other.start && end == other.end && openStart == other.openStart && openEnd == other.openEnd;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (openStart ? "-inf" : getStartDate().toString()) + ", "
+               + (openEnd ? "+inf" : getEndDate().toString()) + "]";
+    }
+}
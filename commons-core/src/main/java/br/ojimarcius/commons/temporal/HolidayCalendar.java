@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.temporal;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import br.ojimarcius.commons.util.CalendarUtils;
+import br.ojimarcius.commons.util.EpochUtils;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A calendar of holidays, used to evaluate business days.
+ * <p/>
+ * The holidays and weekends of each year are computed once and cached as day-of-year bitsets, along with the
+ * cumulative count of business days, so checking a day is O(1) and counting/adding business days only walks whole
+ * years.
+ * <p/>
+ * Holidays can be defined as fixed dates (same day every year), as specific dates, by overriding
+ * {@link #getHolidays(int)} (e.g. moveable feasts) and by chaining a parent calendar (e.g. a regional calendar on top of
+ * the national one). Calendars should be fully configured before being used: changing a parent calendar does not reset
+ * the cache of its children.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class HolidayCalendar {
+
+    /**
+     * First year kept in cache.
+     */
+    private static final int FIRST_CACHED_YEAR = 1900;
+    /**
+     * Number of years kept in cache, from {@link #FIRST_CACHED_YEAR}. Other years are computed on demand.
+     */
+    private static final int CACHED_YEARS = 256;
+    private final HolidayCalendar parent;
+    /**
+     * Fixed holidays, as [month, dayOfMonth].
+     */
+    private final Collection<int[]> fixedHolidays = new CopyOnWriteArrayList<int[]>();
+    /**
+     * Specific holidays, as (year * 1000 + dayOfYear).
+     */
+    private final Collection<Integer> specificHolidays = new CopyOnWriteArraySet<Integer>();
+    private final AtomicReferenceArray<YearDays> years = new AtomicReferenceArray<YearDays>(CACHED_YEARS);
+
+    /**
+     * Default constructor: a calendar with weekends only.
+     */
+    public HolidayCalendar() {
+        this(null);
+    }
+
+    /**
+     * Constructor of a calendar that extends another one.
+     *
+     * @param parent The calendar whose holidays are also holidays of this one.
+     */
+    public HolidayCalendar(final HolidayCalendar parent) {
+        this.parent = parent;
+    }
+
+    public HolidayCalendar getParent() {
+        return parent;
+    }
+
+    /**
+     * Adds a holiday that happens every year on the same date.
+     * <p/>
+     * Beware! month is zero indexed, so JANUARY = 0, FEBRUARY = 1 and so on...
+     *
+     * @param month      The month.
+     * @param dayOfMonth The day of month.
+     * @return This calendar.
+     */
+    public HolidayCalendar addFixedHoliday(final int month, final int dayOfMonth) {
+        ArgumentUtils.rejectIfOutOfBounds(month, Calendar.JANUARY, Calendar.DECEMBER);
+        ArgumentUtils.rejectIfOutOfBounds(dayOfMonth, 1, 31);
+        fixedHolidays.add(new int[]{month, dayOfMonth});
+        clearCache();
+        return this;
+    }
+
+    /**
+     * Adds a holiday that happens only on the given date.
+     *
+     * @param date The holiday. Can be a {@link java.util.Date} or a {@link Calendar}.
+     * @return This calendar.
+     */
+    public HolidayCalendar addHoliday(final Object date) {
+        ArgumentUtils.rejectIfNull(date);
+        final Calendar c = CalendarUtils.castToCalendar(date);
+        specificHolidays.add(c.get(Calendar.YEAR) * 1000 + c.get(Calendar.DAY_OF_YEAR));
+        clearCache();
+        return this;
+    }
+
+    /**
+     * Returns the holidays of the given year that are computed by rules (e.g. moveable feasts). To be overriden by
+     * subclasses; by default there is none.
+     *
+     * @param year The year.
+     * @return The holidays, as {@link java.util.Date Dates} or {@link Calendar Calendars}.
+     */
+    protected Collection<? extends Object> getHolidays(final int year) {
+        return Collections.emptyList();
+    }
+
+    public boolean isHoliday(final Object date) {
+        ArgumentUtils.rejectIfNull(date);
+        if (date instanceof Date) {
+            final long epochDay = EpochUtils.toEpochDay(date);
+            if (epochDay >= EpochUtils.GREGORIAN_CUTOVER_EPOCH_DAY) {
+                final int year = EpochUtils.getYear(epochDay);
+                return getYearDays(year).holidays.get((int) (epochDay - EpochUtils.getFirstEpochDay(year)));
+            }
+        }
+        final Calendar c = CalendarUtils.castToCalendar(date);
+        return getYearDays(c.get(Calendar.YEAR)).holidays.get(c.get(Calendar.DAY_OF_YEAR) - 1);
+    }
+
+    public boolean isBusinessDay(final Object date) {
+        if (date == null) {
+            return false;
+        }
+        if (date instanceof Date) {
+            final long epochDay = EpochUtils.toEpochDay(date);
+            if (epochDay >= EpochUtils.GREGORIAN_CUTOVER_EPOCH_DAY) {
+                final int year = EpochUtils.getYear(epochDay);
+                return getYearDays(year).isBusinessDay((int) (epochDay - EpochUtils.getFirstEpochDay(year)));
+            }
+        }
+        final Calendar c = CalendarUtils.castToCalendar(date);
+        return getYearDays(c.get(Calendar.YEAR)).isBusinessDay(c.get(Calendar.DAY_OF_YEAR) - 1);
+    }
+
+    /**
+     * Counts the business days between two dates, both inclusive, in any order.
+     *
+     * @param date1 A date.
+     * @param date2 Another date.
+     * @return The number of business days.
+     */
+    public int countBusinessDaysBetween(final Object date1, final Object date2) {
+        ArgumentUtils.rejectIfAnyNull(date1, date2);
+        Calendar c1 = CalendarUtils.castToCalendar(date1);
+        Calendar c2 = CalendarUtils.castToCalendar(date2);
+        int year1 = c1.get(Calendar.YEAR);
+        int day1 = c1.get(Calendar.DAY_OF_YEAR) - 1;
+        int year2 = c2.get(Calendar.YEAR);
+        int day2 = c2.get(Calendar.DAY_OF_YEAR) - 1;
+        if (year1 > year2 || (year1 == year2 && day1 > day2)) {
+            final int year = year1;
+            final int day = day1;
+            year1 = year2;
+            day1 = day2;
+            year2 = year;
+            day2 = day;
+        }
+        if (year1 == year2) {
+            return getYearDays(year1).count(day1, day2 + 1);
+        }
+        final YearDays first = getYearDays(year1);
+        int count = first.count(day1, first.length);
+        for (int year = year1 + 1; year < year2; year++) {
+            count += getYearDays(year).total();
+        }
+        return count + getYearDays(year2).count(0, day2 + 1);
+    }
+
+    /**
+     * Adds (or subtracts, if negative) business days to the given date, keeping its time info.
+     * <p/>
+     * The given date itself is never counted, so adding 1 (one) business day to a friday gives the next monday (if it
+     * is not a holiday).
+     *
+     * @param date The date.
+     * @param days The quantity of business days.
+     * @return A new Calendar.
+     */
+    public Calendar addBusinessDays(final Object date, final int days) {
+        ArgumentUtils.rejectIfNull(date);
+        final Calendar result = (Calendar) CalendarUtils.castToCalendar(date).clone();
+        if (days == 0) {
+            return result;
+        }
+        int year = result.get(Calendar.YEAR);
+        final int day = result.get(Calendar.DAY_OF_YEAR) - 1;
+        int remaining = Math.abs(days);
+        int found;
+        if (days > 0) {
+            /* business days after the given day */
+            int from = day + 1;
+            while (true) {
+                final YearDays yearDays = getYearDays(year);
+                final int available = yearDays.count(from, yearDays.length);
+                if (remaining <= available) {
+                    found = yearDays.findBusinessDay(yearDays.businessBefore[from] + remaining);
+                    break;
+                }
+                remaining -= available;
+                year++;
+                from = 0;
+            }
+        } else {
+            /* business days before the given day */
+            int to = day;
+            while (true) {
+                final YearDays yearDays = getYearDays(year);
+                final int available = yearDays.count(0, to);
+                if (remaining <= available) {
+                    found = yearDays.findBusinessDay(yearDays.businessBefore[to] - remaining + 1);
+                    break;
+                }
+                remaining -= available;
+                year--;
+                to = getYearDays(year).length;
+            }
+        }
+        result.set(Calendar.YEAR, year);
+        result.set(Calendar.DAY_OF_YEAR, found + 1);
+        return result;
+    }
+
+    private YearDays getYearDays(final int year) {
+        final int index = year - FIRST_CACHED_YEAR;
+        if (index < 0 || index >= CACHED_YEARS) {
+            return computeYearDays(year);
+        }
+        YearDays yearDays = years.get(index);
+        if (yearDays == null) {
+            yearDays = computeYearDays(year);
+            years.set(index, yearDays);
+        }
+        return yearDays;
+    }
+
+    private void clearCache() {
+        for (int i = 0; i < CACHED_YEARS; i++) {
+            years.set(i, null);
+        }
+    }
+
+    private YearDays computeYearDays(final int year) {
+        final GregorianCalendar firstDay = new GregorianCalendar(year, Calendar.JANUARY, 1);
+        final int length = firstDay.isLeapYear(year) ? 366 : 365;
+        final BitSet holidays = new BitSet(length);
+        if (parent != null) {
+            holidays.or(parent.getYearDays(year).holidays);
+        }
+        for (int[] fixed : fixedHolidays) {
+            final Calendar c = new GregorianCalendar(year, fixed[0], 1);
+            if (fixed[1] <= c.getActualMaximum(Calendar.DAY_OF_MONTH)) {
+                c.set(Calendar.DAY_OF_MONTH, fixed[1]);
+                holidays.set(c.get(Calendar.DAY_OF_YEAR) - 1);
+            }
+        }
+        for (Integer specific : specificHolidays) {
+            if (specific / 1000 == year) {
+                holidays.set(specific % 1000 - 1);
+            }
+        }
+        final Collection<? extends Object> ruled = getHolidays(year);
+        if (ruled != null) {
+            for (Object holiday : ruled) {
+                final Calendar c = CalendarUtils.castToCalendar(holiday);
+                if (c != null && c.get(Calendar.YEAR) == year) {
+                    holidays.set(c.get(Calendar.DAY_OF_YEAR) - 1);
+                }
+            }
+        }
+        final BitSet nonBusinessDays = (BitSet) holidays.clone();
+        /* 0 = sunday ... 6 = saturday */
+        final int firstDayOfWeek = firstDay.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+        for (int i = 0; i < length; i++) {
+            final int dayOfWeek = (firstDayOfWeek + i) % 7;
+            if (dayOfWeek == 0 || dayOfWeek == 6) {
+                nonBusinessDays.set(i);
+            }
+        }
+        return new YearDays(length, holidays, nonBusinessDays);
+    }
+
+    /**
+     * The precomputed days of one year.
+     */
+    private static final class YearDays {
+
+        private final int length;
+        private final BitSet holidays;
+        private final BitSet nonBusinessDays;
+        /**
+         * businessBefore[i] = quantity of business days on [0, i[.
+         */
+        private final int[] businessBefore;
+
+        YearDays(final int length, final BitSet holidays, final BitSet nonBusinessDays) {
+            this.length = length;
+            this.holidays = holidays;
+            this.nonBusinessDays = nonBusinessDays;
+            this.businessBefore = new int[length + 1];
+            for (int i = 0; i < length; i++) {
+                businessBefore[i + 1] = businessBefore[i] + (nonBusinessDays.get(i) ? 0 : 1);
+            }
+        }
+
+        boolean isBusinessDay(final int dayIndex) {
+            return !nonBusinessDays.get(dayIndex);
+        }
+
+        int total() {
+            return businessBefore[length];
+        }
+
+        /**
+         * Counts the business days on [from, to[.
+         */
+        int count(final int from, final int to) {
+            return businessBefore[to] - businessBefore[from];
+        }
+
+        /**
+         * Returns the index of the nth business day of the year (1 based).
+         */
+        int findBusinessDay(final int nth) {
+            /* first index i where businessBefore[i] >= nth, the business day is the one before it */
+            int low = 1;
+            int high = length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (businessBefore[mid] < nth) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - 1;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.temporal;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import br.ojimarcius.commons.util.EpochUtils;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable index of periods, for repeated overlap queries.
+ * <p/>
+ * The periods are kept sorted by start, on epoch milliseconds bounds, as an implicit balanced binary tree augmented with
+ * the largest end of each subtree (an interval tree). Finding the periods overlapping a date or another period is
+ * O(log n + k), k being the number of periods found.
+ * <p/>
+ * Periods are handled as closed intervals, as in {@link br.ojimarcius.commons.util.PeriodUtils#intersection(Period...)}:
+ * a null start is the infinite past and a null end is the infinite future. Null and invalid (start after end) periods
+ * are not indexed.
+ *
+ * @param <T> The type of the periods.
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class PeriodIndex<T extends Period> {
+
+    private final long[] starts;
+    private final long[] ends;
+    /**
+     * Largest end of the subtree rooted on each position.
+     */
+    private final long[] maxEnds;
+    private final List<T> periods;
+
+    /**
+     * Builds the index of the periods, in O(n log n).
+     *
+     * @param periods The periods.
+     */
+    public PeriodIndex(final Collection<? extends T> periods) {
+        ArgumentUtils.rejectIfNull(periods);
+        final List<Entry<T>> entries = new ArrayList<Entry<T>>(periods.size());
+        for (T period : periods) {
+            if (period != null) {
+                final long start = getStartMillis(period);
+                final long end = getEndMillis(period);
+                if (start <= end) {
+                    entries.add(new Entry<T>(start, end, period));
+                }
+            }
+        }
+        Collections.sort(entries, Entry.COMPARATOR);
+        final int size = entries.size();
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.maxEnds = new long[size];
+        final List<T> sortedPeriods = new ArrayList<T>(size);
+        for (int i = 0; i < size; i++) {
+            final Entry<T> entry = entries.get(i);
+            starts[i] = entry.start;
+            ends[i] = entry.end;
+            sortedPeriods.add(entry.period);
+        }
+        this.periods = sortedPeriods;
+        buildMaxEnds(0, size - 1);
+    }
+
+    /**
+     * Returns the number of indexed periods.
+     *
+     * @return The number of indexed periods.
+     */
+    public int size() {
+        return periods.size();
+    }
+
+    /**
+     * Returns the indexed periods, sorted by start (and end).
+     *
+     * @return The indexed periods.
+     */
+    public List<T> getPeriods() {
+        return new ArrayList<T>(periods);
+    }
+
+    /**
+     * Tells if any two indexed periods overlap, in O(n).
+     *
+     * @return <code>true</code> if there is some overlap.
+     */
+    public boolean hasConcurrence() {
+        long largestEnd = Long.MIN_VALUE;
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0 && starts[i] <= largestEnd) {
+                return true;
+            }
+            largestEnd = Math.max(largestEnd, ends[i]);
+        }
+        return false;
+    }
+
+    /**
+     * Tells if any indexed period overlaps the given one.
+     *
+     * @param period The period.
+     * @return <code>true</code> if some indexed period overlaps the given one.
+     */
+    public boolean overlaps(final Period period) {
+        final long start = getStartMillis(period);
+        final long end = getEndMillis(period);
+        return start <= end && findFirst(0, starts.length - 1, start, end) >= 0;
+    }
+
+    /**
+     * Returns the indexed periods that overlap the given one, sorted by start.
+     *
+     * @param period The period.
+     * @return The overlapping periods.
+     */
+    public List<T> findOverlapping(final Period period) {
+        final List<T> result = new ArrayList<T>();
+        final long start = getStartMillis(period);
+        final long end = getEndMillis(period);
+        if (start <= end) {
+            collect(0, starts.length - 1, start, end, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indexed periods that contain the given date, sorted by start.
+     *
+     * @param date The date. Can be a {@link java.util.Date} or a {@link Calendar}.
+     * @return The periods containing the date.
+     */
+    public List<T> findContaining(final Object date) {
+        ArgumentUtils.rejectIfNull(date);
+        final long millis = EpochUtils.toEpochMillis(date);
+        final List<T> result = new ArrayList<T>();
+        collect(0, starts.length - 1, millis, millis, result);
+        return result;
+    }
+
+    /**
+     * Returns the free slots of the window: the parts of it not covered by any indexed period.
+     * <p/>
+     * Slots share their bounds with the neighbouring periods (a slot starts at the end of a period and ends at the start
+     * of the next one), and a slot has null start/end if the window is open ended and not covered on that side.
+     *
+     * @param window The window to search, not null.
+     * @return The free slots, sorted.
+     */
+    public List<Period> getFreeSlots(final Period window) {
+        ArgumentUtils.rejectIfNull(window);
+        final List<Period> slots = new ArrayList<Period>();
+        final long windowEnd = getEndMillis(window);
+        long cursor = getStartMillis(window);
+        if (cursor > windowEnd) {
+            return slots;
+        }
+        Calendar cursorDate = window.getStart();
+        for (T busy : findOverlapping(window)) {
+            final long busyStart = getStartMillis(busy);
+            if (busyStart > cursor) {
+                slots.add(newSlot(cursorDate, busy.getStart()));
+            }
+            final long busyEnd = getEndMillis(busy);
+            if (busyEnd >= cursor) {
+                cursor = busyEnd;
+                cursorDate = busy.getEnd();
+            }
+            if (cursor >= windowEnd) {
+                return slots;
+            }
+        }
+        slots.add(newSlot(cursorDate, window.getEnd()));
+        return slots;
+    }
+
+    private long buildMaxEnds(final int low, final int high) {
+        if (low > high) {
+            return Long.MIN_VALUE;
+        }
+        final int mid = (low + high) >>> 1;
+        final long max = Math.max(ends[mid], Math.max(buildMaxEnds(low, mid - 1), buildMaxEnds(mid + 1, high)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * Collects, in order, the periods of the subtree [low, high] that overlap [start, end].
+     */
+    private void collect(final int low, final int high, final long start, final long end, final List<T> result) {
+        if (low > high) {
+            return;
+        }
+        final int mid = (low + high) >>> 1;
+        if (maxEnds[mid] < start) {
+            return; // nothing on this subtree ends after the start
+        }
+        collect(low, mid - 1, start, end, result);
+        if (starts[mid] <= end) {
+            if (ends[mid] >= start) {
+                result.add(periods.get(mid));
+            }
+            collect(mid + 1, high, start, end, result);
+        }
+    }
+
+    /**
+     * Returns the position of some period of the subtree [low, high] that overlaps [start, end], or -1.
+     */
+    private int findFirst(final int low, final int high, final long start, final long end) {
+        if (low > high || maxEnds[(low + high) >>> 1] < start) {
+            return -1;
+        }
+        final int mid = (low + high) >>> 1;
+        if (starts[mid] <= end && ends[mid] >= start) {
+            return mid;
+        }
+        final int left = findFirst(low, mid - 1, start, end);
+        if (left >= 0 || starts[mid] > end) {
+            return left;
+        }
+        return findFirst(mid + 1, high, start, end);
+    }
+
+    private static Period newSlot(final Calendar start, final Calendar end) {
+        return new SimplePeriod(start == null ? null : start.clone(), end == null ? null : end.clone());
+    }
+
+    /**
+     * Returns the epoch milliseconds of the start of the period, or {@link Long#MIN_VALUE} if it is open.
+     *
+     * @param period The period.
+     * @return The start, in epoch milliseconds.
+     */
+    static long getStartMillis(final Period period) {
+        return period.getStart() == null ? Long.MIN_VALUE : period.getStart().getTimeInMillis();
+    }
+
+    /**
+     * Returns the epoch milliseconds of the end of the period, or {@link Long#MAX_VALUE} if it is open.
+     *
+     * @param period The period.
+     * @return The end, in epoch milliseconds.
+     */
+    static long getEndMillis(final Period period) {
+        return period.getEnd() == null ? Long.MAX_VALUE : period.getEnd().getTimeInMillis();
+    }
+
+    private static final class Entry<T> {
+
+        static final Comparator<Entry<?>> COMPARATOR = new Comparator<Entry<?>>() {
+            @Override
+            public int compare(final Entry<?> e1, final Entry<?> e2) {
+                if (e1.start != e2.start) {
+                    return e1.start < e2.start ? -1 : 1;
+                }
+                return e1.end < e2.end ? -1 : (e1.end == e2.end ? 0 : 1);
+            }
+        };
+        final long start;
+        final long end;
+        final T period;
+
+        Entry(final long start, final long end, final T period) {
+            this.start = start;
+            this.end = end;
+            this.period = period;
+        }
+    }
+}
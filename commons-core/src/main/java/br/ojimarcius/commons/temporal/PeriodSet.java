@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.temporal;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import br.ojimarcius.commons.util.EpochUtils;
+import br.ojimarcius.commons.util.ReflectionUtils;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of instants, kept as sorted, non-overlapping runs (periods) on epoch milliseconds.
+ * <p/>
+ * Building a set from a collection of periods sorts and coalesces them in O(n log n); the set operations walk the runs
+ * of both sets once, in O(n + m). Runs are closed intervals, and open ended periods (null start/end) are supported, as
+ * in {@link EpochPeriod}. As in {@link EpochPeriod#subtract(EpochPeriod)}, gaps and differences share their bounds
+ * with the neighbouring runs.
+ * <p/>
+ * Any {@link Period} implementation (e.g. a persistent one) can be added, and the runs are returned in the order of
+ * {@link PeriodComparator}.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public final class PeriodSet implements Serializable {
+
+    private static final long serialVersionUID = -3197467382706325417L;
+    public static final PeriodSet EMPTY = new PeriodSet(new long[0], new long[0], 0);
+    /**
+     * Starts of the runs, {@link Long#MIN_VALUE} if open.
+     */
+    private final long[] starts;
+    /**
+     * Ends of the runs, {@link Long#MAX_VALUE} if open.
+     */
+    private final long[] ends;
+
+    private PeriodSet(final long[] starts, final long[] ends, final int size) {
+        this.starts = starts.length == size ? starts : Arrays.copyOf(starts, size);
+        this.ends = ends.length == size ? ends : Arrays.copyOf(ends, size);
+    }
+
+    /**
+     * Returns the set of instants covered by the periods. Null and invalid periods are ignored.
+     *
+     * @param periods The periods.
+     * @return The set.
+     */
+    public static PeriodSet valueOf(final Collection<? extends Period> periods) {
+        ArgumentUtils.rejectIfNull(periods);
+        final List<EpochPeriod> epochPeriods = new ArrayList<EpochPeriod>(periods.size());
+        for (Period period : periods) {
+            final EpochPeriod epochPeriod = EpochPeriod.valueOf(period);
+            if (epochPeriod != null && epochPeriod.isValid()) {
+                epochPeriods.add(epochPeriod);
+            }
+        }
+        return valueOfEpochPeriods(epochPeriods);
+    }
+
+    /**
+     * Returns the set of instants covered by the periods. Invalid periods are ignored.
+     *
+     * @param periods The periods.
+     * @return The set.
+     */
+    public static PeriodSet valueOf(final Period... periods) {
+        return valueOf(Arrays.asList(periods));
+    }
+
+    /**
+     * Returns the set of instants covered by the epoch periods. Null and invalid periods are ignored.
+     *
+     * @param periods The periods.
+     * @return The set.
+     */
+    public static PeriodSet valueOfEpochPeriods(final Collection<EpochPeriod> periods) {
+        ArgumentUtils.rejectIfNull(periods);
+        final EpochPeriod[] sorted = new EpochPeriod[periods.size()];
+        int count = 0;
+        for (EpochPeriod period : periods) {
+            if (period != null && period.isValid()) {
+                sorted[count++] = period;
+            }
+        }
+        Arrays.sort(sorted, 0, count);
+        final Builder builder = new Builder(count);
+        for (int i = 0; i < count; i++) {
+            builder.add(sorted[i].getStart(), sorted[i].getEnd());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of runs.
+     *
+     * @return The number of runs.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * Tells if the set contains the instant, in O(log n).
+     *
+     * @param millis The instant, in epoch milliseconds.
+     * @return <code>true</code> if some run contains the instant.
+     */
+    public boolean contains(final long millis) {
+        int index = Arrays.binarySearch(starts, millis);
+        if (index < 0) {
+            index = -index - 2; // the last run starting before the instant
+        }
+        return index >= 0 && ends[index] >= millis;
+    }
+
+    /**
+     * Tells if the set contains the date.
+     *
+     * @param date The date. Can be a {@link java.util.Date} or a {@link java.util.Calendar}.
+     * @return <code>true</code> if some run contains the date.
+     */
+    public boolean contains(final Object date) {
+        ArgumentUtils.rejectIfNull(date);
+        return contains(EpochUtils.toEpochMillis(date));
+    }
+
+    /**
+     * Returns the instants on this or on the other set.
+     *
+     * @param other The other set.
+     * @return The union.
+     */
+    public PeriodSet union(final PeriodSet other) {
+        final Builder builder = new Builder(size() + other.size());
+        int i = 0;
+        int j = 0;
+        while (i < size() || j < other.size()) {
+            if (j == other.size() || (i < size() && starts[i] <= other.starts[j])) {
+                builder.add(starts[i], ends[i]);
+                i++;
+            } else {
+                builder.add(other.starts[j], other.ends[j]);
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the instants on both sets.
+     *
+     * @param other The other set.
+     * @return The intersection.
+     */
+    public PeriodSet intersection(final PeriodSet other) {
+        final Builder builder = new Builder(size() + other.size());
+        int i = 0;
+        int j = 0;
+        while (i < size() && j < other.size()) {
+            final long start = Math.max(starts[i], other.starts[j]);
+            final long end = Math.min(ends[i], other.ends[j]);
+            if (start <= end) {
+                builder.add(start, end);
+            }
+            if (ends[i] < other.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the instants of this set not on the other one. The remaining runs share their bounds with the runs of the
+     * other set.
+     *
+     * @param other The other set.
+     * @return The difference.
+     */
+    public PeriodSet difference(final PeriodSet other) {
+        final Builder builder = new Builder(size() + other.size());
+        int j = 0;
+        for (int i = 0; i < size(); i++) {
+            while (j < other.size() && other.ends[j] < starts[i]) {
+                j++;
+            }
+            long cursor = starts[i];
+            boolean cut = false;
+            int k = j;
+            while (k < other.size() && other.starts[k] <= ends[i]) {
+                if (other.starts[k] > cursor) {
+                    builder.add(cursor, other.starts[k]);
+                }
+                cursor = Math.max(cursor, other.ends[k]);
+                cut = true;
+                k++;
+            }
+            if (!cut) {
+                builder.add(starts[i], ends[i]);
+            } else if (cursor < ends[i]) {
+                builder.add(cursor, ends[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the gaps between the runs. The gaps share their bounds with the runs.
+     *
+     * @return The gaps.
+     */
+    public PeriodSet getGaps() {
+        final Builder builder = new Builder(Math.max(size() - 1, 0));
+        for (int i = 1; i < size(); i++) {
+            builder.add(ends[i - 1], starts[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the parts of the window not covered by the set.
+     *
+     * @param window The window.
+     * @return The gaps on the window.
+     */
+    public PeriodSet getGaps(final Period window) {
+        return valueOf(window).difference(this);
+    }
+
+    /**
+     * Returns the sum of the durations of the runs, in milliseconds.
+     *
+     * @return The total duration, or {@link Long#MAX_VALUE} if the set is open ended.
+     */
+    public long getTotalDuration() {
+        long total = 0L;
+        for (int i = 0; i < size(); i++) {
+            if (starts[i] == Long.MIN_VALUE || ends[i] == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            total += ends[i] - starts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the runs, sorted.
+     *
+     * @return The runs.
+     */
+    public List<EpochPeriod> getEpochPeriods() {
+        final List<EpochPeriod> periods = new ArrayList<EpochPeriod>(size());
+        for (int i = 0; i < size(); i++) {
+            periods.add(toEpochPeriod(i));
+        }
+        return periods;
+    }
+
+    /**
+     * Returns the runs as {@link SimplePeriod SimplePeriods}, sorted.
+     *
+     * @return The runs.
+     */
+    public List<Period> getPeriods() {
+        final List<Period> periods = new ArrayList<Period>(size());
+        for (int i = 0; i < size(); i++) {
+            periods.add(toEpochPeriod(i).toSimplePeriod());
+        }
+        return periods;
+    }
+
+    /**
+     * Returns the runs as periods of the given type (e.g. a persistent period), sorted.
+     *
+     * @param <P>  The type of the periods.
+     * @param type The type of the periods. Must have a no-arg constructor.
+     * @return The runs.
+     */
+    public <P extends Period> List<P> getPeriods(final Class<P> type) {
+        ArgumentUtils.rejectIfNull(type);
+        final List<P> periods = new ArrayList<P>(size());
+        for (int i = 0; i < size(); i++) {
+            periods.add(toEpochPeriod(i).copyTo(ReflectionUtils.newInstanceOf(type)));
+        }
+        return periods;
+    }
+
+    private EpochPeriod toEpochPeriod(final int index) {
+        final boolean openStart = starts[index] == Long.MIN_VALUE;
+        final boolean openEnd = ends[index] == Long.MAX_VALUE;
+        if (openStart && openEnd) {
+            return EpochPeriod.ALL;
+        } else if (openStart) {
+            return EpochPeriod.endingAt(ends[index]);
+        } else if (openEnd) {
+            return EpochPeriod.startingAt(starts[index]);
+        }
+        return EpochPeriod.of(starts[index], ends[index]);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final PeriodSet other = (PeriodSet) obj;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+    }
+
+    @Override
+    public String toString() {
+        return getEpochPeriods().toString();
+    }
+
+    /**
+     * Appends runs sorted by start, coalescing the overlapping ones.
+     */
+    private static final class Builder {
+
+        private final long[] starts;
+        private final long[] ends;
+        private int size = 0;
+
+        Builder(final int capacity) {
+            this.starts = new long[capacity];
+            this.ends = new long[capacity];
+        }
+
+        void add(final long start, final long end) {
+            if (size > 0 && start <= ends[size - 1]) {
+                ends[size - 1] = Math.max(ends[size - 1], end);
+            } else {
+                starts[size] = start;
+                ends[size] = end;
+                size++;
+            }
+        }
+
+        PeriodSet build() {
+            return size == 0 ? EMPTY : new PeriodSet(starts, ends, size);
+        }
+    }
+}
@@ -19,7 +19,7 @@
 package br.ojimarcius.commons.util;
 
 import br.ojimarcius.commons.temporal.Age;
-import br.ojimarcius.commons.temporal.DateComparator;
+import br.ojimarcius.commons.temporal.HolidayCalendar;
 import br.ojimarcius.commons.text.CustomDateFormat;
 import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.CollectionUtils;
@@ -59,12 +59,27 @@ public abstract class AbstractDateUtils extends org.apache.commons.lang3.time.Da
      * value = (1000 * 60 * 60 * 24) = 86.400.000;
      */
     private static final BigDecimal MILLISECS_PER_DAY = new BigDecimal(MILLIS_PER_DAY);
+    /**
+     * Biggest difference, in msecs, that can be converted to hundredths of day without overflow.
+     */
+    private static final long MAX_EXACT_DIFFERENCE = Long.MAX_VALUE / 100;
     /**
      * Business time.
      * <p/>
      * Value = from [8:00 - 12:00[ and [14:00 - 18:00[
      */
     public static final int[] BUSINESS_TIME = {8, 12, 14, 18};
+    /**
+     * Calendar with the brasilian national holidays, used when no holidays are given.
+     * <p/>
+     * Regional calendars can extend it: <code>new HolidayCalendar(BRASILIAN_HOLIDAYS).addFixedHoliday(...)</code>.
+     */
+    public static final HolidayCalendar BRASILIAN_HOLIDAYS = new HolidayCalendar() {
+        @Override
+        protected Collection<? extends Object> getHolidays(final int year) {
+            return getBrasilianHolidays(year);
+        }
+    };
 
     /**
      * Returns the current year.
@@ -275,7 +290,12 @@ public abstract class AbstractDateUtils extends org.apache.commons.lang3.time.Da
     }
 
     public static boolean isBusinessDay(final Object date) {
-        return isBusinessDay(date, getBrasilianHolidays(year(date)));
+        return BRASILIAN_HOLIDAYS.isBusinessDay(date);
+    }
+
+    public static boolean isBusinessDay(final Object date, final HolidayCalendar holidays) {
+        ArgumentUtils.rejectIfNull(holidays);
+        return holidays.isBusinessDay(date);
     }
 
     public static boolean isBusinessDay(final Object date, final Collection<? extends Object> holidays) {
@@ -287,7 +307,30 @@ public abstract class AbstractDateUtils extends org.apache.commons.lang3.time.Da
     }
 
     public static boolean isHoliday(final Object date) {
-        return isHoliday(date, getBrasilianHolidays(year(date)));
+        return BRASILIAN_HOLIDAYS.isHoliday(date);
+    }
+
+    public static boolean isHoliday(final Object date, final HolidayCalendar holidays) {
+        ArgumentUtils.rejectIfNull(holidays);
+        return holidays.isHoliday(date);
+    }
+
+    public static Calendar addBusinessDays(final Object date, final int days) {
+        return BRASILIAN_HOLIDAYS.addBusinessDays(date, days);
+    }
+
+    public static Calendar addBusinessDays(final Object date, final int days, final HolidayCalendar holidays) {
+        ArgumentUtils.rejectIfNull(holidays);
+        return holidays.addBusinessDays(date, days);
+    }
+
+    public static int countBusinessDaysBetween(final Object date1, final Object date2) {
+        return BRASILIAN_HOLIDAYS.countBusinessDaysBetween(date1, date2);
+    }
+
+    public static int countBusinessDaysBetween(final Object date1, final Object date2, final HolidayCalendar holidays) {
+        ArgumentUtils.rejectIfNull(holidays);
+        return holidays.countBusinessDaysBetween(date1, date2);
     }
 
     public static boolean isHoliday(final Object date, final Collection<? extends Object> holidays) {
@@ -323,27 +366,32 @@ public abstract class AbstractDateUtils extends org.apache.commons.lang3.time.Da
 
     public static BigDecimal getDifferenceInDays(final Object date1, final Object date2, final boolean ignoreTimeInfo) {
         ArgumentUtils.rejectIfAnyNull(date1, date2);
-
-        Calendar c1 = toUtcCalendar(date1);
-        Calendar c2 = toUtcCalendar(date2);
+        /* local times, as if both dates were on UTC */
+        long l1 = EpochUtils.toLocalMillis(EpochUtils.toEpochMillis(date1), EpochUtils.getTimeZone(date1));
+        long l2 = EpochUtils.toLocalMillis(EpochUtils.toEpochMillis(date2), EpochUtils.getTimeZone(date2));
         if (ignoreTimeInfo) {
-            c1 = getTimeTruncatedInternal(c1);
-            c2 = getTimeTruncatedInternal(c2);
+            l1 = EpochUtils.floorDiv(l1, MILLIS_PER_DAY) * MILLIS_PER_DAY;
+            l2 = EpochUtils.floorDiv(l2, MILLIS_PER_DAY) * MILLIS_PER_DAY;
         }
-        final long l1 = c1.getTimeInMillis();
-        final long l2 = c2.getTimeInMillis();
-        BigDecimal res;
-        if (l1 > l2) {
-            res = new BigDecimal(l1 - l2);
-        } else {
-            res = new BigDecimal(l2 - l1);
+        final long diff = Math.abs(l1 - l2);
+        if (diff > MAX_EXACT_DIFFERENCE) {
+            return NumberUtils.round(new BigDecimal(diff).divide(MILLISECS_PER_DAY, MathContext.DECIMAL128), 2);
+        }
+        /* hundredths of day, rounded half even */
+        final long dividend = diff * 100;
+        long hundredths = dividend / MILLIS_PER_DAY;
+        final long twiceRemainder = 2 * (dividend % MILLIS_PER_DAY);
+        if (twiceRemainder > MILLIS_PER_DAY || (twiceRemainder == MILLIS_PER_DAY && hundredths % 2 != 0)) {
+            hundredths++;
         }
-        return NumberUtils.round(res.divide(MILLISECS_PER_DAY, MathContext.DECIMAL128), 2);
+        return BigDecimal.valueOf(hundredths, 2).stripTrailingZeros();
     }
 
     public static Integer getQuantDaysBetween(final Object date1, final Object date2) {
         ArgumentUtils.rejectIfAnyNull(date1, date2);
-        return getDifferenceInDays(date1, date2, true).intValue() + 1;
+        final long day1 = EpochUtils.toEpochDay(date1);
+        final long day2 = EpochUtils.toEpochDay(date2);
+        return (int) Math.abs(day1 - day2) + 1;
     }
 
     public static Integer getLastDayOfMonth(final Integer month, final Integer year) {
@@ -410,7 +458,27 @@ public abstract class AbstractDateUtils extends org.apache.commons.lang3.time.Da
     }
 
     public static int compare(final Object date1, final Object date2, final boolean ignoreTime) {
-        return new DateComparator(ignoreTime).compare(castToCalendar(date1), castToCalendar(date2));
+        if (date1 == date2) {
+            // both null or same instance.
+            return 0;
+        }
+        if (date1 == null || date2 == null) {
+            throw new IllegalArgumentException("Cannot compare with null.");
+        }
+        final long millis1 = EpochUtils.toEpochMillis(date1);
+        final long millis2 = EpochUtils.toEpochMillis(date2);
+        if (!ignoreTime) {
+            return (millis1 < millis2) ? -1 : ((millis1 == millis2) ? 0 : 1);
+        }
+        final TimeZone zone1 = EpochUtils.getTimeZone(date1);
+        final TimeZone zone2 = (isDate(date1) && isDate(date2)) ? zone1 : EpochUtils.getTimeZone(date2);
+        if (!EpochUtils.isSameZone(zone1, zone2)) {
+            /* local days of different zones are not comparable, compare the truncated instants instead */
+            return truncatedCompareTo(castToCalendar(date1), castToCalendar(date2), Calendar.DAY_OF_MONTH);
+        }
+        final long day1 = EpochUtils.toEpochDay(millis1, zone1);
+        final long day2 = EpochUtils.toEpochDay(millis2, zone2);
+        return (day1 < day2) ? -1 : ((day1 == day2) ? 0 : 1);
     }
 
     public static Calendar castToCalendar(final Object date) {
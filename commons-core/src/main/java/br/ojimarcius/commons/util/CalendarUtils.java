@@ -18,7 +18,6 @@
  */
 package br.ojimarcius.commons.util;
 
-import br.ojimarcius.commons.temporal.DateComparator;
 import br.ojimarcius.commons.text.CustomDateFormat;
 import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.CollectionUtils;
@@ -123,22 +122,20 @@ public abstract class CalendarUtils extends AbstractDateUtils {
         if (CollectionUtils.isEmptyOrNull(dates)) {
             return null;
         }
-        final DateComparator comparator = new DateComparator(ignoreTime);
-        Calendar smallest = null;
+        Object smallest = null;
         for (Object obj : dates) {
             if (obj != null) {
-                final Calendar current = castToCalendar(obj);
                 if (smallest == null) {
-                    smallest = current;
+                    smallest = obj;
                 } else {
-                    if (comparator.compare(smallest, current) > 0) {
+                    if (compare(smallest, obj, ignoreTime) > 0) {
                         // currently 'smallest' isn't the smallest. swap!
-                        smallest = current;
+                        smallest = obj;
                     }
                 }
             }
         }
-        return smallest;
+        return castToCalendar(smallest);
     }
 
     public static Calendar getLargest(final boolean ignoreTime, final Object... dates) {
@@ -149,22 +146,20 @@ public abstract class CalendarUtils extends AbstractDateUtils {
         if (CollectionUtils.isEmptyOrNull(dates)) {
             return null;
         }
-        final DateComparator comparator = new DateComparator(ignoreTime);
-        Calendar largest = null;
+        Object largest = null;
         for (Object obj : dates) {
             if (obj != null) {
-                final Calendar current = castToCalendar(obj);
                 if (largest == null) {
-                    largest = current;
+                    largest = obj;
                 } else {
-                    if (comparator.compare(largest, current) < 0) {
+                    if (compare(largest, obj, ignoreTime) < 0) {
                         // currently 'largest' isn't the smallest. swap!
-                        largest = current;
+                        largest = obj;
                     }
                 }
             }
         }
-        return largest;
+        return castToCalendar(largest);
     }
 
     public static Calendar parse(final CharSequence date, final CharSequence pattern) {
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.util;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Primitive date utilities, working on epoch milliseconds and epoch days (days since 1970-01-01, on the local time of
+ * a time zone) without allocating {@link Calendar Calendars}.
+ * <p/>
+ * Time zone offsets are looked up on a per zone table of offset transitions, built lazily for the years between 1900
+ * and 2100. The tables are built for the system zones, by ID, and used for the zones with the same rules; a custom
+ * or changed zone reusing a system ID is looked up on the zone itself.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public abstract class EpochUtils {
+
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    /**
+     * Epoch day of 1582-10-15, the first day of the gregorian calendar. Before it {@link java.util.GregorianCalendar}
+     * uses julian dates, so {@link #getYear(long)} and {@link #getDayOfYear(long)} do not apply.
+     */
+    public static final long GREGORIAN_CUTOVER_EPOCH_DAY = -141427L;
+    /**
+     * Each block of the offset tables covers 2^35 msecs (about 397 days).
+     */
+    private static final int BLOCK_SHIFT = 35;
+    private static final long FIRST_BLOCK = -2208988800000L >> BLOCK_SHIFT; // 1900-01-01
+    private static final long LAST_BLOCK = 4102444800000L >> BLOCK_SHIFT; // 2100-01-01
+    private static final int BLOCK_COUNT = (int) (LAST_BLOCK - FIRST_BLOCK + 1);
+    /**
+     * Interval between the offset samples taken to find transitions.
+     */
+    private static final long SAMPLE_INTERVAL = 6L * 60 * 60 * 1000;
+    private static final ConcurrentMap<String, ZoneOffsets> ZONES = new ConcurrentHashMap<String, ZoneOffsets>();
+
+    /**
+     * Util files cannot be instantiated.
+     */
+    private EpochUtils() {
+    }
+
+    /**
+     * Returns the epoch milliseconds of a {@link Date} or {@link Calendar}.
+     *
+     * @param date The date.
+     * @return The epoch milliseconds.
+     */
+    public static long toEpochMillis(final Object date) {
+        if (date instanceof Calendar) {
+            return ((Calendar) date).getTimeInMillis();
+        } else if (date instanceof Date) {
+            return ((Date) date).getTime();
+        }
+        throw new IllegalArgumentException("Argument must be Date or Calendar");
+    }
+
+    /**
+     * Returns the time zone of a {@link Calendar} or the default one for a {@link Date}.
+     *
+     * @param date The date.
+     * @return The time zone.
+     */
+    public static TimeZone getTimeZone(final Object date) {
+        if (date instanceof Calendar) {
+            return ((Calendar) date).getTimeZone();
+        } else if (date instanceof Date) {
+            return TimeZone.getDefault();
+        }
+        throw new IllegalArgumentException("Argument must be Date or Calendar");
+    }
+
+    /**
+     * Tells if two zones can be handled as the same one (same ID and raw offset).
+     *
+     * @param zone1 A zone.
+     * @param zone2 Another zone.
+     * @return <code>true</code> if both are the same zone.
+     */
+    public static boolean isSameZone(final TimeZone zone1, final TimeZone zone2) {
+        return zone1 == zone2 || (zone1.getRawOffset() == zone2.getRawOffset() && zone1.getID().equals(zone2.getID()));
+    }
+
+    /**
+     * Returns the offset (raw + daylight saving) of the zone on the given instant, from the cached offset table.
+     *
+     * @param millis The epoch milliseconds.
+     * @param zone   The time zone.
+     * @return The offset, in milliseconds.
+     */
+    public static int getOffset(final long millis, final TimeZone zone) {
+        final String id = zone.getID();
+        ZoneOffsets offsets = ZONES.get(id);
+        if (offsets == null) {
+            offsets = new ZoneOffsets(TimeZone.getTimeZone(id));
+            final ZoneOffsets previous = ZONES.putIfAbsent(id, offsets);
+            if (previous != null) {
+                offsets = previous;
+            }
+        }
+        if (!offsets.zone.hasSameRules(zone)) {
+            return zone.getOffset(millis);
+        }
+        return offsets.getOffset(millis);
+    }
+
+    /**
+     * Returns the local milliseconds: the epoch milliseconds shifted by the zone offset.
+     *
+     * @param millis The epoch milliseconds.
+     * @param zone   The time zone.
+     * @return The local milliseconds.
+     */
+    public static long toLocalMillis(final long millis, final TimeZone zone) {
+        return millis + getOffset(millis, zone);
+    }
+
+    /**
+     * Returns the epoch day (days since 1970-01-01) of the instant, on the local time of the zone.
+     *
+     * @param millis The epoch milliseconds.
+     * @param zone   The time zone.
+     * @return The epoch day.
+     */
+    public static long toEpochDay(final long millis, final TimeZone zone) {
+        return floorDiv(toLocalMillis(millis, zone), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the epoch day of a {@link Date} (on the default zone) or {@link Calendar} (on its own zone).
+     *
+     * @param date The date.
+     * @return The epoch day.
+     */
+    public static long toEpochDay(final Object date) {
+        return toEpochDay(toEpochMillis(date), getTimeZone(date));
+    }
+
+    /**
+     * Returns the (gregorian) year of an epoch day.
+     *
+     * @param epochDay The epoch day.
+     * @return The year.
+     */
+    public static int getYear(final long epochDay) {
+        /* estimate, then adjust by at most one year */
+        int year = (int) (floorDiv(epochDay * 400, 146097) + 1970);
+        if (getFirstEpochDay(year) > epochDay) {
+            year--;
+        } else if (getFirstEpochDay(year + 1) <= epochDay) {
+            year++;
+        }
+        return year;
+    }
+
+    /**
+     * Returns the (gregorian) day of year, 1 based, of an epoch day.
+     *
+     * @param epochDay The epoch day.
+     * @return The day of year.
+     */
+    public static int getDayOfYear(final long epochDay) {
+        return (int) (epochDay - getFirstEpochDay(getYear(epochDay))) + 1;
+    }
+
+    /**
+     * Returns the day of week of an epoch day, as the {@link Calendar#DAY_OF_WEEK} constants.
+     *
+     * @param epochDay The epoch day.
+     * @return The day of week ({@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}).
+     */
+    public static int getDayOfWeek(final long epochDay) {
+        /* 1970-01-01 was a thursday */
+        return (int) floorMod(epochDay + 4, 7) + Calendar.SUNDAY;
+    }
+
+    /**
+     * Returns the epoch day of the first day of the (gregorian) year.
+     *
+     * @param year The year.
+     * @return The epoch day.
+     */
+    public static long getFirstEpochDay(final int year) {
+        final long y = year - 1L;
+        return 365L * y + floorDiv(y, 4) - floorDiv(y, 100) + floorDiv(y, 400) - 719162L;
+    }
+
+    public static long floorDiv(final long x, final long y) {
+        final long q = x / y;
+        return ((x % y) != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    public static long floorMod(final long x, final long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Offset transitions of one zone, by blocks of time.
+     */
+    private static final class ZoneOffsets {
+
+        private final TimeZone zone;
+        private final AtomicReferenceArray<OffsetBlock> blocks = new AtomicReferenceArray<OffsetBlock>(BLOCK_COUNT);
+
+        ZoneOffsets(final TimeZone zone) {
+            this.zone = zone;
+        }
+
+        int getOffset(final long millis) {
+            final long block = millis >> BLOCK_SHIFT;
+            if (block < FIRST_BLOCK || block > LAST_BLOCK) {
+                return zone.getOffset(millis);
+            }
+            final int index = (int) (block - FIRST_BLOCK);
+            OffsetBlock offsets = blocks.get(index);
+            if (offsets == null) {
+                offsets = new OffsetBlock(zone, block << BLOCK_SHIFT, (block + 1) << BLOCK_SHIFT);
+                blocks.set(index, offsets);
+            }
+            return offsets.getOffset(millis);
+        }
+    }
+
+    /**
+     * Offsets of a zone during a block of time: offsets[0] until transitions[0], offsets[i] from transitions[i - 1].
+     */
+    private static final class OffsetBlock {
+
+        private final long[] transitions;
+        private final int[] offsets;
+
+        OffsetBlock(final TimeZone zone, final long start, final long end) {
+            long[] foundTransitions = new long[4];
+            int[] foundOffsets = new int[5];
+            int count = 0;
+            int current = zone.getOffset(start);
+            foundOffsets[0] = current;
+            for (long sample = start + SAMPLE_INTERVAL; sample < end + SAMPLE_INTERVAL; sample += SAMPLE_INTERVAL) {
+                final long t = Math.min(sample, end - 1);
+                final int offset = zone.getOffset(t);
+                if (offset != current) {
+                    /* binary search the first millisecond with the new offset */
+                    long low = t - SAMPLE_INTERVAL + 1;
+                    long high = t;
+                    while (low < high) {
+                        final long mid = low + (high - low) / 2;
+                        if (zone.getOffset(mid) == current) {
+                            low = mid + 1;
+                        } else {
+                            high = mid;
+                        }
+                    }
+                    if (count == foundTransitions.length) {
+                        foundTransitions = Arrays.copyOf(foundTransitions, count * 2);
+                        foundOffsets = Arrays.copyOf(foundOffsets, count * 2 + 1);
+                    }
+                    foundTransitions[count] = low;
+                    current = zone.getOffset(low);
+                    count++;
+                    foundOffsets[count] = current;
+                }
+            }
+            this.transitions = Arrays.copyOf(foundTransitions, count);
+            this.offsets = Arrays.copyOf(foundOffsets, count + 1);
+        }
+
+        int getOffset(final long millis) {
+            int i = 0;
+            while (i < transitions.length && millis >= transitions[i]) {
+                i++;
+            }
+            return offsets[i];
+        }
+    }
+}
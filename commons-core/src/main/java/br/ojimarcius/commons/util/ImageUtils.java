@@ -24,14 +24,19 @@ import br.ojimarcius.commons.io.exception.ImageIOException;
 import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.color.ICC_ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorConvertOp;
+import java.awt.image.ColorModel;
 import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
 import java.awt.image.RescaleOp;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
@@ -42,25 +47,37 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.plugins.bmp.BMPImageWriteParam;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
-import org.apache.sanselan.ImageReadException;
-import org.apache.sanselan.Sanselan;
-import org.apache.sanselan.common.byteSources.ByteSource;
-import org.apache.sanselan.common.byteSources.ByteSourceArray;
-import org.apache.sanselan.formats.jpeg.JpegImageParser;
-import org.apache.sanselan.formats.jpeg.segments.UnknownSegment;
 
 /**
  * Class containing utility methods to handle images.
@@ -78,6 +95,63 @@ public abstract class ImageUtils {
      * Color profile used when there is no embedded one.
      */
     private static final String DEFAULT_COLOR_PROFILE = "/br/ojimarcius/commons/io/ISOcoated_v2_300_eci.icc";
+    /**
+     * Signature of the APP14 Adobe segment.
+     */
+    private static final byte[] ADOBE_SIGNATURE = {'A', 'd', 'o', 'b', 'e'};
+    /**
+     * Signature of the APP2 ICC profile segment.
+     */
+    private static final byte[] ICC_SIGNATURE = {'I', 'C', 'C', '_', 'P', 'R', 'O', 'F', 'I', 'L', 'E', 0};
+    /**
+     * Max number of distinct ICC profiles whose color conversions are kept in cache.
+     */
+    private static final int MAX_CACHED_PROFILES = 32;
+    /**
+     * Cache of CMYK to RGB color conversions, by ICC profile.
+     */
+    private static final ConcurrentMap<ProfileKey, ColorConvertOp> CMYK_TO_RGB_OPS = new ConcurrentHashMap<ProfileKey, ColorConvertOp>();
+    private static final byte[] JPEG_MAGIC = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] GIF87_MAGIC = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89_MAGIC = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] BMP_MAGIC = {'B', 'M'};
+    private static final int BMP_HEADER_SIZE = 14;
+    /**
+     * Max number of idle readers/writers kept per image format.
+     */
+    static final int MAX_POOLED_PER_FORMAT = 8;
+    /**
+     * Idle ImageReaders, by image format.
+     */
+    private static final Map<ImageFormat, Queue<ImageReader>> READER_POOL = new EnumMap<ImageFormat, Queue<ImageReader>>(ImageFormat.class);
+    /**
+     * Idle ImageWriters, by image format.
+     */
+    private static final Map<ImageFormat, Queue<ImageWriter>> WRITER_POOL = new EnumMap<ImageFormat, Queue<ImageWriter>>(ImageFormat.class);
+    /**
+     * Max number of distinct JPEG qualities whose write params are kept in cache.
+     */
+    private static final int MAX_CACHED_PARAMS = 16;
+    /**
+     * Cache of JPEG write params, by compression quality.
+     */
+    private static final ConcurrentMap<Float, ImageWriteParam> JPEG_PARAMS = new ConcurrentHashMap<Float, ImageWriteParam>();
+    /**
+     * Initial size of the buffers used to get image bytes.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * IOUtils.KIBI;
+    /**
+     * Max number of decoded tiles waiting for, or under, parallel processing.
+     */
+    private static final int MAX_TILES_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+    static {
+        for (ImageFormat format : ImageFormat.values()) {
+            READER_POOL.put(format, new ConcurrentLinkedQueue<ImageReader>());
+            WRITER_POOL.put(format, new ConcurrentLinkedQueue<ImageWriter>());
+        }
+    }
 
     /**
      * Util files cannot be instantiated.
@@ -193,6 +267,122 @@ public abstract class ImageUtils {
         return writer;
     }
 
+    /**
+     * Takes an idle ImageReader for the given format from the pool, or looks up a new one if there is none. The reader
+     * must be given back with {@link #releaseImageReader(ImageFormat, ImageReader)} after use.
+     *
+     * @param format The image format.
+     * @return The reader, or <code>null</code> if there is no reader for the given format.
+     */
+    public static ImageReader borrowImageReader(final ImageFormat format) {
+        if (format == null) {
+            return null;
+        }
+        final ImageReader reader = READER_POOL.get(format).poll();
+        if (reader != null) {
+            return reader;
+        }
+        final Iterator<ImageReader> it = ImageIO.getImageReadersByFormatName(format.getName());
+        return (CollectionUtils.hasNext(it)) ? it.next() : null;
+    }
+
+    /**
+     * Resets the given reader and gives it back to the pool (or disposes it, if the pool is full).
+     *
+     * @param format The image format the reader was borrowed for.
+     * @param reader The reader.
+     */
+    public static void releaseImageReader(final ImageFormat format, final ImageReader reader) {
+        if (format == null || reader == null) {
+            return;
+        }
+        reader.reset();
+        final Queue<ImageReader> pool = READER_POOL.get(format);
+        if (pool.size() >= MAX_POOLED_PER_FORMAT || !pool.offer(reader)) {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Takes an idle ImageWriter for the given format from the pool, or looks up a new one if there is none. The writer
+     * must be given back with {@link #releaseImageWriter(ImageFormat, ImageWriter)} after use.
+     *
+     * @param format The image format.
+     * @return The writer, or <code>null</code> if there is no writer for the given format.
+     */
+    public static ImageWriter borrowImageWriter(final ImageFormat format) {
+        if (format == null) {
+            return null;
+        }
+        final ImageWriter writer = WRITER_POOL.get(format).poll();
+        return (writer != null) ? writer : getImageWriter(format);
+    }
+
+    /**
+     * Resets the given writer and gives it back to the pool (or disposes it, if the pool is full).
+     *
+     * @param format The image format the writer was borrowed for.
+     * @param writer The writer.
+     */
+    public static void releaseImageWriter(final ImageFormat format, final ImageWriter writer) {
+        if (format == null || writer == null) {
+            return;
+        }
+        writer.reset();
+        final Queue<ImageWriter> pool = WRITER_POOL.get(format);
+        if (pool.size() >= MAX_POOLED_PER_FORMAT || !pool.offer(writer)) {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Returns the JPEG write param with the given compression quality. The param is shared by every JPEG write with
+     * that quality, so it is kept internal and must not be changed.
+     *
+     * @param imageQuality A float between 0 (zero) and 1 (one).
+     * @return The write param.
+     */
+    static ImageWriteParam getJpegWriteParam(final float imageQuality) {
+        if (imageQuality < 0 || imageQuality > 1) {
+            throw new IllegalArgumentException("Invalid image quality. Must be a float between 0 (zero) and 1 (one).");
+        }
+        final Float key = imageQuality;
+        ImageWriteParam param = JPEG_PARAMS.get(key);
+        if (param == null) {
+            param = new JPEGImageWriteParam(null);
+            param.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(imageQuality);
+            if (JPEG_PARAMS.size() >= MAX_CACHED_PARAMS) {
+                JPEG_PARAMS.clear();
+            }
+            JPEG_PARAMS.put(key, param);
+        }
+        return param;
+    }
+
+    /**
+     * Identifies the image format by its magic number, without looking up any ImageIO service.
+     *
+     * @param bytes The image bytes.
+     * @return The image format or <code>null</code> if not recognized.
+     */
+    private static ImageFormat detectImageFormat(final byte[] bytes) {
+        if (startsWith(bytes, 0, JPEG_MAGIC)) {
+            return ImageFormat.JPEG;
+        } else if (startsWith(bytes, 0, PNG_MAGIC)) {
+            return ImageFormat.PNG;
+        } else if (startsWith(bytes, 0, GIF87_MAGIC) || startsWith(bytes, 0, GIF89_MAGIC)) {
+            return ImageFormat.GIF;
+        } else if (bytes.length > BMP_HEADER_SIZE && startsWith(bytes, 0, BMP_MAGIC)) {
+            return ImageFormat.BMP;
+        }
+        return null;
+    }
+
+    private static ImageInputStream getMemoryImageInputStream(final byte[] bytes) {
+        return new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes));
+    }
+
     public static BufferedImage readImage(final URL url) {
         if (url == null) {
             return null;
@@ -248,16 +438,38 @@ public abstract class ImageUtils {
         if (ArrayUtils.isEmptyOrNull(bytes)) {
             return null;
         }
-        final ImageReader internalReader = (reader != null) ? reader : getImageReader(bytes);
+        if (reader != null) {
+            return decodeImage(bytes, reader);
+        }
+        final ImageFormat format = detectImageFormat(bytes);
+        if (format == null) {
+            return decodeImage(bytes, getImageReader(bytes));
+        }
+        final ImageReader pooledReader = borrowImageReader(format);
+        try {
+            return decodeImage(bytes, pooledReader);
+        } finally {
+            releaseImageReader(format, pooledReader);
+        }
+    }
+
+    private static BufferedImage decodeImage(final byte[] bytes, final ImageReader internalReader) {
+        final JpegInfo jpegInfo = inspectJpeg(bytes);
+        if (jpegInfo != null && jpegInfo.isCmyk()) {
+            /* CMYK/YCCK jpegs cannot be decoded as RGB, so we go straight to the raster conversion */
+            return readConvert(bytes, internalReader, jpegInfo);
+        }
         ImageInputStream is = null;
         try {
-            is = getImageInputStream(bytes);
+            is = getMemoryImageInputStream(bytes);
             internalReader.setInput(is, false, false);
             return internalReader.read(0);
         } catch (IOException ex) {
             LOGGER.log(Level.WARNING, "Could not read image as RGB color space. Trying to decode as YCCK.");
             /* probabbly the image dont uses RGB colorSpace, lets try to convert to RGB */
-            return readConvert(bytes, internalReader);
+            final JpegInfo cmykInfo = (jpegInfo != null) ? jpegInfo : new JpegInfo();
+            cmykInfo.components = 4;
+            return readConvert(bytes, internalReader, cmykInfo);
         } finally {
             closeQuietly(is);
         }
@@ -359,6 +571,10 @@ public abstract class ImageUtils {
         if (ArrayUtils.isEmptyOrNull(bytes)) {
             return null;
         }
+        final ImageFormat detected = detectImageFormat(bytes);
+        if (detected != null) {
+            return detected;
+        }
         try {
             /* try with ImageIO */
             final String formatName = getImageReader(bytes).getFormatName();
@@ -390,14 +606,9 @@ public abstract class ImageUtils {
         if (image == null) {
             return null;
         }
-        ByteArrayOutputStream baos = null;
-        try {
-            baos = new ByteArrayOutputStream();
-            writeJpeg(image, getImageOutputStream(baos), imageQuality);
-            return baos.toByteArray();
-        } finally {
-            IOUtils.closeQuietly(baos);
-        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        writeJpeg(image, baos, imageQuality);
+        return baos.toByteArray();
     }
 
     public static byte[] getBmpBytes(final BufferedImage image) {
@@ -416,14 +627,9 @@ public abstract class ImageUtils {
             throw new IllegalArgumentException(
                     "Man... dont get me wrong, but how the hell am I suppose to get bytes without knowing the target ImageFormat???");
         }
-        ByteArrayOutputStream baos = null;
-        try {
-            baos = new ByteArrayOutputStream();
-            writeImage(image, getImageOutputStream(baos), getImageWriter(format));
-            return baos.toByteArray();
-        } finally {
-            IOUtils.closeQuietly(baos);
-        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        writeImage(image, baos, format);
+        return baos.toByteArray();
     }
 
     public static byte[] toJpeg(final byte[] bytes) {
@@ -471,19 +677,19 @@ public abstract class ImageUtils {
     }
 
     public static void writePng(final byte[] bytes, final File outputFile) {
-        writeImage(readImage(bytes), getImageOutputStream(outputFile), getImageWriter(ImageFormat.PNG));
+        writeImage(readImage(bytes), getImageOutputStream(outputFile), ImageFormat.PNG);
     }
 
     public static void writePng(final byte[] bytes, final ImageOutputStream output) {
-        writeImage(readImage(bytes), output, getImageWriter(ImageFormat.PNG));
+        writeImage(readImage(bytes), output, ImageFormat.PNG);
     }
 
     public static void writePng(final BufferedImage image, final File outputFile) {
-        writeImage(image, getImageOutputStream(outputFile), getImageWriter(ImageFormat.PNG));
+        writeImage(image, getImageOutputStream(outputFile), ImageFormat.PNG);
     }
 
     public static void writePng(final BufferedImage image, final ImageOutputStream output) {
-        writeImage(image, output, getImageWriter(ImageFormat.PNG));
+        writeImage(image, output, ImageFormat.PNG);
     }
 
     public static void writeJpeg(final byte[] bytes, final File outputFile) {
@@ -523,56 +729,54 @@ public abstract class ImageUtils {
             throw new IllegalArgumentException("Invalid image quality. Must be a float between 0 (zero) and 1 (one).");
         }
         final BufferedImage targetImage = removeTransparency(image, Color.WHITE);
-        if (imageQuality == null) {
-            writeImage(targetImage, output, getImageWriter(ImageFormat.JPEG));
-        } else {
-            final ImageWriter writer = getImageWriter(ImageFormat.JPEG);
-            try {
-                writer.setOutput(output);
-                final IIOImage ioimage = new IIOImage(targetImage, null, null);
-                final ImageWriteParam writerParam = writer.getDefaultWriteParam();
-                writerParam.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
-                writerParam.setCompressionQuality(imageQuality);
-                writer.write(null, ioimage, writerParam);
-            } catch (IOException ex) {
-                throw new ImageIOException(ex);
-            } finally {
-                writer.dispose();
-                closeQuietly(output);
-            }
+        writePooled(targetImage, output, ImageFormat.JPEG, (imageQuality == null) ? null : getJpegWriteParam(imageQuality));
+    }
+
+    /**
+     * Writes a JPEG image into a caller provided stream, which is not closed.
+     *
+     * @param image        The image.
+     * @param output       The target stream.
+     * @param imageQuality The compression quality, or <code>null</code> to use the default one.
+     */
+    public static void writeJpeg(final BufferedImage image, final OutputStream output, final Float imageQuality) {
+        if (image == null || output == null) {
+            Logger.getLogger(ImageUtils.class.getName()).log(Level.INFO, "Nothing to write.");
+            return;
         }
+        writeJpeg(image, new MemoryCacheImageOutputStream(output), imageQuality);
     }
 
     public static void writeBmp(final byte[] bytes, final File outputFile) {
-        writeImage(removeTransparency(bytes), getImageOutputStream(outputFile), getImageWriter(ImageFormat.PNG));
+        writeImage(removeTransparency(bytes), getImageOutputStream(outputFile), ImageFormat.PNG);
     }
 
     public static void writeBmp(final byte[] bytes, final ImageOutputStream output) {
-        writeImage(removeTransparency(bytes), output, getImageWriter(ImageFormat.PNG));
+        writeImage(removeTransparency(bytes), output, ImageFormat.PNG);
     }
 
     public static void writeBmp(final BufferedImage image, final File outputFile) {
-        writeImage(removeTransparency(image), getImageOutputStream(outputFile), getImageWriter(ImageFormat.PNG));
+        writeImage(removeTransparency(image), getImageOutputStream(outputFile), ImageFormat.PNG);
     }
 
     public static void writeBmp(final BufferedImage image, final ImageOutputStream output) {
-        writeImage(removeTransparency(image), output, getImageWriter(ImageFormat.PNG));
+        writeImage(removeTransparency(image), output, ImageFormat.PNG);
     }
 
     public static void writeGif(final byte[] bytes, final File outputFile) {
-        writeImage(removeTransparency(bytes), getImageOutputStream(outputFile), getImageWriter(ImageFormat.GIF));
+        writeImage(removeTransparency(bytes), getImageOutputStream(outputFile), ImageFormat.GIF);
     }
 
     public static void writeGif(final byte[] bytes, final ImageOutputStream output) {
-        writeImage(removeTransparency(bytes), output, getImageWriter(ImageFormat.GIF));
+        writeImage(removeTransparency(bytes), output, ImageFormat.GIF);
     }
 
     public static void writeGif(final BufferedImage image, final File outputFile) {
-        writeImage(removeTransparency(image), getImageOutputStream(outputFile), getImageWriter(ImageFormat.GIF));
+        writeImage(removeTransparency(image), getImageOutputStream(outputFile), ImageFormat.GIF);
     }
 
     public static void writeGif(final BufferedImage image, final ImageOutputStream output) {
-        writeImage(removeTransparency(image), output, getImageWriter(ImageFormat.GIF));
+        writeImage(removeTransparency(image), output, ImageFormat.GIF);
     }
 
     public static void writeImage(final byte[] bytes, final File outputFile) {
@@ -581,14 +785,14 @@ public abstract class ImageUtils {
             if (outputFile != null && !outputFile.getName().toLowerCase().endsWith("." + format.getExtension())) {
                 throw new IllegalArgumentException("File name must be a '." + format.getExtension() + "' one.");
             }
-            writeImage(readImage(bytes), getImageOutputStream(outputFile), getImageWriter(format));
+            writeImage(readImage(bytes), getImageOutputStream(outputFile), format);
         }
     }
 
     public static void writeImage(final byte[] bytes, final ImageOutputStream output) {
         final ImageFormat format = getImageFormat(bytes);
         if (format != null) {
-            writeImage(readImage(bytes), output, getImageWriter(format));
+            writeImage(readImage(bytes), output, format);
         }
     }
 
@@ -604,6 +808,61 @@ public abstract class ImageUtils {
         writeImage(image, getImageOutputStream(outputFile), writer);
     }
 
+    /**
+     * Writes the image using a pooled writer for the given format. The output stream is closed.
+     *
+     * @param image  The image.
+     * @param output The target stream.
+     * @param format The target format.
+     */
+    public static void writeImage(final BufferedImage image, final ImageOutputStream output, final ImageFormat format) {
+        writePooled(image, output, format, null);
+    }
+
+    /**
+     * Writes the image into a caller provided stream, using a pooled writer for the given format. The given stream is
+     * not closed.
+     *
+     * @param image  The image.
+     * @param output The target stream.
+     * @param format The target format.
+     */
+    public static void writeImage(final BufferedImage image, final OutputStream output, final ImageFormat format) {
+        if (image == null || output == null || format == null) {
+            Logger.getLogger(ImageUtils.class.getName()).log(Level.INFO, "Nothing to write.");
+            return;
+        }
+        writePooled(image, new MemoryCacheImageOutputStream(output), format, null);
+    }
+
+    private static void writePooled(final RenderedImage image, final ImageOutputStream output, final ImageFormat format,
+                                    final ImageWriteParam param) {
+        if (image == null || output == null || format == null) {
+            Logger.getLogger(ImageUtils.class.getName()).log(Level.INFO, "Nothing to write.");
+            return;
+        }
+        final ImageWriter writer = borrowImageWriter(format);
+        if (writer == null) {
+            closeQuietly(output);
+            throw new ImageIOException("No ImageWriter found for " + format.getName() + " format.");
+        }
+        boolean reusable = false;
+        try {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+            reusable = true;
+        } catch (IOException ex) {
+            throw new ImageIOException(ex);
+        } finally {
+            if (reusable) {
+                releaseImageWriter(format, writer);
+            } else {
+                writer.dispose();
+            }
+            closeQuietly(output);
+        }
+    }
+
     public static void writeImage(final BufferedImage image, final ImageOutputStream output, final ImageWriter writer) {
         if (image == null || output == null || writer == null) {
             Logger.getLogger(ImageUtils.class.getName()).log(Level.INFO, "Nothing to write.");
@@ -916,6 +1175,225 @@ public abstract class ImageUtils {
         return new ImagePoint[]{lt, rb};
     }
 
+    /**
+     * Operation that removes the transparency of each tile, as {@link #removeTransparency(BufferedImage, Color)}.
+     *
+     * @param replacementColor The color used on transparent pixels.
+     * @return The tile operation.
+     */
+    public static TileOperation removeTransparencyOperation(final Color replacementColor) {
+        return new TileOperation() {
+            @Override
+            public BufferedImage apply(final BufferedImage tile) {
+                return removeTransparency(tile, replacementColor);
+            }
+        };
+    }
+
+    /**
+     * Operation that applies a contrast filter on each tile, as {@link #contrastImage(BufferedImage, float)}.
+     *
+     * @param contrastRatio The contrast ratio.
+     * @return The tile operation.
+     */
+    public static TileOperation contrastOperation(final float contrastRatio) {
+        return new TileOperation() {
+            @Override
+            public BufferedImage apply(final BufferedImage tile) {
+                if (contrastRatio == 1F) {
+                    return tile;
+                }
+                /* the tile was just decoded and is not shared, so it can be filtered in place */
+                return new RescaleOp(contrastRatio, 15, null).filter(tile, tile);
+            }
+        };
+    }
+
+    /**
+     * Processes a (possibly huge) image tile by tile, decoding only one region of the source at a time, through
+     * {@link ImageReadParam#setSourceRegion(Rectangle)}. Each decoded tile goes through the given operations and then to
+     * the consumer, so the peak memory is proportional to the tile size, not to the image size.
+     * <p/>
+     * When an executor is given, tiles are still decoded one at a time (readers are not thread safe), but the operations
+     * and the consumer run on the executor, with a bounded number of tiles in flight. In that case the consumer must be
+     * thread safe.
+     * <p/>
+     * Sequential formats (JPEG, PNG) are decoded from the start of the image up to each region, so taller tiles trade
+     * memory for CPU. Full width strips are the most efficient for these formats.
+     *
+     * @param input       The source image stream. Must allow seeking backwards.
+     * @param leftTop     The left top corner of the region to process (crop), or <code>null</code> for the image origin.
+     * @param rightBottom The right bottom corner of the region to process (crop), or <code>null</code> for the image end.
+     * @param tileWidth   Tile width, or zero to use full width strips.
+     * @param tileHeight  Tile height.
+     * @param executor    Executor to process tiles in parallel, or <code>null</code> to process them on the caller thread.
+     * @param consumer    Receives the processed tiles, with coordinates relative to the processed region.
+     * @param operations  The operations applied, in order, to each tile.
+     */
+    public static void processTiles(final ImageInputStream input, final ImagePoint leftTop, final ImagePoint rightBottom,
+                                    final int tileWidth, final int tileHeight, final ExecutorService executor,
+                                    final TileConsumer consumer, final TileOperation... operations) {
+        if (input == null || consumer == null) {
+            throw new IllegalArgumentException("Must have an input and a tile consumer.");
+        }
+        if (tileWidth < 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Invalid tile width and/or heigth.");
+        }
+        final ImageReader reader = getImageReader(input);
+        if (reader == null) {
+            throw new ImageIOException("Given input does not seem to be an image.");
+        }
+        final Semaphore inFlight = new Semaphore(MAX_TILES_IN_FLIGHT);
+        final List<Future<?>> pending = new ArrayList<Future<?>>();
+        try {
+            reader.setInput(input, false, true);
+            final ImagePoint max = new ImagePoint(reader.getWidth(0), reader.getHeight(0));
+            final ImagePoint[] selection = getValidSelection(leftTop, rightBottom, max);
+            final int left = selection[0].getX();
+            final int top = selection[0].getY();
+            final int right = selection[1].getX();
+            final int bottom = selection[1].getY();
+            final int stepX = (tileWidth == 0) ? right - left : tileWidth;
+            consumer.begin(right - left, bottom - top);
+            for (int y = top; y < bottom; y += tileHeight) {
+                for (int x = left; x < right; x += stepX) {
+                    final ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(new Rectangle(x, y, Math.min(stepX, right - x), Math.min(tileHeight, bottom - y)));
+                    final int tileX = x - left;
+                    final int tileY = y - top;
+                    if (executor == null) {
+                        consumer.accept(tileX, tileY, applyOperations(reader.read(0, param), operations));
+                    } else {
+                        inFlight.acquire();
+                        final BufferedImage tile;
+                        try {
+                            tile = reader.read(0, param);
+                        } catch (IOException ex) {
+                            inFlight.release();
+                            throw ex;
+                        }
+                        pending.add(executor.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    consumer.accept(tileX, tileY, applyOperations(tile, operations));
+                                } finally {
+                                    inFlight.release();
+                                }
+                            }
+                        }));
+                    }
+                }
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (IOException ex) {
+            throw new ImageIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ImageIOException("Interrupted while processing image tiles.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new ImageIOException(ex.getCause());
+        } finally {
+            for (Future<?> future : pending) {
+                future.cancel(false);
+            }
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Processes an image file tile by tile (see
+     * {@link #processTiles(ImageInputStream, ImagePoint, ImagePoint, int, int, ExecutorService, TileConsumer, TileOperation...)})
+     * and writes the result to the given output.
+     * <p/>
+     * The PNG and BMP writers pull the rows in order, so each strip is decoded (and processed) only when the writer
+     * reaches it: only the current strip, and the next one when prefetched on the executor, are kept in memory. BMP
+     * images are written top-down. The JPEG and GIF writers need the whole raster, so for these formats the processed
+     * strips are drawn on a single canvas (the size of the processed region) that is written at the end.
+     *
+     * @param inputFile   The source image file.
+     * @param output      The target stream. It is closed after writing.
+     * @param format      The target format.
+     * @param leftTop     The left top corner of the region to process (crop), or <code>null</code> for the image origin.
+     * @param rightBottom The right bottom corner of the region to process (crop), or <code>null</code> for the image end.
+     * @param tileHeight  The height of the strips decoded at a time.
+     * @param executor    Executor to process tiles in parallel, or <code>null</code> to process them on the caller thread.
+     * @param operations  The operations applied, in order, to each tile.
+     */
+    public static void processTiled(final File inputFile, final ImageOutputStream output, final ImageFormat format,
+                                    final ImagePoint leftTop, final ImagePoint rightBottom, final int tileHeight,
+                                    final ExecutorService executor, final TileOperation... operations) {
+        if (inputFile == null || output == null || format == null) {
+            throw new IllegalArgumentException("Must have an input file, an output and a target format.");
+        }
+        if (tileHeight <= 0) {
+            throw new IllegalArgumentException("Invalid tile heigth.");
+        }
+        ImageInputStream input = null;
+        ImageReader reader = null;
+        StripImage strips = null;
+        /* once handed to the writer, the output is closed by it */
+        boolean outputHandedOver = false;
+        try {
+            input = ImageIO.createImageInputStream(inputFile);
+            if (!format.isPng() && !format.isBmp()) {
+                final CanvasTileConsumer canvas = new CanvasTileConsumer(false);
+                processTiles(input, leftTop, rightBottom, 0, tileHeight, executor, canvas, operations);
+                outputHandedOver = true;
+                writePooled(canvas.getImage(), output, format, null);
+                return;
+            }
+            reader = getImageReader(input);
+            if (reader == null) {
+                throw new ImageIOException("Given input does not seem to be an image.");
+            }
+            reader.setInput(input, false, true);
+            final ImagePoint[] selection = getValidSelection(leftTop, rightBottom,
+                                                             new ImagePoint(reader.getWidth(0), reader.getHeight(0)));
+            final Rectangle region = new Rectangle(selection[0].getX(), selection[0].getY(),
+                                                   selection[1].getX() - selection[0].getX(),
+                                                   selection[1].getY() - selection[0].getY());
+            strips = new StripImage(reader, region, tileHeight, executor, format.isPng(), operations);
+            ImageWriteParam param = null;
+            if (format.isBmp()) {
+                /* bottom-up bitmaps would be written from the last strip to the first one */
+                final BMPImageWriteParam bmpParam = new BMPImageWriteParam();
+                bmpParam.setTopDown(true);
+                param = bmpParam;
+            }
+            outputHandedOver = true;
+            writePooled(strips, output, format, param);
+        } catch (IOException ex) {
+            throw new ImageIOException(ex);
+        } finally {
+            if (strips != null) {
+                strips.finish();
+            }
+            if (reader != null) {
+                reader.dispose();
+            }
+            closeQuietly(input);
+            if (!outputHandedOver) {
+                closeQuietly(output);
+            }
+        }
+    }
+
+    private static BufferedImage applyOperations(final BufferedImage tile, final TileOperation... operations) {
+        BufferedImage result = tile;
+        if (operations != null) {
+            for (TileOperation operation : operations) {
+                result = operation.apply(result);
+            }
+        }
+        return result;
+    }
+
     public static Graphics2D getGraphics(final BufferedImage image) {
         if (image == null) {
             throw new IllegalArgumentException("Cant create a canvas for null image.");
@@ -942,35 +1420,133 @@ public abstract class ImageUtils {
         if (ArrayUtils.isEmptyOrNull(bytes)) {
             return null;
         }
-        final ImageReader internalReader = getImageReader(bytes);
-        ImageInputStream is = null;
-        try {
-            is = getImageInputStream(bytes);
-            internalReader.setInput(is, false, false);
-            internalReader.read(0);
+        final JpegInfo jpegInfo = inspectJpeg(bytes);
+        if (jpegInfo == null || !jpegInfo.isCmyk()) {
             return new Object[]{ColorSpace.RGB, Boolean.FALSE};
-        } catch (IOException ex) {
-            return checkAdobeMarker(bytes);
-        } finally {
-            closeQuietly(is);
         }
+        // array with [colorSpace, isAdobeMarked]
+        return new Object[]{jpegInfo.getColorSpace(), jpegInfo.isAdobeMarked()};
+    }
+
+    /**
+     * Parses the segment headers of a JPEG image (up to the start of scan), collecting the information needed to decode
+     * it: the APP14 Adobe marker, the embedded ICC profile chunks and the number of color components of the frame.
+     * No pixel data is decoded.
+     *
+     * @param bytes The image bytes.
+     * @return The JPEG information or <code>null</code> if the given bytes are not a JPEG image.
+     */
+    public static JpegInfo inspectJpeg(final byte[] bytes) {
+        if (ArrayUtils.isEmptyOrNull(bytes) || bytes.length < 4 || (bytes[0] & 0xff) != 0xff || (bytes[1] & 0xff) != 0xd8) {
+            return null;
+        }
+        final JpegInfo info = new JpegInfo();
+        byte[][] iccChunks = null;
+        int pos = 2;
+        while (pos + 4 <= bytes.length) {
+            if ((bytes[pos] & 0xff) != 0xff) {
+                /* corrupted stream, keep whatever we already found */
+                break;
+            }
+            final int marker = bytes[pos + 1] & 0xff;
+            if (marker == 0xff) {
+                /* fill byte */
+                pos++;
+                continue;
+            }
+            if (marker == 0x01 || marker == 0xd8 || (marker >= 0xd0 && marker <= 0xd7)) {
+                /* standalone markers, without length */
+                pos += 2;
+                continue;
+            }
+            if (marker == 0xd9 || marker == 0xda) {
+                /* end of image or start of scan: no more headers */
+                break;
+            }
+            final int length = ((bytes[pos + 2] & 0xff) << 8) | (bytes[pos + 3] & 0xff);
+            final int offset = pos + 4;
+            final int dataLength = Math.min(length - 2, bytes.length - offset);
+            if (length < 2 || dataLength < 0) {
+                break;
+            }
+            if (marker == 0xee) {
+                /* APP14: Adobe marker */
+                if (dataLength >= 12 && startsWith(bytes, offset, ADOBE_SIGNATURE)) {
+                    info.adobeMarked = true;
+                    info.adobeTransform = bytes[offset + 11] & 0xff;
+                }
+            } else if (marker == 0xe2) {
+                /* APP2: ICC profile chunk */
+                if (dataLength > 14 && startsWith(bytes, offset, ICC_SIGNATURE)) {
+                    final int sequence = bytes[offset + 12] & 0xff;
+                    final int count = bytes[offset + 13] & 0xff;
+                    if (iccChunks == null || iccChunks.length != count) {
+                        iccChunks = new byte[count][];
+                    }
+                    if (sequence >= 1 && sequence <= count) {
+                        final byte[] chunk = new byte[dataLength - 14];
+                        System.arraycopy(bytes, offset + 14, chunk, 0, chunk.length);
+                        iccChunks[sequence - 1] = chunk;
+                    }
+                }
+            } else if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                /* SOFn: frame header [precision, height(2), width(2), components] */
+                if (dataLength >= 6) {
+                    info.components = bytes[offset + 5] & 0xff;
+                }
+            }
+            pos = offset + length - 2;
+        }
+        info.iccProfile = joinChunks(iccChunks);
+        return info;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final int offset, final byte[] signature) {
+        if (offset + signature.length > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static BufferedImage readConvert(final byte[] bytes, final ImageReader reader) {
+    private static byte[] joinChunks(final byte[][] chunks) {
+        if (chunks == null) {
+            return null;
+        }
+        int size = 0;
+        for (byte[] chunk : chunks) {
+            if (chunk == null) {
+                /* incomplete profile, better use the default one */
+                return null;
+            }
+            size += chunk.length;
+        }
+        final byte[] joined = new byte[size];
+        int pos = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, joined, pos, chunk.length);
+            pos += chunk.length;
+        }
+        return joined;
+    }
+
+    private static BufferedImage readConvert(final byte[] bytes, final ImageReader reader, final JpegInfo jpegInfo) {
         ImageInputStream is = null;
         try {
-            is = getImageInputStream(bytes);
+            is = getMemoryImageInputStream(bytes);
             reader.setInput(is, false, false);
             final WritableRaster raster = (WritableRaster) reader.readRaster(0, null);
-            final Object[] colorSpaceInfo = checkAdobeMarker(bytes);
-            if (ColorSpace.isYCCK((ColorSpace) colorSpaceInfo[0])) {
+            if (ColorSpace.isYCCK(jpegInfo.getColorSpace())) {
                 convertYcckToCmyk(raster);
             }
-            if ((Boolean) colorSpaceInfo[1]) {
+            if (jpegInfo.isAdobeMarked()) {
                 convertInvertedColors(raster);
             }
-            final ICC_Profile profile = Sanselan.getICCProfile(bytes);
-            return convertCmykToRgb(raster, profile);
+            return convertCmykToRgb(raster, jpegInfo.getIccProfile());
         } catch (Exception ex) {
             throw new ImageIOException(ex);
         } finally {
@@ -978,31 +1554,6 @@ public abstract class ImageUtils {
         }
     }
 
-    private static Object[] checkAdobeMarker(final byte[] bytes) {
-        try {
-            // array with [colorSpace, isAdobeMarked]
-            final Object[] colorSpaceInfo = {ColorSpace.CMYK, Boolean.FALSE};
-            final JpegImageParser parser = new JpegImageParser();
-            final ByteSource byteSource = new ByteSourceArray(bytes);
-            @SuppressWarnings("rawtypes")
-            final ArrayList segments = parser.readSegments(byteSource, new int[]{0xffee}, true);
-            if (segments != null && segments.size() >= 1) {
-                final UnknownSegment app14Segment = (UnknownSegment) segments.get(0);
-                byte[] data = app14Segment.bytes;
-                if (data.length >= 12 && data[0] == 'A' && data[1] == 'd' && data[2] == 'o' && data[3] == 'b' && data[4] == 'e') {
-                    colorSpaceInfo[1] = Boolean.TRUE; // isAdobeMarked
-                    final int transform = app14Segment.bytes[11] & 0xff;
-                    if (transform == 2) {
-                        colorSpaceInfo[0] = ColorSpace.YCCK;
-                    }
-                }
-            }
-            return colorSpaceInfo;
-        } catch (Exception ex) {
-            throw new ImageIOException(ex);
-        }
-    }
-
     private static void convertYcckToCmyk(final WritableRaster raster) {
         int height = raster.getHeight();
         int width = raster.getWidth();
@@ -1059,8 +1610,31 @@ public abstract class ImageUtils {
         }
     }
 
-    private static BufferedImage convertCmykToRgb(final Raster cmykRaster, final ICC_Profile cmykProfile) throws IOException {
-        ICC_Profile profile = cmykProfile;
+    private static BufferedImage convertCmykToRgb(final Raster cmykRaster, final byte[] cmykProfile) throws IOException {
+        final ColorConvertOp cmykToRgb = getCmykToRgbOp(cmykProfile);
+        final BufferedImage rgbImage = new BufferedImage(cmykRaster.getWidth(), cmykRaster.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final WritableRaster rgbRaster = rgbImage.getRaster();
+        /* the op lazily caches its color transform, so it must not be used concurrently */
+        synchronized (cmykToRgb) {
+            cmykToRgb.filter(cmykRaster, rgbRaster);
+        }
+        return rgbImage;
+    }
+
+    /**
+     * Returns the (cached) CMYK to RGB operation for the given ICC profile data.
+     *
+     * @param cmykProfile The embedded ICC profile data, or <code>null</code> to use the default one.
+     * @return The color convert operation.
+     * @throws IOException If the default color profile could not be loaded.
+     */
+    private static ColorConvertOp getCmykToRgbOp(final byte[] cmykProfile) throws IOException {
+        final ProfileKey key = new ProfileKey(cmykProfile);
+        ColorConvertOp op = CMYK_TO_RGB_OPS.get(key);
+        if (op != null) {
+            return op;
+        }
+        ICC_Profile profile = (cmykProfile != null) ? ICC_Profile.getInstance(cmykProfile) : null;
         if (profile == null) {
             profile = ICC_Profile.getInstance(IOUtils.getClasspathInputStream(DEFAULT_COLOR_PROFILE));
         }
@@ -1078,14 +1652,14 @@ public abstract class ImageUtils {
                 profile = ICC_Profile.getInstance(profileData);
             }
         }
-
         final ICC_ColorSpace cmykCS = new ICC_ColorSpace(profile);
-        final BufferedImage rgbImage = new BufferedImage(cmykRaster.getWidth(), cmykRaster.getHeight(), BufferedImage.TYPE_INT_RGB);
-        final WritableRaster rgbRaster = rgbImage.getRaster();
-        final java.awt.color.ColorSpace rgbCS = rgbImage.getColorModel().getColorSpace();
-        final ColorConvertOp cmykToRgb = new ColorConvertOp(cmykCS, rgbCS, null);
-        cmykToRgb.filter(cmykRaster, rgbRaster);
-        return rgbImage;
+        final java.awt.color.ColorSpace rgbCS = java.awt.color.ColorSpace.getInstance(java.awt.color.ColorSpace.CS_sRGB);
+        op = new ColorConvertOp(cmykCS, rgbCS, null);
+        if (CMYK_TO_RGB_OPS.size() >= MAX_CACHED_PROFILES) {
+            CMYK_TO_RGB_OPS.clear();
+        }
+        final ColorConvertOp previous = CMYK_TO_RGB_OPS.putIfAbsent(key, op);
+        return (previous != null) ? previous : op;
     }
 
     public enum ColorSpace {
@@ -1158,6 +1732,384 @@ public abstract class ImageUtils {
         }
     }
 
+    /**
+     * Operation applied to each tile of an image processed by tiles. Must not depend on the tile position.
+     */
+    public interface TileOperation {
+
+        /**
+         * Applies the operation on a tile.
+         *
+         * @param tile The tile. It is not shared, so it may be changed in place.
+         * @return The resulting tile.
+         */
+        BufferedImage apply(BufferedImage tile);
+    }
+
+    /**
+     * Receives the tiles of an image processed by tiles.
+     */
+    public interface TileConsumer {
+
+        /**
+         * Called once, before any tile, with the size of the processed region.
+         *
+         * @param width  The region width.
+         * @param height The region height.
+         */
+        void begin(int width, int height);
+
+        /**
+         * Receives a processed tile.
+         *
+         * @param x    The horizontal position of the tile on the processed region.
+         * @param y    The vertical position of the tile on the processed region.
+         * @param tile The processed tile.
+         */
+        void accept(int x, int y, BufferedImage tile);
+    }
+
+    /**
+     * Draws the received tiles on a single canvas.
+     */
+    private static final class CanvasTileConsumer implements TileConsumer {
+
+        private final boolean keepTransparency;
+        private BufferedImage image;
+
+        CanvasTileConsumer(final boolean keepTransparency) {
+            this.keepTransparency = keepTransparency;
+        }
+
+        @Override
+        public void begin(final int width, final int height) {
+            image = new BufferedImage(width, height, keepTransparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        public synchronized void accept(final int x, final int y, final BufferedImage tile) {
+            drawTile(image, x, y, tile, keepTransparency);
+        }
+
+        synchronized BufferedImage getImage() {
+            return image;
+        }
+    }
+
+    private static void drawTile(final BufferedImage image, final int x, final int y, final BufferedImage tile,
+                                 final boolean keepTransparency) {
+        final Graphics2D g = getGraphics(image);
+        if (keepTransparency) {
+            g.drawImage(tile, x, y, null);
+        } else {
+            g.drawImage(tile, x, y, Color.WHITE, null);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Image decoded strip by strip (full width tiles), only when its rows are requested. Meant for writers that pull
+     * the rows in order, as the PNG and BMP writers: only the current strip, and the next one when prefetched on the
+     * executor, are kept in memory. Requesting the whole raster ({@link #getData()}) decodes the whole image.
+     */
+    private static final class StripImage implements RenderedImage {
+
+        private final ImageReader reader;
+        private final Rectangle region;
+        private final int stripHeight;
+        private final int strips;
+        private final ExecutorService executor;
+        private final boolean keepTransparency;
+        private final TileOperation[] operations;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+        private int currentIndex = -1;
+        private Raster current;
+        private int prefetchIndex = -1;
+        private Future<Raster> prefetch;
+
+        StripImage(final ImageReader reader, final Rectangle region, final int stripHeight,
+                   final ExecutorService executor, final boolean keepTransparency, final TileOperation... operations) {
+            this.reader = reader;
+            this.region = region;
+            this.stripHeight = stripHeight;
+            this.strips = (region.height + stripHeight - 1) / stripHeight;
+            this.executor = executor;
+            this.keepTransparency = keepTransparency;
+            this.operations = operations;
+            final BufferedImage model = new BufferedImage(1, 1, getImageType());
+            this.colorModel = model.getColorModel();
+            this.sampleModel = model.getSampleModel().createCompatibleSampleModel(region.width, stripHeight);
+        }
+
+        private int getImageType() {
+            return keepTransparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        }
+
+        /**
+         * Decodes and processes a strip. The reader is used by one strip at a time.
+         */
+        private Raster decode(final int index) throws IOException {
+            final int y = index * stripHeight;
+            final ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(region.x, region.y + y, region.width, Math.min(stripHeight, region.height - y)));
+            final BufferedImage tile = applyOperations(reader.read(0, param), operations);
+            final BufferedImage strip = new BufferedImage(tile.getWidth(), tile.getHeight(), getImageType());
+            drawTile(strip, 0, 0, tile, keepTransparency);
+            return strip.getRaster().createTranslatedChild(0, y);
+        }
+
+        private synchronized Raster getStrip(final int index) {
+            if (index == currentIndex) {
+                return current;
+            }
+            try {
+                Raster strip = null;
+                if (prefetch != null) {
+                    final Raster prefetched = prefetch.get();
+                    if (prefetchIndex == index) {
+                        strip = prefetched;
+                    }
+                    prefetch = null;
+                }
+                current = (strip == null) ? decode(index) : strip;
+                currentIndex = index;
+            } catch (IOException ex) {
+                throw new ImageIOException(ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ImageIOException("Interrupted while processing image strips.", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new ImageIOException(ex.getCause());
+            }
+            if (executor != null && index + 1 < strips) {
+                final int next = index + 1;
+                prefetchIndex = next;
+                prefetch = executor.submit(new Callable<Raster>() {
+                    @Override
+                    public Raster call() throws IOException {
+                        return decode(next);
+                    }
+                });
+            }
+            return current;
+        }
+
+        /**
+         * Waits for the strip being prefetched, if any, so the reader can be disposed.
+         */
+        synchronized void finish() {
+            if (prefetch != null) {
+                try {
+                    prefetch.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    LOGGER.log(Level.FINE, "Prefetched strip discarded.", ex.getCause());
+                }
+                prefetch = null;
+            }
+            current = null;
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return region.width;
+        }
+
+        @Override
+        public int getHeight() {
+            return region.height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return strips;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return region.width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripHeight;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        @Override
+        public Raster getTile(final int tileX, final int tileY) {
+            return getStrip(tileY);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, region.width, region.height));
+        }
+
+        @Override
+        public Raster getData(final Rectangle rect) {
+            final Rectangle bounds = rect.intersection(new Rectangle(0, 0, region.width, region.height));
+            final int first = bounds.y / stripHeight;
+            if (!bounds.isEmpty() && first == (bounds.y + bounds.height - 1) / stripHeight) {
+                /* rows of a single strip (as requested by the PNG and BMP writers): no copy */
+                return getStrip(first).createChild(bounds.x, bounds.y, bounds.width, bounds.height, bounds.x, bounds.y, null);
+            }
+            final WritableRaster raster = colorModel.createCompatibleWritableRaster(bounds.width, bounds.height);
+            return copyData(raster.createWritableTranslatedChild(bounds.x, bounds.y));
+        }
+
+        @Override
+        public WritableRaster copyData(final WritableRaster raster) {
+            final WritableRaster target = (raster == null)
+                                          ? colorModel.createCompatibleWritableRaster(region.width, region.height) : raster;
+            final Rectangle bounds = target.getBounds().intersection(new Rectangle(0, 0, region.width, region.height));
+            if (bounds.isEmpty()) {
+                return target;
+            }
+            final int last = (bounds.y + bounds.height - 1) / stripHeight;
+            for (int index = bounds.y / stripHeight; index <= last; index++) {
+                final Raster strip = getStrip(index);
+                final Rectangle area = strip.getBounds().intersection(bounds);
+                target.setRect(strip.createChild(area.x, area.y, area.width, area.height, area.x, area.y, null));
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Header information of a JPEG image, as found by {@link ImageUtils#inspectJpeg(byte[])}.
+     */
+    public static final class JpegInfo {
+
+        private boolean adobeMarked;
+        private int adobeTransform = -1;
+        private int components;
+        private byte[] iccProfile;
+
+        JpegInfo() {
+        }
+
+        public boolean isAdobeMarked() {
+            return adobeMarked;
+        }
+
+        public int getAdobeTransform() {
+            return adobeTransform;
+        }
+
+        public int getComponents() {
+            return components;
+        }
+
+        /**
+         * Returns the embedded ICC profile data, joined from all APP2 chunks.
+         *
+         * @return The profile data or <code>null</code> if there is no (complete) embedded profile.
+         */
+        public byte[] getIccProfile() {
+            return iccProfile;
+        }
+
+        public boolean isCmyk() {
+            return components == 4;
+        }
+
+        public ColorSpace getColorSpace() {
+            if (!isCmyk()) {
+                return ColorSpace.RGB;
+            }
+            return (adobeMarked && adobeTransform == 2) ? ColorSpace.YCCK : ColorSpace.CMYK;
+        }
+    }
+
+    /**
+     * Key of the color convert cache: ICC profile data compared by content.
+     */
+    private static final class ProfileKey {
+
+        private final byte[] data;
+        private final int hash;
+
+        ProfileKey(final byte[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof ProfileKey && Arrays.equals(data, ((ProfileKey) obj).data);
+        }
+    }
+
     public static class ImagePoint {
 
         /**
@@ -18,9 +18,10 @@
  */
 package br.ojimarcius.commons.util;
 
-import br.ojimarcius.commons.temporal.DateComparator;
+import br.ojimarcius.commons.temporal.EpochPeriod;
 import br.ojimarcius.commons.temporal.Period;
 import br.ojimarcius.commons.temporal.PeriodComparator;
+import br.ojimarcius.commons.temporal.PeriodIndex;
 import br.ojimarcius.commons.temporal.SimplePeriod;
 import br.ojimarcius.commons.text.CustomDateFormat;
 import java.math.BigDecimal;
@@ -139,39 +140,51 @@ public abstract class PeriodUtils {
         return getContainerPeriod(ignoreTime, Arrays.asList(periods));
     }
 
+    /**
+     * Returns the smallest period containing all the periods. A null start/end on any period is an open end of the
+     * container as well.
+     *
+     * @param ignoreTime If the time info is ignored when comparing the dates (the first date of the day is kept).
+     * @param periods    The periods.
+     * @return The container period, or null if there are no periods.
+     */
     public static Period getContainerPeriod(final boolean ignoreTime, final Collection<Period> periods) {
         if (CollectionUtils.isEmptyOrNull(periods)) {
             return null;
         }
-        final DateComparator comparator = new DateComparator(ignoreTime);
-        Calendar smallestInicio = null;
-        Calendar largestFim = null;
+        Calendar smallestStart = null;
+        Calendar largestEnd = null;
+        long smallestStartKey = 0L;
+        long largestEndKey = 0L;
+        boolean openStart = false;
+        boolean openEnd = false;
         for (Period p : periods) {
             if (p != null) {
-                final Calendar currentInicio = p.getStart();
-                final Calendar currentFim = p.getEnd();
-                if (smallestInicio == null) {
-                    smallestInicio = currentInicio;
-                } else {
-                    if (comparator.compare(smallestInicio, currentInicio) > 0) {
-                        // currently 'smallestInicio' isn't the smallest. swap!
-                        smallestInicio = currentInicio;
+                if (p.getStart() == null) {
+                    openStart = true;
+                } else if (!openStart) {
+                    final long key = getCompareKey(p.getStart(), ignoreTime);
+                    if (smallestStart == null || key < smallestStartKey) {
+                        smallestStart = p.getStart();
+                        smallestStartKey = key;
                     }
                 }
-                if (largestFim == null) {
-                    largestFim = currentFim;
-                } else {
-                    if (comparator.compare(largestFim, currentFim) > 0) {
-                        // currently 'largestFim' isn't the smallest. swap!
-                        largestFim = currentFim;
+                if (p.getEnd() == null) {
+                    openEnd = true;
+                } else if (!openEnd) {
+                    final long key = getCompareKey(p.getEnd(), ignoreTime);
+                    if (largestEnd == null || key > largestEndKey) {
+                        largestEnd = p.getEnd();
+                        largestEndKey = key;
                     }
                 }
             }
         }
-        final Period p = new SimplePeriod();
-        p.setStart(smallestInicio);
-        p.setEnd(largestFim);
-        return p;
+        return new SimplePeriod(openStart ? null : smallestStart, openEnd ? null : largestEnd);
+    }
+
+    private static long getCompareKey(final Calendar date, final boolean ignoreTime) {
+        return ignoreTime ? EpochUtils.toEpochDay(date) : date.getTimeInMillis();
     }
 
     public static Period getCurrentMonthPeriod() {
@@ -283,53 +296,170 @@ public abstract class PeriodUtils {
         return intersection(Arrays.asList(periods));
     }
 
+    /**
+     * Returns the intersection of the periods (as closed intervals; null bounds are open ended). The bounds are
+     * compared as epoch milliseconds and the result references the calendars of the given periods.
+     *
+     * @param periods The periods.
+     * @return A period of the same type of the first one, or null if the periods do not intersect.
+     */
     public static Period intersection(final Collection<Period> periods) {
         if (CollectionUtils.isEmptyOrNull(periods)) {
             return null;
         }
-        final Period intersection = (Period) ReflectionUtils.cloneObject(periods.iterator().next());
-        if (periods.size() > 1) {
-            /*
-             * visit all periods, searching for the biggest start and smallest end.
-             * If it is a valid period, we have a intersection.
-             * Else, there is no intersection.
-             */
-            for (Period current : periods) {
-                if ((intersection.getStart() == null && current.getStart() != null)
-                    || (intersection.getStart() != null && current.getStart() != null
-                        && CalendarUtils.isBefore(intersection.getStart(), current.getStart()))) {
-                    intersection.setStart(current.getStart());
-                }
-                if ((intersection.getEnd() == null && current.getEnd() != null)
-                    || (intersection.getEnd() != null && current.getEnd() != null
-                        && CalendarUtils.isAfter(intersection.getEnd(), current.getEnd()))) {
-                    intersection.setEnd(current.getEnd());
-                }
+        final Period first = periods.iterator().next();
+        Calendar start = null;
+        Calendar end = null;
+        long startMillis = Long.MIN_VALUE;
+        long endMillis = Long.MAX_VALUE;
+        for (Period current : periods) {
+            /* visit all periods, searching for the biggest start and smallest end. */
+            if (current.getStart() != null && (start == null || current.getStart().getTimeInMillis() > startMillis)) {
+                start = current.getStart();
+                startMillis = start.getTimeInMillis();
             }
-            if (!PeriodUtils.isValid(intersection, true)) {
-                return null;
+            if (current.getEnd() != null && (end == null || current.getEnd().getTimeInMillis() < endMillis)) {
+                end = current.getEnd();
+                endMillis = end.getTimeInMillis();
             }
         }
-        return intersection;
+        if (periods.size() > 1 && startMillis > endMillis) {
+            return null;
+        }
+        return newPeriod(first, start, end);
+    }
+
+    /**
+     * Returns the union of two periods, if it is a period.
+     *
+     * @param period1 A period.
+     * @param period2 Another period.
+     * @return The union, or null if the periods do not overlap (the union would have a gap).
+     */
+    public static Period union(final Period period1, final Period period2) {
+        ArgumentUtils.rejectIfAnyNull(period1, period2);
+        final EpochPeriod union = EpochPeriod.valueOf(period1).union(EpochPeriod.valueOf(period2));
+        if (union == null) {
+            return null;
+        }
+        return newPeriod(period1, select(union.getStart(), period1.getStart(), period2.getStart()),
+                         select(union.getEnd(), period1.getEnd(), period2.getEnd()));
+    }
+
+    /**
+     * Returns the parts of a period not covered by another one. The parts share their bounds with the subtracted
+     * period.
+     *
+     * @param period     The period.
+     * @param subtrahend The period to subtract.
+     * @return The remaining parts, sorted: none, one or two periods.
+     */
+    public static List<Period> subtract(final Period period, final Period subtrahend) {
+        ArgumentUtils.rejectIfAnyNull(period, subtrahend);
+        final List<EpochPeriod> parts = EpochPeriod.valueOf(period).subtract(EpochPeriod.valueOf(subtrahend));
+        final List<Period> result = new ArrayList<Period>(parts.size());
+        for (EpochPeriod part : parts) {
+            result.add(newPeriod(period, select(part.getStart(), period.getStart(), subtrahend.getEnd()),
+                                 select(part.getEnd(), period.getEnd(), subtrahend.getStart())));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the calendar, among the candidates, on the given instant; null if none is.
+     */
+    private static Calendar select(final long millis, final Calendar candidate1, final Calendar candidate2) {
+        if (candidate1 != null && candidate1.getTimeInMillis() == millis) {
+            return candidate1;
+        }
+        if (candidate2 != null && candidate2.getTimeInMillis() == millis) {
+            return candidate2;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a period with the same type of the prototype. {@link SimplePeriod SimplePeriods} are built directly,
+     * other types are copied reflectively.
+     */
+    private static Period newPeriod(final Period prototype, final Calendar start, final Calendar end) {
+        final Period period;
+        if (prototype.getClass() == SimplePeriod.class) {
+            period = new SimplePeriod();
+        } else {
+            period = (Period) ReflectionUtils.cloneObject(prototype);
+        }
+        period.setStart(start);
+        period.setEnd(end);
+        return period;
     }
 
-    public static boolean hasConcurrence(final Collection<Period> periods) {
+    /**
+     * Tells if any two periods of the collection overlap (as closed intervals; null bounds are open ended).
+     * <p/>
+     * Sorts the starts and the ends and sweeps them once, in O(n log n). Null and invalid periods are ignored.
+     *
+     * @param periods The periods.
+     * @return <code>true</code> if there is some overlap.
+     */
+    public static boolean hasConcurrence(final Collection<? extends Period> periods) {
         if (CollectionUtils.isEmptyOrNull(periods) || periods.size() == 1) {
             return false;
         }
-        final List<Period> tmp = asList(periods);
-        for (int i = 0; i < tmp.size(); i++) {
-            final Period p1 = tmp.get(i);
-            for (int j = i + 1; j < tmp.size(); j++) {
-                final Period p2 = tmp.get(j);
-                if (intersection(p1, p2) != null) {
-                    return true;
+        final long[] starts = new long[periods.size()];
+        final long[] ends = new long[periods.size()];
+        int count = 0;
+        for (Period p : periods) {
+            if (p != null) {
+                final long start = p.getStart() == null ? Long.MIN_VALUE : p.getStart().getTimeInMillis();
+                final long end = p.getEnd() == null ? Long.MAX_VALUE : p.getEnd().getTimeInMillis();
+                if (start <= end) {
+                    starts[count] = start;
+                    ends[count] = end;
+                    count++;
                 }
             }
         }
+        Arrays.sort(starts, 0, count);
+        Arrays.sort(ends, 0, count);
+        /* when a period starts, every period started before it must have already ended */
+        int ended = 0;
+        for (int i = 0; i < count; i++) {
+            while (ends[ended] < starts[i]) {
+                ended++;
+            }
+            if (i > ended) {
+                return true;
+            }
+        }
         return false;
     }
 
+    /**
+     * Returns the periods of the collection that overlap the given one. For repeated queries over the same periods,
+     * build a {@link PeriodIndex} once.
+     *
+     * @param <T>     The type of the periods.
+     * @param periods The periods.
+     * @param period  The period to check.
+     * @return The overlapping periods, sorted by start.
+     */
+    public static <T extends Period> List<T> findOverlapping(final Collection<? extends T> periods, final Period period) {
+        return new PeriodIndex<T>(periods).findOverlapping(period);
+    }
+
+    /**
+     * Returns the parts of the window not covered by any of the periods.
+     *
+     * @param periods The busy periods.
+     * @param window  The window to search.
+     * @return The free slots, sorted.
+     * @see PeriodIndex#getFreeSlots(Period)
+     */
+    public static List<Period> getFreeSlots(final Collection<? extends Period> periods, final Period window) {
+        return new PeriodIndex<Period>(periods).getFreeSlots(window);
+    }
+
     public static String format(final Period period, final String dateTimePattern) {
         return format(period, dateTimePattern, DEFAULT_PERIOD_SEPARATOR, false);
     }
@@ -19,10 +19,12 @@
 package br.ojimarcius.commons.util;
 
 import br.ojimarcius.commons.reflect.MethodHook;
+import br.ojimarcius.commons.reflect.ObjectCopier;
 import br.ojimarcius.commons.reflect.exception.NoSuchGetterException;
 import br.ojimarcius.commons.text.EnhancedStringBuilder;
 import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.ObjectUtils;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -32,8 +34,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,6 +64,25 @@ public abstract class ReflectionUtils {
      * Usado para quebrar o caminho de propriedades, para processamento uma a uma.
      */
     private static final String ATTRIB_PATH_SPLIT_REGEX = "[\\.\\[\\]]+";
+    /**
+     * Maximum number of attribute paths kept split by {@link #invokeCascadeGetterFor(Object, String)}.
+     */
+    private static final int MAX_CACHED_PATHS = 1024;
+    /**
+     * Maximum number of classes whose getters, setters and fields are kept, and of attribute names kept for each
+     * class. The lookups hold their members, and the members their classes, so the caches are bounded instead of
+     * weakly keyed: the least recently used class is evicted when a new one comes, and the names of a class past the
+     * bound are looked up every time. Call {@link #clearCache()} to release reloaded classes.
+     */
+    static final int MAX_CACHED_LOOKUPS = 1024;
+    /**
+     * Getters, setters and fields found (or not) for each class, by attribute name. The members are accessible and
+     * shared, so they never leave this class: the public lookups return copies.
+     */
+    private static final Map<Class<?>, ConcurrentMap<String, Lookup<Method>>> GETTERS = newLookupCache();
+    private static final Map<Class<?>, ConcurrentMap<String, Lookup<Method>>> SETTERS = newLookupCache();
+    private static final Map<Class<?>, ConcurrentMap<String, Lookup<Field>>> FIELDS = newLookupCache();
+    private static final ConcurrentMap<String, String[]> PATHS = new ConcurrentHashMap<String, String[]>();
 
     public static boolean isClass(final Object value) {
         return ObjectUtils.isClass(value);
@@ -118,15 +143,12 @@ public abstract class ReflectionUtils {
      * @return The returned value.
      */
     public static Object invokeCascadeGetterFor(final Object target, final String attribPath) {
-        String[] attribs = attribPath.split("\\.");
         Object current = target;
-        for (String attr : attribs) {
+        for (String attr : splitPath(attribPath)) {
             if (current == null) {
                 return null;
             }
-            if (CharSequenceUtils.isNotBlank(attr)) {
-                current = invokeGetterFor(current, attr);
-            }
+            current = invokeGetterFor(current, attr);
         }
         return current;
     }
@@ -139,28 +161,11 @@ public abstract class ReflectionUtils {
      * @return The returned value.
      */
     public static Object invokeGetterFor(final Object target, final String attribName) {
-        Class<? extends Object> c = target.getClass();
-        Method getter = null;
-        try {
-            getter = c.getMethod(genGetterName("get", attribName));
-        } catch (NoSuchMethodException ex1) {
-            try {
-                getter = c.getMethod(genGetterName("is", attribName));
-            } catch (NoSuchMethodException ex2) {
-                try {
-                    getter = c.getMethod(attribName);
-                } catch (NoSuchMethodException ex3) {
-                    throw new NoSuchGetterException("Could not find a getter for " + attribName, ex3);
-                }
-            }
-        }
+        final Method getter = findGetter(target.getClass(), attribName);
         if (getter == null) {
             throw new NoSuchGetterException("Could not find a getter for " + attribName);
         }
         try {
-            if (!getter.isAccessible()) {
-                getter.setAccessible(true);
-            }
             return getter.invoke(target);
         } catch (Exception ex) {
             throw new RuntimeException("Could not invoke " + getter.getName() + "()", ex);
@@ -168,26 +173,186 @@ public abstract class ReflectionUtils {
     }
 
     public static void invokeSetterFor(final Object object, final String attribName, final Object value) {
-        Class<? extends Object> c = object.getClass();
-        Method setter = null;
-        try {
-            setter = getMethod(c, genGetterName("set", attribName), value.getClass());
-        } catch (NoSuchMethodException ex) {
-            throw new NoSuchGetterException("Não foi encontrado um setter para " + attribName, ex);
-        }
+        final Method setter = findSetter(object.getClass(), attribName, value.getClass());
         if (setter == null) {
             throw new NoSuchGetterException("Não foi encontrado um setter para " + attribName);
         }
         try {
-            if (!setter.isAccessible()) {
-                setter.setAccessible(true);
-            }
             setter.invoke(object, value);
         } catch (Exception ex) {
             throw new RuntimeException("Não foi possível executar " + setter.getName() + "( " + value.getClass().getName() + " )", ex);
         }
     }
 
+    /**
+     * Returns the public getter of an attribute: "getAttrib()", "isAttrib()" or "attrib()", in this order.
+     * <p/>
+     * The lookups (found or not) are cached by class; the getter returned is a copy of the cached one.
+     *
+     * @param clazz      The class.
+     * @param attribName The attribute name.
+     * @return The getter, or null if there is none.
+     */
+    public static Method getGetter(final Class<?> clazz, final String attribName) {
+        return copyOf(findGetter(clazz, attribName));
+    }
+
+    private static Method findGetter(final Class<?> clazz, final String attribName) {
+        final ConcurrentMap<String, Lookup<Method>> getters = lookupsOf(GETTERS, clazz);
+        Lookup<Method> lookup = getters.get(attribName);
+        if (lookup == null) {
+            Method getter = findPublicMethod(clazz, genGetterName("get", attribName));
+            if (getter == null) {
+                getter = findPublicMethod(clazz, genGetterName("is", attribName));
+            }
+            if (getter == null) {
+                getter = findPublicMethod(clazz, attribName);
+            }
+            lookup = new Lookup<Method>(getter);
+            cache(getters, attribName, lookup);
+        }
+        return lookup.member;
+    }
+
+    /**
+     * Returns the setter of an attribute, declared by the class or a superclass, for the exact value type.
+     * <p/>
+     * The lookups (found or not) are cached by class; the setter returned is a copy of the cached one.
+     *
+     * @param clazz      The class.
+     * @param attribName The attribute name.
+     * @param valueType  The type of the setter parameter.
+     * @return The setter, or null if there is none.
+     */
+    public static Method getSetter(final Class<?> clazz, final String attribName, final Class<?> valueType) {
+        return copyOf(findSetter(clazz, attribName, valueType));
+    }
+
+    private static Method findSetter(final Class<?> clazz, final String attribName, final Class<?> valueType) {
+        final ConcurrentMap<String, Lookup<Method>> setters = lookupsOf(SETTERS, clazz);
+        final String key = attribName + ':' + valueType.getName();
+        Lookup<Method> lookup = setters.get(key);
+        if (lookup == null) {
+            Method setter;
+            try {
+                setter = getMethod(clazz, genGetterName("set", attribName), valueType);
+            } catch (NoSuchMethodException ex) {
+                setter = null;
+            }
+            lookup = new Lookup<Method>(setter);
+            cache(setters, key, lookup);
+        }
+        return lookup.member;
+    }
+
+    /**
+     * Clears the cached lookups of getters, setters and fields, e.g. when classes are reloaded.
+     */
+    public static void clearCache() {
+        synchronized (GETTERS) {
+            GETTERS.clear();
+        }
+        synchronized (SETTERS) {
+            SETTERS.clear();
+        }
+        synchronized (FIELDS) {
+            FIELDS.clear();
+        }
+        PATHS.clear();
+    }
+
+    /**
+     * Splits an attribute path on the dots, ignoring the blank attributes. The most used paths are kept split.
+     */
+    private static String[] splitPath(final String attribPath) {
+        String[] attribs = PATHS.get(attribPath);
+        if (attribs == null) {
+            final List<String> list = new ArrayList<String>();
+            for (String attr : attribPath.split("\\.")) {
+                if (CharSequenceUtils.isNotBlank(attr)) {
+                    list.add(attr);
+                }
+            }
+            attribs = list.toArray(new String[list.size()]);
+            if (PATHS.size() < MAX_CACHED_PATHS) {
+                PATHS.putIfAbsent(attribPath, attribs);
+            }
+        }
+        return attribs;
+    }
+
+    private static Method findPublicMethod(final Class<?> clazz, final String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a cache of lookups by class that evicts the least recently used class past {@link #MAX_CACHED_LOOKUPS}.
+     * Guarded by itself.
+     */
+    private static <M extends AccessibleObject> Map<Class<?>, ConcurrentMap<String, Lookup<M>>> newLookupCache() {
+        return new LinkedHashMap<Class<?>, ConcurrentMap<String, Lookup<M>>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Class<?>, ConcurrentMap<String, Lookup<M>>> eldest) {
+                return size() > MAX_CACHED_LOOKUPS;
+            }
+        };
+    }
+
+    private static <M extends AccessibleObject> ConcurrentMap<String, Lookup<M>> lookupsOf(final Map<Class<?>, ConcurrentMap<String, Lookup<M>>> cache, final Class<?> clazz) {
+        synchronized (cache) {
+            ConcurrentMap<String, Lookup<M>> lookups = cache.get(clazz);
+            if (lookups == null) {
+                lookups = new ConcurrentHashMap<String, Lookup<M>>();
+                cache.put(clazz, lookups);
+            }
+            return lookups;
+        }
+    }
+
+    /**
+     * Tells whether the getter lookups of the class are cached, without touching its recency.
+     */
+    static boolean isGetterCached(final Class<?> clazz) {
+        synchronized (GETTERS) {
+            return GETTERS.containsKey(clazz);
+        }
+    }
+
+    private static Method copyOf(final Method method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Could not copy " + method, ex);
+        }
+    }
+
+    private static Field copyOf(final Field field) {
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.getDeclaringClass().getDeclaredField(field.getName());
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalStateException("Could not copy " + field, ex);
+        }
+    }
+
+    private static <M extends AccessibleObject> void cache(final ConcurrentMap<String, Lookup<M>> lookups, final String name, final Lookup<M> lookup) {
+        if (lookups.size() < MAX_CACHED_LOOKUPS) {
+            lookups.putIfAbsent(name, lookup);
+        }
+    }
+
     /**
      * Returns the getter name, accordingly to the java naming standards.
      *
@@ -217,15 +382,38 @@ public abstract class ReflectionUtils {
         return fields;
     }
 
+    /**
+     * Returns the field declared by the class or a superclass. The lookups (found or not) are cached by class; the
+     * field returned is a copy of the cached one.
+     *
+     * @param clazz     The class.
+     * @param fieldName The field name.
+     * @return The field, or null if there is none.
+     */
     public static Field getField(final Class clazz, final String fieldName) {
+        return copyOf(findField(clazz, fieldName));
+    }
+
+    private static Field findField(final Class<?> clazz, final String fieldName) {
         if (clazz == null) {
             return null;
         }
-        try {
-            return clazz.getDeclaredField(fieldName);
-        } catch (NoSuchFieldException ex) {
-            return getField(clazz.getSuperclass(), fieldName);
+        final ConcurrentMap<String, Lookup<Field>> fields = lookupsOf(FIELDS, clazz);
+        Lookup<Field> lookup = fields.get(fieldName);
+        if (lookup == null) {
+            Field field = null;
+            for (Class<?> c = clazz; c != null && field == null; c = c.getSuperclass()) {
+                for (Field declared : c.getDeclaredFields()) {
+                    if (declared.getName().equals(fieldName)) {
+                        field = declared;
+                        break;
+                    }
+                }
+            }
+            lookup = new Lookup<Field>(field);
+            cache(fields, fieldName, lookup);
         }
+        return lookup.member;
     }
 
     public static <T extends Object> T getFieldValue(final Object object, final String fieldName) {
@@ -234,10 +422,7 @@ public abstract class ReflectionUtils {
             return null;
         }
         try {
-            final Field f = getField(object.getClass(), fieldName);
-            if (!f.isAccessible()) {
-                f.setAccessible(true);
-            }
+            final Field f = findField(object.getClass(), fieldName);
             return (T) f.get(object);
         } catch (Exception ex) {
             throw new RuntimeException(ex);
@@ -245,13 +430,10 @@ public abstract class ReflectionUtils {
     }
 
     public static void setField(final Object object, final String fieldName, final Object value) {
-        final Field field = getField(object.getClass(), fieldName);
+        final Field field = findField(object.getClass(), fieldName);
         if (field == null) {
             throw new IllegalArgumentException("Classe '" + object.getClass().getName() + "' não possui o campo '" + fieldName + "'");
         }
-        if (!field.isAccessible()) {
-            field.setAccessible(true);
-        }
         try {
             field.set(object, value);
         } catch (IllegalAccessException ex) {
@@ -398,6 +580,8 @@ public abstract class ReflectionUtils {
      * The given object <strong>must</strong> have a default, no argument, constructor.
      * <p/>
      * <strong>Static, transient and volatile fields are ignored on the process</strong>.
+     * <p/>
+     * The constructor and the fields of each class are resolved once, by its {@link ObjectCopier}.
      *
      * @param <T>      The type of the cloned object.
      * @param original The object to be cloned.
@@ -408,20 +592,7 @@ public abstract class ReflectionUtils {
         if (original == null) {
             return null;
         }
-        final T clone = (T) newInstanceOf(original.getClass());
-        final Collection<Field> fields = getFields(original, false, false, false);
-        for (Field field : fields) {
-            try {
-                if (!field.isAccessible()) {
-                    field.setAccessible(true);
-                }
-                Object fieldValue = field.get(original);
-                field.set(clone, fieldValue);
-            } catch (IllegalAccessException ex) {
-                throw new RuntimeException(ex);
-            }
-        }
-        return clone;
+        return ObjectCopier.of((Class<T>) original.getClass()).copy(original);
     }
 
     public static String getPackage(final Class clazz, final String separator) {
@@ -468,4 +639,23 @@ public abstract class ReflectionUtils {
             return false;
         }
     }
+
+    /**
+     * The result of a lookup of a member: the member, accessible, or null if it was not found.
+     */
+    private static final class Lookup<M extends AccessibleObject> {
+
+        final M member;
+
+        Lookup(final M member) {
+            if (member != null && !member.isAccessible()) {
+                try {
+                    member.setAccessible(true);
+                } catch (SecurityException ex) {
+                    LOGGER.log(Level.FINE, "Could not make {0} accessible", member);
+                }
+            }
+            this.member = member;
+        }
+    }
 }
@@ -20,18 +20,31 @@ import br.ojimarcius.commons.util.CollectionUtils;
 import br.ojimarcius.commons.util.IOUtils;
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
 
 /**
  * Basic implementation of a {@link VelocityProcessor}.
+ * <p/>
+ * Parsed templates are cached (up to {@link #getTemplateCacheSize()} templates, least recently used first out): by
+ * SHA-256 digest of the source, and by URL for files (checking their last modification) and jar entries. The
+ * templates are parsed and merged by the {@link #engine} of the processor. The tools are kept on a context shared by
+ * all the processings, under the context of the params of each one.
  *
  * @param <P> Type of expected params, if applicable.
  * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
@@ -44,9 +57,18 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      */
     protected Map<String, Object> tools;
     /**
-     * Velocity engine that will do the processing job.
+     * Velocity runtime that parses and merges the templates. Without a configuration on the constructor, it can be
+     * configured (properties, resource loaders) until the first processing, which initializes it.
      */
-    protected final VelocityEngine engine;
+    protected final RuntimeInstance engine = new RuntimeInstance();
+    /**
+     * Default maximum of cached templates.
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 128;
+    private static final String LOG_TAG = "logTag";
+    private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
+    private final Map<Object, CachedTemplate> templates = new LinkedHashMap<Object, CachedTemplate>(16, 0.75f, true);
+    private volatile Context toolsContext;
 
     /**
      * Default constructor.
@@ -65,7 +87,10 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      */
     public ConfigurableVelocityProcessor(final Properties velocityConfig) {
         try {
-            this.engine = (CollectionUtils.isNotEmpty(velocityConfig)) ? new VelocityEngine(velocityConfig) : new VelocityEngine();
+            // otherwise initialized on the first use
+            if (CollectionUtils.isNotEmpty(velocityConfig)) {
+                engine.init(velocityConfig);
+            }
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -100,10 +125,42 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      */
     @Override
     public String process(final URL url, final Map<String, P> params) {
+        if (url == null) {
+            return null;
+        }
+        final Writer out = new StringWriter();
+        process(url, params, out);
+        return out.toString();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void process(final URL url, final Map<String, P> params, final Writer out) {
         try {
-            return (url != null) ? process(url.openStream(), params) : null;
+            final String protocol = url.getProtocol();
+            final long lastModified;
+            if ("file".equals(protocol)) {
+                lastModified = new File(url.toURI()).lastModified();
+            } else if ("jar".equals(protocol)) {
+                lastModified = 0L;
+            } else {
+                // other sources may change: read on each processing, cached by the digest of the source
+                process(IOUtils.readText(url.openStream(), getInputCharset()), params, out);
+                return;
+            }
+            final String key = url.toExternalForm();
+            Template template = getCachedTemplate(key, lastModified);
+            if (template == null) {
+                template = parse(new InputStreamReader(url.openStream(), getInputCharset()), key);
+                putCachedTemplate(key, lastModified, template);
+            }
+            template.merge(getContext(params), out);
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException(ex);
         }
     }
 
@@ -134,10 +191,121 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
             return "";
         }
         final Writer out = new StringWriter();
-        engine.evaluate(getContext(params), out, "logTag", templateSource.toString());
+        process(templateSource, params, out);
         return out.toString();
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void process(final CharSequence templateSource, final Map<String, P> params, final Writer out) {
+        if (CharSequenceUtils.isBlankOrNull(templateSource)) {
+            return;
+        }
+        final String source = templateSource.toString();
+        final String key = getSourceKey(source);
+        Template template = getCachedTemplate(key, 0L);
+        if (template == null) {
+            template = parse(new StringReader(source), LOG_TAG);
+            putCachedTemplate(key, 0L, template);
+        }
+        template.merge(getContext(params), out);
+    }
+
+    /**
+     * Parses the template, as {@link RuntimeInstance#evaluate(Context, Writer, String, Reader)} would do on each call.
+     *
+     * @param reader The template source.
+     * @param name   The template name, for the logs.
+     * @return The template, ready to be merged.
+     */
+    protected Template parse(final Reader reader, final String name) {
+        try {
+            final Template template = new Template();
+            template.setName(name);
+            template.setRuntimeServices(engine);
+            template.setData(engine.parse(reader, name));
+            template.initDocument();
+            return template;
+        } catch (ParseException ex) {
+            throw new ParseErrorException(ex, name);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Returns the cache key of a template source: its SHA-256 digest (of the UTF-16 chars, so any source has its own
+     * digest), so the cache doesn't hold the sources.
+     */
+    private static String getSourceKey(final String source) {
+        final byte[] chars = new byte[source.length() * 2];
+        for (int i = 0; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            chars[2 * i] = (byte) (c >> 8);
+            chars[2 * i + 1] = (byte) c;
+        }
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(chars);
+        } catch (NoSuchAlgorithmException ex) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(ex);
+        }
+        final StringBuilder key = new StringBuilder(7 + 2 * digest.length).append("source:");
+        for (byte b : digest) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private Template getCachedTemplate(final Object key, final long lastModified) {
+        synchronized (templates) {
+            final CachedTemplate cached = templates.get(key);
+            return (cached != null && cached.lastModified == lastModified) ? cached.template : null;
+        }
+    }
+
+    private void putCachedTemplate(final Object key, final long lastModified, final Template template) {
+        synchronized (templates) {
+            if (templateCacheSize <= 0) {
+                return;
+            }
+            templates.put(key, new CachedTemplate(template, lastModified));
+            while (templates.size() > templateCacheSize) {
+                templates.remove(templates.keySet().iterator().next());
+            }
+        }
+    }
+
+    public int getTemplateCacheSize() {
+        return templateCacheSize;
+    }
+
+    /**
+     * Sets the maximum of cached templates.
+     *
+     * @param templateCacheSize The maximum of cached templates. Zero disables the cache.
+     */
+    public void setTemplateCacheSize(final int templateCacheSize) {
+        synchronized (templates) {
+            this.templateCacheSize = templateCacheSize;
+            while (templates.size() > Math.max(templateCacheSize, 0)) {
+                templates.remove(templates.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Discards the cached templates.
+     */
+    public void clearTemplateCache() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
     /**
      * Sets the map of utility objects, to be used across the templates.
      * <p/>
@@ -147,6 +315,7 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      */
     public final void setTools(final Map<String, Object> tools) {
         this.tools = tools;
+        this.toolsContext = null;
     }
 
     /**
@@ -160,21 +329,36 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
             tools = new HashMap<String, Object>();
         }
         tools.put(toolName, toolValue);
+        toolsContext = null;
     }
 
     /**
-     * Creates and returns a new velocity context.
+     * Creates and returns a new velocity context, with the params, chained to the shared context of the tools.
      *
      * @param params Params to be attached on the context.
      * @return The new velocity context.
      */
     protected Context getContext(final Map<String, P> params) {
-        VelocityContext context = new VelocityContext();
-        putOnContext(context, tools);
+        VelocityContext context = new VelocityContext(getToolsContext());
         putOnContext(context, params);
         return context;
     }
 
+    /**
+     * Returns the context of the tools, shared by the processings. It is rebuilt when the tools are set or added.
+     *
+     * @return The context of the tools.
+     */
+    protected final Context getToolsContext() {
+        Context context = toolsContext;
+        if (context == null) {
+            context = new VelocityContext();
+            putOnContext(context, tools);
+            toolsContext = context;
+        }
+        return context;
+    }
+
     /**
      * Attach the map of objects to the given context.
      *
@@ -195,7 +379,9 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      * @return The configured input encoding.
      */
     protected String getInputEncoding() {
-        return engine.getProperty("input.encoding").toString();
+        final Object encoding = engine.getProperty("input.encoding");
+        // not set until the engine is initialized
+        return (encoding != null) ? encoding.toString() : RuntimeConstants.ENCODING_DEFAULT;
     }
 
     /**
@@ -204,7 +390,9 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
      * @return The configured output encoding.
      */
     protected String getOutputEncoding() {
-        return engine.getProperty("output.encoding").toString();
+        final Object encoding = engine.getProperty("output.encoding");
+        // not set until the engine is initialized
+        return (encoding != null) ? encoding.toString() : RuntimeConstants.ENCODING_DEFAULT;
     }
 
     /**
@@ -224,4 +412,15 @@ public class ConfigurableVelocityProcessor<P> implements VelocityProcessor<P> {
     protected Charset getOutputCharset() {
         return Charset.forName(getOutputEncoding());
     }
+
+    private static final class CachedTemplate {
+
+        private final Template template;
+        private final long lastModified;
+
+        CachedTemplate(final Template template, final long lastModified) {
+            this.template = template;
+            this.lastModified = lastModified;
+        }
+    }
 }
@@ -17,6 +17,7 @@ package br.ojimarcius.commons.velocity;
 import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.Writer;
 import java.net.URL;
 import java.util.Map;
 
@@ -56,6 +57,15 @@ public interface VelocityProcessor<P> {
      */
     public String process(final URL url, final Map<String, P> params);
 
+    /**
+     * Process the contents of the template stored on the given URL, writing the result to the given writer.
+     *
+     * @param url    The URL pointing to the resource containing the template.
+     * @param params The params to be used on the evaluation of the template.
+     * @param out    The writer of the processed template.
+     */
+    public void process(final URL url, final Map<String, P> params, final Writer out);
+
     /**
      * Process the contents of the template pointed by the given stream.
      *
@@ -82,4 +92,13 @@ public interface VelocityProcessor<P> {
      * @return The contents of the processed velocity template.
      */
     public String process(final CharSequence templateSource, final Map<String, P> params);
+
+    /**
+     * Process the given template, writing the result to the given writer.
+     *
+     * @param templateSource The template to be processed.
+     * @param params         The params to be used on the evaluation of the template.
+     * @param out            The writer of the processed template.
+     */
+    public void process(final CharSequence templateSource, final Map<String, P> params, final Writer out);
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.mail;
+
+import br.ojimarcius.commons.BaseTest;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmailOutboxTest extends BaseTest {
+
+    private File spool;
+
+    @Before
+    public void setUp() throws Exception {
+        spool = File.createTempFile("outbox", ".spool");
+        spool.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        spool.delete();
+        tempSpool().delete();
+    }
+
+    @Test
+    public void testEnqueue() throws Exception {
+        final RecordingSender sender = new RecordingSender(0);
+        final EmailOutbox outbox = new EmailOutbox(sender, spool);
+        outbox.setMaxMessagesPerSecond(200d);
+        outbox.start();
+        try {
+            long t0 = System.currentTimeMillis();
+            for (int i = 0; i < 40; i++) {
+                outbox.enqueue(newEmail(), Collections.<String, Object>singletonMap("i", i));
+            }
+            long t1 = System.currentTimeMillis();
+            infoTime("40 e-mails enqueued in {0} msecs", t0, t1);
+            awaitSent(outbox, 40);
+            long t2 = System.currentTimeMillis();
+            infoTime("40 e-mails sent at 200/s in {0} msecs", t0, t2);
+            assertTrue(t2 - t0 >= 150L);
+            assertEquals(40, sender.sent.size());
+            assertEquals(0, outbox.getPendingCount());
+        } finally {
+            outbox.stop(1000L);
+        }
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        final EmailOutbox failing = new EmailOutbox(new RecordingSender(Integer.MAX_VALUE), spool);
+        failing.setRetryDelay(60000L);
+        failing.start();
+        for (int i = 0; i < 5; i++) {
+            failing.enqueue(newEmail(), Collections.<String, Object>singletonMap("i", i));
+        }
+        failing.stop(1000L);
+        /* a record partially written by a crash */
+        final RandomAccessFile file = new RandomAccessFile(spool, "rw");
+        try {
+            file.seek(file.length());
+            file.write(new byte[]{1, 0, 0, 0});
+        } finally {
+            file.close();
+        }
+        final RecordingSender sender = new RecordingSender(1);
+        final EmailOutbox outbox = new EmailOutbox(sender, spool);
+        outbox.setRetryDelay(10L);
+        outbox.start();
+        try {
+            awaitSent(outbox, 5);
+            assertEquals(5, sender.sent.size());
+            assertEquals(1, sender.failures);
+            final long id = outbox.enqueue(newEmail(), null);
+            assertEquals(5L, id);
+            awaitSent(outbox, 6);
+        } finally {
+            outbox.stop(1000L);
+        }
+        final EmailOutbox restarted = new EmailOutbox(sender, spool);
+        restarted.start();
+        try {
+            assertEquals(0, restarted.getPendingCount());
+        } finally {
+            restarted.stop(1000L);
+        }
+    }
+
+    @Test
+    public void testInterruptedRewrite() throws Exception {
+        final EmailOutbox failing = new EmailOutbox(new RecordingSender(Integer.MAX_VALUE), spool);
+        failing.setRetryDelay(60000L);
+        failing.start();
+        for (int i = 0; i < 3; i++) {
+            failing.enqueue(newEmail(), Collections.<String, Object>singletonMap("i", i));
+        }
+        failing.stop(1000L);
+        /* a crash after the spool was deleted: the complete temporary spool is restored */
+        assertTrue(spool.renameTo(tempSpool()));
+        assertEquals(3, startAndSend(3));
+        assertFalse(tempSpool().exists());
+        /* a crash while the temporary spool was written: it is discarded */
+        final RandomAccessFile partial = new RandomAccessFile(tempSpool(), "rw");
+        try {
+            partial.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 9});
+        } finally {
+            partial.close();
+        }
+        assertEquals(0, startAndSend(0));
+        assertFalse(tempSpool().exists());
+    }
+
+    @Test
+    public void testCompactWithPending() throws Exception {
+        final RecordingSender sender = new RecordingSender(0);
+        sender.failingSubject = "Stuck";
+        final EmailOutbox outbox = new EmailOutbox(sender, spool);
+        outbox.setRetryDelay(60000L);
+        outbox.setCompactThreshold(2048L);
+        outbox.start();
+        try {
+            final SimpleEmail stuck = newEmail();
+            stuck.setSubject("Stuck");
+            outbox.enqueue(stuck, null);
+            for (int i = 0; i < 200; i++) {
+                outbox.enqueue(newEmail(), Collections.<String, Object>singletonMap("i", i));
+                awaitSent(outbox, i + 1);
+            }
+            /* compacted while an e-mail is always pending */
+            assertEquals(1, outbox.getPendingCount());
+            assertTrue(spool.length() < 3 * 2048L);
+        } finally {
+            outbox.stop(1000L);
+        }
+        final EmailOutbox restarted = new EmailOutbox(new RecordingSender(Integer.MAX_VALUE), spool);
+        restarted.setRetryDelay(60000L);
+        restarted.start();
+        try {
+            assertEquals(1, restarted.getPendingCount());
+        } finally {
+            restarted.stop(1000L);
+        }
+    }
+
+    @Test
+    public void testFailedCompaction() throws Exception {
+        final File blocker = new File(tempSpool(), "blocker");
+        try {
+            final RecordingSender sender = new RecordingSender(0);
+            final EmailOutbox outbox = new EmailOutbox(sender, spool);
+            outbox.setCompactThreshold(0L);
+            outbox.start();
+            try {
+                /* the temporary spool can't be written: the spool is reopened after each failed compaction */
+                assertTrue(tempSpool().mkdir());
+                assertTrue(blocker.createNewFile());
+                for (int i = 0; i < 10; i++) {
+                    outbox.enqueue(newEmail(), Collections.<String, Object>singletonMap("i", i));
+                    awaitSent(outbox, i + 1);
+                    assertTrue(outbox.isStarted());
+                }
+                assertEquals(10, sender.sent.size());
+            } finally {
+                outbox.stop(1000L);
+            }
+        } finally {
+            blocker.delete();
+            tempSpool().delete();
+        }
+        assertEquals(0, startAndSend(0));
+    }
+
+    @Test
+    public void testGiveUp() throws Exception {
+        final EmailOutbox outbox = new EmailOutbox(new RecordingSender(Integer.MAX_VALUE), spool);
+        outbox.setRetryDelay(1L);
+        outbox.setMaxAttempts(2);
+        outbox.start();
+        try {
+            outbox.enqueue(newEmail(), null);
+            final long limit = System.currentTimeMillis() + 5000L;
+            while (outbox.getFailedCount() == 0 && System.currentTimeMillis() < limit) {
+                Thread.sleep(5L);
+            }
+            assertEquals(1L, outbox.getFailedCount());
+            assertEquals(0, outbox.getPendingCount());
+        } finally {
+            outbox.stop(1000L);
+        }
+    }
+
+    private int startAndSend(final int count) throws Exception {
+        final RecordingSender sender = new RecordingSender(0);
+        final EmailOutbox outbox = new EmailOutbox(sender, spool);
+        outbox.start();
+        try {
+            awaitSent(outbox, count);
+            assertEquals(0, outbox.getPendingCount());
+            return sender.sent.size();
+        } finally {
+            outbox.stop(1000L);
+        }
+    }
+
+    private File tempSpool() {
+        return new File(spool.getPath() + ".tmp");
+    }
+
+    private static void awaitSent(final EmailOutbox outbox, final long count) throws Exception {
+        final long limit = System.currentTimeMillis() + 5000L;
+        while (outbox.getSentCount() < count && System.currentTimeMillis() < limit) {
+            Thread.sleep(5L);
+        }
+        assertEquals(count, outbox.getSentCount());
+    }
+
+    private static SimpleEmail newEmail() {
+        final SimpleEmail email = new SimpleEmail();
+        email.setFrom("sender@test.com");
+        email.setTo(new String[]{"a@test.com"});
+        email.setSubject("Test");
+        email.setRawContent("E-mail ${i}");
+        return email;
+    }
+
+    /**
+     * A sender that records the contents, failing the first sendings and the ones with the failing subject.
+     */
+    private static final class RecordingSender extends EmailSender {
+
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        private final int failuresToThrow;
+        volatile int failures;
+        /**
+         * The subject of the e-mails that always fail.
+         */
+        volatile String failingSubject;
+
+        RecordingSender(final int failuresToThrow) {
+            this.failuresToThrow = failuresToThrow;
+        }
+
+        @Override
+        public synchronized void send(final Email email, final Map<String, Object> params) throws Exception {
+            if (failures < failuresToThrow || email.getSubject().equals(failingSubject)) {
+                failures++;
+                throw new IllegalStateException("Failing on purpose");
+            }
+            sent.add(email.getContent(params));
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.mail;
+
+import br.ojimarcius.commons.BaseTest;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.MessagingException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmailSenderTest extends BaseTest {
+
+    private SmtpStub smtp;
+    private Properties properties;
+    private EmailSender sender;
+
+    @Before
+    public void setUp() throws Exception {
+        smtp = new SmtpStub();
+        properties = new Properties();
+        properties.setProperty("mail.smtp.host", "localhost");
+        properties.setProperty("mail.smtp.port", Integer.toString(smtp.getPort()));
+        sender = new EmailSender();
+        sender.setJavamailProperties(properties);
+        sender.setRetryDelay(10L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sender.close();
+        smtp.close();
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        final SimpleEmail email = newEmail();
+        email.setTo(new String[]{"a@test.com"});
+        email.setCc(new String[]{"b@test.com"});
+        sender.send(email, Collections.<String, Object>singletonMap("name", "A"));
+        sender.send(email, Collections.<String, Object>singletonMap("name", "B"));
+        assertEquals(2, smtp.messages.size());
+        assertTrue(smtp.messages.get(1).contains("Hello B!"));
+        assertEquals(1, smtp.connections.get());
+        assertEquals(2L, sender.getSentCount());
+    }
+
+    @Test
+    public void testSendSingleAttempt() throws Exception {
+        smtp.drops.set(1);
+        final SimpleEmail email = newEmail();
+        email.setTo(new String[]{"a@test.com"});
+        try {
+            sender.send(email, null);
+            fail("The dropped connection was retried");
+        } catch (MessagingException ex) {
+            // expected
+        }
+        assertEquals(0L, sender.getRetryCount());
+        assertEquals(1L, sender.getFailedCount());
+        sender.send(email, null);
+        assertEquals(1, smtp.messages.size());
+    }
+
+    @Test
+    public void testConfigChange() throws Exception {
+        final SimpleEmail email = newEmail();
+        email.setTo(new String[]{"a@test.com"});
+        sender.send(email, null);
+        final SmtpStub other = new SmtpStub();
+        try {
+            // the changed configs are used by the next sending
+            properties.setProperty("mail.smtp.port", Integer.toString(other.getPort()));
+            sender.send(email, null);
+            assertEquals(1, smtp.messages.size());
+            assertEquals(1, other.messages.size());
+        } finally {
+            sender.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void testSendToEach() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            sender.setExecutor(executor);
+            sender.setMessagesPerConnection(50);
+            final Map<String, Map<String, Object>> recipients = new LinkedHashMap<String, Map<String, Object>>();
+            for (int i = 0; i < 199; i++) {
+                final Map<String, Object> params = new HashMap<String, Object>();
+                params.put("name", "r" + i);
+                recipients.put("r" + i + "@test.com", params);
+            }
+            recipients.put("reject@test.com", null);
+            long t0 = System.currentTimeMillis();
+            final EmailSendStats stats = sender.sendToEach(newEmail(), recipients);
+            long t1 = System.currentTimeMillis();
+            infoTime("200 e-mails sent in {0} msecs", t0, t1);
+            assertEquals(199, stats.getSent());
+            assertEquals(1, stats.getFailed());
+            assertEquals(4, stats.getConnections());
+            assertEquals(4, smtp.connections.get());
+            assertEquals(199, smtp.messages.size());
+            boolean found = false;
+            for (String message : smtp.messages) {
+                found |= message.contains("Hello r7!") && message.contains("To: r7@test.com");
+            }
+            assertTrue(found);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        smtp.drops.set(1);
+        final List<Email> emails = new ArrayList<Email>();
+        for (int i = 0; i < 3; i++) {
+            final SimpleEmail email = newEmail();
+            email.setTo(new String[]{"a" + i + "@test.com"});
+            emails.add(email);
+        }
+        final EmailSendStats stats = sender.sendAll(emails, null);
+        assertEquals(3, stats.getSent());
+        assertEquals(1, stats.getRetries());
+        assertEquals(2, stats.getConnections());
+        assertTrue(smtp.messages.get(0).contains("Hello ${name}!"));
+    }
+
+    private static SimpleEmail newEmail() {
+        final SimpleEmail email = new SimpleEmail();
+        email.setFrom("sender@test.com");
+        email.setSubject("Test");
+        email.setContentType("text/plain");
+        email.setRawContent("Hello ${name}!");
+        return email;
+    }
+
+    /**
+     * A minimal SMTP server, accepting everything but the "reject@" addresses.
+     */
+    private static final class SmtpStub implements Runnable {
+
+        private final ServerSocket server;
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger connections = new AtomicInteger();
+        /**
+         * Number of connections to drop on the MAIL command.
+         */
+        final AtomicInteger drops = new AtomicInteger();
+
+        SmtpStub() throws Exception {
+            server = new ServerSocket(0);
+            final Thread thread = new Thread(this, "smtp-stub");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        void close() throws Exception {
+            server.close();
+        }
+
+        @Override
+        public void run() {
+            while (!server.isClosed()) {
+                try {
+                    final Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            handle(socket);
+                        }
+                    }, "smtp-stub-connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (Exception ex) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(final Socket socket) {
+            try {
+                final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+                reply(out, "220 localhost");
+                String line = in.readLine();
+                while (line != null) {
+                    final String command = line.toUpperCase();
+                    if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        break;
+                    } else if (command.startsWith("MAIL") && drops.getAndDecrement() > 0) {
+                        break;
+                    } else if (command.startsWith("RCPT") && command.contains("REJECT@")) {
+                        reply(out, "550 rejected");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 go ahead");
+                        final StringBuilder message = new StringBuilder();
+                        for (line = in.readLine(); line != null && !line.equals("."); line = in.readLine()) {
+                            message.append(line).append('\n');
+                        }
+                        messages.add(message.toString());
+                        reply(out, "250 queued");
+                    } else {
+                        reply(out, "250 ok");
+                    }
+                    line = in.readLine();
+                }
+                socket.close();
+            } catch (Exception ex) {
+                // connection closed by the client
+            }
+        }
+
+        private static void reply(final Writer out, final String reply) throws Exception {
+            out.write(reply + "\r\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.reflect;
+
+import br.ojimarcius.commons.BaseTest;
+import br.ojimarcius.commons.util.ReflectionUtils;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ObjectCopierTest extends BaseTest {
+
+    @Test
+    public void testCopy() {
+        final Bean original = newBean();
+        final Bean shallow = ObjectCopier.of(Bean.class).copy(original);
+        assertEquals(original.id, shallow.id);
+        assertEquals(original.ratio, shallow.ratio, 0d);
+        assertEquals(original.active, shallow.active);
+        assertEquals(original.letter, shallow.letter);
+        assertSame(original.name, shallow.name);
+        assertSame(original.date, shallow.date);
+        assertSame(original.child, shallow.child);
+        assertEquals(0, shallow.cache);
+        final Bean deep = ObjectCopier.of(Bean.class).copy(original, ObjectCopier.Mode.DEEP);
+        assertEquals(original.id, deep.id);
+        assertSame(original.name, deep.name);
+        assertEquals(original.date, deep.date);
+        assertNotSame(original.date, deep.date);
+        assertArrayEquals(original.values, deep.values);
+        assertNotSame(original.values, deep.values);
+        assertEquals(original.tags, deep.tags);
+        assertNotSame(original.tags, deep.tags);
+        assertSame(original.fixed, deep.fixed);
+        assertNotSame(original.child, deep.child);
+        assertEquals(original.child.id, deep.child.id);
+        assertSame(deep, deep.child.child);
+        final Bean target = new Bean();
+        assertSame(target, ObjectCopier.of(Bean.class).copyInto(original, target));
+        assertSame(original.child, target.child);
+        assertEquals(original.id, ReflectionUtils.cloneObject(original).id);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ObjectCopier.clearCache();
+        final ObjectCopier<Bean> copier = ObjectCopier.of(Bean.class);
+        ObjectCopier.of(BaseBean.class);
+        final URL[] classpath = {BaseBean.class.getProtectionDomain().getCodeSource().getLocation()};
+        Class<?> last = null;
+        for (int i = 0; i < ObjectCopier.MAX_CACHED_COPIERS - 1; i++) {
+            // the same class loaded again, as when classes are reloaded
+            last = new URLClassLoader(classpath, null).loadClass(BaseBean.class.getName());
+            ObjectCopier.of(last);
+            assertSame(copier, ObjectCopier.of(Bean.class));
+        }
+        assertTrue(ObjectCopier.isCached(Bean.class));
+        assertTrue(ObjectCopier.isCached(last));
+        assertFalse(ObjectCopier.isCached(BaseBean.class));
+        ObjectCopier.clearCache();
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        final Bean original = newBean();
+        final int copies = 200000;
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < copies; i++) {
+            reflectiveCopy(original);
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("200000 reflective field loop copies in {0} msecs", t0, t1);
+        final ObjectCopier<Bean> copier = ObjectCopier.of(Bean.class);
+        long t2 = System.currentTimeMillis();
+        for (int i = 0; i < copies; i++) {
+            copier.copy(original);
+        }
+        long t3 = System.currentTimeMillis();
+        infoTime("200000 ObjectCopier copies in {0} msecs", t2, t3);
+        assertEquals(reflectiveCopy(original).id, copier.copy(original).id);
+    }
+
+    /**
+     * The former ReflectionUtils.cloneObject: instantiate and walk the fields on every copy.
+     */
+    private static Bean reflectiveCopy(final Bean original) throws Exception {
+        final Bean clone = ReflectionUtils.newInstanceOf(Bean.class);
+        for (Field field : ReflectionUtils.getFields(original, false, false, false)) {
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
+            field.set(clone, field.get(original));
+        }
+        return clone;
+    }
+
+    private static Bean newBean() {
+        final Bean bean = new Bean();
+        bean.id = 42L;
+        bean.ratio = 0.5d;
+        bean.active = true;
+        bean.letter = 'x';
+        bean.name = "bean";
+        bean.date = new GregorianCalendar(2014, Calendar.JANUARY, 1);
+        bean.values = new int[]{1, 2, 3};
+        bean.tags = new ArrayList<String>(Arrays.asList("a", "b"));
+        bean.fixed = Collections.unmodifiableList(bean.tags);
+        bean.cache = 7;
+        bean.child = new Bean();
+        bean.child.id = 43L;
+        bean.child.child = bean;
+        return bean;
+    }
+
+    public static class Bean extends BaseBean {
+
+        private double ratio;
+        private boolean active;
+        private char letter;
+        private String name;
+        private Calendar date;
+        private int[] values;
+        private List<String> tags;
+        private List<String> fixed;
+        private transient int cache;
+        private Bean child;
+    }
+
+    public static class BaseBean {
+
+        protected long id;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.util;
+
+import br.ojimarcius.commons.BaseTest;
+import br.ojimarcius.commons.temporal.HolidayCalendar;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DateUtilsTest extends BaseTest {
+
+    @Test
+    public void testIsBusinessDay() {
+        long t0 = System.currentTimeMillis();
+        final Calendar c = new GregorianCalendar(2010, Calendar.JANUARY, 1, 10, 30);
+        final Calendar end = new GregorianCalendar(2016, Calendar.JANUARY, 1);
+        while (c.before(end)) {
+            final int year = c.get(Calendar.YEAR);
+            final boolean expected = DateUtils.isBusinessDay(c, DateUtils.getBrasilianHolidays(year));
+            assertEquals("Failed at " + c.getTime(), expected, DateUtils.isBusinessDay(c));
+            assertEquals("Failed at " + c.getTime(), DateUtils.isHoliday(c, DateUtils.getBrasilianHolidays(year)), DateUtils.isHoliday(c));
+            c.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        assertFalse(DateUtils.isBusinessDay(null));
+        long t1 = System.currentTimeMillis();
+        infoTime("isBusinessDay() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testAddBusinessDays() {
+        long t0 = System.currentTimeMillis();
+        final Calendar start = new GregorianCalendar(2013, Calendar.DECEMBER, 20, 15, 45);
+        for (int days = -800; days <= 800; days += 7) {
+            final Calendar expected = (Calendar) start.clone();
+            int remaining = Math.abs(days);
+            while (remaining > 0) {
+                expected.add(Calendar.DAY_OF_MONTH, days > 0 ? 1 : -1);
+                if (DateUtils.isBusinessDay(expected, DateUtils.getBrasilianHolidays(expected.get(Calendar.YEAR)))) {
+                    remaining--;
+                }
+            }
+            assertEquals("Failed adding " + days, expected.getTime(), DateUtils.addBusinessDays(start, days).getTime());
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("addBusinessDays() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testCountBusinessDaysBetween() {
+        final Calendar start = new GregorianCalendar(2012, Calendar.FEBRUARY, 17);
+        final Calendar end = (Calendar) start.clone();
+        int expected = 1; // friday
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Failed at " + end.getTime(), expected, DateUtils.countBusinessDaysBetween(start, end));
+            assertEquals("Failed at " + end.getTime(), expected, DateUtils.countBusinessDaysBetween(end, start));
+            end.add(Calendar.DAY_OF_MONTH, 1);
+            if (DateUtils.isBusinessDay(end, DateUtils.getBrasilianHolidays(end.get(Calendar.YEAR)))) {
+                expected++;
+            }
+        }
+    }
+
+    @Test
+    public void testCompare() {
+        long t0 = System.currentTimeMillis();
+        final TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+        final TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        final Calendar base = new GregorianCalendar(saoPaulo);
+        base.set(2013, Calendar.OCTOBER, 19, 0, 0, 0);
+        for (int i = 0; i < 2000; i++) {
+            final Calendar c1 = (Calendar) base.clone();
+            c1.add(Calendar.MINUTE, NumberUtils.randomInteger(0, 4 * 24 * 60));
+            final Calendar c2 = new GregorianCalendar((i % 2 == 0) ? saoPaulo : tokyo);
+            c2.setTimeInMillis(base.getTimeInMillis() + NumberUtils.randomInteger(0, 4 * 24 * 60) * 60000L);
+            final Date d1 = c1.getTime();
+            assertEquals(Integer.signum(c1.compareTo(c2)), DateUtils.compare(c1, c2));
+            assertEquals(Integer.signum(DateUtils.truncatedCompareTo(c1, c2, Calendar.DAY_OF_MONTH)), DateUtils.compare(c1, c2, true));
+            assertEquals(0, DateUtils.compare(d1, c1.getTime(), false));
+            assertEquals(expectedDifference(c1, c2, false), DateUtils.getDifferenceInDays(c1, c2, false));
+            assertEquals(expectedDifference(c1, c2, true), DateUtils.getDifferenceInDays(c1, c2, true));
+        }
+        assertEquals(0, DateUtils.compare(null, null));
+        assertEquals(Integer.valueOf(1), DateUtils.getQuantDaysBetween(base, base));
+        long t1 = System.currentTimeMillis();
+        infoTime("compare() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testGetOffset() {
+        final TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+        final long summer = new GregorianCalendar(2014, Calendar.JANUARY, 15).getTimeInMillis();
+        final long winter = new GregorianCalendar(2014, Calendar.JULY, 15).getTimeInMillis();
+        assertEquals(saoPaulo.getOffset(summer), EpochUtils.getOffset(summer, saoPaulo));
+        assertEquals(saoPaulo.getOffset(winter), EpochUtils.getOffset(winter, saoPaulo));
+        // zones reusing the ID with other rules are not looked up on the cached table
+        final TimeZone custom = new SimpleTimeZone(-5 * 60 * 60 * 1000, "America/Sao_Paulo");
+        assertEquals(-5 * 60 * 60 * 1000, EpochUtils.getOffset(summer, custom));
+        final TimeZone changed = (TimeZone) saoPaulo.clone();
+        changed.setRawOffset(2 * 60 * 60 * 1000);
+        assertEquals(changed.getOffset(winter), EpochUtils.getOffset(winter, changed));
+        assertEquals(saoPaulo.getOffset(winter), EpochUtils.getOffset(winter, saoPaulo));
+        // unknown IDs
+        final TimeZone unknown = new SimpleTimeZone(3 * 60 * 60 * 1000, "Nowhere/Custom");
+        assertEquals(3 * 60 * 60 * 1000, EpochUtils.getOffset(winter, unknown));
+        assertEquals(0, EpochUtils.getOffset(winter, new SimpleTimeZone(0, "Nowhere/Custom")));
+    }
+
+    /**
+     * The previous, calendar based, implementation of getDifferenceInDays.
+     */
+    private static BigDecimal expectedDifference(final Object date1, final Object date2, final boolean ignoreTimeInfo) {
+        Calendar c1 = DateUtils.toUtcCalendar(date1);
+        Calendar c2 = DateUtils.toUtcCalendar(date2);
+        if (ignoreTimeInfo) {
+            c1 = DateUtils.getTimeTruncatedInternal(c1);
+            c2 = DateUtils.getTimeTruncatedInternal(c2);
+        }
+        final BigDecimal res = new BigDecimal(Math.abs(c1.getTimeInMillis() - c2.getTimeInMillis()));
+        return NumberUtils.round(res.divide(new BigDecimal(DateUtils.MILLIS_PER_DAY), MathContext.DECIMAL128), 2);
+    }
+
+    @Test
+    public void testCustomHolidayCalendar() {
+        final HolidayCalendar rio = new HolidayCalendar(DateUtils.BRASILIAN_HOLIDAYS)
+                .addFixedHoliday(Calendar.JANUARY, 20)
+                .addHoliday(new GregorianCalendar(2014, Calendar.JUNE, 12));
+        assertTrue(DateUtils.isBusinessDay(new GregorianCalendar(2014, Calendar.JANUARY, 20)));
+        assertFalse(DateUtils.isBusinessDay(new GregorianCalendar(2014, Calendar.JANUARY, 20), rio));
+        assertFalse(rio.isBusinessDay(new GregorianCalendar(2014, Calendar.JUNE, 12)));
+        assertTrue(rio.isBusinessDay(new GregorianCalendar(2015, Calendar.JUNE, 12)));
+        assertTrue(rio.isHoliday(new GregorianCalendar(2014, Calendar.DECEMBER, 25)));
+        assertEquals(new GregorianCalendar(2014, Calendar.JANUARY, 21).getTime(),
+                     rio.addBusinessDays(new GregorianCalendar(2014, Calendar.JANUARY, 17), 1).getTime());
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.util;
+
+import br.ojimarcius.commons.BaseTest;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageUtilsTest extends BaseTest {
+
+    private static final byte[] ICC_SIGNATURE = {'I', 'C', 'C', '_', 'P', 'R', 'O', 'F', 'I', 'L', 'E', 0};
+    private File source;
+    private BufferedImage sourceImage;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        sourceImage = sampleImage(97, 75);
+        source = File.createTempFile("tiles", ".png");
+        ImageIO.write(sourceImage, "png", source);
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        source.delete();
+    }
+
+    @Test
+    public void testInspectJpeg() {
+        long t0 = System.currentTimeMillis();
+        assertNull(ImageUtils.inspectJpeg(null));
+        assertNull(ImageUtils.inspectJpeg(new byte[0]));
+        assertNull(ImageUtils.inspectJpeg(ImageUtils.getPngBytes(sampleImage(16, 16))));
+        // a regular (YCbCr) JPEG, written by ImageIO
+        final byte[] jpeg = ImageUtils.getJpegBytes(sampleImage(64, 48));
+        final ImageUtils.JpegInfo info = ImageUtils.inspectJpeg(jpeg);
+        assertNotNull(info);
+        assertEquals(3, info.getComponents());
+        assertFalse(info.isCmyk());
+        assertFalse(info.isAdobeMarked());
+        assertNull(info.getIccProfile());
+        assertEquals(ImageUtils.ColorSpace.RGB, info.getColorSpace());
+        assertTrue(ImageUtils.isCommonRGB(jpeg));
+        long t1 = System.currentTimeMillis();
+        infoTime("inspectJpeg() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testInspectCmykJpeg() {
+        long t0 = System.currentTimeMillis();
+        final byte[] profile = new byte[300];
+        for (int i = 0; i < profile.length; i++) {
+            profile[i] = (byte) i;
+        }
+        // headers of an Adobe YCCK JPEG, with the ICC profile split in two APP2 chunks (out of order)
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 0xff, 0xd8);
+        segment(out, 0xee, new byte[]{'A', 'd', 'o', 'b', 'e', 0, 100, 0, 0, 0, 0, 2});
+        segment(out, 0xe2, iccChunk(2, 2, profile, 200, 100));
+        // fill byte before a marker
+        write(out, 0xff);
+        segment(out, 0xe2, iccChunk(1, 2, profile, 0, 200));
+        segment(out, 0xc0, new byte[]{8, 0, 16, 0, 16, 4, 1, 0x11, 0, 2, 0x11, 0, 3, 0x11, 0, 4, 0x11, 0});
+        write(out, 0xff, 0xda, 0, 2, 1, 2, 3);
+        final ImageUtils.JpegInfo info = ImageUtils.inspectJpeg(out.toByteArray());
+        assertNotNull(info);
+        assertEquals(4, info.getComponents());
+        assertTrue(info.isCmyk());
+        assertTrue(info.isAdobeMarked());
+        assertEquals(2, info.getAdobeTransform());
+        assertEquals(ImageUtils.ColorSpace.YCCK, info.getColorSpace());
+        assertArrayEquals(profile, info.getIccProfile());
+        // a missing chunk drops the profile, not the rest of the information
+        final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        write(partial, 0xff, 0xd8);
+        segment(partial, 0xe2, iccChunk(1, 2, profile, 0, 200));
+        segment(partial, 0xc0, new byte[]{8, 0, 16, 0, 16, 4});
+        final ImageUtils.JpegInfo partialInfo = ImageUtils.inspectJpeg(partial.toByteArray());
+        assertNull(partialInfo.getIccProfile());
+        assertFalse(partialInfo.isAdobeMarked());
+        assertEquals(ImageUtils.ColorSpace.CMYK, partialInfo.getColorSpace());
+        // a truncated segment keeps whatever was found before it
+        final byte[] truncated = out.toByteArray();
+        final byte[] head = new byte[20];
+        System.arraycopy(truncated, 0, head, 0, head.length);
+        final ImageUtils.JpegInfo headInfo = ImageUtils.inspectJpeg(head);
+        assertTrue(headInfo.isAdobeMarked());
+        assertEquals(0, headInfo.getComponents());
+        long t1 = System.currentTimeMillis();
+        infoTime("inspectJpeg() of CMYK headers tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testReaderPool() throws IOException {
+        long t0 = System.currentTimeMillis();
+        // one more than the pool keeps, so the pool is empty afterwards
+        final List<ImageReader> readers = new ArrayList<ImageReader>();
+        for (int i = 0; i <= ImageUtils.MAX_POOLED_PER_FORMAT; i++) {
+            readers.add(ImageUtils.borrowImageReader(ImageUtils.ImageFormat.PNG));
+        }
+        final ImageInputStream input = ImageIO.createImageInputStream(source);
+        try {
+            readers.get(0).setInput(input);
+            for (ImageReader reader : readers) {
+                ImageUtils.releaseImageReader(ImageUtils.ImageFormat.PNG, reader);
+            }
+        } finally {
+            ImageUtils.closeQuietly(input);
+        }
+        // given back reset, in order, and the one past the limit disposed
+        assertNull(readers.get(0).getInput());
+        for (int i = 0; i < ImageUtils.MAX_POOLED_PER_FORMAT; i++) {
+            assertSame(readers.get(i), ImageUtils.borrowImageReader(ImageUtils.ImageFormat.PNG));
+        }
+        final ImageReader created = ImageUtils.borrowImageReader(ImageUtils.ImageFormat.PNG);
+        assertNotNull(created);
+        assertFalse(readers.contains(created));
+        // a pooled reader decodes as a new one
+        ImageUtils.releaseImageReader(ImageUtils.ImageFormat.PNG, readers.get(0));
+        assertSamePixels(sourceImage, 0, 0, ImageUtils.readImage(ImageUtils.getPngBytes(sourceImage)));
+        assertNull(ImageUtils.borrowImageReader(null));
+        long t1 = System.currentTimeMillis();
+        infoTime("reader pool tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testWriterPool() {
+        long t0 = System.currentTimeMillis();
+        final List<ImageWriter> writers = new ArrayList<ImageWriter>();
+        for (int i = 0; i <= ImageUtils.MAX_POOLED_PER_FORMAT; i++) {
+            writers.add(ImageUtils.borrowImageWriter(ImageUtils.ImageFormat.BMP));
+        }
+        writers.get(0).setOutput(ImageUtils.getImageOutputStream(new ByteArrayOutputStream()));
+        for (ImageWriter writer : writers) {
+            ImageUtils.releaseImageWriter(ImageUtils.ImageFormat.BMP, writer);
+        }
+        assertNull(writers.get(0).getOutput());
+        for (int i = 0; i < ImageUtils.MAX_POOLED_PER_FORMAT; i++) {
+            assertSame(writers.get(i), ImageUtils.borrowImageWriter(ImageUtils.ImageFormat.BMP));
+        }
+        final ImageWriter created = ImageUtils.borrowImageWriter(ImageUtils.ImageFormat.BMP);
+        assertNotNull(created);
+        assertFalse(writers.contains(created));
+        // the same bytes from a pooled writer
+        final byte[] bytes = ImageUtils.getBmpBytes(sourceImage);
+        ImageUtils.releaseImageWriter(ImageUtils.ImageFormat.BMP, writers.get(0));
+        assertArrayEquals(bytes, ImageUtils.getBmpBytes(sourceImage));
+        assertNull(ImageUtils.borrowImageWriter(null));
+        long t1 = System.currentTimeMillis();
+        infoTime("writer pool tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testJpegWriteParam() {
+        long t0 = System.currentTimeMillis();
+        final ImageWriteParam param = ImageUtils.getJpegWriteParam(0.5F);
+        assertSame(param, ImageUtils.getJpegWriteParam(0.5F));
+        assertEquals(ImageWriteParam.MODE_EXPLICIT, param.getCompressionMode());
+        assertEquals(0.5F, param.getCompressionQuality(), 0F);
+        final ImageWriteParam other = ImageUtils.getJpegWriteParam(0.9F);
+        assertNotSame(param, other);
+        assertEquals(0.9F, other.getCompressionQuality(), 0F);
+        // more distinct qualities than the cache keeps
+        for (int i = 0; i <= 100; i++) {
+            assertEquals(i / 100F, ImageUtils.getJpegWriteParam(i / 100F).getCompressionQuality(), 0F);
+        }
+        try {
+            ImageUtils.getJpegWriteParam(1.5F);
+            fail("Quality out of range");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        // the shared params are not changed by the writes
+        final BufferedImage image = noiseImage(64, 64);
+        final byte[] low = ImageUtils.getJpegBytes(image, 0.1F);
+        final byte[] high = ImageUtils.getJpegBytes(image, 0.9F);
+        assertTrue(low.length < high.length);
+        assertArrayEquals(low, ImageUtils.getJpegBytes(image, 0.1F));
+        assertEquals(0.1F, ImageUtils.getJpegWriteParam(0.1F).getCompressionQuality(), 0F);
+        long t1 = System.currentTimeMillis();
+        infoTime("getJpegWriteParam() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testGetImageBytes() throws Exception {
+        long t0 = System.currentTimeMillis();
+        // bigger than the initial buffer
+        final BufferedImage image = noiseImage(300, 300);
+        final byte[] bytes = ImageUtils.getPngBytes(image);
+        assertTrue(bytes.length > 64 * IOUtils.KIBI);
+        assertSamePixels(image, 0, 0, ImageUtils.readImage(bytes));
+        final List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+        for (int i = 0; i < 6; i++) {
+            results.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return ImageUtils.getPngBytes(image);
+                }
+            }));
+        }
+        for (Future<byte[]> result : results) {
+            assertArrayEquals(bytes, result.get());
+        }
+        assertNull(ImageUtils.getPngBytes(null));
+        long t1 = System.currentTimeMillis();
+        infoTime("getImageBytes() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testProcessTiles() throws IOException {
+        long t0 = System.currentTimeMillis();
+        for (ExecutorService tileExecutor : new ExecutorService[]{null, executor}) {
+            final BufferedImage canvas = new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB);
+            final AtomicInteger tiles = new AtomicInteger();
+            final ImageInputStream input = ImageIO.createImageInputStream(source);
+            try {
+                ImageUtils.processTiles(input, new ImageUtils.ImagePoint(10, 5), new ImageUtils.ImagePoint(90, 65), 32, 16, tileExecutor,
+                                        new ImageUtils.TileConsumer() {
+                    @Override
+                    public void begin(final int width, final int height) {
+                        assertEquals(80, width);
+                        assertEquals(60, height);
+                    }
+
+                    @Override
+                    public synchronized void accept(final int x, final int y, final BufferedImage tile) {
+                        assertTrue(tile.getWidth() <= 32 && tile.getHeight() <= 16);
+                        tiles.incrementAndGet();
+                        canvas.getGraphics().drawImage(tile, x, y, null);
+                    }
+                });
+            } finally {
+                ImageUtils.closeQuietly(input);
+            }
+            // 3 columns x 4 rows
+            assertEquals(12, tiles.get());
+            assertSamePixels(sourceImage, 10, 5, canvas);
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("processTiles() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testProcessTiled() throws IOException {
+        long t0 = System.currentTimeMillis();
+        for (ImageUtils.ImageFormat format : new ImageUtils.ImageFormat[]{ImageUtils.ImageFormat.PNG, ImageUtils.ImageFormat.BMP}) {
+            for (ExecutorService tileExecutor : new ExecutorService[]{null, executor}) {
+                final CountingOperation counter = new CountingOperation();
+                final File target = File.createTempFile("tiled", "." + format.getExtension());
+                try {
+                    ImageUtils.processTiled(source, ImageIO.createImageOutputStream(target), format, new ImageUtils.ImagePoint(3, 4),
+                                            null, 10, tileExecutor, counter);
+                    // each strip decoded once, in order
+                    assertEquals(8, counter.strips.get());
+                    final BufferedImage result = ImageIO.read(target);
+                    assertEquals(94, result.getWidth());
+                    assertEquals(71, result.getHeight());
+                    assertSamePixels(sourceImage, 3, 4, result);
+                } finally {
+                    target.delete();
+                }
+            }
+        }
+        // JPEG is drawn on a canvas
+        final File target = File.createTempFile("tiled", ".jpg");
+        try {
+            ImageUtils.processTiled(source, ImageIO.createImageOutputStream(target), ImageUtils.ImageFormat.JPEG, null,
+                                    null, 16, executor, ImageUtils.contrastOperation(1F));
+            final BufferedImage result = ImageIO.read(target);
+            assertEquals(97, result.getWidth());
+            assertEquals(75, result.getHeight());
+        } finally {
+            target.delete();
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("processTiled() tested in {0} msecs", t0, t1);
+    }
+
+    private static void assertSamePixels(final BufferedImage expected, final int offsetX, final int offsetY,
+                                         final BufferedImage actual) {
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y, expected.getRGB(x + offsetX, y + offsetY) & 0xffffff,
+                             actual.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    /**
+     * Counts the processed strips.
+     */
+    private static final class CountingOperation implements ImageUtils.TileOperation {
+
+        private final AtomicInteger strips = new AtomicInteger();
+
+        @Override
+        public BufferedImage apply(final BufferedImage tile) {
+            strips.incrementAndGet();
+            return tile;
+        }
+    }
+
+    static BufferedImage sampleImage(final int width, final int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, width / 2, height / 2);
+        g.setColor(Color.RED);
+        g.fillRect(width / 2, height / 2, width - width / 2, height - height / 2);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage noiseImage(final int width, final int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] iccChunk(final int sequence, final int count, final byte[] profile, final int offset,
+                                   final int length) {
+        final byte[] chunk = new byte[ICC_SIGNATURE.length + 2 + length];
+        System.arraycopy(ICC_SIGNATURE, 0, chunk, 0, ICC_SIGNATURE.length);
+        chunk[ICC_SIGNATURE.length] = (byte) sequence;
+        chunk[ICC_SIGNATURE.length + 1] = (byte) count;
+        System.arraycopy(profile, offset, chunk, ICC_SIGNATURE.length + 2, length);
+        return chunk;
+    }
+
+    private static void segment(final ByteArrayOutputStream out, final int marker, final byte[] data) {
+        final int length = data.length + 2;
+        write(out, 0xff, marker, length >> 8, length & 0xff);
+        out.write(data, 0, data.length);
+    }
+
+    private static void write(final ByteArrayOutputStream out, final int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.util;
+
+import br.ojimarcius.commons.BaseTest;
+import br.ojimarcius.commons.temporal.EpochPeriod;
+import br.ojimarcius.commons.temporal.Period;
+import br.ojimarcius.commons.temporal.PeriodIndex;
+import br.ojimarcius.commons.temporal.PeriodSet;
+import br.ojimarcius.commons.temporal.SimplePeriod;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PeriodUtilsTest extends BaseTest {
+
+    private static final Calendar BASE = new GregorianCalendar(2013, Calendar.OCTOBER, 1);
+
+    @Test
+    public void testHasConcurrence() {
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < 300; i++) {
+            final List<Period> periods = randomPeriods(NumberUtils.randomInteger(0, 12), 2000);
+            assertEquals(periods.toString(), bruteForceConcurrence(periods), PeriodUtils.hasConcurrence(periods));
+            assertEquals(periods.toString(), bruteForceConcurrence(periods), new PeriodIndex<Period>(periods).hasConcurrence());
+        }
+        final List<Period> touching = new ArrayList<Period>();
+        touching.add(period(0, 60));
+        touching.add(period(61, 120));
+        assertFalse(PeriodUtils.hasConcurrence(touching));
+        touching.add(period(120, 180));
+        assertTrue(PeriodUtils.hasConcurrence(touching));
+        final List<Period> open = new ArrayList<Period>();
+        open.add(period(0, 60));
+        open.add(new SimplePeriod(null, null));
+        assertTrue(PeriodUtils.hasConcurrence(open));
+        long t1 = System.currentTimeMillis();
+        infoTime("hasConcurrence() tested in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testFindOverlapping() {
+        final List<Period> periods = randomPeriods(500, 20000);
+        periods.add(new SimplePeriod(null, offset(100)));
+        periods.add(new SimplePeriod(offset(19000), null));
+        final PeriodIndex<Period> index = new PeriodIndex<Period>(periods);
+        for (int i = 0; i < 200; i++) {
+            final int start = NumberUtils.randomInteger(-100, 20000);
+            final Period query = period(start, start + NumberUtils.randomInteger(0, 300));
+            final List<Period> expected = new ArrayList<Period>();
+            for (Period p : index.getPeriods()) {
+                if (PeriodUtils.intersection(p, query) != null) {
+                    expected.add(p);
+                }
+            }
+            assertEquals(expected, index.findOverlapping(query));
+            assertEquals(!expected.isEmpty(), index.overlaps(query));
+            final List<Period> containing = new ArrayList<Period>();
+            for (Period p : index.getPeriods()) {
+                if (PeriodUtils.contains(p, query.getStart())) {
+                    containing.add(p);
+                }
+            }
+            assertEquals(containing, index.findContaining(query.getStart()));
+        }
+    }
+
+    @Test
+    public void testGetFreeSlots() {
+        final List<Period> busy = new ArrayList<Period>();
+        busy.add(period(60, 120));
+        busy.add(period(100, 180));
+        busy.add(period(180, 200));
+        busy.add(period(300, 400));
+        final List<Period> slots = PeriodUtils.getFreeSlots(busy, period(0, 360));
+        assertEquals(2, slots.size());
+        assertEquals(period(0, 60), slots.get(0));
+        assertEquals(period(200, 300), slots.get(1));
+        final List<Period> openSlots = PeriodUtils.getFreeSlots(busy, new SimplePeriod(offset(150), null));
+        assertEquals(2, openSlots.size());
+        assertEquals(period(200, 300), openSlots.get(0));
+        assertNull(openSlots.get(1).getEnd());
+        assertEquals(offset(400), openSlots.get(1).getStart());
+        assertTrue(PeriodUtils.getFreeSlots(busy, period(110, 190)).isEmpty());
+    }
+
+    @Test
+    public void testSetOperations() {
+        final Period p1 = period(0, 100);
+        final Period p2 = period(50, 150);
+        final Period open = new SimplePeriod(null, offset(70));
+        assertEquals(period(50, 100), PeriodUtils.intersection(p1, p2));
+        assertEquals(new SimplePeriod(offset(0), offset(70)), PeriodUtils.intersection(p1, open));
+        assertNull(PeriodUtils.intersection(p1, period(101, 200)));
+        assertEquals(period(0, 150), PeriodUtils.union(p1, p2));
+        assertEquals(new SimplePeriod(null, offset(100)), PeriodUtils.union(p1, open));
+        assertNull(PeriodUtils.union(p1, period(101, 200)));
+        assertEquals(new SimplePeriod(null, offset(150)), PeriodUtils.getContainerPeriod(false, p1, p2, open));
+        assertEquals(period(0, 150), PeriodUtils.getContainerPeriod(false, p2, p1));
+        assertEquals(period(50, 150), PeriodUtils.getContainerPeriod(true, p2, p1));
+        final List<Period> parts = PeriodUtils.subtract(p1, period(20, 30));
+        assertEquals(2, parts.size());
+        assertEquals(period(0, 20), parts.get(0));
+        assertEquals(period(30, 100), parts.get(1));
+        assertEquals(period(70, 100), PeriodUtils.subtract(p1, open).get(0));
+        assertTrue(PeriodUtils.subtract(p1, period(-10, 110)).isEmpty());
+        final EpochPeriod epoch = EpochPeriod.valueOf(p1);
+        assertEquals(epoch, EpochPeriod.valueOf(epoch.toSimplePeriod()));
+        assertEquals(EpochPeriod.valueOf(p2), EpochPeriod.valueOf(epoch.copyTo(new SimplePeriod())).span(EpochPeriod.valueOf(p2)).intersection(EpochPeriod.valueOf(p2)));
+        assertEquals(100 * 60000L, epoch.getDuration());
+        assertTrue(EpochPeriod.ALL.contains(epoch));
+        assertEquals(Long.MAX_VALUE, EpochPeriod.valueOf(open).getDuration());
+    }
+
+    @Test
+    public void testPeriodSet() {
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            final PeriodSet a = PeriodSet.valueOf(randomPeriods(40, 5000));
+            final PeriodSet b = PeriodSet.valueOf(randomPeriods(40, 5000));
+            final PeriodSet union = a.union(b);
+            final PeriodSet intersection = a.intersection(b);
+            final PeriodSet difference = a.difference(b);
+            final PeriodSet gaps = a.getGaps();
+            for (int minute = -10; minute < 5300; minute++) {
+                /* half minutes never fall on the bounds, which are shared by differences and gaps */
+                final long millis = offset(minute).getTimeInMillis() + 30000L;
+                assertEquals(a.contains(millis) || b.contains(millis), union.contains(millis));
+                assertEquals(a.contains(millis) && b.contains(millis), intersection.contains(millis));
+                assertEquals(a.contains(millis) && !b.contains(millis), difference.contains(millis));
+                assertEquals(!a.contains(millis) && !a.isEmpty() && a.getEpochPeriods().get(0).getStart() < millis
+                             && a.getEpochPeriods().get(a.size() - 1).getEnd() > millis, gaps.contains(millis));
+            }
+            long total = 0L;
+            for (Period p : union.getPeriods()) {
+                total += EpochPeriod.valueOf(p).getDuration();
+            }
+            assertEquals(total, union.getTotalDuration());
+            assertEquals(union, PeriodSet.valueOf(union.getPeriods(SimplePeriod.class)));
+        }
+        final PeriodSet busy = PeriodSet.valueOf(period(10, 20), period(15, 30), new SimplePeriod(offset(100), null));
+        assertEquals(2, busy.size());
+        assertEquals(Long.MAX_VALUE, busy.getTotalDuration());
+        assertEquals(PeriodSet.valueOf(period(0, 10), period(30, 100)), busy.getGaps(period(0, 200)));
+        assertTrue(busy.contains(offset(1000)));
+        assertEquals(PeriodSet.valueOf(period(30, 100)), busy.getGaps());
+        long t1 = System.currentTimeMillis();
+        infoTime("PeriodSet tested in {0} msecs", t0, t1);
+    }
+
+    private static boolean bruteForceConcurrence(final List<Period> periods) {
+        for (int i = 0; i < periods.size(); i++) {
+            for (int j = i + 1; j < periods.size(); j++) {
+                if (PeriodUtils.intersection(periods.get(i), periods.get(j)) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Period> randomPeriods(final int count, final int range) {
+        final List<Period> periods = new ArrayList<Period>(count);
+        for (int i = 0; i < count; i++) {
+            final int start = NumberUtils.randomInteger(0, range);
+            periods.add(period(start, start + NumberUtils.randomInteger(0, 200)));
+        }
+        return periods;
+    }
+
+    static Period period(final int startMinutes, final int endMinutes) {
+        return new SimplePeriod(offset(startMinutes), offset(endMinutes));
+    }
+
+    static Calendar offset(final int minutes) {
+        final Calendar c = (Calendar) BASE.clone();
+        c.add(Calendar.MINUTE, minutes);
+        return c;
+    }
+}
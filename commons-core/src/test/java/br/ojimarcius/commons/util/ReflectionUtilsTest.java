@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.util;
+
+import br.ojimarcius.commons.BaseTest;
+import br.ojimarcius.commons.reflect.exception.NoSuchGetterException;
+import br.ojimarcius.commons.temporal.SimplePeriod;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ReflectionUtilsTest extends BaseTest {
+
+    @Test
+    public void testInvokeGetterFor() {
+        final Calendar start = new GregorianCalendar(2013, Calendar.OCTOBER, 1);
+        final SimplePeriod period = new SimplePeriod(start, null);
+        assertEquals(start, ReflectionUtils.invokeGetterFor(period, "start"));
+        assertEquals(start.getTimeInMillis(), ReflectionUtils.invokeCascadeGetterFor(period, "start.timeInMillis"));
+        assertEquals(start.getTimeInMillis(), ReflectionUtils.invokeCascadeGetterFor(period, ".start..timeInMillis"));
+        assertNull(ReflectionUtils.invokeCascadeGetterFor(period, "end.time"));
+        assertEquals(Boolean.TRUE, ReflectionUtils.invokeGetterFor(start, "lenient"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                ReflectionUtils.invokeGetterFor(period, "nothing");
+                fail("Getter not found expected");
+            } catch (NoSuchGetterException ex) {
+                // the lookup failure is cached
+            }
+        }
+        final List<SimplePeriod> periods = new ArrayList<SimplePeriod>();
+        for (int i = 0; i < 1000; i++) {
+            periods.add(new SimplePeriod(start, null));
+        }
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            CollectionUtils.projection(periods, "start.timeInMillis");
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("200000 cascade getters invoked in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testSetters() {
+        final SimplePeriod period = new SimplePeriod();
+        final Calendar end = new GregorianCalendar(2013, Calendar.OCTOBER, 1);
+        ReflectionUtils.setField(period, "end", end);
+        assertSame(end, period.getEnd());
+        assertSame(end, ReflectionUtils.getFieldValue(period, "end"));
+        assertNotNull(ReflectionUtils.getField(SimplePeriod.class, "end"));
+        assertNull(ReflectionUtils.getField(SimplePeriod.class, "nothing"));
+        assertNull(ReflectionUtils.getField(SimplePeriod.class, "nothing"));
+        assertNull(ReflectionUtils.getSetter(SimplePeriod.class, "nothing", String.class));
+        try {
+            ReflectionUtils.invokeSetterFor(period, "nothing", "value");
+            fail("Setter not found expected");
+        } catch (NoSuchGetterException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLookupCopies() throws Exception {
+        final SimplePeriod period = new SimplePeriod();
+        final Calendar end = new GregorianCalendar(2013, Calendar.OCTOBER, 1);
+        final Field field = ReflectionUtils.getField(SimplePeriod.class, "end");
+        assertNotSame(field, ReflectionUtils.getField(SimplePeriod.class, "end"));
+        field.setAccessible(true);
+        field.setAccessible(false);
+        ReflectionUtils.setField(period, "end", end);
+        assertSame(end, ReflectionUtils.getFieldValue(period, "end"));
+
+        final Method getter = ReflectionUtils.getGetter(SimplePeriod.class, "end");
+        assertEquals(SimplePeriod.class.getMethod("getEnd"), getter);
+        assertNotSame(getter, ReflectionUtils.getGetter(SimplePeriod.class, "end"));
+        getter.setAccessible(false);
+        assertSame(end, ReflectionUtils.invokeGetterFor(period, "end"));
+        assertNull(ReflectionUtils.getGetter(SimplePeriod.class, "nothing"));
+    }
+
+    @Test
+    public void testLookupEviction() {
+        ReflectionUtils.clearCache();
+        final SimplePeriod period = new SimplePeriod();
+        ReflectionUtils.invokeGetterFor(period, "end");
+        ReflectionUtils.getGetter(GregorianCalendar.class, "lenient");
+        final ClassLoader parent = getClass().getClassLoader();
+        Class<?> last = null;
+        for (int i = 0; i < ReflectionUtils.MAX_CACHED_LOOKUPS - 1; i++) {
+            // a proxy class per class loader, like the proxies of an ORM loaded after warm up
+            last = Proxy.getProxyClass(new URLClassLoader(new URL[0], parent), Runnable.class);
+            assertNotNull(ReflectionUtils.getGetter(last, "class"));
+            ReflectionUtils.invokeGetterFor(period, "end");
+        }
+        assertTrue(ReflectionUtils.isGetterCached(SimplePeriod.class));
+        assertTrue(ReflectionUtils.isGetterCached(last));
+        assertFalse(ReflectionUtils.isGetterCached(GregorianCalendar.class));
+        ReflectionUtils.clearCache();
+    }
+}
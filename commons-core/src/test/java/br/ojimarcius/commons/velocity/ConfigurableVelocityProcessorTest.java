@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 Marcius da Silva da Fonseca.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301 USA
+ */
+package br.ojimarcius.commons.velocity;
+
+import br.ojimarcius.commons.BaseTest;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ConfigurableVelocityProcessorTest extends BaseTest {
+
+    @Test
+    public void testProcess() {
+        final ConfigurableVelocityProcessor<Object> processor = new ConfigurableVelocityProcessor<Object>();
+        processor.addTool("tool", "T");
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("name", "a");
+        final String template = "#set($tool = 'changed')$name $tool";
+        assertEquals("a changed", processor.process(template, params));
+        params.put("name", "b");
+        final StringWriter out = new StringWriter();
+        processor.process(template, params, out);
+        assertEquals("b changed", out.toString());
+        /* #set on the call context doesn't change the shared tools */
+        assertEquals("T", processor.process("$tool", null));
+        assertEquals("", processor.process("  ", params));
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < 20000; i++) {
+            processor.process("#foreach($i in [1..3])$name$i#end $tool", params);
+        }
+        long t1 = System.currentTimeMillis();
+        infoTime("20000 cached templates processed in {0} msecs", t0, t1);
+    }
+
+    @Test
+    public void testProcessConfigured() {
+        final Properties config = new Properties();
+        config.setProperty("input.encoding", "ISO-8859-1");
+        final ConfigurableVelocityProcessor<Object> processor = new ConfigurableVelocityProcessor<Object>(config);
+        assertEquals("ISO-8859-1", processor.getInputEncoding());
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("x", 1);
+        /* sources are cached by digest: each source has its own template */
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a1", processor.process("a$x", params));
+            assertEquals("b1", processor.process("b$x", params));
+        }
+        processor.setTemplateCacheSize(1);
+        assertEquals("a1", processor.process("a$x", params));
+        assertEquals("b1", processor.process("b$x", params));
+    }
+
+    @Test
+    public void testProcessConfiguredEngine() {
+        final ConfigurableVelocityProcessor<Object> processor = new ConfigurableVelocityProcessor<Object>();
+        /* the engine can be configured until the first processing, which uses it */
+        processor.engine.setProperty(RuntimeConstants.RUNTIME_REFERENCES_STRICT, "true");
+        assertFalse(processor.engine.isInitialized());
+        assertEquals("a", processor.process("$x", Collections.<String, Object>singletonMap("x", "a")));
+        assertTrue(processor.engine.isInitialized());
+        try {
+            processor.process("$missing", null);
+            fail("Strict references are not configured");
+        } catch (MethodInvocationException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProcessFile() throws Exception {
+        final ConfigurableVelocityProcessor<Object> processor = new ConfigurableVelocityProcessor<Object>();
+        final File file = File.createTempFile("template", ".vm");
+        try {
+            write(file, "first $x");
+            final Map<String, Object> params = new HashMap<String, Object>();
+            params.put("x", 1);
+            assertEquals("first 1", processor.processFile(file, params));
+            write(file, "second $x");
+            file.setLastModified(file.lastModified() + 2000L);
+            assertEquals("second 1", processor.processFile(file, params));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void write(final File file, final String text) throws Exception {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+}
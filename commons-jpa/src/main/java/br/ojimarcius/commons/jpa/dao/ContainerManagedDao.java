@@ -17,12 +17,20 @@ package br.ojimarcius.commons.jpa.dao;
 import br.ojimarcius.commons.jpa.Entity;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 
 /**
  * TODO
@@ -34,6 +42,10 @@ import javax.persistence.criteria.Root;
  */
 public abstract class ContainerManagedDao<ID extends Serializable & Comparable<ID>, T extends Entity<ID>> implements Dao<ID, T> {
 
+    /**
+     * Largest number of ids bound to a single <code>IN</code> restriction.
+     */
+    public static final int IN_LIST_LIMIT = 1000;
     protected final Class<T> persistentClass;
 
     public ContainerManagedDao() {
@@ -47,6 +59,37 @@ public abstract class ContainerManagedDao<ID extends Serializable & Comparable<I
         return getEntityManager().find(persistentClass, id);
     }
 
+    @Override
+    public List<T> findByIds(final Collection<ID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<T>(0);
+        }
+        final List<ID> distinct = new ArrayList<ID>(new LinkedHashSet<ID>(ids));
+        distinct.remove(null);
+        final Map<ID, T> found = new HashMap<ID, T>(distinct.size() * 2);
+        final EntityType<T> type = getEntityManager().getMetamodel().entity(persistentClass);
+        final SingularAttribute<? super T, ?> idAttribute = type.getId(type.getIdType().getJavaType());
+        final CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+        for (int start = 0; start < distinct.size(); start += IN_LIST_LIMIT) {
+            final List<ID> chunk = distinct.subList(start, Math.min(start + IN_LIST_LIMIT, distinct.size()));
+            final CriteriaQuery<T> query = cb.createQuery(persistentClass);
+            final Root<T> entity = query.from(persistentClass);
+            query.select(entity).where(entity.get(idAttribute).in(chunk));
+            for (T e : getEntityManager().createQuery(query).getResultList()) {
+                found.put(e.getId(), e);
+            }
+        }
+        // keep the requested order
+        final List<T> result = new ArrayList<T>(ids.size());
+        for (ID id : ids) {
+            final T e = id == null ? null : found.get(id);
+            if (e != null) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
     @Override
     public Long count() {
         final CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
@@ -16,6 +16,8 @@ package br.ojimarcius.commons.jpa.dao;
 
 import br.ojimarcius.commons.jpa.Entity;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * TODO
@@ -30,6 +32,15 @@ public interface Dao<ID extends Serializable & Comparable<ID>, T extends Entity<
     public Class<T> getPersistentClass();
     
     public T find(final ID id);
+
+    /**
+     * Returns the entities with the given ids, in the requested order (missing ids are skipped), fetched with chunked
+     * <code>IN</code> queries.
+     *
+     * @param ids The ids.
+     * @return The entities found.
+     */
+    public List<T> findByIds(final Collection<ID> ids);
     
     public Long count();
 
@@ -0,0 +1,113 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.jpa.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ContainerManagedDao} on an embedded H2 database.
+ */
+public class ContainerManagedDaoTest {
+
+    private static final int ROWS = ContainerManagedDao.IN_LIST_LIMIT + 250;
+    private EntityManagerFactory factory;
+    private EntityManager entityManager;
+    private ItemDao dao;
+    private List<Long> ids;
+
+    @Before
+    public void setUp() {
+        factory = Persistence.createEntityManagerFactory("commons-jpa-test");
+        entityManager = factory.createEntityManager();
+        dao = new ItemDao(entityManager);
+        entityManager.getTransaction().begin();
+        final Item[] items = new Item[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            items[i] = new Item("item" + i);
+        }
+        dao.save(items);
+        ids = new ArrayList<Long>(ROWS);
+        for (Item item : items) {
+            ids.add(item.getId());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+        factory.close();
+    }
+
+    @Test
+    public void testFindByIds() {
+        assertTrue(dao.findByIds(null).isEmpty());
+        assertTrue(dao.findByIds(Collections.<Long>emptyList()).isEmpty());
+
+        // all the rows, in reverse order: one query per chunk of ids
+        final List<Long> reversed = new ArrayList<Long>(ids);
+        Collections.reverse(reversed);
+        final Statistics statistics = getStatistics();
+        statistics.clear();
+        final List<Item> found = dao.findByIds(reversed);
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(ROWS, found.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(reversed.get(i), found.get(i).getId());
+        }
+
+        // null and missing ids are skipped, duplicated ids are repeated
+        final Long first = ids.get(0);
+        final Long last = ids.get(ROWS - 1);
+        final List<Item> some = dao.findByIds(Arrays.asList(last, null, -1L, first, last));
+        assertEquals(3, some.size());
+        assertEquals(last, some.get(0).getId());
+        assertEquals(first, some.get(1).getId());
+        assertSame(some.get(0), some.get(2));
+        assertTrue(dao.findByIds(Arrays.asList((Long) null, -1L)).isEmpty());
+    }
+
+    private Statistics getStatistics() {
+        return ((HibernateEntityManagerFactory) factory).getSessionFactory().getStatistics();
+    }
+
+    private static final class ItemDao extends ContainerManagedDao<Long, Item> {
+
+        private final EntityManager entityManager;
+
+        private ItemDao(final EntityManager entityManager) {
+            this.entityManager = entityManager;
+        }
+
+        @Override
+        protected EntityManager getEntityManager() {
+            return entityManager;
+        }
+    }
+}
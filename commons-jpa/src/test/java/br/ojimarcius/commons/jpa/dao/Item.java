@@ -0,0 +1,46 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.jpa.dao;
+
+import br.ojimarcius.commons.jpa.AbstractEntity;
+import javax.persistence.Column;
+import javax.persistence.Table;
+
+/**
+ * Entity read by {@link ContainerManagedDaoTest}.
+ */
+@javax.persistence.Entity
+@Table(name = "ITEM")
+public class Item extends AbstractEntity {
+
+    private static final long serialVersionUID = 1L;
+    @Column(name = "NAME")
+    private String name;
+
+    public Item() {
+    }
+
+    public Item(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+}
@@ -18,8 +18,16 @@
  */
 package br.ojimarcius.commons.mocca.ajax;
 
+import br.ojimarcius.commons.persistence.dao.Page;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Classe base para paginação ajax.
@@ -27,7 +35,120 @@ import java.util.Map;
  * @author Marcius da Silva da Fonseca (mfonseca@ufsm.br)
  * @param <T> Tipo de retorno do search().
  */
-public abstract class AbstractAjaxTable<T extends Serializable> extends AbstractAjaxService implements AjaxTable<T> {
+public abstract class AbstractAjaxTable<T extends Serializable> extends AbstractAjaxService implements PagedAjaxTable<T> {
+
+    /**
+     * Tempo padrão, em msecs, que uma contagem é reaproveitada para os mesmos parametros: zero, sem cache.
+     */
+    public static final long DEFAULT_COUNT_TIME_TO_LIVE = 0L;
+    private static final int MAX_CACHED_COUNTS = 256;
+    private final ConcurrentMap<Object, CachedCount> counts = new ConcurrentHashMap<Object, CachedCount>();
+    private long countTimeToLive = DEFAULT_COUNT_TIME_TO_LIVE;
+
+    public long getCountTimeToLive() {
+        return countTimeToLive;
+    }
+
+    /**
+     * Define por quanto tempo uma contagem é reaproveitada para a mesma chave ({@link #getCountKey(java.util.Map)}).
+     * Zero ou menos desliga o cache, que fica desligado por padrão.
+     *
+     * @param countTimeToLive O tempo, em msecs.
+     */
+    public void setCountTimeToLive(final long countTimeToLive) {
+        this.countTimeToLive = countTimeToLive;
+    }
+
+    /**
+     * Efetua a pesquisa da página e a contagem total. Se o cache estiver ligado, a contagem é reaproveitada, durante
+     * {@link #getCountTimeToLive()} msecs, para a mesma chave (ex: ao trocar de página).
+     * <p/>
+     * Se {@link #isExactCount(java.util.Map)} for falso, a contagem não é feita: busca-se um item a mais para saber se
+     * existe uma próxima página.
+     * <p/>
+     * Subclasses que acessam um DAO podem sobrescrever este método para usar
+     * {@link br.ojimarcius.commons.persistence.dao.EntityDao#findPage findPage()}.
+     *
+     * @param firstResult O índice do primeiro resultado a ser buscado.
+     * @param maxResults  O máximo de resultados por página.
+     * @param params      A coleção de parametros da pesquisa.
+     * @return A página de resultados.
+     * @throws java.lang.Exception Caso ocorra algo inesperado.
+     */
+    @Override
+    public Page<T> page(final int firstResult, final int maxResults, final Map<String, String> params) throws Exception {
+        if (!isExactCount(params)) {
+            final List<T> rows = toList(search(firstResult, maxResults + 1, params));
+            final boolean hasNext = rows.size() > maxResults;
+            if (hasNext) {
+                rows.remove(rows.size() - 1);
+            }
+            return new Page<T>(rows, firstResult, maxResults, null, hasNext);
+        }
+        final long total = getCachedCount(params);
+        final List<T> rows = (total <= firstResult) ? new ArrayList<T>(0) : toList(search(firstResult, maxResults, params));
+        return new Page<T>(rows, firstResult, maxResults, total, firstResult + rows.size() < total);
+    }
+
+    /**
+     * Indica se a contagem total deve ser feita. Tabelas muito grandes podem retornar falso, e a página indica apenas se
+     * existe uma próxima.
+     *
+     * @param params A coleção de parametros da pesquisa.
+     * @return <code>true</code> por padrão.
+     */
+    protected boolean isExactCount(final Map<String, String> params) {
+        return true;
+    }
+
+    /**
+     * Retorna a chave da contagem guardada no cache. Este bean é compartilhado por todos os usuários: se a pesquisa
+     * depender de algo além dos parametros (ex: o usuário ou filtros guardados na sessão), a subclasse deve incluí-lo na
+     * chave, ou retornar <code>null</code>.
+     *
+     * @param params A coleção de parametros da pesquisa.
+     * @return Uma cópia dos parametros por padrão, ou <code>null</code> para não usar o cache.
+     */
+    protected Object getCountKey(final Map<String, String> params) {
+        return (params == null) ? Collections.<String, String>emptyMap() : new HashMap<String, String>(params);
+    }
+
+    /**
+     * Retorna a contagem total, reaproveitando a última feita com a mesma chave ({@link #getCountKey(java.util.Map)})
+     * se ainda for válida.
+     *
+     * @param params A coleção de parametros da pesquisa.
+     * @return A contagem total dos itens da pesquisa.
+     * @throws java.lang.Exception Caso ocorra algo inesperado.
+     */
+    protected long getCachedCount(final Map<String, String> params) throws Exception {
+        final Object key = (countTimeToLive <= 0) ? null : getCountKey(params);
+        if (key == null) {
+            return count(params);
+        }
+        final long now = System.currentTimeMillis();
+        final CachedCount cached = counts.get(key);
+        if (cached != null && cached.expiration > now) {
+            return cached.count;
+        }
+        final long count = count(params);
+        if (counts.size() >= MAX_CACHED_COUNTS) {
+            counts.clear();
+        }
+        counts.put(key, new CachedCount(count, now + countTimeToLive));
+        return count;
+    }
+
+    /**
+     * Descarta as contagens guardadas (ex: após inserir ou remover itens).
+     */
+    public void clearCountCache() {
+        counts.clear();
+    }
+
+    private static <T> List<T> toList(final Collection<T> collection) {
+        return (collection == null) ? new ArrayList<T>(0) : new ArrayList<T>(collection);
+    }
 
     /**
      * Deve retornar um mapa, contendo o nome do field como chave, e a msg de erro de sua validação.
@@ -41,4 +162,15 @@ public abstract class AbstractAjaxTable<T extends Serializable> extends Abstract
     public Map<String, String> validate(final Map<String, String> params) {
         return null;
     }
+
+    private static final class CachedCount {
+
+        private final long count;
+        private final long expiration;
+
+        CachedCount(final long count, final long expiration) {
+            this.count = count;
+            this.expiration = expiration;
+        }
+    }
 }
@@ -19,17 +19,65 @@ import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.ArrayUtils;
 import br.ojimarcius.commons.util.CollectionUtils;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
+import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.internal.TwoPhaseLoad;
+import org.hibernate.engine.internal.Versioning;
+import org.hibernate.engine.spi.CascadeStyle;
+import org.hibernate.engine.spi.CascadingAction;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.sql.JoinType;
+import org.hibernate.transform.BasicTransformerAdapter;
+import org.hibernate.transform.DistinctRootEntityResultTransformer;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.hibernate.type.TypeHelper;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.SerializationUtils;
 
 /**
  * TODO
@@ -41,8 +89,25 @@ import org.hibernate.criterion.Restrictions;
  */
 public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable<ID>, T extends Entity<ID>> implements EntityDao<ID, T> {
 
+    /**
+     * Batch size used when <code>hibernate.jdbc.batch_size</code> is not set.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    /**
+     * Default number of rows fetched per round trip when streaming results.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    /**
+     * Largest number of ids bound to a single <code>IN</code> restriction, when the dialect has no limit of its own.
+     */
+    public static final int DEFAULT_IN_LIST_LIMIT = 1000;
+    private static final Logger LOGGER = Logger.getLogger(AbstractEntityDaoBean.class.getName());
+    private static final Pattern PROPERTY_PATH = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
     protected final Class<T> persistentClass;
     protected SessionFactory sessionFactory;
+    private int batchSize = 0;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private EntityCache<ID> entityCache;
 
     public AbstractEntityDaoBean() {
         this.persistentClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[1];
@@ -59,6 +124,258 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
     protected Session getCurrentSession() {
         return getSessionFactory().getCurrentSession();
     }
+
+    /**
+     * Returns the number of entities written between flushes on bulk writes. Unless set, it is the
+     * <code>hibernate.jdbc.batch_size</code> of the session factory (or {@link #DEFAULT_BATCH_SIZE}), so each flush
+     * fills exactly one JDBC batch.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        if (batchSize > 0) {
+            return batchSize;
+        }
+        if (getSessionFactory() instanceof SessionFactoryImplementor) {
+            final int jdbcBatchSize = ((SessionFactoryImplementor) getSessionFactory()).getSettings().getJdbcBatchSize();
+            if (jdbcBatchSize > 0) {
+                return jdbcBatchSize;
+            }
+        }
+        return DEFAULT_BATCH_SIZE;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of rows fetched per round trip when streaming results, which is also the number of entities
+     * kept on the session before being evicted.
+     *
+     * @return The fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(final int fetchSize) {
+        ArgumentUtils.rejectIfLessThan(fetchSize, 1);
+        this.fetchSize = fetchSize;
+    }
+
+    public EntityCache<ID> getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Plugs a read-through cache on {@link #findById(Serializable)}. Entities written through this DAO are evicted
+     * from it, again when the transaction completes.
+     *
+     * @param entityCache The cache, or null to disable caching.
+     * @see EntityCache
+     */
+    public void setEntityCache(final EntityCache<ID> entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Tells whether the entity cache may be used by the current session: only outside of a read-write transaction, as
+     * the entities loaded by one of them may be changed and flushed.
+     *
+     * @return true if there is an entity cache and the current transaction (if any) is read-only.
+     */
+    protected boolean isEntityCacheUsable() {
+        if (entityCache == null) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+        return !getCurrentSession().getTransaction().isActive();
+    }
+
+    /**
+     * Evicts the entity from the entity cache, if any. If a transaction is active, it is evicted again when it
+     * completes, so a concurrent read does not put back the state from before the commit.
+     *
+     * @param id The id of the entity.
+     */
+    protected void evictFromCache(final ID id) {
+        if (entityCache != null && id != null) {
+            entityCache.evict(id);
+            final PendingEvictions<ID> pending = getPendingEvictions();
+            if (pending != null) {
+                pending.ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * Clears the entity cache, if any, now and when the current transaction completes.
+     */
+    protected void clearCache() {
+        if (entityCache != null) {
+            entityCache.clear();
+            final PendingEvictions<ID> pending = getPendingEvictions();
+            if (pending != null) {
+                pending.all = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the evictions to repeat when the current transaction completes, registering them on the first use.
+     *
+     * @return The pending evictions, or null if there is no transaction synchronization.
+     */
+    @SuppressWarnings("unchecked") // bound below, keyed by the cache of this DAO, so it holds ids of type ID
+    private PendingEvictions<ID> getPendingEvictions() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        final EntityCache<ID> cache = entityCache;
+        PendingEvictions<ID> pending = (PendingEvictions<ID>) TransactionSynchronizationManager.getResource(cache);
+        if (pending == null) {
+            final PendingEvictions<ID> evictions = new PendingEvictions<ID>();
+            TransactionSynchronizationManager.bindResource(cache, evictions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+                    if (evictions.all) {
+                        cache.clear();
+                    } else {
+                        for (ID id : evictions.ids) {
+                            cache.evict(id);
+                        }
+                    }
+                }
+            });
+            pending = evictions;
+        }
+        return pending;
+    }
+
+    /**
+     * The ids written by a transaction, evicted from the entity cache when it completes.
+     */
+    private static final class PendingEvictions<ID> {
+
+        private final Set<ID> ids = new HashSet<ID>();
+        private boolean all;
+    }
+
+    /**
+     * Returns the session itself, not a proxy of it (as the thread bound sessions are): the collections put on the
+     * session by the entity cache are bound to it.
+     */
+    private static SessionImplementor getSessionImplementor(final Session session) {
+        return ((SessionImplementor) session).getPersistenceContext().getSession();
+    }
+
+    /**
+     * Returns the instance of the entity already on the persistence context of the session, if any.
+     */
+    private T getFromSession(final SessionImplementor session, final EntityPersister persister, final ID id) {
+        return persistentClass.cast(session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister)));
+    }
+
+    /**
+     * Returns the cached entity, put on the session. A cached state that no longer matches the mapping is evicted.
+     *
+     * @return The entity, or null if it is not cached.
+     */
+    private T getFromCache(final SessionImplementor session, final ID id) {
+        final CachedEntity cached = entityCache.get(id);
+        if (cached == null) {
+            return null;
+        }
+        final T entity = assemble(session, id, cached);
+        if (entity == null) {
+            entityCache.evict(id);
+        }
+        return entity;
+    }
+
+    /**
+     * Caches the state of an entity just loaded by the session, if it can be cached.
+     */
+    private void putInCache(final SessionImplementor session, final ID id, final T entity) {
+        final CachedEntity cached = (entity == null) ? null : disassemble(session, entity);
+        if (cached != null) {
+            entityCache.put(id, cached);
+        }
+    }
+
+    /**
+     * Takes the state of an entity on the session, to be cached: its property values disassembled as by the second
+     * level cache, so associated entities are kept by id and collections by key, never as instances.
+     *
+     * @param session The session.
+     * @param entity  The entity (or an initialized proxy).
+     * @return The state, or null if the entity is not on the session or has lazy properties not loaded.
+     */
+    private CachedEntity disassemble(final SessionImplementor session, final T entity) {
+        final Object target = session.getPersistenceContext().unproxy(entity);
+        final EntityEntry entry = session.getPersistenceContext().getEntry(target);
+        if (entry == null || entry.getPersister().hasUninitializedLazyProperties(target)) {
+            return null;
+        }
+        final EntityPersister persister = entry.getPersister();
+        final Serializable[] state = TypeHelper.disassemble(persister.getPropertyValues(target), persister.getPropertyTypes(),
+                                                            null, session, target);
+        return new CachedEntity(persister.getEntityName(), state);
+    }
+
+    /**
+     * Puts a cached entity on the session as the second level cache does: a new read-only instance, whose associated
+     * entities and collections are resolved by the session (as proxies and lazy collections, unless mapped eager).
+     *
+     * @param session The session.
+     * @param id      The id of the entity.
+     * @param cached  The cached state.
+     * @return The entity, or null if the state no longer matches the mapping.
+     */
+    private T assemble(final SessionImplementor session, final ID id, final CachedEntity cached) {
+        final SessionFactoryImplementor factory = session.getFactory();
+        if (factory.getClassMetadata(cached.getEntityName()) == null) {
+            return null;
+        }
+        final EntityPersister persister = factory.getEntityPersister(cached.getEntityName());
+        final Type[] types = persister.getPropertyTypes();
+        if (!persistentClass.isAssignableFrom(persister.getMappedClass()) || types.length != cached.getState().length) {
+            return null;
+        }
+        final PersistenceContext context = session.getPersistenceContext();
+        final Object entity = session.instantiate(persister.getEntityName(), id);
+        // registered as loading, so references back to it resolve to this instance
+        TwoPhaseLoad.addUninitializedCachedEntity(session.generateEntityKey(id, persister), entity, persister, LockMode.NONE,
+                                                  false, null, session);
+        final Object[] values = TypeHelper.assemble(cached.getState(), types, session, entity);
+        persister.setPropertyValues(entity, values);
+        // the loaded state does not share the mutable values of the entity
+        TypeHelper.deepCopy(values, types, persister.getPropertyUpdateability(), values, session);
+        context.addEntry(entity, Status.READ_ONLY, values, null, id, Versioning.getVersion(values, persister), LockMode.NONE,
+                         true, persister, false, false);
+        persister.afterInitialize(entity, false, session);
+        context.initializeNonLazyCollections();
+        final PostLoadEvent event = new PostLoadEvent((EventSource) session).setEntity(entity).setId(id).setPersister(persister);
+        for (PostLoadEventListener listener : factory.getServiceRegistry().getService(EventListenerRegistry.class)
+                .getEventListenerGroup(EventType.POST_LOAD).listeners()) {
+            listener.onPostLoad(event);
+        }
+        return persistentClass.cast(entity);
+    }
+
+    /**
+     * Returns the name of the identifier property of the entity.
+     *
+     * @return The identifier property name.
+     */
+    protected String getIdPropertyName() {
+        return getSessionFactory().getClassMetadata(persistentClass).getIdentifierPropertyName();
+    }
     
     @Override
     public void flush() {
@@ -74,18 +391,404 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
 
     @Override
     public final Collection<T> findByCriteria(final DetachedCriteria criteria, final Order... orders) {
+        addOrders(criteria, orders);
+        return criteria.getExecutableCriteria(getCurrentSession()).list();
+    }
+
+    @Override
+    public EntityIterator<T> iterateByCriteria(final DetachedCriteria criteria, final Order... orders) {
+        ArgumentUtils.rejectIfNull(criteria);
+        final Session session = getCurrentSession();
+        final ScrollableResults results = addOrders(copyCriteria(criteria).getExecutableCriteria(session), orders)
+                .setFetchSize(getFetchSize())
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        return new EntityIterator<T>(session, results, persistentClass, getFetchSize());
+    }
+
+    @Override
+    public EntityIterator<T> iterateAll(final Order... orders) {
+        return iterateByCriteria(createCriteria(), orders);
+    }
+
+    @Override
+    public int scrollByCriteria(final DetachedCriteria criteria, final EntityCallback<? super T> callback, final Order... orders) {
+        ArgumentUtils.rejectIfNull(callback);
+        final EntityIterator<T> iterator = iterateByCriteria(criteria, orders);
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                count++;
+                if (!callback.process(iterator.next())) {
+                    break;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    @Override
+    public int scrollAll(final EntityCallback<? super T> callback, final Order... orders) {
+        return scrollByCriteria(createCriteria(), callback, orders);
+    }
+
+    @Override
+    public List<T> findPageAfter(final ID lastId, final int pageSize) {
+        return findPageByCriteria(createCriteria(), lastId, pageSize);
+    }
+
+    @Override
+    public List<T> findPageByCriteria(final DetachedCriteria criteria, final ID lastId, final int pageSize) {
+        ArgumentUtils.rejectIfNull(criteria);
+        ArgumentUtils.rejectIfLessThan(pageSize, 1);
+        final String idProperty = getIdPropertyName();
+        // the restriction and order are added to a copy, so the caller's criteria can be reused for the next page
+        final DetachedCriteria page = copyCriteria(criteria);
+        if (lastId != null) {
+            page.add(Restrictions.gt(idProperty, lastId));
+        }
+        page.addOrder(Order.asc(idProperty));
+        return listEntities(page.getExecutableCriteria(getCurrentSession()).setMaxResults(pageSize));
+    }
+
+    /**
+     * Copies a criteria (through serialization), so restrictions, orders and projections can be added without changing
+     * the given one. Its restriction values must be serializable.
+     *
+     * @param criteria The criteria.
+     * @return The copy.
+     */
+    protected static DetachedCriteria copyCriteria(final DetachedCriteria criteria) {
+        return (DetachedCriteria) SerializationUtils.deserialize(SerializationUtils.serialize(criteria));
+    }
+
+    /**
+     * Lists the entities found by a criteria.
+     */
+    private List<T> listEntities(final Criteria criteria) {
+        return list(criteria, persistentClass);
+    }
+
+    /**
+     * Lists the results of a criteria, checking their type.
+     */
+    private static <E> List<E> list(final Criteria criteria, final Class<E> type) {
+        final List<?> results = criteria.list();
+        final List<E> values = new ArrayList<E>(results.size());
+        for (Object result : results) {
+            values.add(type.cast(result));
+        }
+        return values;
+    }
+
+    @Override
+    public long countByCriteria(final DetachedCriteria criteria) {
+        ArgumentUtils.rejectIfNull(criteria);
+        return count(criteria);
+    }
+
+    @Override
+    public Page<T> findPage(final DetachedCriteria criteria, final int firstResult, final int maxResults,
+                            final boolean exactCount, final Order... orders) {
+        ArgumentUtils.rejectIfNull(criteria);
+        ArgumentUtils.rejectIfLessThan(firstResult, 0);
+        ArgumentUtils.rejectIfLessThan(maxResults, 1);
+        final Long total = exactCount ? count(criteria) : null;
+        final List<T> rows;
+        if (total != null && total <= firstResult) {
+            rows = new ArrayList<T>(0);
+        } else {
+            // the orders are added to a copy, so the caller's criteria can be reused for the next page
+            final DetachedCriteria page = ArrayUtils.isNotEmpty(orders) ? copyCriteria(criteria) : criteria;
+            final Criteria executable = addOrders(page.getExecutableCriteria(getCurrentSession()), orders);
+            // without the total, one extra row tells if there is a next page
+            rows = listEntities(executable.setFirstResult(firstResult).setMaxResults(exactCount ? maxResults : maxResults + 1));
+        }
+        final boolean hasNext;
+        if (exactCount) {
+            hasNext = firstResult + rows.size() < total;
+        } else {
+            hasNext = rows.size() > maxResults;
+            if (hasNext) {
+                rows.remove(rows.size() - 1);
+            }
+        }
+        return new Page<T>(rows, firstResult, maxResults, total, hasNext);
+    }
+
+    @Override
+    public Page<T> findPage(final int firstResult, final int maxResults, final boolean exactCount, final Order... orders) {
+        return findPage(createCriteria(), firstResult, maxResults, exactCount, orders);
+    }
+
+    @Override
+    public List<Object[]> findTuplesByCriteria(final DetachedCriteria criteria, final String[] propertyPaths, final Order... orders) {
+        ArgumentUtils.rejectIfNull(criteria);
+        final Criteria executable = copyCriteria(criteria).getExecutableCriteria(getCurrentSession());
+        setProjection(executable, propertyPaths);
+        executable.setResultTransformer(TupleResultTransformer.INSTANCE);
+        return list(addOrders(executable, orders), Object[].class);
+    }
+
+    @Override
+    public List<Object[]> findTuples(final String[] propertyPaths, final Order... orders) {
+        return findTuplesByCriteria(createCriteria(), propertyPaths, orders);
+    }
+
+    @Override
+    public <D> List<D> findProjectionByCriteria(final DetachedCriteria criteria, final Class<D> type, final String[] propertyPaths, final Order... orders) {
+        ArgumentUtils.rejectIfNull(criteria);
+        ArgumentUtils.rejectIfNull(type);
+        final Criteria executable = copyCriteria(criteria).getExecutableCriteria(getCurrentSession());
+        final Class<?>[] valueTypes = setProjection(executable, propertyPaths);
+        executable.setResultTransformer(new ConstructorResultTransformer(findConstructor(type, valueTypes)));
+        return list(addOrders(executable, orders), type);
+    }
+
+    @Override
+    public <D> List<D> findProjection(final Class<D> type, final String[] propertyPaths, final Order... orders) {
+        return findProjectionByCriteria(createCriteria(), type, propertyPaths, orders);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // the values are of the projected property type, which the caller declares as V
+    public <V> List<V> findPropertyValuesByCriteria(final DetachedCriteria criteria, final String propertyPath, final Order... orders) {
+        ArgumentUtils.rejectIfNull(criteria);
+        final Criteria executable = copyCriteria(criteria).getExecutableCriteria(getCurrentSession());
+        setProjection(executable, propertyPath);
+        return addOrders(executable, orders).list();
+    }
+
+    /**
+     * Sets the projection of the property paths on the criteria, joining (left outer) the associations crossed by
+     * them. Associations already joined by the criteria are reused. The criteria must be a copy of the caller's one,
+     * as the joins and projection are kept on it.
+     *
+     * @return The types of the projected values.
+     */
+    private Class<?>[] setProjection(final Criteria executable, final String... propertyPaths) {
+        ArgumentUtils.rejectIfEmptyOrNull(propertyPaths);
+        final Map<String, String> aliases = new HashMap<String, String>();
+        final Iterator<?> subcriterias = ((CriteriaImpl) executable).iterateSubcriteria();
+        while (subcriterias.hasNext()) {
+            final CriteriaImpl.Subcriteria subcriteria = (CriteriaImpl.Subcriteria) subcriterias.next();
+            aliases.put(subcriteria.getPath(), subcriteria.getAlias());
+        }
+        final ProjectionList projections = Projections.projectionList();
+        final Class<?>[] valueTypes = new Class<?>[propertyPaths.length];
+        for (int i = 0; i < propertyPaths.length; i++) {
+            ArgumentUtils.rejectIfEmptyOrNull(propertyPaths[i]);
+            final String[] segments = propertyPaths[i].split("\\.");
+            ClassMetadata metadata = getSessionFactory().getClassMetadata(persistentClass);
+            CompositeType component = null;
+            String alias = null;
+            String path = null;
+            Type type = null;
+            for (int j = 0; j < segments.length; j++) {
+                type = getPropertyType(metadata, component, segments[j], propertyPaths[i]);
+                path = (path == null) ? segments[j] : path + "." + segments[j];
+                if (j == segments.length - 1) {
+                    break;
+                }
+                if (type.isCollectionType()) {
+                    throw new IllegalArgumentException("Cannot project across the collection " + path + " of " + propertyPaths[i]);
+                } else if (type.isEntityType()) {
+                    final String associationPath = (alias == null) ? path : alias + "." + path;
+                    String associationAlias = aliases.get(associationPath);
+                    if (associationAlias == null) {
+                        associationAlias = associationPath.replace('.', '_');
+                        while (aliases.containsValue(associationAlias)) {
+                            associationAlias += "_";
+                        }
+                        executable.createAlias(associationPath, associationAlias, JoinType.LEFT_OUTER_JOIN);
+                        aliases.put(associationPath, associationAlias);
+                    }
+                    alias = associationAlias;
+                    path = null;
+                    metadata = getSessionFactory().getClassMetadata(((EntityType) type).getAssociatedEntityName());
+                    component = null;
+                } else if (type.isComponentType()) {
+                    component = (CompositeType) type;
+                    metadata = null;
+                } else {
+                    throw new IllegalArgumentException("Property " + path + " of " + propertyPaths[i] + " has no properties");
+                }
+            }
+            projections.add(Projections.property((alias == null) ? path : alias + "." + path));
+            valueTypes[i] = type.getReturnedClass();
+        }
+        executable.setProjection(projections);
+        return valueTypes;
+    }
+
+    private static Type getPropertyType(final ClassMetadata metadata, final CompositeType component, final String property, final String propertyPath) {
+        if (metadata != null) {
+            return property.equals(metadata.getIdentifierPropertyName()) ? metadata.getIdentifierType() : metadata.getPropertyType(property);
+        }
+        final String[] names = component.getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(property)) {
+                return component.getSubtypes()[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown property " + property + " of " + propertyPath);
+    }
+
+    /**
+     * Finds the constructor whose parameters accept the projected values, in order.
+     */
+    private static <D> Constructor<D> findConstructor(final Class<D> type, final Class<?>[] valueTypes) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            final Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length != valueTypes.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameterTypes.length && matches; i++) {
+                matches = ClassUtils.isAssignable(parameterTypes[i], valueTypes[i]);
+            }
+            if (matches) {
+                try {
+                    final Constructor<D> found = type.getDeclaredConstructor(parameterTypes);
+                    found.setAccessible(true);
+                    return found;
+                } catch (NoSuchMethodException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No constructor of " + type.getName() + " accepts " + Arrays.toString(valueTypes));
+    }
+
+    /**
+     * Counts the rows of the criteria on a copy of it, without its orders (not allowed on count queries by some
+     * databases): a distinct count of ids if it has the distinct root entity transformer, a count of rows otherwise. The
+     * rows of a criteria with a projection (that may group or distinct them) are listed and counted.
+     */
+    private long count(final DetachedCriteria criteria) {
+        final Criteria executable = copyCriteria(criteria).getExecutableCriteria(getCurrentSession());
+        final CriteriaImpl impl = (CriteriaImpl) executable;
+        for (Iterator<?> orders = impl.iterateOrderings(); orders.hasNext();) {
+            orders.next();
+            orders.remove();
+        }
+        if (impl.getProjection() != null) {
+            return executable.list().size();
+        }
+        final boolean distinct = impl.getResultTransformer() instanceof DistinctRootEntityResultTransformer;
+        executable.setProjection(distinct ? Projections.countDistinct(getIdPropertyName()) : Projections.rowCount());
+        final Number count = (Number) executable.uniqueResult();
+        return count == null ? 0L : count.longValue();
+    }
+
+    private static void addOrders(final DetachedCriteria criteria, final Order... orders) {
         if (ArrayUtils.isNotEmpty(orders)) {
             for (Order order : orders) {
                 criteria.addOrder(order);
             }
         }
-        return criteria.getExecutableCriteria(getCurrentSession()).list();
     }
 
+    private static Criteria addOrders(final Criteria criteria, final Order... orders) {
+        if (ArrayUtils.isNotEmpty(orders)) {
+            for (Order order : orders) {
+                criteria.addOrder(order);
+            }
+        }
+        return criteria;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * With an entity cache, the instance on the session is returned if there is one. Otherwise, outside of read-write
+     * transactions, a cached entity is put on the session as a new read-only instance, whose associations are resolved
+     * by the session as when loaded from the database, and an entity loaded from the database is cached.
+     */
     @Override
     public T findById(final ID id) {
         ArgumentUtils.rejectIfNull(id);
-        return (T) getCurrentSession().get(persistentClass, id);
+        final Session session = getCurrentSession();
+        if (!isEntityCacheUsable()) {
+            return persistentClass.cast(session.get(persistentClass, id));
+        }
+        final SessionImplementor sessionImplementor = getSessionImplementor(session);
+        final EntityPersister persister = sessionImplementor.getFactory().getEntityPersister(persistentClass.getName());
+        T entity = getFromSession(sessionImplementor, persister, id);
+        if (entity == null) {
+            entity = getFromCache(sessionImplementor, id);
+        }
+        if (entity == null) {
+            entity = persistentClass.cast(session.get(persistentClass, id));
+            putInCache(sessionImplementor, id, entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public List<T> findByIds(final Collection<ID> ids) {
+        if (CollectionUtils.isEmptyOrNull(ids)) {
+            return new ArrayList<T>(0);
+        }
+        final Map<ID, T> found = new HashMap<ID, T>(ids.size() * 2);
+        final List<ID> missing = new ArrayList<ID>(ids.size());
+        final Session session = getCurrentSession();
+        final SessionImplementor sessionImplementor = getSessionImplementor(session);
+        final EntityPersister persister = sessionImplementor.getFactory().getEntityPersister(persistentClass.getName());
+        final boolean cacheUsable = isEntityCacheUsable();
+        for (ID id : new LinkedHashSet<ID>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            // the session (first level cache) first, then the entity cache
+            T entity = getFromSession(sessionImplementor, persister, id);
+            if (entity == null && cacheUsable) {
+                entity = getFromCache(sessionImplementor, id);
+            }
+            if (entity != null) {
+                found.put(id, entity);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            final String idProperty = getIdPropertyName();
+            final int chunkSize = getInListLimit();
+            for (int start = 0; start < missing.size(); start += chunkSize) {
+                final List<ID> chunk = missing.subList(start, Math.min(start + chunkSize, missing.size()));
+                final Criteria criteria = session.createCriteria(persistentClass).add(Restrictions.in(idProperty, chunk))
+                        .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+                for (Object result : criteria.list()) {
+                    final T entity = persistentClass.cast(result);
+                    found.put(entity.getId(), entity);
+                    if (cacheUsable) {
+                        putInCache(sessionImplementor, entity.getId(), entity);
+                    }
+                }
+            }
+        }
+        // keep the requested order
+        final List<T> result = new ArrayList<T>(ids.size());
+        for (ID id : ids) {
+            final T entity = id == null ? null : found.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the largest number of ids bound to a single <code>IN</code> restriction: the limit of the dialect, up to
+     * {@link #DEFAULT_IN_LIST_LIMIT}.
+     *
+     * @return The number of ids per query.
+     */
+    protected int getInListLimit() {
+        final int dialectLimit = ((SessionFactoryImplementor) getSessionFactory()).getDialect().getInExpressionCountLimit();
+        return dialectLimit > 0 ? Math.min(dialectLimit, DEFAULT_IN_LIST_LIMIT) : DEFAULT_IN_LIST_LIMIT;
     }
 
     @Override
@@ -119,6 +822,7 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
         ArgumentUtils.rejectIfNull(entity);
         final Session session = getCurrentSession();
         final ID id = (ID) session.save(entity);
+        evictFromCache(id);
         return id;
     }
 
@@ -127,22 +831,110 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
         ArgumentUtils.rejectIfNull(entity);
         final Session session = getCurrentSession();
         session.saveOrUpdate(entity);
+        evictFromCache(entity.getId());
         return entity.getId();
     }
 
     @Override
     public void saveOrUpdateAll(final Collection<T> entities) {
-        if (!CollectionUtils.isEmptyOrNull(entities)) {
-            final Session session = getCurrentSession();
-            int i = 0;
-            for (T entity : entities) {
-                session.saveOrUpdate(entity);
-                // flush a batch of inserts and release memory, every 100 rows:
-                if (i % 100 == 0) {
-                    flush();
+        bulkSaveOrUpdate(entities);
+    }
+
+    @Override
+    public BulkWriteStats bulkSaveOrUpdate(final Collection<? extends T> entities) {
+        final long start = System.nanoTime();
+        if (CollectionUtils.isEmptyOrNull(entities)) {
+            return new BulkWriteStats(0, 0, 0L);
+        }
+        final Session session = getCurrentSession();
+        final int size = getBatchSize();
+        int rows = 0;
+        int batches = 0;
+        for (T entity : groupByType(entities)) {
+            session.saveOrUpdate(entity);
+            evictFromCache(entity.getId());
+            // flush a batch of inserts/updates and release memory:
+            if (++rows % size == 0) {
+                flush();
+                batches++;
+            }
+        }
+        if (rows % size != 0) {
+            flush();
+            batches++;
+        }
+        return logStats("saveOrUpdate", new BulkWriteStats(rows, batches, System.nanoTime() - start));
+    }
+
+    @Override
+    public BulkWriteStats bulkInsert(final Collection<? extends T> entities, final boolean detached) {
+        if (!detached) {
+            return bulkSaveOrUpdate(entities);
+        }
+        final long start = System.nanoTime();
+        if (CollectionUtils.isEmptyOrNull(entities)) {
+            return new BulkWriteStats(0, 0, 0L);
+        }
+        // flush pending changes, so the inserts see them; the insert session shares the current connection (and
+        // transaction), but has its own persistence context, cleared after each batch
+        final Session session = getCurrentSession();
+        session.flush();
+        final Session insertSession = session.sessionWithOptions().connection().autoClose(false)
+                .flushBeforeCompletion(false).openSession();
+        insertSession.setCacheMode(CacheMode.IGNORE);
+        final int size = getBatchSize();
+        int rows = 0;
+        int batches = 0;
+        try {
+            for (T entity : groupByType(entities)) {
+                insertSession.save(entity);
+                if (++rows % size == 0) {
+                    insertSession.flush();
+                    insertSession.clear();
+                    batches++;
                 }
             }
+            if (rows % size != 0) {
+                insertSession.flush();
+                insertSession.clear();
+                batches++;
+            }
+        } finally {
+            insertSession.close();
+        }
+        return logStats("insert", new BulkWriteStats(rows, batches, System.nanoTime() - start));
+    }
+
+    /**
+     * Groups the entities by type (keeping the order within each type), so that statements of the same entity are sent
+     * together and JDBC batches are not broken by interleaved types.
+     */
+    private List<T> groupByType(final Collection<? extends T> entities) {
+        final Map<Class<?>, List<T>> byType = new LinkedHashMap<Class<?>, List<T>>();
+        for (T entity : entities) {
+            ArgumentUtils.rejectIfNull(entity);
+            List<T> group = byType.get(entity.getClass());
+            if (group == null) {
+                group = new ArrayList<T>();
+                byType.put(entity.getClass(), group);
+            }
+            group.add(entity);
+        }
+        if (byType.size() == 1) {
+            return byType.values().iterator().next();
+        }
+        final List<T> grouped = new ArrayList<T>(entities.size());
+        for (List<T> group : byType.values()) {
+            grouped.addAll(group);
         }
+        return grouped;
+    }
+
+    private BulkWriteStats logStats(final String operation, final BulkWriteStats stats) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Bulk {0} of {1}: {2}", new Object[]{operation, persistentClass.getSimpleName(), stats});
+        }
+        return stats;
     }
 
     @Override
@@ -150,6 +942,7 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
         ArgumentUtils.rejectIfNull(entity);
         final Session session = getCurrentSession();
         if (entity.getId() != null) {
+            evictFromCache(entity.getId());
             session.delete(entity);
             entity.setId(null);
         }
@@ -161,20 +954,24 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
         builder.append("delete from ").append(getPersistentClass().getName());
         Query q = getCurrentSession().createQuery(builder.toString());
         q.executeUpdate();
+        clearCache();
     }
 
     @Override
     public void deleteAll(final Collection<T> entities) {
         if (!CollectionUtils.isEmptyOrNull(entities)) {
             final Session session = getCurrentSession();
+            final int size = getBatchSize();
             int i = 0;
-            for (T entity : entities) {
+            for (T entity : groupByType(entities)) {
+                evictFromCache(entity.getId());
                 session.delete(entity);
-                // flush a batch of inserts and release memory, every 100 rows:
-                if (i % 100 == 0) {
+                // flush a batch of deletes and release memory:
+                if (++i % size == 0) {
                     flush();
                 }
             }
+            flush();
         }
     }
 
@@ -182,11 +979,352 @@ public abstract class AbstractEntityDaoBean<ID extends Serializable & Comparable
     public T deleteById(final ID id) {
         ArgumentUtils.rejectIfNull(id);
         final Session session = getCurrentSession();
-        final T entity = findById(id);
-        session.evict(entity);
+        // the instance on the session, never a cached copy
+        final T entity = persistentClass.cast(session.get(persistentClass, id));
         if (entity != null) {
+            evictFromCache(id);
             session.delete(entity);
         }
         return entity;
     }
+
+    @Override
+    public Map<Object, List<ID>> findIdsByPropertyValues(final String propertyName, final Collection<?> values) {
+        ArgumentUtils.rejectIfNull(propertyName);
+        ArgumentUtils.rejectIfNull(values);
+        final Map<Object, List<ID>> result = new HashMap<Object, List<ID>>();
+        final Session session = getCurrentSession();
+        final Type type = getSessionFactory().getClassMetadata(persistentClass).getPropertyType(propertyName);
+        // entities are compared by their ids
+        final ClassMetadata valueMetadata = type.isEntityType()
+                                            ? getSessionFactory().getClassMetadata(((EntityType) type).getAssociatedEntityName()) : null;
+        final Map<Object, Object> keyedValues = new LinkedHashMap<Object, Object>();
+        for (Object value : values) {
+            if (value != null) {
+                keyedValues.put((valueMetadata == null) ? value : valueMetadata.getIdentifier(value, (SessionImplementor) session), value);
+            }
+        }
+        if (keyedValues.isEmpty()) {
+            return result;
+        }
+        final String valuePath = (valueMetadata == null) ? propertyName : propertyName + "." + valueMetadata.getIdentifierPropertyName();
+        final List<Object> keys = new ArrayList<Object>(keyedValues.keySet());
+        final int chunkSize = getInListLimit();
+        for (int start = 0; start < keys.size(); start += chunkSize) {
+            final DetachedCriteria criteria = createCriteria().add(Restrictions.in(valuePath, keys.subList(start, Math.min(start + chunkSize, keys.size()))));
+            for (Object[] tuple : findTuplesByCriteria(criteria, new String[]{getIdPropertyName(), valuePath})) {
+                // the first column is the id of the entity
+                @SuppressWarnings("unchecked")
+                final ID id = (ID) tuple[0];
+                for (Object value : getMatchingValues(keyedValues, tuple[1])) {
+                    List<ID> ids = result.get(value);
+                    if (ids == null) {
+                        ids = new ArrayList<ID>(1);
+                        result.put(value, ids);
+                    }
+                    ids.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given values matching a value found on the database. Strings that are not equal are compared
+     * ignoring case, since the database collation may be case insensitive.
+     */
+    private static Collection<Object> getMatchingValues(final Map<Object, Object> values, final Object found) {
+        final Object value = values.get(found);
+        if (value != null) {
+            return Collections.singleton(value);
+        }
+        final Collection<Object> matching = new ArrayList<Object>(1);
+        if (found instanceof String) {
+            for (Map.Entry<Object, Object> entry : values.entrySet()) {
+                if (entry.getKey() instanceof String && ((String) found).equalsIgnoreCase((String) entry.getKey())) {
+                    matching.add(entry.getValue());
+                }
+            }
+        }
+        return matching;
+    }
+
+    @Override
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties) {
+        return deleteWhere(properties, 0);
+    }
+
+    @Override
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties, final int chunkSize) {
+        ArgumentUtils.rejectIfEmptyOrNull(properties);
+        if (hasDeleteDependencies()) {
+            return deleteLoaded(properties);
+        }
+        return executeWhere("delete", "delete from " + persistentClass.getName(), new HashMap<String, Object>(0), properties, chunkSize);
+    }
+
+    /**
+     * Deletes the matching entities one by one through the session, flushing every {@link #getBatchSize()} entities,
+     * for the entities whose delete must cascade or clean up collection tables.
+     */
+    private BulkWriteStats deleteLoaded(final Map<String, Object> properties) {
+        final long start = System.nanoTime();
+        final Map<String, Object> whereParameters = new HashMap<String, Object>(properties.size());
+        final String where = buildWhere(properties, whereParameters);
+        final Session session = getCurrentSession();
+        final List<?> ids = setParameters(session.createQuery("select " + getIdPropertyName() + " from " + persistentClass.getName() + where),
+                                          whereParameters).list();
+        final int size = getBatchSize();
+        int rows = 0;
+        int batches = 0;
+        for (Object id : ids) {
+            final T entity = persistentClass.cast(session.get(persistentClass, (Serializable) id));
+            if (entity != null) {
+                session.delete(entity);
+                evictFromCache(entity.getId());
+                if (++rows % size == 0) {
+                    session.flush();
+                    batches++;
+                }
+            }
+        }
+        if (rows % size != 0) {
+            session.flush();
+            batches++;
+        }
+        return logStats("delete", new BulkWriteStats(rows, batches, System.nanoTime() - start));
+    }
+
+    /**
+     * Checks if deleting an entity (of the class or any subclass) does more than deleting its row: cascades to
+     * associations, or rows of join tables and element collections owned by the entity, which bulk deletes ignore.
+     */
+    private boolean hasDeleteDependencies() {
+        final SessionFactoryImplementor factory = (SessionFactoryImplementor) getSessionFactory();
+        final EntityPersister root = factory.getEntityPersister(persistentClass.getName());
+        final Set<String> entityNames = new HashSet<String>();
+        entityNames.add(root.getEntityName());
+        for (Object subclass : root.getEntityMetamodel().getSubclassEntityNames()) {
+            entityNames.add((String) subclass);
+        }
+        for (String entityName : entityNames) {
+            final EntityPersister persister = factory.getEntityPersister(entityName);
+            final Type[] types = persister.getPropertyTypes();
+            final CascadeStyle[] cascades = persister.getPropertyCascadeStyles();
+            for (int i = 0; i < types.length; i++) {
+                if (cascades[i].doCascade(CascadingAction.DELETE)) {
+                    return true;
+                }
+                if (types[i].isCollectionType() && !factory.getCollectionPersister(((CollectionType) types[i]).getRole()).isInverse()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values) {
+        return updateWhere(properties, values, 0);
+    }
+
+    @Override
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values, final int chunkSize) {
+        ArgumentUtils.rejectIfEmptyOrNull(properties);
+        ArgumentUtils.rejectIfEmptyOrNull(values);
+        final StringBuilder statement = new StringBuilder("update ").append(persistentClass.getName()).append(" set ");
+        final Map<String, Object> setParameters = new HashMap<String, Object>(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            final String parameter = "v" + setParameters.size();
+            if (!setParameters.isEmpty()) {
+                statement.append(", ");
+            }
+            if (isJoinPath(entry.getKey())) {
+                throw new IllegalArgumentException("Cannot update a property of an associated entity: " + entry.getKey());
+            }
+            statement.append(entry.getKey()).append(" = :").append(parameter);
+            setParameters.put(parameter, entry.getValue());
+        }
+        return executeWhere("update", statement.toString(), setParameters, properties, chunkSize);
+    }
+
+    /**
+     * Executes a bulk HQL statement restricted by the properties (as in {@link #findByProperties(Map, Order...)}),
+     * optionally in chunks of ids: each chunk is bounded by the id range of the next chunkSize matching rows, so a
+     * statement never touches more than chunkSize rows. Bulk statements bypass the session: pending changes are
+     * flushed before, and the instances of the entity are evicted from the session, the second level cache region and
+     * the entity cache afterwards.
+     */
+    private BulkWriteStats executeWhere(final String operation, final String statement, final Map<String, Object> setParameters,
+                                        final Map<String, Object> properties, final int chunkSize) {
+        final long start = System.nanoTime();
+        final Map<String, Object> whereParameters = new HashMap<String, Object>(properties.size());
+        final String where = buildWhere(properties, whereParameters);
+        final Session session = getCurrentSession();
+        session.flush();
+        int rows = 0;
+        int chunks = 0;
+        if (chunkSize <= 0) {
+            final Query query = setParameters(session.createQuery(statement + where), whereParameters);
+            rows = setParameters(query, setParameters).executeUpdate();
+            chunks++;
+        } else {
+            final String idProperty = getIdPropertyName();
+            Object lower = null;
+            while (true) {
+                final String range = (lower == null) ? "" : " and " + idProperty + " > :lower";
+                final Query bound = setParameters(session.createQuery("select " + idProperty + " from " + persistentClass.getName()
+                                                                      + where + range + " order by " + idProperty), whereParameters);
+                if (lower != null) {
+                    bound.setParameter("lower", lower);
+                }
+                // the last id of the next chunk, null if it is the last one
+                final Object upper = bound.setFirstResult(chunkSize - 1).setMaxResults(1).uniqueResult();
+                final Query query = setParameters(session.createQuery(statement + where + range
+                                                                      + ((upper == null) ? "" : " and " + idProperty + " <= :upper")), whereParameters);
+                setParameters(query, setParameters);
+                if (lower != null) {
+                    query.setParameter("lower", lower);
+                }
+                if (upper != null) {
+                    query.setParameter("upper", upper);
+                }
+                rows += query.executeUpdate();
+                chunks++;
+                if (upper == null) {
+                    break;
+                }
+                lower = upper;
+            }
+        }
+        evictFromSession(session);
+        getSessionFactory().getCache().evictEntityRegion(persistentClass);
+        clearCache();
+        return logStats(operation, new BulkWriteStats(rows, chunks, System.nanoTime() - start));
+    }
+
+    /**
+     * Builds the where clause of the property restrictions, putting its parameters in the map. Bulk statements can not
+     * join, so restrictions on properties of associated entities (other than their id) go through an id subselect.
+     */
+    private String buildWhere(final Map<String, Object> properties, final Map<String, Object> whereParameters) {
+        boolean joins = false;
+        for (String propertyPath : properties.keySet()) {
+            joins |= isJoinPath(propertyPath);
+        }
+        final String prefix = joins ? "e." : "";
+        final StringBuilder conditions = new StringBuilder();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (conditions.length() > 0) {
+                conditions.append(" and ");
+            }
+            conditions.append(prefix).append(entry.getKey());
+            if (entry.getValue() == null) {
+                conditions.append(" is null");
+            } else {
+                final String parameter = "w" + whereParameters.size();
+                conditions.append(" = :").append(parameter);
+                whereParameters.put(parameter, entry.getValue());
+            }
+        }
+        if (!joins) {
+            return " where " + conditions;
+        }
+        final String idProperty = getIdPropertyName();
+        return " where " + idProperty + " in (select e." + idProperty + " from " + persistentClass.getName() + " e where " + conditions + ")";
+    }
+
+    /**
+     * Checks the property path against the metadata of the entity, returning if it crosses an association: paths may
+     * cross components and end on the id of an associated entity (its foreign key) without a join, but not cross
+     * collections.
+     */
+    private boolean isJoinPath(final String propertyPath) {
+        final String[] segments = checkPropertyPath(propertyPath).split("\\.");
+        ClassMetadata metadata = getSessionFactory().getClassMetadata(persistentClass);
+        CompositeType component = null;
+        for (int i = 0; i < segments.length - 1; i++) {
+            final Type type = getPropertyType(metadata, component, segments[i], propertyPath);
+            if (type.isCollectionType()) {
+                throw new IllegalArgumentException("Cannot restrict across the collection " + segments[i] + " of " + propertyPath);
+            } else if (type.isEntityType()) {
+                final ClassMetadata associated = getSessionFactory().getClassMetadata(((EntityType) type).getAssociatedEntityName());
+                return i < segments.length - 2 || !segments[i + 1].equals(associated.getIdentifierPropertyName());
+            } else if (type.isComponentType()) {
+                component = (CompositeType) type;
+                metadata = null;
+            } else {
+                throw new IllegalArgumentException("Property " + segments[i] + " of " + propertyPath + " has no properties");
+            }
+        }
+        getPropertyType(metadata, component, segments[segments.length - 1], propertyPath);
+        return false;
+    }
+
+    /**
+     * Evicts the instances of the entity from the session, as their state may not match the rows after a bulk
+     * statement.
+     */
+    private void evictFromSession(final Session session) {
+        final Map<?, ?> entities = ((SessionImplementor) session).getPersistenceContext().getEntitiesByKey();
+        for (Object entity : new ArrayList<Object>(entities.values())) {
+            if (persistentClass.isInstance(entity)) {
+                session.evict(entity);
+            }
+        }
+    }
+
+    private static Query setParameters(final Query query, final Map<String, Object> parameters) {
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue());
+        }
+        return query;
+    }
+
+    /**
+     * Property paths are concatenated to the HQL, so only plain paths are accepted.
+     */
+    private static String checkPropertyPath(final String propertyPath) {
+        ArgumentUtils.rejectIfNull(propertyPath);
+        if (!PROPERTY_PATH.matcher(propertyPath).matches()) {
+            throw new IllegalArgumentException("Invalid property path: " + propertyPath);
+        }
+        return propertyPath;
+    }
+
+    /**
+     * Returns the projected values as they are, even if a single property was projected.
+     */
+    private static final class TupleResultTransformer extends BasicTransformerAdapter {
+
+        private static final long serialVersionUID = 1L;
+        static final TupleResultTransformer INSTANCE = new TupleResultTransformer();
+
+        @Override
+        public Object transformTuple(final Object[] tuple, final String[] aliases) {
+            return tuple;
+        }
+    }
+
+    /**
+     * Creates a DTO from each tuple of projected values, through its constructor.
+     */
+    private static final class ConstructorResultTransformer extends BasicTransformerAdapter {
+
+        private static final long serialVersionUID = 1L;
+        private final transient Constructor<?> constructor;
+
+        ConstructorResultTransformer(final Constructor<?> constructor) {
+            this.constructor = constructor;
+        }
+
+        @Override
+        public Object transformTuple(final Object[] tuple, final String[] aliases) {
+            try {
+                return constructor.newInstance(tuple);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Could not create " + constructor.getDeclaringClass().getName(), ex);
+            }
+        }
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of a bulk write: rows written, batches flushed and throughput.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class BulkWriteStats implements Serializable {
+
+    private static final long serialVersionUID = 4721139503648825137L;
+    private final int rows;
+    private final int batches;
+    private final long elapsedNanos;
+
+    public BulkWriteStats(final int rows, final int batches, final long elapsedNanos) {
+        this.rows = rows;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Returns the time spent writing, in milliseconds.
+     *
+     * @return The elapsed time.
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    /**
+     * Returns the throughput of the write.
+     *
+     * @return The rows written per second.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos <= 0 ? 0d : rows * 1000000000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return rows + " rows in " + batches + " batches, " + getElapsedMillis() + " msecs ("
+               + Math.round(getRowsPerSecond()) + " rows/s)";
+    }
+}
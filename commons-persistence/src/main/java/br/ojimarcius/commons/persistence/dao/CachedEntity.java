@@ -0,0 +1,55 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Serializable;
+
+/**
+ * The state of an entity kept by an {@link EntityCache}: the name of its (concrete) entity and its property values,
+ * disassembled as by the Hibernate second level cache. Associated entities are kept by id and collections by the key
+ * of their owner, never as instances, so the state is not bound to any session.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public final class CachedEntity implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String entityName;
+    private final Serializable[] state;
+
+    CachedEntity(final String entityName, final Serializable[] state) {
+        this.entityName = entityName;
+        this.state = state;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Returns the disassembled property values. They are assembled again for each session, and never changed.
+     *
+     * @return The property values.
+     */
+    Serializable[] getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + entityName + "]";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Serializable;
+
+/**
+ * A read-through cache of entities by id, plugged on a DAO with
+ * {@link AbstractEntityDaoBean#setEntityCache(EntityCache)}.
+ * <p/>
+ * The DAO looks up {@link EntityDao#findById(Serializable)} on the session, then on the cache, then on the database,
+ * and evicts entities written through it (again when the transaction completes). The cache holds the state of the
+ * entities as {@link CachedEntity CachedEntities}, with the associated entities and collections kept by id, as the
+ * Hibernate second level cache does: each hit puts a new read-only instance on the current session, whose associations
+ * are resolved by that session, so nothing is shared between sessions. It is only used outside of read-write
+ * transactions, and entities with lazy properties (not associations) not loaded are not cached.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <ID> The type of the Entity's id (Ex: Long, Integer, String, ...).
+ */
+public interface EntityCache<ID extends Serializable> {
+
+    /**
+     * Returns the cached entity.
+     *
+     * @param id The id.
+     * @return The entity state, or null if it is not cached (or expired).
+     */
+    public CachedEntity get(final ID id);
+
+    public void put(final ID id, final CachedEntity entity);
+
+    public void evict(final ID id);
+
+    public void clear();
+
+    public int size();
+
+    public long getHits();
+
+    public long getMisses();
+
+    /**
+     * Returns the ratio of lookups found on the cache.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    public double getHitRate();
+}
@@ -0,0 +1,34 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+/**
+ * Callback that processes, one at a time, the entities streamed by a DAO.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <T> The Type of Entity processed.
+ */
+public interface EntityCallback<T> {
+
+    /**
+     * Processes an entity. The entity is evicted from the session some time after this call, so changes to it are not
+     * flushed unless it is explicitly saved.
+     *
+     * @param entity The entity.
+     * @return <code>true</code> to continue, <code>false</code> to stop the scroll.
+     */
+    public boolean process(final T entity);
+}
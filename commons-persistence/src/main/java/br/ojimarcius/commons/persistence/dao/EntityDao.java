@@ -17,6 +17,7 @@ package br.ojimarcius.commons.persistence.dao;
 import br.ojimarcius.commons.persistence.model.Entity;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
@@ -40,6 +41,16 @@ public interface EntityDao<ID extends Serializable & Comparable<ID>, T extends E
     
     public T findById(final ID id);
 
+    /**
+     * Returns the entities with the given ids, in the requested order (missing ids are skipped). Entities already on
+     * the session or on the entity cache are reused; the others are fetched with <code>IN</code> queries, chunked to
+     * respect the parameter limit of the dialect.
+     *
+     * @param ids The ids.
+     * @return The entities found.
+     */
+    public List<T> findByIds(final Collection<ID> ids);
+
     public Collection<T> findAll(final Order... orders);
 
     public Collection<T> findByProperty(final String propertyName, final Object propertyValue, final Order... orders);
@@ -48,12 +59,144 @@ public interface EntityDao<ID extends Serializable & Comparable<ID>, T extends E
 
     public Collection<T> findByCriteria(final DetachedCriteria criteria, final Order... orders);
 
+    /**
+     * Streams the entities matching the criteria through a forward-only cursor. Processed entities are evicted from
+     * the session from time to time, so the whole result is never held in memory. The iterator must be consumed inside
+     * the current transaction and closed after use.
+     *
+     * @param criteria The criteria. Result transformers (e.g. distinct root entity) are not applied.
+     * @param orders   The orders.
+     * @return The iterator.
+     */
+    public EntityIterator<T> iterateByCriteria(final DetachedCriteria criteria, final Order... orders);
+
+    public EntityIterator<T> iterateAll(final Order... orders);
+
+    /**
+     * Streams the entities matching the criteria to the callback, as {@link #iterateByCriteria}.
+     *
+     * @param criteria The criteria.
+     * @param callback The callback.
+     * @param orders   The orders.
+     * @return The number of entities processed.
+     */
+    public int scrollByCriteria(final DetachedCriteria criteria, final EntityCallback<? super T> callback, final Order... orders);
+
+    public int scrollAll(final EntityCallback<? super T> callback, final Order... orders);
+
+    /**
+     * Returns a page of entities ordered by id, starting after the given id (keyset pagination): deep pages cost the
+     * same as the first one and are stable while rows are inserted or deleted.
+     *
+     * @param lastId   The last id of the previous page, or null for the first page.
+     * @param pageSize The page size.
+     * @return The page.
+     */
+    public List<T> findPageAfter(final ID lastId, final int pageSize);
+
+    public List<T> findPageByCriteria(final DetachedCriteria criteria, final ID lastId, final int pageSize);
+
+    /**
+     * Counts the entities matching the criteria, with a count projection.
+     *
+     * @param criteria The criteria.
+     * @return The count.
+     */
+    public long countByCriteria(final DetachedCriteria criteria);
+
+    /**
+     * Returns the ids of the entities having each of the given values on the property, with IN queries selecting only
+     * the id and the value (e.g. to check the uniqueness of many values at once). Entity values are compared by id.
+     *
+     * @param propertyName The property name.
+     * @param values       The values. Null values are ignored.
+     * @return The ids found by value; values not found are not mapped.
+     */
+    public Map<Object, List<ID>> findIdsByPropertyValues(final String propertyName, final Collection<?> values);
+
+    /**
+     * Returns a page of the entities matching the criteria. The total is counted with a projection of the same
+     * criteria, on the same session; for very large tables the count can be skipped and an extra row is fetched to
+     * tell if there is a next page.
+     *
+     * @param criteria    The criteria.
+     * @param firstResult The index of the first row.
+     * @param maxResults  The page size.
+     * @param exactCount  If the total is counted.
+     * @param orders      The orders.
+     * @return The page.
+     */
+    public Page<T> findPage(final DetachedCriteria criteria, final int firstResult, final int maxResults, final boolean exactCount, final Order... orders);
+
+    public Page<T> findPage(final int firstResult, final int maxResults, final boolean exactCount, final Order... orders);
+
+    /**
+     * Returns only the given property paths of the entities matching the criteria, as tuples (one value per path, in
+     * order), without loading the entities. Paths can cross many-to-one associations and components (e.g.
+     * "city.state.name"); the associations are left outer joined, or the aliases of the criteria are reused.
+     *
+     * @param criteria      The criteria.
+     * @param propertyPaths The property paths.
+     * @param orders        The orders.
+     * @return The tuples.
+     */
+    public List<Object[]> findTuplesByCriteria(final DetachedCriteria criteria, final String[] propertyPaths, final Order... orders);
+
+    public List<Object[]> findTuples(final String[] propertyPaths, final Order... orders);
+
+    /**
+     * Returns only the given property paths of the entities matching the criteria, as DTOs created through the
+     * constructor of the given type whose parameters accept the values of the paths, in order.
+     *
+     * @param <D>           The type of the DTOs.
+     * @param criteria      The criteria.
+     * @param type          The type of the DTOs.
+     * @param propertyPaths The property paths.
+     * @param orders        The orders.
+     * @return The DTOs.
+     * @see #findTuplesByCriteria(DetachedCriteria, String[], Order...)
+     */
+    public <D> List<D> findProjectionByCriteria(final DetachedCriteria criteria, final Class<D> type, final String[] propertyPaths, final Order... orders);
+
+    public <D> List<D> findProjection(final Class<D> type, final String[] propertyPaths, final Order... orders);
+
+    /**
+     * Returns the values of a single property path of the entities matching the criteria.
+     *
+     * @param <V>          The type of the values.
+     * @param criteria     The criteria.
+     * @param propertyPath The property path.
+     * @param orders       The orders.
+     * @return The values.
+     */
+    public <V> List<V> findPropertyValuesByCriteria(final DetachedCriteria criteria, final String propertyPath, final Order... orders);
+
     public ID save(final T entity);
 
     public ID saveOrUpdate(final T entity);
 
     public void saveOrUpdateAll(final Collection<T> entities);
 
+    /**
+     * Saves or updates the entities on JDBC sized batches, flushing and clearing the session after each one.
+     *
+     * @param entities The entities.
+     * @return The statistics of the write.
+     */
+    public BulkWriteStats bulkSaveOrUpdate(final Collection<? extends T> entities);
+
+    /**
+     * Inserts new entities on JDBC sized batches. Detached inserts go through a child session on the current connection
+     * and transaction, whose persistence context is cleared after each batch: the current session does not keep the
+     * inserted entities, for insert-only loads. The child is a regular session, so cascades and interceptors still
+     * apply. Otherwise the entities are written as by {@link #bulkSaveOrUpdate(Collection)}.
+     *
+     * @param entities The new entities.
+     * @param detached If the inserted entities are kept out of the current session.
+     * @return The statistics of the write.
+     */
+    public BulkWriteStats bulkInsert(final Collection<? extends T> entities, final boolean detached);
+
     public void delete(final T entity);
 
     public void deleteAll();
@@ -61,4 +204,42 @@ public interface EntityDao<ID extends Serializable & Comparable<ID>, T extends E
     public void deleteAll(final Collection<T> entities);
 
     public T deleteById(final ID id);
+
+    /**
+     * Deletes the entities whose properties have the given values (null values are "is null" restrictions), with a
+     * single bulk HQL statement. Bulk statements bypass cascades and listeners: pending changes of the session are
+     * flushed before the statement, and the instances of the entity are evicted from the session, the second level
+     * cache region and the entity cache afterwards (references to them become detached). Restrictions on properties of
+     * associated entities, other than their id, are applied through an id subselect. Entities whose delete cascades, or
+     * owns rows of join tables or element collections, are loaded and deleted through the session instead, flushing
+     * every batch size entities.
+     *
+     * @param properties The property restrictions, as in {@link #findByProperties(Map, Order...)}.
+     * @return The statistics of the delete, with the affected rows.
+     */
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties);
+
+    /**
+     * Deletes the entities whose properties have the given values, with one bulk HQL statement per chunk of ids: each
+     * statement deletes at most chunkSize rows, to limit the locks and undo log of each statement. The chunk size does
+     * not apply to the entities deleted through the session.
+     *
+     * @param properties The property restrictions, as in {@link #findByProperties(Map, Order...)}.
+     * @param chunkSize  The maximum of rows per statement, or 0 for a single statement.
+     * @return The statistics of the delete, with the affected rows and the number of statements.
+     */
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties, final int chunkSize);
+
+    /**
+     * Sets the given values on the entities whose properties have the given values, with a single bulk HQL statement.
+     * Only properties of the entity (or of its components) can be set, not properties of associated entities.
+     *
+     * @param properties The property restrictions, as in {@link #findByProperties(Map, Order...)}.
+     * @param values     The new values of the properties.
+     * @return The statistics of the update, with the affected rows.
+     * @see #deleteWhere(Map)
+     */
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values);
+
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values, final int chunkSize);
 }
@@ -0,0 +1,104 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * A forward-only iterator over a {@link ScrollableResults}, that evicts the returned entities from the session every
+ * <code>evictEvery</code> rows so the session does not grow with the results.
+ * <p/>
+ * The iterator must be consumed inside the session (transaction) that created it, and closed after use.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <T> The Type of Entity iterated.
+ */
+public class EntityIterator<T> implements Iterator<T>, Closeable {
+
+    private final Session session;
+    private final ScrollableResults results;
+    private final Class<T> type;
+    private final List<Object> returned;
+    private final int evictEvery;
+    private Boolean hasNext = null;
+    private boolean closed = false;
+
+    public EntityIterator(final Session session, final ScrollableResults results, final Class<T> type,
+                          final int evictEvery) {
+        this.session = session;
+        this.results = results;
+        this.type = type;
+        this.evictEvery = Math.max(evictEvery, 1);
+        this.returned = new ArrayList<Object>(this.evictEvery);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasNext == null) {
+            hasNext = !closed && results.next();
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasNext = null;
+        if (returned.size() >= evictEvery) {
+            evictReturned();
+        }
+        final T entity = type.cast(results.get(0));
+        returned.add(entity);
+        return entity;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Closes the underlying results (and cursor) and evicts the last returned entities. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            results.close();
+            evictReturned();
+        }
+    }
+
+    private void evictReturned() {
+        for (Object entity : returned) {
+            if (entity != null && session.isOpen() && session.contains(entity)) {
+                session.evict(entity);
+            }
+        }
+        returned.clear();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of results, with the total count when it was computed.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <T> The type of the rows.
+ */
+public class Page<T> implements Serializable {
+
+    private static final long serialVersionUID = -6140359125364788314L;
+    private final List<T> rows;
+    private final int firstResult;
+    private final int maxResults;
+    private final Long total;
+    private final boolean hasNext;
+
+    /**
+     * Constructor.
+     *
+     * @param rows        The rows of the page.
+     * @param firstResult The index of the first row.
+     * @param maxResults  The page size.
+     * @param total       The total of rows, or null if it was not counted.
+     * @param hasNext     If there are rows after this page.
+     */
+    public Page(final List<T> rows, final int firstResult, final int maxResults, final Long total, final boolean hasNext) {
+        this.rows = rows;
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.total = total;
+        this.hasNext = hasNext;
+    }
+
+    public List<T> getRows() {
+        return rows;
+    }
+
+    public int getFirstResult() {
+        return firstResult;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Returns the total of rows of all pages.
+     *
+     * @return The total, or null if it was not counted (see {@link #isHasNext()}).
+     */
+    public Long getTotal() {
+        return total;
+    }
+
+    public boolean isTotalKnown() {
+        return total != null;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+}
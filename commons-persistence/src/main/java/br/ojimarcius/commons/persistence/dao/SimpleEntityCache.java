@@ -0,0 +1,151 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory {@link EntityCache}, bounded by size (least recently used entries are dropped first) and by time to
+ * live.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <ID> The type of the Entity's id (Ex: Long, Integer, String, ...).
+ */
+public class SimpleEntityCache<ID extends Serializable> implements EntityCache<ID> {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TIME_TO_LIVE = 10L * 60 * 1000;
+    private final long timeToLive;
+    private final Map<ID, CacheEntry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Default constructor: {@link #DEFAULT_MAX_SIZE} entries, living for {@link #DEFAULT_TIME_TO_LIVE} msecs.
+     */
+    public SimpleEntityCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize    The maximum number of cached entities.
+     * @param timeToLive The time, in msecs, an entity is kept after being cached. Zero or less to never expire.
+     */
+    public SimpleEntityCache(final int maxSize, final long timeToLive) {
+        ArgumentUtils.rejectIfLessThan(maxSize, 1);
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<ID, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ID, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public CachedEntity get(final ID id) {
+        final CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+            if (entry != null && entry.isExpired()) {
+                entries.remove(id);
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.entity;
+    }
+
+    @Override
+    public void put(final ID id, final CachedEntity entity) {
+        ArgumentUtils.rejectIfAnyNull(id, entity);
+        final long expiration = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE;
+        synchronized (entries) {
+            entries.put(id, new CacheEntry(entity, expiration));
+        }
+    }
+
+    @Override
+    public void evict(final ID id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0d : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+
+    private static final class CacheEntry {
+
+        private final CachedEntity entity;
+        private final long expiration;
+
+        CacheEntry(final CachedEntity entity, final long expiration) {
+            this.entity = entity;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiration;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package br.ojimarcius.commons.persistence.model;
 
+import br.ojimarcius.commons.temporal.EpochPeriod;
 import br.ojimarcius.commons.temporal.Period;
 import br.ojimarcius.commons.util.CalendarUtils;
 import java.util.Calendar;
@@ -61,6 +62,15 @@ public class PersistentPeriod implements Period {
         this.end = CalendarUtils.castToCalendar(end);
     }
 
+    /**
+     * Constructor that copies the bounds of an epoch period (on the default time zone).
+     * <p>
+     * @param period The epoch period.
+     */
+    public PersistentPeriod(final EpochPeriod period) {
+        this(period.getStartDate(), period.getEndDate());
+    }
+
     /**
      * Returns the start of the period.
      *
@@ -14,10 +14,14 @@
  */
 package br.ojimarcius.commons.persistence.service;
 
+import br.ojimarcius.commons.persistence.dao.BulkWriteStats;
+import br.ojimarcius.commons.persistence.dao.EntityCallback;
 import br.ojimarcius.commons.persistence.dao.EntityDao;
+import br.ojimarcius.commons.persistence.dao.Page;
 import br.ojimarcius.commons.persistence.model.Entity;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -53,6 +57,12 @@ public abstract class AbstractEntityServiceBean<ID extends Serializable & Compar
         return getDao().findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<T> findByIds(final Collection<ID> ids) {
+        return getDao().findByIds(ids);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Collection<T> findAll() {
@@ -71,6 +81,42 @@ public abstract class AbstractEntityServiceBean<ID extends Serializable & Compar
         return getDao().findByProperties(properties);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Object, List<ID>> findIdsByPropertyValues(final String propertyName, final Collection<?> values) {
+        return getDao().findIdsByPropertyValues(propertyName, values);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int scrollAll(final EntityCallback<? super T> callback) {
+        return getDao().scrollAll(callback);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<T> findPageAfter(final ID lastId, final int pageSize) {
+        return getDao().findPageAfter(lastId, pageSize);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<T> findPage(final int firstResult, final int maxResults, final boolean exactCount) {
+        return getDao().findPage(firstResult, maxResults, exactCount);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Object[]> findTuples(final String... propertyPaths) {
+        return getDao().findTuples(propertyPaths);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <D> List<D> findProjection(final Class<D> type, final String... propertyPaths) {
+        return getDao().findProjection(type, propertyPaths);
+    }
+
     @Override
     @Transactional(readOnly = false)
     public ID save(final T entity) {
@@ -89,6 +135,18 @@ public abstract class AbstractEntityServiceBean<ID extends Serializable & Compar
         getDao().saveOrUpdateAll(entities);
     }
 
+    @Override
+    @Transactional(readOnly = false)
+    public BulkWriteStats bulkSaveOrUpdate(final Collection<? extends T> entities) {
+        return getDao().bulkSaveOrUpdate(entities);
+    }
+
+    @Override
+    @Transactional(readOnly = false)
+    public BulkWriteStats bulkInsert(final Collection<? extends T> entities, final boolean detached) {
+        return getDao().bulkInsert(entities, detached);
+    }
+
     @Override
     @Transactional(readOnly = false)
     public void delete(final T entity) {
@@ -112,4 +170,16 @@ public abstract class AbstractEntityServiceBean<ID extends Serializable & Compar
     public T deleteById(final ID id) {
         return getDao().deleteById(id);
     }
+
+    @Override
+    @Transactional(readOnly = false)
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties, final int chunkSize) {
+        return getDao().deleteWhere(properties, chunkSize);
+    }
+
+    @Override
+    @Transactional(readOnly = false)
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values, final int chunkSize) {
+        return getDao().updateWhere(properties, values, chunkSize);
+    }
 }
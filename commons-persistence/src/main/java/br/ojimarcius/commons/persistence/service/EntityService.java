@@ -14,9 +14,13 @@
  */
 package br.ojimarcius.commons.persistence.service;
 
+import br.ojimarcius.commons.persistence.dao.BulkWriteStats;
+import br.ojimarcius.commons.persistence.dao.EntityCallback;
+import br.ojimarcius.commons.persistence.dao.Page;
 import br.ojimarcius.commons.persistence.model.Entity;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,18 +36,36 @@ public interface EntityService<ID extends Serializable & Comparable<ID>, T exten
 
     public T findById(final ID id);
 
+    public List<T> findByIds(final Collection<ID> ids);
+
     public Collection<T> findAll();
 
     public Collection<T> findByProperty(final String propertyName, final Object propertyValue);
 
     public Collection<T> findByProperties(final Map<String, Object> properties);
 
+    public Map<Object, List<ID>> findIdsByPropertyValues(final String propertyName, final Collection<?> values);
+
+    public int scrollAll(final EntityCallback<? super T> callback);
+
+    public List<T> findPageAfter(final ID lastId, final int pageSize);
+
+    public Page<T> findPage(final int firstResult, final int maxResults, final boolean exactCount);
+
+    public List<Object[]> findTuples(final String... propertyPaths);
+
+    public <D> List<D> findProjection(final Class<D> type, final String... propertyPaths);
+
     public ID save(final T entity);
 
     public ID saveOrUpdate(final T entity);
 
     public void saveOrUpdateAll(final Collection<T> entities);
 
+    public BulkWriteStats bulkSaveOrUpdate(final Collection<? extends T> entities);
+
+    public BulkWriteStats bulkInsert(final Collection<? extends T> entities, final boolean detached);
+
     public void delete(final T entity);
 
     public void deleteAll();
@@ -51,4 +73,8 @@ public interface EntityService<ID extends Serializable & Comparable<ID>, T exten
     public void deleteAll(final Collection<T> entities);
 
     public T deleteById(final ID id);
+
+    public BulkWriteStats deleteWhere(final Map<String, Object> properties, final int chunkSize);
+
+    public BulkWriteStats updateWhere(final Map<String, Object> properties, final Map<String, Object> values, final int chunkSize);
 }
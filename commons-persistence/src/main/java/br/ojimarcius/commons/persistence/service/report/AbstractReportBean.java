@@ -15,17 +15,32 @@
 package br.ojimarcius.commons.persistence.service.report;
 
 import br.ojimarcius.commons.persistence.model.Entity;
-import br.ojimarcius.commons.util.ArrayUtils;
+import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.CollectionUtils;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import net.sf.jasperreports.engine.JasperRunManager;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSwapFile;
 
 /**
  * TODO
@@ -36,8 +51,19 @@ import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
  */
 public abstract class AbstractReportBean<E extends Entity> implements EntityReport<E> {
 
+    /**
+     * Default number of pages kept in memory when a virtualizer directory is set.
+     */
+    public static final int DEFAULT_VIRTUALIZER_MAX_PAGES = 50;
+    /**
+     * Loaded reports, by {@link #getReportKey()}, of the reports that have one.
+     */
+    private static final ConcurrentMap<String, JasperReport> REPORTS = new ConcurrentHashMap<String, JasperReport>();
     private Map<String, Object> params;
     private Collection<E> data;
+    private Iterator<? extends E> dataIterator;
+    private File virtualizerDirectory;
+    private int virtualizerMaxPages = DEFAULT_VIRTUALIZER_MAX_PAGES;
 
     public AbstractReportBean() {
         this.params = new HashMap<String, Object>();
@@ -45,6 +71,71 @@ public abstract class AbstractReportBean<E extends Entity> implements EntityRepo
 
     protected abstract InputStream getJasperStream();
 
+    /**
+     * Returns the key of the compiled report (the stream of {@link #getJasperStream()}) on the cache of loaded reports,
+     * shared by all the instances. The key must identify the template, e.g. its resource name: reports whose stream
+     * depends on their state must not share a key.
+     *
+     * @return The key, or null (the default) to load the report on each generation.
+     */
+    protected String getReportKey() {
+        return null;
+    }
+
+    /**
+     * Returns the compiled report, loaded from {@link #getJasperStream()} only once for each {@link #getReportKey()},
+     * or on each call if there is no key.
+     *
+     * @return The report.
+     * @throws Exception If the report can't be loaded.
+     */
+    protected JasperReport getJasperReport() throws Exception {
+        final String key = getReportKey();
+        JasperReport report = (key == null) ? null : REPORTS.get(key);
+        if (report == null) {
+            final InputStream inputStream = getJasperStream();
+            try {
+                report = (JasperReport) JRLoader.loadObject(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            if (key != null) {
+                REPORTS.putIfAbsent(key, report);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Discards the loaded reports, e.g. after the templates are redeployed.
+     */
+    public static void clearReportCache() {
+        REPORTS.clear();
+    }
+
+    public File getVirtualizerDirectory() {
+        return virtualizerDirectory;
+    }
+
+    /**
+     * Sets the directory of the swap files of very large reports: only {@link #getVirtualizerMaxPages()} pages are
+     * kept in memory while the report is filled and exported.
+     *
+     * @param virtualizerDirectory The directory, or null to keep all the pages in memory.
+     */
+    public void setVirtualizerDirectory(final File virtualizerDirectory) {
+        this.virtualizerDirectory = virtualizerDirectory;
+    }
+
+    public int getVirtualizerMaxPages() {
+        return virtualizerMaxPages;
+    }
+
+    public void setVirtualizerMaxPages(final int virtualizerMaxPages) {
+        ArgumentUtils.rejectIfLessThan(virtualizerMaxPages, 1);
+        this.virtualizerMaxPages = virtualizerMaxPages;
+    }
+
     @Override
     public void putParam(final String key, final Object value) {
         this.params.put(key, value);
@@ -58,36 +149,88 @@ public abstract class AbstractReportBean<E extends Entity> implements EntityRepo
     @Override
     public void setReportData(final Collection<E> data) {
         this.data = data;
+        this.dataIterator = null;
+    }
+
+    @Override
+    public void setReportData(final Iterator<? extends E> data) {
+        this.dataIterator = data;
+        this.data = null;
     }
 
     @Override
     public byte[] generateReport() throws Exception {
-        if (CollectionUtils.isNotEmpty(data)) {
-            return JasperRunManager.runReportToPdf(getJasperStream(), params, new JRBeanCollectionDataSource(data));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (generateReport(outputStream)) {
+            return outputStream.toByteArray();
         }
         return null;
     }
 
     @Override
     public boolean generateReport(final File file) throws Exception {
-        byte[] bytes = generateReport();
-        if (ArrayUtils.isEmptyOrNull(bytes)) {
+        ArgumentUtils.rejectIfNull(file);
+        if (!hasData()) {
             return false;
         }
-        OutputStream outputStream = null;
+        File tempFile = File.createTempFile("." + file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
         try {
-            if (!file.isFile()) {
-                file.createNewFile();
+            final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            final boolean generated;
+            try {
+                generated = generateReport(outputStream);
+            } finally {
+                outputStream.close();
+            }
+            if (!generated) {
+                return false;
+            }
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Cannot rename " + tempFile + " to " + file);
             }
-            outputStream = new FileOutputStream(file);
-            outputStream.write(bytes);
+            tempFile = null;
             return true;
-        } catch (Exception ex2) {
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public boolean generateReport(final OutputStream outputStream) throws Exception {
+        ArgumentUtils.rejectIfNull(outputStream);
+        if (!hasData()) {
             return false;
+        }
+        final JRDataSource dataSource = (dataIterator != null)
+                                        ? new IteratorDataSource<E>(dataIterator) : new JRBeanCollectionDataSource(data);
+        dataIterator = null;
+        final Map<String, Object> fillParams = new HashMap<String, Object>(params);
+        JRSwapFileVirtualizer virtualizer = null;
+        if (virtualizerDirectory != null) {
+            virtualizer = new JRSwapFileVirtualizer(virtualizerMaxPages, new JRSwapFile(virtualizerDirectory.getAbsolutePath(), 4096, 256), true);
+            fillParams.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+        }
+        try {
+            final JasperPrint print = JasperFillManager.fillReport(getJasperReport(), fillParams, dataSource);
+            if (virtualizer != null) {
+                virtualizer.setReadOnly(true);
+            }
+            final JRPdfExporter exporter = new JRPdfExporter();
+            exporter.setParameter(JRExporterParameter.JASPER_PRINT, print);
+            exporter.setParameter(JRExporterParameter.OUTPUT_STREAM, outputStream);
+            exporter.exportReport();
+            outputStream.flush();
+            return true;
         } finally {
-            if (outputStream != null) {
-                outputStream.close();
+            if (virtualizer != null) {
+                virtualizer.cleanup();
             }
         }
     }
+
+    private boolean hasData() {
+        return (dataIterator != null) ? dataIterator.hasNext() : CollectionUtils.isNotEmpty(data);
+    }
 }
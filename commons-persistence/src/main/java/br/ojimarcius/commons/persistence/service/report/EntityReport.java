@@ -16,7 +16,9 @@ package br.ojimarcius.commons.persistence.service.report;
 
 import br.ojimarcius.commons.persistence.model.Entity;
 import java.io.File;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -34,7 +36,32 @@ public interface EntityReport<E extends Entity> {
 
     public void setReportData(final Collection<E> data);
 
+    /**
+     * Sets the data of the report as an iterator (e.g. an {@link br.ojimarcius.commons.persistence.dao.EntityIterator}),
+     * read while the report is filled. The iterator can be used by a single generation.
+     *
+     * @param data The data.
+     */
+    public void setReportData(final Iterator<? extends E> data);
+
     public byte[] generateReport() throws Exception;
 
+    /**
+     * Generates the report as PDF on the file. The report is written to a temporary file of the same directory, renamed
+     * to the file when complete, so a failed report never leaves a partial file.
+     *
+     * @param file The file. It is replaced, if it exists.
+     * @return <code>false</code> if there is no data to report.
+     * @throws Exception If the report fails, or the file can't be written.
+     */
     public boolean generateReport(final File file) throws Exception;
+
+    /**
+     * Generates the report as PDF straight to the stream, without holding the document in memory.
+     *
+     * @param outputStream The stream. It is not closed.
+     * @return <code>false</code> if there is no data to report.
+     * @throws Exception If the report fails.
+     */
+    public boolean generateReport(final OutputStream outputStream) throws Exception;
 }
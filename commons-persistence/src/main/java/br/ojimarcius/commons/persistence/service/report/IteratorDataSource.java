@@ -0,0 +1,68 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.service.report;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import java.util.Iterator;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.data.JRAbstractBeanDataSource;
+
+/**
+ * A report data source over an iterator of beans, e.g. an {@link br.ojimarcius.commons.persistence.dao.EntityIterator}
+ * scrolling the results of a query, so the rows of a report don't need to be all in memory. Field values are read as
+ * in {@link net.sf.jasperreports.engine.data.JRBeanCollectionDataSource}.
+ * <p/>
+ * The data source can be read only once.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ * @param <E> The type of the beans.
+ */
+public class IteratorDataSource<E> extends JRAbstractBeanDataSource {
+
+    private final Iterator<? extends E> iterator;
+    private E current;
+
+    public IteratorDataSource(final Iterator<? extends E> iterator) {
+        this(iterator, false);
+    }
+
+    public IteratorDataSource(final Iterator<? extends E> iterator, final boolean useFieldDescription) {
+        super(useFieldDescription);
+        ArgumentUtils.rejectIfNull(iterator);
+        this.iterator = iterator;
+    }
+
+    @Override
+    public boolean next() throws JRException {
+        if (iterator.hasNext()) {
+            current = iterator.next();
+            return true;
+        }
+        current = null;
+        return false;
+    }
+
+    @Override
+    public Object getFieldValue(final JRField field) throws JRException {
+        return getFieldValue(current, field);
+    }
+
+    @Override
+    public void moveFirst() throws JRException {
+        throw new JRException("An iterator data source cannot be rewound");
+    }
+}
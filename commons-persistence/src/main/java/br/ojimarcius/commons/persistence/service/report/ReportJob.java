@@ -0,0 +1,153 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.service.report;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * A report rendered in background by the {@link ReportJobService}.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class ReportJob {
+
+    public enum Status {
+
+        QUEUED, RUNNING, DONE, FAILED
+    }
+    private final String id;
+    private final String template;
+    private final Map<String, Object> params;
+    private final File file;
+    private final Object key;
+    private final long submitted;
+    private volatile Status status = Status.QUEUED;
+    private volatile long started;
+    private volatile long finished;
+    private volatile Exception error;
+    private volatile boolean removed;
+
+    ReportJob(final String id, final String template, final Map<String, Object> params, final File file, final Object key) {
+        this.id = id;
+        this.template = template;
+        this.params = params;
+        this.file = file;
+        this.key = key;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    /**
+     * Returns the rendered report.
+     *
+     * @return The file, or null if the job is not done.
+     */
+    public File getFile() {
+        return status == Status.DONE ? file : null;
+    }
+
+    File getTargetFile() {
+        return file;
+    }
+
+    /**
+     * Returns the key of the submissions sharing the job.
+     *
+     * @return The key, or null if the job is not shared.
+     */
+    Object getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the failure of the job.
+     *
+     * @return The exception, or null if the job has not failed.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public long getFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the time spent rendering the report.
+     *
+     * @return The render time, in milliseconds, or 0 if the job has not finished.
+     */
+    public long getRenderTime() {
+        return isFinished() ? finished - started : 0L;
+    }
+
+    void setRunning() {
+        this.started = System.currentTimeMillis();
+        this.status = Status.RUNNING;
+    }
+
+    void setDone() {
+        this.finished = System.currentTimeMillis();
+        this.status = Status.DONE;
+    }
+
+    void setFailed(final Exception error) {
+        this.error = error;
+        this.finished = System.currentTimeMillis();
+        this.status = Status.FAILED;
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void setRemoved() {
+        this.removed = true;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportJob{" + "id=" + id + ", template=" + template + ", status=" + status + '}';
+    }
+}
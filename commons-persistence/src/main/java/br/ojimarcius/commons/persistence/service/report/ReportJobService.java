@@ -0,0 +1,366 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.service.report;
+
+import br.ojimarcius.commons.util.ArgumentUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders reports in background, on a bounded pool of workers, so requests don't wait for big reports: a request
+ * submits the report, gets a job id, polls the job status and downloads the result file when it is done.
+ * <p/>
+ * Jobs are only shared when submitted with a share key (see {@link #submit(String, Map, Object, Callable)}): submitting
+ * the same template, params and key of a queued, running or done job (whose file still exists) returns that job instead
+ * of rendering the report again. Done jobs are kept until {@link #remove(String)} or {@link #purge(long)}.
+ * <p/>
+ * The report is created by a {@link Callable} on the worker thread, so its data can be read there (e.g. with an
+ * {@link br.ojimarcius.commons.persistence.dao.EntityIterator}, inside a transaction opened by the callable's
+ * caller code).
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ * @version 1.0
+ */
+public class ReportJobService {
+
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final Logger LOGGER = Logger.getLogger(ReportJobService.class.getName());
+    private final File directory;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<String, ReportJob>();
+    private final ConcurrentMap<JobKey, ReportJob> jobsByKey = new ConcurrentHashMap<JobKey, ReportJob>();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalRenderTime = new AtomicLong();
+    private final AtomicLong maxRenderTime = new AtomicLong();
+
+    public ReportJobService(final File directory) {
+        this(directory, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates the service.
+     *
+     * @param directory     The directory of the result files.
+     * @param workers       The number of reports rendered at the same time.
+     * @param queueCapacity The maximum of queued jobs; further submissions are rejected.
+     */
+    public ReportJobService(final File directory, final int workers, final int queueCapacity) {
+        ArgumentUtils.rejectIfNull(directory);
+        ArgumentUtils.rejectIfLessThan(workers, 1);
+        ArgumentUtils.rejectIfLessThan(queueCapacity, 1);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create the directory " + directory);
+        }
+        this.directory = directory;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerThreadFactory());
+    }
+
+    /**
+     * Submits a report already filled with its data. The job is not shared, as its data may be specific to the caller.
+     *
+     * @param template The template.
+     * @param params   The params of the report.
+     * @param report   The report.
+     * @return The job.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public ReportJob submit(final String template, final Map<String, Object> params, final EntityReport<?> report) {
+        ArgumentUtils.rejectIfNull(report);
+        return submit(template, params, new Callable<EntityReport<?>>() {
+            @Override
+            public EntityReport<?> call() {
+                return report;
+            }
+        });
+    }
+
+    /**
+     * Submits a report to be created, and rendered, on a worker thread. The job is not shared.
+     *
+     * @param template      The template.
+     * @param params        The params of the report. They are put on the report.
+     * @param reportFactory Creates the report, with its data.
+     * @return The job.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public ReportJob submit(final String template, final Map<String, Object> params, final Callable<? extends EntityReport<?>> reportFactory) {
+        return submit(template, params, null, reportFactory);
+    }
+
+    /**
+     * Submits a report to be created, and rendered, on a worker thread, sharing the job with the submissions of the same
+     * template, params and share key. The report must only depend on them: the key must identify anything else the
+     * factory reads, e.g. the user or tenant whose data is reported.
+     *
+     * @param template      The template.
+     * @param params        The params of the report. They are put on the report.
+     * @param shareKey      The share key, or null to not share the job.
+     * @param reportFactory Creates the report, with its data.
+     * @return The job, or the job of the same template, params and key if it is not finished or its file is available.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public ReportJob submit(final String template, final Map<String, Object> params, final Object shareKey,
+                            final Callable<? extends EntityReport<?>> reportFactory) {
+        ArgumentUtils.rejectIfNull(template);
+        ArgumentUtils.rejectIfNull(reportFactory);
+        final Map<String, Object> jobParams = (params == null)
+                                              ? Collections.<String, Object>emptyMap()
+                                              : Collections.unmodifiableMap(new HashMap<String, Object>(params));
+        if (shareKey == null) {
+            return execute(newJob(template, jobParams, null), reportFactory);
+        }
+        final JobKey key = new JobKey(template, jobParams, shareKey);
+        while (true) {
+            final ReportJob existing = jobsByKey.get(key);
+            if (existing != null) {
+                if (existing.getStatus() != ReportJob.Status.FAILED && (!existing.isFinished() || existing.getTargetFile().isFile())) {
+                    return existing;
+                }
+                jobsByKey.remove(key, existing);
+                continue;
+            }
+            final ReportJob job = newJob(template, jobParams, key);
+            if (jobsByKey.putIfAbsent(key, job) != null) {
+                continue;
+            }
+            return execute(job, reportFactory);
+        }
+    }
+
+    private ReportJob newJob(final String template, final Map<String, Object> params, final JobKey key) {
+        final String id = UUID.randomUUID().toString();
+        return new ReportJob(id, template, params, new File(directory, id + ".pdf"), key);
+    }
+
+    private ReportJob execute(final ReportJob job, final Callable<? extends EntityReport<?>> reportFactory) {
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    render(job, reportFactory);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.getId());
+            if (job.getKey() != null) {
+                jobsByKey.remove(job.getKey(), job);
+            }
+            throw ex;
+        }
+        return job;
+    }
+
+    private void render(final ReportJob job, final Callable<? extends EntityReport<?>> reportFactory) {
+        if (job.isRemoved()) {
+            return;
+        }
+        job.setRunning();
+        OutputStream outputStream = null;
+        try {
+            final EntityReport<?> report = reportFactory.call();
+            report.putParams(job.getParams());
+            outputStream = new BufferedOutputStream(new FileOutputStream(job.getTargetFile()));
+            if (!report.generateReport(outputStream)) {
+                throw new IllegalStateException("No data to report");
+            }
+            outputStream.close();
+            outputStream = null;
+            job.setDone();
+            rendered.incrementAndGet();
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Report " + job + " failed", ex);
+            job.setFailed(ex);
+            failed.incrementAndGet();
+            job.getTargetFile().delete();
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (Exception ex) {
+                    LOGGER.log(Level.FINE, "Could not close " + job.getTargetFile(), ex);
+                }
+            }
+        }
+        // removed while running: the file is deleted here or by remove(), whichever sees the other
+        if (job.isRemoved()) {
+            job.getTargetFile().delete();
+        }
+        final long renderTime = job.getRenderTime();
+        totalRenderTime.addAndGet(renderTime);
+        long max = maxRenderTime.get();
+        while (renderTime > max && !maxRenderTime.compareAndSet(max, renderTime)) {
+            max = maxRenderTime.get();
+        }
+    }
+
+    /**
+     * Returns the job.
+     *
+     * @param id The job id.
+     * @return The job, or null if there is no such job.
+     */
+    public ReportJob getJob(final String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Removes the job and its result file. Queued jobs are not rendered, and running jobs are not interrupted, but their
+     * file is deleted when they finish.
+     *
+     * @param id The job id.
+     * @return <code>true</code> if the job existed.
+     */
+    public boolean remove(final String id) {
+        final ReportJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        if (job.getKey() != null) {
+            jobsByKey.remove(job.getKey(), job);
+        }
+        job.setRemoved();
+        if (job.isFinished()) {
+            job.getTargetFile().delete();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the jobs finished before the given age, and their result files.
+     *
+     * @param maxAge The age, in milliseconds.
+     * @return The number of removed jobs.
+     */
+    public int purge(final long maxAge) {
+        final long limit = System.currentTimeMillis() - maxAge;
+        int count = 0;
+        for (Iterator<ReportJob> it = jobs.values().iterator(); it.hasNext();) {
+            final ReportJob job = it.next();
+            if (job.isFinished() && job.getFinished() < limit && remove(job.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of jobs waiting for a worker.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of reports being rendered.
+     *
+     * @return The running jobs.
+     */
+    public int getRunningCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRenderedCount() {
+        return rendered.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the average render time of the finished jobs.
+     *
+     * @return The average, in milliseconds.
+     */
+    public long getAverageRenderTime() {
+        final long finished = rendered.get() + failed.get();
+        return finished == 0 ? 0L : totalRenderTime.get() / finished;
+    }
+
+    public long getMaxRenderTime() {
+        return maxRenderTime.get();
+    }
+
+    /**
+     * Stops the workers after the queued jobs.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class JobKey {
+
+        private final String template;
+        private final Map<String, Object> params;
+        private final Object shareKey;
+
+        JobKey(final String template, final Map<String, Object> params, final Object shareKey) {
+            this.template = template;
+            this.params = params;
+            this.shareKey = shareKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * template.hashCode() + params.hashCode()) + shareKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof JobKey)) {
+                return false;
+            }
+            final JobKey other = (JobKey) obj;
+            return template.equals(other.template) && params.equals(other.params) && shareKey.equals(other.shareKey);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "report-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.springframework.beans.propertyeditors;
+
+import br.ojimarcius.commons.persistence.model.Entity;
+import br.ojimarcius.commons.persistence.service.EntityService;
+import br.ojimarcius.commons.util.CharSequenceUtils;
+import br.ojimarcius.commons.util.NumberUtils;
+import java.beans.PropertyEditorSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Editor of entity collections, bound from ids (comma separated text, or the multiple values of a request parameter).
+ * All the entities are fetched at once, through {@link EntityService#findByIds(Collection)}.
+ *
+ * @author Marcius da Silva da Fonseca (sf.marcius@gmail.com)
+ */
+public class CustomEntityCollectionEditor<T extends Entity<Long>> extends PropertyEditorSupport {
+
+    private final EntityService<Long, T> service;
+
+    public CustomEntityCollectionEditor(final EntityService<Long, T> service) {
+        this.service = service;
+    }
+
+    @Override
+    public String getAsText() {
+        final Collection<?> value = (Collection<?>) getValue();
+        if (value == null) {
+            return "";
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (Object item : value) {
+            final Object id = (item instanceof Entity) ? ((Entity<?>) item).getId() : null;
+            if (id != null) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(id);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void setAsText(final String text) {
+        setValue(CharSequenceUtils.isBlank(text) ? new String[0] : text.split(","));
+    }
+
+    /**
+     * Sets the value: a collection of entities, or ids (an array or collection of ids or their texts) to fetch.
+     *
+     * @param value The value.
+     */
+    @Override
+    public void setValue(final Object value) {
+        final Collection<?> items;
+        if (value instanceof Object[]) {
+            items = Arrays.asList((Object[]) value);
+        } else if (value instanceof Collection) {
+            items = (Collection<?>) value;
+        } else {
+            super.setValue(value);
+            return;
+        }
+        final List<Long> ids = new ArrayList<Long>(items.size());
+        for (Object item : items) {
+            if (item instanceof Entity) {
+                // already a collection of entities
+                super.setValue(value);
+                return;
+            } else if (item instanceof Number) {
+                ids.add(((Number) item).longValue());
+            } else if (item != null && !CharSequenceUtils.isBlank(item.toString())) {
+                ids.add(NumberUtils.parseLong(item.toString().trim()));
+            }
+        }
+        super.setValue(ids.isEmpty() ? new ArrayList<T>(0) : service.findByIds(ids));
+    }
+}
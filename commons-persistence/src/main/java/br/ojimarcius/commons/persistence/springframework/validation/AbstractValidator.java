@@ -14,7 +14,17 @@
  */
 package br.ojimarcius.commons.persistence.springframework.validation;
 
+import br.ojimarcius.commons.util.ArgumentUtils;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import org.springframework.util.ClassUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 
 /**
@@ -24,7 +34,13 @@ import org.springframework.validation.Errors;
  */
 public abstract class AbstractValidator<T> implements Validator<T> {
 
+    /**
+     * Default number of targets validated by each task of a bulk validation.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 250;
     protected Class<T> commandClass;
+    private Executor executor;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
 
     public AbstractValidator() {
         this.commandClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
@@ -43,4 +59,141 @@ public abstract class AbstractValidator<T> implements Validator<T> {
     protected Class<T> getCommandClass() {
         return commandClass;
     }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor of bulk validations. Without one, bulk validations run on the calling thread.
+     *
+     * @param executor The executor, or null.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the number of targets validated by each task of a bulk validation.
+     *
+     * @param chunkSize The chunk size.
+     */
+    public void setChunkSize(final int chunkSize) {
+        ArgumentUtils.rejectIfLessThan(chunkSize, 1);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Validates many targets, each on its own {@link BeanPropertyBindingResult}.
+     *
+     * @param targets The targets.
+     * @return The errors of each target, in the order of the targets.
+     * @see #validateCommands(List, List)
+     */
+    public List<Errors> validateAll(final Collection<? extends T> targets) {
+        ArgumentUtils.rejectIfNull(targets);
+        final List<T> list = new ArrayList<T>(targets);
+        final List<Errors> errors = new ArrayList<Errors>(list.size());
+        final String objectName = ClassUtils.getShortNameAsProperty(commandClass);
+        for (T target : list) {
+            errors.add(new BeanPropertyBindingResult(target, objectName));
+        }
+        validateCommands(list, errors);
+        return errors;
+    }
+
+    /**
+     * Validates many targets. The targets are split in chunks of {@link #getChunkSize()} validated in parallel on the
+     * {@link #getExecutor() executor}, if any, so {@link #validateCommand(Object, Errors)} must be thread safe, and must
+     * not use the session or the transaction of the calling thread (services, lazy associations): validators that do
+     * should override this method.
+     *
+     * @param targets The targets.
+     * @param errors  The errors of each target, in the same order.
+     */
+    public void validateCommands(final List<? extends T> targets, final List<? extends Errors> errors) {
+        validateChunks(targets, errors, new ChunkValidation<T, Void>() {
+            @Override
+            public Void validate(final List<? extends T> targets, final List<? extends Errors> errors) {
+                for (int i = 0; i < targets.size(); i++) {
+                    validateCommand(targets.get(i), errors.get(i));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs the validation over chunks of the targets, on the executor if any, and waits for all of them. The chunks
+     * do not run on the calling thread, so the validation must not use its session or transaction.
+     *
+     * @param <E>        The type of the targets, e.g. the commands or values read from them.
+     * @param <R>        The type of the result of each chunk.
+     * @param targets    The targets.
+     * @param errors     The errors of each target, in the same order.
+     * @param validation The validation of a chunk.
+     * @return The results of the chunks, in order.
+     */
+    protected <E, R> List<R> validateChunks(final List<? extends E> targets, final List<? extends Errors> errors,
+                                            final ChunkValidation<E, R> validation) {
+        ArgumentUtils.rejectIfNull(targets);
+        ArgumentUtils.rejectIfNull(errors);
+        if (targets.size() != errors.size()) {
+            throw new IllegalArgumentException("Expecting one Errors for each target");
+        }
+        final List<R> results = new ArrayList<R>();
+        if (executor == null || targets.size() <= chunkSize) {
+            results.add(validation.validate(targets, errors));
+            return results;
+        }
+        final List<FutureTask<R>> tasks = new ArrayList<FutureTask<R>>();
+        for (int start = 0; start < targets.size(); start += chunkSize) {
+            final int end = Math.min(start + chunkSize, targets.size());
+            final List<? extends E> chunkTargets = targets.subList(start, end);
+            final List<? extends Errors> chunkErrors = errors.subList(start, end);
+            final FutureTask<R> task = new FutureTask<R>(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    return validation.validate(chunkTargets, chunkErrors);
+                }
+            });
+            executor.execute(task);
+            tasks.add(task);
+        }
+        try {
+            for (FutureTask<R> task : tasks) {
+                results.add(task.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            for (FutureTask<R> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The validation of a chunk of targets of a bulk validation.
+     *
+     * @param <T> The type of the targets.
+     * @param <R> The type of the result.
+     */
+    protected interface ChunkValidation<T, R> {
+
+        public R validate(final List<? extends T> targets, final List<? extends Errors> errors);
+    }
 }
@@ -16,13 +16,21 @@ package br.ojimarcius.commons.persistence.springframework.validation;
 
 import br.ojimarcius.commons.persistence.model.Entity;
 import br.ojimarcius.commons.persistence.service.EntityService;
+import br.ojimarcius.commons.util.ArgumentUtils;
 import br.ojimarcius.commons.util.CharSequenceUtils;
-import br.ojimarcius.commons.util.ReflectionUtils;
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 import javax.persistence.Column;
 import javax.persistence.JoinColumn;
@@ -48,6 +56,11 @@ import br.ojimarcius.commons.util.CollectionUtils;
  */
 public abstract class AnnotatedEntityValidator<ID extends Serializable & Comparable<ID>, T extends Entity<ID>> extends AbstractValidator<T> {
 
+    /**
+     * Validation plans by entity class: the fields to validate and their constraints, resolved once.
+     */
+    private static final ConcurrentMap<Class<?>, List<FieldPlan>> PLANS = new ConcurrentHashMap<Class<?>, List<FieldPlan>>();
+
     public AnnotatedEntityValidator() {
         this.commandClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[1];
     }
@@ -70,17 +83,15 @@ public abstract class AnnotatedEntityValidator<ID extends Serializable & Compara
 
     protected final void validateCommand(final String pathPrefix, final T target, final Errors errors) {
         try {
-            final Collection<Field> fields = ReflectionUtils.getFields(target, false, false, false);
-            for (Field field : fields) {
-                if (isSkipValidation(field)) {
-                    continue;
+            for (FieldPlan plan : getPlan(target.getClass())) {
+                final Object fieldValue = plan.field.get(target);
+                final String fieldPath = getFullPath(pathPrefix, plan.field.getName());
+                final FieldRejection rejection = checkField(plan, fieldPath, fieldValue, errors.hasFieldErrors(fieldPath));
+                if (rejection != null) {
+                    rejection.apply(errors);
                 }
-                validateRequired(pathPrefix, field, target, errors);
-                validateRegex(pathPrefix, field, target, errors);
-                validateMinLength(pathPrefix, field, target, errors);
-                validateMaxLength(pathPrefix, field, target, errors);
-                validateUnique(pathPrefix, field, target, errors);
-                doSubvalidation(pathPrefix, field, target, errors);
+                validateUnique(plan, fieldPath, fieldValue, target, errors);
+                doSubvalidation(plan, fieldPath, fieldValue, errors);
             }
         } catch (Exception ex) {
             throw new RuntimeException(ex);
@@ -88,6 +99,132 @@ public abstract class AnnotatedEntityValidator<ID extends Serializable & Compara
         complementarValidation(pathPrefix, target, errors);
     }
 
+    /**
+     * Validates many targets at once, e.g. the rows of an import. The entities (the targets and the subvalidated
+     * entities) and the errors are only used on the calling thread, so lazy associations are loaded and the services
+     * are called on its session and transaction:
+     * <ol>
+     * <li>the fields of the targets are read and the subvalidated entities are traversed, on the calling thread;</li>
+     * <li>the field checks (required, regex and length) of the values read, by chunks of targets, in parallel if there
+     * is an {@link #setExecutor(java.util.concurrent.Executor) executor}. The checks only return their rejections,
+     * which are applied to the errors on the calling thread (rejecting a value reads it from the target);</li>
+     * <li>the complementar validations, on the calling thread, in the order of a single validation;</li>
+     * <li>the uniqueness of each unique field, on the calling thread, with a single query for all the targets (see
+     * {@link EntityService#findIdsByPropertyValues(String, Collection)}), including the unique fields of the
+     * subvalidated entities, checked with the service of their validators. Targets with the same value as a previous
+     * target of the batch are rejected too.</li>
+     * </ol>
+     * Null values and fields already rejected are not checked for uniqueness.
+     *
+     * @param targets The targets.
+     * @param errors  The errors of each target, in the same order.
+     */
+    @Override
+    public void validateCommands(final List<? extends T> targets, final List<? extends Errors> errors) {
+        ArgumentUtils.rejectIfNull(targets);
+        ArgumentUtils.rejectIfNull(errors);
+        if (targets.size() != errors.size()) {
+            throw new IllegalArgumentException("Expecting one Errors for each target");
+        }
+        final List<List<FieldCheck>> checks = new ArrayList<List<FieldCheck>>(targets.size());
+        final List<ComplementarValidation> complementars = new ArrayList<ComplementarValidation>();
+        final UniqueCandidates candidates = new UniqueCandidates();
+        for (int i = 0; i < targets.size(); i++) {
+            final List<FieldCheck> targetChecks = new ArrayList<FieldCheck>();
+            collectChecks("", targets.get(i), errors.get(i), targetChecks, complementars, candidates);
+            checks.add(targetChecks);
+        }
+        final List<List<List<FieldRejection>>> chunks = validateChunks(checks, errors, new ChunkValidation<List<FieldCheck>, List<List<FieldRejection>>>() {
+            @Override
+            public List<List<FieldRejection>> validate(final List<? extends List<FieldCheck>> checks, final List<? extends Errors> errors) {
+                final List<List<FieldRejection>> rejections = new ArrayList<List<FieldRejection>>(checks.size());
+                for (List<FieldCheck> targetChecks : checks) {
+                    final List<FieldRejection> targetRejections = new ArrayList<FieldRejection>(0);
+                    for (FieldCheck check : targetChecks) {
+                        final FieldRejection rejection = checkField(check.plan, check.fieldPath, check.value, check.rejected);
+                        if (rejection != null) {
+                            targetRejections.add(rejection);
+                        }
+                    }
+                    rejections.add(targetRejections);
+                }
+                return rejections;
+            }
+        });
+        int i = 0;
+        for (List<List<FieldRejection>> chunk : chunks) {
+            for (List<FieldRejection> targetRejections : chunk) {
+                for (FieldRejection rejection : targetRejections) {
+                    rejection.apply(errors.get(i));
+                }
+                i++;
+            }
+        }
+        for (ComplementarValidation complementar : complementars) {
+            complementar.validate();
+        }
+        candidates.validate();
+    }
+
+    /**
+     * Reads the fields of the target and traverses its subvalidated entities, collecting the field checks, the
+     * complementar validations and the unique values of a batch validation.
+     */
+    private void collectChecks(final String pathPrefix, final T target, final Errors errors, final List<FieldCheck> checks,
+                               final List<ComplementarValidation> complementars, final UniqueCandidates candidates) {
+        try {
+            for (FieldPlan plan : getPlan(target.getClass())) {
+                final Object fieldValue = plan.field.get(target);
+                final String fieldPath = getFullPath(pathPrefix, plan.field.getName());
+                checks.add(new FieldCheck(plan, fieldPath, fieldValue, errors.hasFieldErrors(fieldPath)));
+                addUniqueCandidate(plan, fieldPath, fieldValue, target, errors, candidates);
+                // entity values are never rejected by the field checks
+                if (plan.subvalidate && isNotNullEntity(fieldValue) && !errors.hasFieldErrors(fieldPath)) {
+                    final Entity<?> entityValue = ((Entity<?>) fieldValue);
+                    final AnnotatedEntityValidator<?, ?> v = getValidatorFor(entityValue.getClass());
+                    if (v != null) {
+                        v.collectSubentityChecks(fieldPath, entityValue, errors, checks, complementars, candidates);
+                    }
+                }
+            }
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+        complementars.add(new ComplementarValidation(this, pathPrefix, target, errors));
+    }
+
+    private void collectSubentityChecks(final String pathPrefix, final Entity<?> target, final Errors errors, final List<FieldCheck> checks,
+                                        final List<ComplementarValidation> complementars, final UniqueCandidates candidates) {
+        collectChecks(pathPrefix, commandClass.cast(target), errors, checks, complementars, candidates);
+    }
+
+    /**
+     * Returns the validation plan of the class, building it on the first validation.
+     */
+    private static List<FieldPlan> getPlan(final Class<?> targetClass) {
+        List<FieldPlan> plan = PLANS.get(targetClass);
+        if (plan == null) {
+            plan = new ArrayList<FieldPlan>();
+            Class<?> clazz = targetClass;
+            // the same fields of ReflectionUtils.getFields(target, false, false, false)
+            while (clazz != null && !Object.class.equals(clazz)) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !Modifier.isVolatile(modifiers)
+                        && !isSkipValidation(field)) {
+                        plan.add(new FieldPlan(field));
+                    }
+                }
+                clazz = clazz.getSuperclass();
+            }
+            final List<FieldPlan> previous = PLANS.putIfAbsent(targetClass, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
     private void extraValidations(String fieldPath, Field field, T target, Errors errors) throws Exception {
         final Object fieldValue = field.get(target);
         final MinValue minValue = field.getAnnotation(MinValue.class);
@@ -121,116 +258,287 @@ public abstract class AnnotatedEntityValidator<ID extends Serializable & Compara
     }
 
     /**/
-    private boolean isSkipValidation(final Field field) throws Exception {
+    private static boolean isSkipValidation(final Field field) {
         final SkipValidation skip = field.getAnnotation(SkipValidation.class);
         return skip != null && skip.value();
     }
 
-    private void validateRequired(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-
-        final Required required = field.getAnnotation(Required.class);
-        final Column column = field.getAnnotation(Column.class);
-        final JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
-        final String errorCode = required != null ? required.errorCode() : Validator.ERROR_REQUIRED;
-        final boolean isRequired = (required != null && required.value()) || (column != null && !column.nullable()) || (joinColumn != null && !joinColumn.nullable());
-
-        if (isRequired && isNullOrEmpty(fieldValue)) {
-            errors.rejectValue(fieldPath, errorCode, null, errorCode);
+    /**
+     * The checks of a field that only depend on its value: required, regex and length. The regex and length are not
+     * checked on fields already rejected, so a field gets at most one rejection. The errors are not used, so the checks
+     * of a batch can run on any thread.
+     *
+     * @param rejected If the field was already rejected.
+     * @return The rejection of the field, or null.
+     */
+    private static FieldRejection checkField(final FieldPlan plan, final String fieldPath, final Object fieldValue, final boolean rejected) {
+        if (plan.required && isNullOrEmpty(fieldValue)) {
+            return new FieldRejection(fieldPath, plan.requiredErrorCode, null);
+        }
+        if (rejected || !isNotNullCharSequence(fieldValue)) {
+            return null;
+        }
+        final CharSequence value = (CharSequence) fieldValue;
+        if (plan.regex != null && !plan.regex.matcher(value).matches()) {
+            return new FieldRejection(fieldPath, plan.regexErrorCode, null);
+        }
+        if (plan.minLength != null && value.length() < plan.minLength.value()) {
+            return new FieldRejection(fieldPath, plan.minLength.errorCode(), new Object[]{plan.minLength.value()});
         }
+        if (plan.maxLength >= 0 && value.length() > plan.maxLength) {
+            return new FieldRejection(fieldPath, plan.maxLengthErrorCode, new Object[]{plan.maxLength});
+        }
+        return null;
     }
 
-    private void validateUnique(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-        if (!errors.hasFieldErrors(fieldPath)) {
-            final Unique unique = field.getAnnotation(Unique.class);
-            final Column column = field.getAnnotation(Column.class);
-            final JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
-            final String errorCode = unique != null ? unique.errorCode() : Validator.ERROR_EXISTS;
-            final boolean isUnique = (unique != null && unique.value()) || (column != null && column.unique()) || (joinColumn != null && joinColumn.unique());
-            if (isUnique && getCommandService() != null) {
-                Collection<T> found = getCommandService().findByProperty(field.getName(), fieldValue);
-                if (!CollectionUtils.isEmptyOrSingleton(found)) {
-                    throw new IllegalStateException("Inconsistent database: expecting unique result. Returned mutiple.");
-                }
-                final T entity = DataAccessUtils.uniqueResult(found);
+    private void validateUnique(final FieldPlan plan, final String fieldPath, final Object fieldValue, final T target, final Errors errors) {
+        if (plan.unique && !errors.hasFieldErrors(fieldPath) && getCommandService() != null) {
+            final String fieldName = plan.field.getName();
+            Collection<T> found = getCommandService().findByProperty(fieldName, fieldValue);
+            if (!CollectionUtils.isEmptyOrSingleton(found)) {
+                throw new IllegalStateException("Inconsistent database: expecting unique result. Returned mutiple.");
+            }
+            final T entity = DataAccessUtils.uniqueResult(found);
 
-                if (entity != null && (target.getId() == null || !entity.getId().equals(target.getId()))) {
-                    errors.rejectValue(fieldPath, errorCode, new Object[]{field.getName(), fieldValue}, errorCode);
-                }
+            if (entity != null && (target.getId() == null || !entity.getId().equals(target.getId()))) {
+                errors.rejectValue(fieldPath, plan.uniqueErrorCode, new Object[]{fieldName, fieldValue}, plan.uniqueErrorCode);
             }
         }
     }
 
-    private void validateRegex(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-        if (!errors.hasFieldErrors(fieldPath) && isNotNullCharSequence(fieldValue)) {
-            final Regex regex = field.getAnnotation(Regex.class);
-            final CharSequence val = (CharSequence) fieldValue;
-            if (regex != null && !Pattern.compile(regex.value(), regex.flags()).matcher(val).matches()) {
-                errors.rejectValue(fieldPath, regex.errorCode(), null, regex.errorCode());
-            }
+    private void addUniqueCandidate(final FieldPlan plan, final String fieldPath, final Object fieldValue, final T target,
+                                    final Errors errors, final UniqueCandidates candidates) {
+        if (plan.unique && fieldValue != null && getCommandService() != null) {
+            candidates.add(this, plan, new UniqueCandidate(target, errors, fieldPath, fieldValue));
         }
     }
 
-    private void validateMinLength(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-        if (!errors.hasFieldErrors(fieldPath) && isNotNullCharSequence(fieldValue)) {
-            final MinLength minLength = field.getAnnotation(MinLength.class);
-            final CharSequence val = (CharSequence) fieldValue;
-            if (minLength != null && val.length() < minLength.value()) {
-                errors.rejectValue(fieldPath, minLength.errorCode(), new Object[]{minLength.value()}, minLength.errorCode());
+    /**
+     * Checks the uniqueness of a field for all the candidates of a batch: against the database, with one query, and
+     * against the previous candidates. The candidates whose field was rejected meanwhile are skipped.
+     */
+    private void validateUnique(final FieldPlan plan, final List<UniqueCandidate> allCandidates) {
+        final String fieldName = plan.field.getName();
+        final List<UniqueCandidate> candidates = new ArrayList<UniqueCandidate>(allCandidates.size());
+        final List<Object> values = new ArrayList<Object>(allCandidates.size());
+        for (UniqueCandidate candidate : allCandidates) {
+            if (!candidate.errors.hasFieldErrors(candidate.fieldPath)) {
+                candidates.add(candidate);
+                values.add(candidate.value);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        final Map<Object, List<ID>> found = getCommandService().findIdsByPropertyValues(fieldName, values);
+        final Map<Object, Entity<?>> firstTargets = new HashMap<Object, Entity<?>>(candidates.size());
+        for (UniqueCandidate candidate : candidates) {
+            final List<ID> ids = found.get(candidate.value);
+            if (ids != null && ids.size() > 1) {
+                throw new IllegalStateException("Inconsistent database: expecting unique result. Returned mutiple.");
+            }
+            final Object id = candidate.target.getId();
+            final ID foundId = (ids == null) ? null : ids.get(0);
+            final Entity<?> first = firstTargets.get(candidate.value);
+            if (first == null) {
+                firstTargets.put(candidate.value, candidate.target);
+            }
+            final boolean exists = foundId != null && (id == null || !foundId.equals(id));
+            final boolean repeated = first != null && first != candidate.target && (id == null || !id.equals(first.getId()));
+            if (exists || repeated) {
+                candidate.errors.rejectValue(candidate.fieldPath, plan.uniqueErrorCode, new Object[]{fieldName, candidate.value}, plan.uniqueErrorCode);
             }
         }
     }
 
-    private void validateMaxLength(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-        if (!errors.hasFieldErrors(fieldPath) && isNotNullCharSequence(fieldValue)) {
-            final MaxLength maxLength = field.getAnnotation(MaxLength.class);
-            final Column column = field.getAnnotation(Column.class);
-            final String errorCode = maxLength != null ? maxLength.errorCode() : Validator.ERROR_MAX_LENGTH;
-            if (maxLength != null || column != null) {
-                int max = 255;
-                if (maxLength != null && column != null) {
-                    max = maxLength.value() < column.length() ? maxLength.value() : column.length();
-                } else if (maxLength != null) {
-                    max = maxLength.value();
-                } else if (column != null) {
-                    max = column.length();
-                }
-                final CharSequence val = (CharSequence) fieldValue;
-                if (val.length() > max) {
-                    errors.rejectValue(fieldPath, errorCode, new Object[]{max}, errorCode);
-                }
+    private void doSubvalidation(final FieldPlan plan, final String fieldPath, final Object fieldValue, final Errors errors) {
+        if (plan.subvalidate && isNotNullEntity(fieldValue) && !errors.hasFieldErrors(fieldPath)) {
+            final Entity<?> entityValue = ((Entity<?>) fieldValue);
+            final AnnotatedEntityValidator<?, ?> v = getValidatorFor(entityValue.getClass());
+            if (v != null) {
+                v.validateSubentity(fieldPath, entityValue, errors);
             }
         }
     }
 
-    private void doSubvalidation(final String pathPrefix, final Field field, final T target, final Errors errors) throws Exception {
-        field.setAccessible(true);
-        final Object fieldValue = field.get(target);
-        final String fieldPath = getFullPath(pathPrefix, field.getName());
-        if (!errors.hasFieldErrors(fieldPath) && isNotNullEntity(fieldValue)) {
+    private void validateSubentity(final String pathPrefix, final Entity<?> target, final Errors errors) {
+        validateCommand(pathPrefix, commandClass.cast(target), errors);
+    }
+
+    private void complementarSubentity(final String pathPrefix, final Entity<?> target, final Errors errors) {
+        complementarValidation(pathPrefix, commandClass.cast(target), errors);
+    }
+
+    /**
+     * The constraints of a field, resolved from its annotations: required, regex, min/max length, unique and
+     * subvalidation.
+     */
+    private static final class FieldPlan {
+
+        private final Field field;
+        private final boolean required;
+        private final String requiredErrorCode;
+        private final Pattern regex;
+        private final String regexErrorCode;
+        private final MinLength minLength;
+        /**
+         * The smallest of MaxLength and Column length, or -1.
+         */
+        private final int maxLength;
+        private final String maxLengthErrorCode;
+        private final boolean unique;
+        private final String uniqueErrorCode;
+        private final boolean subvalidate;
+
+        FieldPlan(final Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            final Column column = field.getAnnotation(Column.class);
             final JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+
+            final Required requiredAnnotation = field.getAnnotation(Required.class);
+            this.requiredErrorCode = requiredAnnotation != null ? requiredAnnotation.errorCode() : Validator.ERROR_REQUIRED;
+            this.required = (requiredAnnotation != null && requiredAnnotation.value()) || (column != null && !column.nullable()) || (joinColumn != null && !joinColumn.nullable());
+
+            final Regex regexAnnotation = field.getAnnotation(Regex.class);
+            this.regex = regexAnnotation != null ? Pattern.compile(regexAnnotation.value(), regexAnnotation.flags()) : null;
+            this.regexErrorCode = regexAnnotation != null ? regexAnnotation.errorCode() : null;
+
+            this.minLength = field.getAnnotation(MinLength.class);
+
+            final MaxLength maxLengthAnnotation = field.getAnnotation(MaxLength.class);
+            this.maxLengthErrorCode = maxLengthAnnotation != null ? maxLengthAnnotation.errorCode() : Validator.ERROR_MAX_LENGTH;
+            if (maxLengthAnnotation != null && column != null) {
+                this.maxLength = Math.min(maxLengthAnnotation.value(), column.length());
+            } else if (maxLengthAnnotation != null) {
+                this.maxLength = maxLengthAnnotation.value();
+            } else if (column != null) {
+                this.maxLength = column.length();
+            } else {
+                this.maxLength = -1;
+            }
+
+            final Unique uniqueAnnotation = field.getAnnotation(Unique.class);
+            this.uniqueErrorCode = uniqueAnnotation != null ? uniqueAnnotation.errorCode() : Validator.ERROR_EXISTS;
+            this.unique = (uniqueAnnotation != null && uniqueAnnotation.value()) || (column != null && column.unique()) || (joinColumn != null && joinColumn.unique());
+
             final SkipSubvalidation skip = field.getAnnotation(SkipSubvalidation.class);
-            final boolean isSkip = (skip != null && skip.value());
+            this.subvalidate = joinColumn != null && (skip == null || !skip.value());
+        }
+    }
+
+    /**
+     * A value read on a batch validation, with the field to check it against.
+     */
+    private static final class FieldCheck {
+
+        private final FieldPlan plan;
+        private final String fieldPath;
+        private final Object value;
+        /**
+         * If the field was rejected before the checks (e.g. on binding).
+         */
+        private final boolean rejected;
+
+        FieldCheck(final FieldPlan plan, final String fieldPath, final Object value, final boolean rejected) {
+            this.plan = plan;
+            this.fieldPath = fieldPath;
+            this.value = value;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * A rejection returned by the field checks, applied to the errors of its target on the calling thread.
+     */
+    private static final class FieldRejection {
+
+        private final String fieldPath;
+        private final String errorCode;
+        private final Object[] args;
+
+        FieldRejection(final String fieldPath, final String errorCode, final Object[] args) {
+            this.fieldPath = fieldPath;
+            this.errorCode = errorCode;
+            this.args = args;
+        }
+
+        void apply(final Errors errors) {
+            errors.rejectValue(fieldPath, errorCode, args, errorCode);
+        }
+    }
+
+    /**
+     * A complementar validation of a target (or of a subvalidated entity) of a batch validation.
+     */
+    private static final class ComplementarValidation {
+
+        private final AnnotatedEntityValidator<?, ?> validator;
+        private final String pathPrefix;
+        private final Entity<?> target;
+        private final Errors errors;
+
+        ComplementarValidation(final AnnotatedEntityValidator<?, ?> validator, final String pathPrefix, final Entity<?> target,
+                               final Errors errors) {
+            this.validator = validator;
+            this.pathPrefix = pathPrefix;
+            this.target = target;
+            this.errors = errors;
+        }
+
+        void validate() {
+            validator.complementarSubentity(pathPrefix, target, errors);
+        }
+    }
+
+    /**
+     * A value of a unique field to be checked on a batch validation.
+     */
+    private static final class UniqueCandidate {
+
+        private final Entity<?> target;
+        private final Errors errors;
+        private final String fieldPath;
+        private final Object value;
+
+        UniqueCandidate(final Entity<?> target, final Errors errors, final String fieldPath, final Object value) {
+            this.target = target;
+            this.errors = errors;
+            this.fieldPath = fieldPath;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The values of the unique fields collected on a batch validation, by validator (the fields of subvalidated
+     * entities are checked by their own validators) and field.
+     */
+    private static final class UniqueCandidates {
+
+        private final Map<AnnotatedEntityValidator<?, ?>, Map<FieldPlan, List<UniqueCandidate>>> candidates
+                = new LinkedHashMap<AnnotatedEntityValidator<?, ?>, Map<FieldPlan, List<UniqueCandidate>>>();
+
+        void add(final AnnotatedEntityValidator<?, ?> validator, final FieldPlan plan, final UniqueCandidate candidate) {
+            Map<FieldPlan, List<UniqueCandidate>> fields = candidates.get(validator);
+            if (fields == null) {
+                fields = new LinkedHashMap<FieldPlan, List<UniqueCandidate>>();
+                candidates.put(validator, fields);
+            }
+            List<UniqueCandidate> fieldCandidates = fields.get(plan);
+            if (fieldCandidates == null) {
+                fieldCandidates = new ArrayList<UniqueCandidate>();
+                fields.put(plan, fieldCandidates);
+            }
+            fieldCandidates.add(candidate);
+        }
 
-            if (!isSkip && joinColumn != null) {
-                final Entity entityValue = ((Entity) fieldValue);
-                final AnnotatedEntityValidator v = getValidatorFor(entityValue.getClass());
-                if (v != null) {
-                    v.validateCommand(fieldPath, entityValue, errors);
+        /**
+         * Checks the uniqueness of the collected values, with one query per validator and field.
+         */
+        void validate() {
+            for (Map.Entry<AnnotatedEntityValidator<?, ?>, Map<FieldPlan, List<UniqueCandidate>>> entry : candidates.entrySet()) {
+                for (Map.Entry<FieldPlan, List<UniqueCandidate>> field : entry.getValue().entrySet()) {
+                    entry.getKey().validateUnique(field.getKey(), field.getValue());
                 }
             }
         }
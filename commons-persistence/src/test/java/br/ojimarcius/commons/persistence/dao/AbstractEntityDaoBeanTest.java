@@ -0,0 +1,467 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the criteria queries and the entity cache of {@link AbstractEntityDaoBean} on an embedded H2 database.
+ */
+public class AbstractEntityDaoBeanTest {
+
+    private static final int ROWS = 25;
+    private SessionFactory sessionFactory;
+    private BenchItemDao dao;
+    private BenchGroupDao groupDao;
+
+    @Before
+    public void setUp() {
+        final Configuration configuration = new Configuration().addAnnotatedClass(BenchItem.class).addAnnotatedClass(BenchGroup.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:dao;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.id.new_generator_mappings", "true")
+                .setProperty("hibernate.current_session_context_class", "thread")
+                .setProperty("hibernate.generate_statistics", "true");
+        final ServiceRegistry registry = new ServiceRegistryBuilder().applySettings(configuration.getProperties())
+                .buildServiceRegistry();
+        sessionFactory = configuration.buildSessionFactory(registry);
+        dao = new BenchItemDao();
+        dao.setSessionFactory(sessionFactory);
+        groupDao = new BenchGroupDao();
+        groupDao.setSessionFactory(sessionFactory);
+        final Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        final BenchGroup group = new BenchGroup("g0", "a");
+        session.save(group);
+        session.save(new BenchGroup("g1", "b", "c"));
+        for (int i = 0; i < ROWS; i++) {
+            final BenchItem item = new BenchItem("item" + (i % 5), i);
+            item.setGroup((i < 10) ? group : null);
+            session.save(item);
+        }
+        session.getTransaction().commit();
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clear();
+        }
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testFindPageByCriteria() {
+        final DetachedCriteria criteria = dao.createCriteria().add(Restrictions.ge("quantity", 5));
+        final List<BenchItem> all = new ArrayList<BenchItem>();
+        List<BenchItem> page = dao.findPageByCriteria(criteria, null, 7);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 7);
+            all.addAll(page);
+            page = dao.findPageByCriteria(criteria, page.get(page.size() - 1).getId(), 7);
+        }
+        assertEquals(ROWS - 5, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId());
+        }
+        // the criteria was not changed by the pages
+        assertEquals(ROWS - 5, dao.findByCriteria(criteria).size());
+        final EntityIterator<BenchItem> iterator = dao.iterateByCriteria(criteria, Order.desc("quantity"));
+        try {
+            assertEquals(ROWS - 1, iterator.next().getQuantity());
+        } finally {
+            iterator.close();
+        }
+        assertEquals(ROWS - 5, dao.findByCriteria(criteria).size());
+    }
+
+    @Test
+    public void testCountAndFindPage() {
+        final DetachedCriteria criteria = dao.createCriteria().add(Restrictions.lt("quantity", 20))
+                .addOrder(Order.desc("quantity"));
+        assertEquals(20, dao.countByCriteria(criteria));
+        final Page<BenchItem> page = dao.findPage(criteria, 15, 10, true, Order.asc("name"));
+        assertEquals(Long.valueOf(20), page.getTotal());
+        assertEquals(5, page.getRows().size());
+        assertEquals(4, page.getRows().get(0).getQuantity());
+        // the caller's orders are kept, and the page orders were not added to it
+        final Page<BenchItem> first = dao.findPage(criteria, 0, 3, false);
+        assertEquals(19, first.getRows().get(0).getQuantity());
+        assertTrue(first.isHasNext());
+        // a projection is counted as is, and kept
+        final DetachedCriteria names = dao.createCriteria().setProjection(Projections.distinct(Projections.property("name")));
+        assertEquals(5, dao.countByCriteria(names));
+        final List<?> values = names.getExecutableCriteria(sessionFactory.getCurrentSession()).list();
+        assertEquals(5, values.size());
+        assertTrue(values.get(0) instanceof String);
+    }
+
+    @Test
+    public void testProjections() {
+        final DetachedCriteria criteria = dao.createCriteria().add(Restrictions.lt("quantity", 10));
+        final List<Object[]> tuples = dao.findTuplesByCriteria(criteria, new String[]{"name", "quantity"}, Order.asc("quantity"));
+        assertEquals(10, tuples.size());
+        assertEquals("item0", tuples.get(0)[0]);
+        assertEquals(9, tuples.get(9)[1]);
+        final List<ItemSummary> summaries = dao.findProjectionByCriteria(criteria, ItemSummary.class,
+                                                                         new String[]{"name", "quantity"}, Order.desc("quantity"));
+        assertEquals(10, summaries.size());
+        assertEquals("item4", summaries.get(0).name);
+        assertEquals(9, summaries.get(0).quantity);
+        final List<String> names = dao.findPropertyValuesByCriteria(criteria, "name", Order.asc("id"));
+        assertEquals("item1", names.get(1));
+        // the criteria still selects entities, without the projection orders
+        final List<?> entities = criteria.getExecutableCriteria(sessionFactory.getCurrentSession()).list();
+        assertEquals(10, entities.size());
+        assertTrue(entities.get(0) instanceof BenchItem);
+    }
+
+    @Test
+    public void testUpdateWhere() {
+        final Session session = sessionFactory.getCurrentSession();
+        final BenchItem grouped = (BenchItem) dao.createCriteria().add(Restrictions.eq("quantity", 0)).getExecutableCriteria(session).uniqueResult();
+        final BenchItem changed = (BenchItem) dao.createCriteria().add(Restrictions.eq("quantity", 20)).getExecutableCriteria(session).uniqueResult();
+        changed.setName("changed");
+        // a property of the associated entity, through an id subselect
+        final Map<String, Object> restriction = Collections.<String, Object>singletonMap("group.name", "g0");
+        final BulkWriteStats stats = dao.updateWhere(restriction, Collections.<String, Object>singletonMap("quantity", -1));
+        assertEquals(10, stats.getRows());
+        assertEquals(10, dao.countByCriteria(dao.createCriteria().add(Restrictions.eq("quantity", -1))));
+        // the pending change was flushed before, and the instances are no longer managed
+        assertEquals(1, dao.countByCriteria(dao.createCriteria().add(Restrictions.eq("name", "changed"))));
+        assertFalse(session.contains(grouped));
+        assertFalse(session.contains(changed));
+        assertEquals(-1, dao.findById(grouped.getId()).getQuantity());
+        // the id of the associated entity needs no subselect
+        final Map<String, Object> byGroupId = Collections.<String, Object>singletonMap("group.id", grouped.getGroup().getId());
+        final BulkWriteStats chunked = dao.updateWhere(byGroupId, Collections.<String, Object>singletonMap("name", "grouped"), 3);
+        assertEquals(10, chunked.getRows());
+        assertEquals(4, chunked.getBatches());
+        try {
+            dao.updateWhere(byGroupId, Collections.<String, Object>singletonMap("group.name", "g2"));
+            fail("bulk updates can not set properties of associated entities");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            dao.updateWhere(Collections.<String, Object>singletonMap("name.length", 4), Collections.<String, Object>singletonMap("quantity", 0));
+            fail("name has no properties");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDeleteWhere() {
+        final Session session = sessionFactory.getCurrentSession();
+        final BulkWriteStats stats = dao.deleteWhere(Collections.<String, Object>singletonMap("group.name", "g0"));
+        assertEquals(10, stats.getRows());
+        assertEquals(1, stats.getBatches());
+        assertEquals(ROWS - 10, dao.countByCriteria(dao.createCriteria()));
+        // the element collection of the group is deleted with it
+        final BulkWriteStats groups = groupDao.deleteWhere(Collections.<String, Object>singletonMap("name", "g1"));
+        assertEquals(1, groups.getRows());
+        assertEquals(1, groupDao.countByCriteria(groupDao.createCriteria()));
+        final Number tags = (Number) session.createSQLQuery("select count(*) from BENCH_GROUP_TAG").uniqueResult();
+        assertEquals(1, tags.intValue());
+    }
+
+    @Test
+    public void testFindByIds() {
+        final List<Long> ids = new ArrayList<Long>();
+        for (BenchItem item : dao.findAll(Order.desc("quantity"))) {
+            ids.add(item.getId());
+        }
+        sessionFactory.getCurrentSession().getTransaction().commit();
+        final Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        assertTrue(dao.findByIds(null).isEmpty());
+        assertTrue(dao.findByIds(Collections.<Long>emptyList()).isEmpty());
+
+        // the entities already on the session are not queried, the others are queried by chunks of ids
+        dao.inListLimit = 10;
+        final BenchItem onSession = (BenchItem) session.get(BenchItem.class, ids.get(3));
+        final Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        final List<BenchItem> found = dao.findByIds(ids);
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(ROWS, found.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(ids.get(i), found.get(i).getId());
+            assertEquals(ROWS - 1 - i, found.get(i).getQuantity());
+        }
+        assertSame(onSession, found.get(3));
+
+        // null and missing ids are skipped, duplicated ids are repeated
+        session.clear();
+        statistics.clear();
+        final List<BenchItem> some = dao.findByIds(Arrays.asList(ids.get(5), null, -1L, ids.get(0), ids.get(5)));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(3, some.size());
+        assertEquals(ids.get(5), some.get(0).getId());
+        assertEquals(ids.get(0), some.get(1).getId());
+        assertSame(some.get(0), some.get(2));
+        assertTrue(dao.findByIds(Arrays.asList((Long) null, -1L)).isEmpty());
+    }
+
+    @Test
+    public void testEntityCache() {
+        final SimpleEntityCache<Long> cache = new SimpleEntityCache<Long>();
+        final SimpleEntityCache<Long> groupCache = new SimpleEntityCache<Long>();
+        dao.setEntityCache(cache);
+        groupDao.setEntityCache(groupCache);
+        final Session setUpSession = sessionFactory.getCurrentSession();
+        final BenchItem grouped = (BenchItem) dao.createCriteria().add(Restrictions.eq("quantity", 0)).getExecutableCriteria(setUpSession).uniqueResult();
+        final Long itemId = grouped.getId();
+        final Long groupId = grouped.getGroup().getId();
+        // not used by read-write transactions
+        assertSame(grouped, dao.findById(itemId));
+        assertEquals(0, cache.size());
+        setUpSession.getTransaction().commit();
+
+        // a miss caches the state of the entity loaded on the session
+        Session session = beginTransaction(true);
+        final BenchGroup loadedGroup = groupDao.findById(groupId);
+        final BenchItem loaded = dao.findById(itemId);
+        assertTrue(session.contains(loaded));
+        assertSame(loadedGroup, loaded.getGroup());
+        assertEquals(1, cache.size());
+        // with its lazy collection not loaded
+        assertFalse(Hibernate.isInitialized(loadedGroup.getTags()));
+        assertEquals(1, groupCache.size());
+        assertSame(loaded, dao.findById(itemId));
+        assertEquals(0, cache.getHits());
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // a hit puts a new, read-only, instance on the session, with its associations bound to it
+        session = beginTransaction(true);
+        final Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        final BenchGroup group = groupDao.findById(groupId);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, groupCache.getHits());
+        assertNotSame(loadedGroup, group);
+        assertTrue(session.contains(group));
+        assertTrue(session.isReadOnly(group));
+        assertEquals("g0", group.getName());
+        assertFalse(Hibernate.isInitialized(group.getTags()));
+        assertEquals(Collections.singleton("a"), group.getTags());
+        final BenchItem item = dao.findById(itemId);
+        assertEquals(1, cache.getHits());
+        assertNotSame(loaded, item);
+        assertEquals(0, item.getQuantity());
+        assertSame(group, item.getGroup());
+        assertSame(item, session.get(BenchItem.class, itemId));
+        // changing an instance does not change the cache
+        group.getTags().add("changed");
+        item.setQuantity(100);
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        session = beginTransaction(true);
+        final BenchItem other = dao.findById(itemId);
+        assertEquals(0, other.getQuantity());
+        assertNotSame(item.getGroup(), other.getGroup());
+        assertEquals(Collections.singleton("a"), other.getGroup().getTags());
+        assertEquals(2, cache.getHits());
+        // the batch lookup uses the cache too, and caches the entities it loads
+        final List<BenchItem> items = dao.findByIds(Arrays.asList(itemId, itemId + 1));
+        assertEquals(2, items.size());
+        assertSame(other, items.get(0));
+        assertEquals(2, cache.size());
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // a state that no longer matches the mapping is evicted, and the entity loaded again
+        cache.put(itemId, new CachedEntity("no.such.Entity", new Serializable[0]));
+        beginTransaction(true);
+        assertEquals(0, dao.findById(itemId).getQuantity());
+        assertEquals(BenchItem.class.getName(), cache.get(itemId).getEntityName());
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        beginTransaction(false);
+    }
+
+    @Test
+    public void testEntityCacheEvictions() {
+        final SimpleEntityCache<Long> cache = new SimpleEntityCache<Long>();
+        dao.setEntityCache(cache);
+        final List<Long> ids = new ArrayList<Long>();
+        for (BenchItem item : dao.findByCriteria(dao.createCriteria().add(Restrictions.lt("quantity", 3)), Order.asc("quantity"))) {
+            ids.add(item.getId());
+        }
+        sessionFactory.getCurrentSession().getTransaction().commit();
+        beginTransaction(true);
+        for (Long id : ids) {
+            dao.findById(id);
+        }
+        final CachedEntity stale = cache.get(ids.get(0));
+        assertNotNull(stale);
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(3, cache.size());
+
+        // updates and deletes evict, again when the transaction completes
+        beginTransaction(false);
+        final BenchItem updated = dao.findById(ids.get(0));
+        updated.setQuantity(50);
+        dao.saveOrUpdate(updated);
+        assertNull(cache.get(ids.get(0)));
+        dao.delete(dao.findById(ids.get(1)));
+        assertNull(cache.get(ids.get(1)));
+        // as if read by a concurrent read-only transaction, before the commit
+        cache.put(ids.get(0), stale);
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        assertNull(cache.get(ids.get(0)));
+        assertEquals(1, cache.size());
+        beginTransaction(true);
+        assertEquals(50, dao.findById(ids.get(0)).getQuantity());
+        assertNull(dao.findById(ids.get(1)));
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // saves evict the id, bulk writes clear the cache
+        beginTransaction(false);
+        final BenchItem saved = new BenchItem("saved", 60);
+        cache.put(ids.get(1), stale);
+        dao.save(saved);
+        assertNotNull(cache.get(ids.get(1)));
+        dao.updateWhere(Collections.<String, Object>singletonMap("name", "saved"), Collections.<String, Object>singletonMap("quantity", 61));
+        assertEquals(0, cache.size());
+        endTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(0, cache.size());
+        beginTransaction(false);
+    }
+
+    @Test
+    public void testSimpleEntityCache() throws InterruptedException {
+        final CachedEntity entity = new CachedEntity(BenchItem.class.getName(), new Serializable[0]);
+        // least recently used entries are dropped first
+        final SimpleEntityCache<Long> cache = new SimpleEntityCache<Long>(2, 0);
+        cache.put(1L, entity);
+        cache.put(2L, entity);
+        assertSame(entity, cache.get(1L));
+        cache.put(3L, entity);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2L));
+        assertSame(entity, cache.get(3L));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2d / 3, cache.getHitRate(), 0.001);
+        cache.evict(1L);
+        assertNull(cache.get(1L));
+        cache.clear();
+        assertEquals(0, cache.size());
+        // expired entries are misses
+        final SimpleEntityCache<Long> expiring = new SimpleEntityCache<Long>(10, 1);
+        expiring.put(1L, entity);
+        Thread.sleep(20);
+        assertNull(expiring.get(1L));
+        assertEquals(0, expiring.size());
+        assertEquals(1, expiring.getMisses());
+    }
+
+    /**
+     * Begins a transaction on a new current session, as a Spring transaction: the entity cache is used only by read-only
+     * ones (which are not flushed), and evicts again on completion.
+     */
+    private Session beginTransaction(final boolean readOnly) {
+        final Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        if (readOnly) {
+            session.setFlushMode(FlushMode.MANUAL);
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+        return session;
+    }
+
+    private void endTransaction(final int status) {
+        final List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clear();
+        final Session session = sessionFactory.getCurrentSession();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            session.getTransaction().commit();
+        } else {
+            session.getTransaction().rollback();
+        }
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static final class ItemSummary {
+
+        private final String name;
+        private final int quantity;
+
+        ItemSummary(final String name, final int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class BenchItemDao extends AbstractEntityDaoBean<Long, BenchItem> {
+
+        private int inListLimit;
+
+        @Override
+        protected int getInListLimit() {
+            return (inListLimit > 0) ? inListLimit : super.getInListLimit();
+        }
+
+        @Override
+        public void setSessionFactory(final SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+    }
+
+    private static final class BenchGroupDao extends AbstractEntityDaoBean<Long, BenchGroup> {
+
+        @Override
+        public void setSessionFactory(final SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+    }
+}
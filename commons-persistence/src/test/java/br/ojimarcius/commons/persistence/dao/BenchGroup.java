@@ -0,0 +1,66 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import br.ojimarcius.commons.persistence.model.AbstractEntity;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+
+/**
+ * Group of {@link BenchItem}s, with an element collection.
+ */
+@javax.persistence.Entity
+@Table(name = "BENCH_GROUP")
+public class BenchGroup extends AbstractEntity<Long> {
+
+    private static final long serialVersionUID = 1L;
+    @Column(name = "NAME", unique = true)
+    private String name;
+    @ElementCollection
+    @CollectionTable(name = "BENCH_GROUP_TAG", joinColumns = @JoinColumn(name = "GROUP_ID"))
+    @Column(name = "TAG")
+    private Set<String> tags = new HashSet<String>();
+
+    public BenchGroup() {
+    }
+
+    public BenchGroup(final String name, final String... tags) {
+        this.name = name;
+        for (String tag : tags) {
+            this.tags.add(tag);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(final Set<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import br.ojimarcius.commons.persistence.model.AbstractEntity;
+import javax.persistence.Column;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * Entity written by {@link BulkWriteBenchmarkTest}.
+ */
+@javax.persistence.Entity
+@Table(name = "BENCH_ITEM")
+public class BenchItem extends AbstractEntity<Long> {
+
+    private static final long serialVersionUID = 1L;
+    @Column(name = "NAME")
+    private String name;
+    @Column(name = "QUANTITY")
+    private int quantity;
+    @ManyToOne
+    @JoinColumn(name = "GROUP_ID")
+    private BenchGroup group;
+
+    public BenchItem() {
+    }
+
+    public BenchItem(final String name, final int quantity) {
+        this.name = name;
+        this.quantity = quantity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(final int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BenchGroup getGroup() {
+        return group;
+    }
+
+    public void setGroup(final BenchGroup group) {
+        this.group = group;
+    }
+}
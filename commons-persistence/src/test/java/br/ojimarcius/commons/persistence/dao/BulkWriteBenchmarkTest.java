@@ -0,0 +1,139 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the bulk writes of {@link AbstractEntityDaoBean} with a flush per entity, on an embedded H2 database. The
+ * rates are logged; the test only checks the written rows.
+ */
+public class BulkWriteBenchmarkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkWriteBenchmarkTest.class.getName());
+    private static final int ROWS = 20000;
+    private static final int BATCH_SIZE = 50;
+    private SessionFactory sessionFactory;
+    private BenchItemDao dao;
+
+    @Before
+    public void setUp() {
+        final Configuration configuration = new Configuration().addAnnotatedClass(BenchItem.class).addAnnotatedClass(BenchGroup.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE))
+                .setProperty("hibernate.id.new_generator_mappings", "true")
+                .setProperty("hibernate.current_session_context_class", "thread");
+        final ServiceRegistry registry = new ServiceRegistryBuilder().applySettings(configuration.getProperties())
+                .buildServiceRegistry();
+        sessionFactory = configuration.buildSessionFactory(registry);
+        dao = new BenchItemDao();
+        dao.setSessionFactory(sessionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testBulkWrites() {
+        assertEquals(BATCH_SIZE, dao.getBatchSize());
+        // the first round warms up the JVM
+        for (int round = 0; round < 2; round++) {
+            final Level level = (round == 0) ? Level.FINE : Level.INFO;
+            List<BenchItem> items = newItems();
+            long start = System.nanoTime();
+            begin();
+            final Session session = sessionFactory.getCurrentSession();
+            for (BenchItem item : items) {
+                session.saveOrUpdate(item);
+                session.flush();
+                session.clear();
+            }
+            commitAndCheck(items);
+            LOGGER.log(level, "Flush per entity: {0} rows/s", rate(System.nanoTime() - start));
+
+            items = newItems();
+            begin();
+            final BulkWriteStats saved = dao.bulkSaveOrUpdate(items);
+            commitAndCheck(items);
+            assertEquals(ROWS, saved.getRows());
+            assertEquals(ROWS / BATCH_SIZE, saved.getBatches());
+            LOGGER.log(level, "bulkSaveOrUpdate: {0}", saved);
+
+            items = newItems();
+            begin();
+            final BulkWriteStats inserted = dao.bulkInsert(items, true);
+            // the inserted entities are not kept on the current session
+            assertEquals(0, sessionFactory.getCurrentSession().getStatistics().getEntityCount());
+            commitAndCheck(items);
+            assertEquals(ROWS, inserted.getRows());
+            assertEquals(ROWS / BATCH_SIZE, inserted.getBatches());
+            LOGGER.log(level, "bulkInsert (detached): {0}", inserted);
+        }
+    }
+
+    private static List<BenchItem> newItems() {
+        final List<BenchItem> items = new ArrayList<BenchItem>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            items.add(new BenchItem("item" + i, i));
+        }
+        return items;
+    }
+
+    private void begin() {
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    private void commitAndCheck(final List<BenchItem> items) {
+        sessionFactory.getCurrentSession().getTransaction().commit();
+        for (BenchItem item : items) {
+            assertNotNull(item.getId());
+        }
+        begin();
+        final Session session = sessionFactory.getCurrentSession();
+        assertEquals(ROWS, ((Number) session.createQuery("select count(*) from BenchItem").uniqueResult()).intValue());
+        session.createQuery("delete from BenchItem").executeUpdate();
+        session.getTransaction().commit();
+    }
+
+    private static long rate(final long nanos) {
+        return Math.round(ROWS * 1E9 / nanos);
+    }
+
+    private static final class BenchItemDao extends AbstractEntityDaoBean<Long, BenchItem> {
+
+        @Override
+        public void setSessionFactory(final SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+    }
+}
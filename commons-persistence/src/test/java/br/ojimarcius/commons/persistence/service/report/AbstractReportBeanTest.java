@@ -0,0 +1,110 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.service.report;
+
+import br.ojimarcius.commons.persistence.dao.BenchItem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the generation of {@link AbstractReportBean} files.
+ */
+public class AbstractReportBeanTest {
+
+    private static final byte[] PREVIOUS = {'%', 'P', 'D', 'F'};
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("reports", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testFailedReportKeepsFile() throws IOException {
+        final File file = new File(directory, "report.pdf");
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(PREVIOUS);
+        } finally {
+            outputStream.close();
+        }
+        final BrokenReport report = new BrokenReport();
+        report.setReportData(Arrays.asList(new BenchItem("item", 1)));
+        for (int i = 0; i < 2; i++) {
+            try {
+                report.generateReport(file);
+                fail("the template is broken");
+            } catch (Exception ex) {
+                // expected
+            }
+        }
+        // the previous file is untouched, and no temporary file is left
+        assertArrayEquals(PREVIOUS, read(file));
+        assertEquals(1, directory.listFiles().length);
+        // without a key, the template is loaded on each generation
+        assertEquals(2, report.loads.get());
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                read += inputStream.read(bytes, read, bytes.length - read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * A report whose template can't be loaded.
+     */
+    private static final class BrokenReport extends AbstractReportBean<BenchItem> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        protected InputStream getJasperStream() {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(new byte[]{1, 2, 3});
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.service.report;
+
+import br.ojimarcius.commons.persistence.dao.BenchItem;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the sharing and removal of {@link ReportJobService} jobs.
+ */
+public class ReportJobServiceTest {
+
+    private static final Map<String, Object> PARAMS = Collections.<String, Object>singletonMap("year", 2013);
+    private File directory;
+    private ReportJobService service;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jobs", "");
+        directory.delete();
+        service = new ReportJobService(directory, 1, 10);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSubmitSharing() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        // keeps the worker busy, so the jobs below stay queued
+        service.submit("blocking", null, new FixedReport("blocking", release));
+        // reports filled by the caller are never shared
+        final ReportJob first = service.submit("template", PARAMS, new FixedReport("first", null));
+        final ReportJob second = service.submit("template", PARAMS, new FixedReport("second", null));
+        assertNotSame(first, second);
+        // factories are shared by template, params and key
+        final ReportJob user1 = service.submit("template", PARAMS, "user1", factory("user1"));
+        assertSame(user1, service.submit("template", PARAMS, "user1", factory("other")));
+        final ReportJob user2 = service.submit("template", PARAMS, "user2", factory("user2"));
+        assertNotSame(user1, user2);
+        assertNotSame(service.submit("template", PARAMS, factory("unshared")), service.submit("template", PARAMS, factory("unshared")));
+        release.countDown();
+        assertEquals("first", read(await(first)));
+        assertEquals("second", read(await(second)));
+        assertEquals("user1", read(await(user1)));
+        assertEquals("user2", read(await(user2)));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ReportJob running = service.submit("template", PARAMS, new FixedReport("running", release));
+        final ReportJob queued = service.submit("template", PARAMS, new FixedReport("queued", null));
+        while (running.getStatus() != ReportJob.Status.RUNNING) {
+            Thread.sleep(5L);
+        }
+        assertTrue(service.remove(running.getId()));
+        assertTrue(service.remove(queued.getId()));
+        assertFalse(service.remove(queued.getId()));
+        release.countDown();
+        await(running);
+        // the queued job was skipped: once the worker is idle, no file is left
+        final ReportJob last = service.submit("template", PARAMS, new FixedReport("last", null));
+        await(last);
+        assertEquals(ReportJob.Status.QUEUED, queued.getStatus());
+        assertFalse(running.getTargetFile().exists());
+        assertFalse(queued.getTargetFile().exists());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    private static ReportJob await(final ReportJob job) throws InterruptedException {
+        final long limit = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!job.isFinished() && System.currentTimeMillis() < limit) {
+            Thread.sleep(5L);
+        }
+        assertTrue(job.isFinished());
+        return job;
+    }
+
+    private static String read(final ReportJob job) throws IOException {
+        assertEquals(ReportJob.Status.DONE, job.getStatus());
+        final FileInputStream inputStream = new FileInputStream(job.getFile());
+        try {
+            final byte[] bytes = new byte[(int) job.getFile().length()];
+            int read = 0;
+            while (read < bytes.length) {
+                read += inputStream.read(bytes, read, bytes.length - read);
+            }
+            return new String(bytes, "UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static Callable<EntityReport<?>> factory(final String content) {
+        return new Callable<EntityReport<?>>() {
+            @Override
+            public EntityReport<?> call() {
+                return new FixedReport(content, null);
+            }
+        };
+    }
+
+    /**
+     * A report with fixed content, optionally waiting for a latch before writing it.
+     */
+    private static final class FixedReport implements EntityReport<BenchItem> {
+
+        private final String content;
+        private final CountDownLatch latch;
+
+        FixedReport(final String content, final CountDownLatch latch) {
+            this.content = content;
+            this.latch = latch;
+        }
+
+        @Override
+        public void putParam(final String key, final Object value) {
+        }
+
+        @Override
+        public void putParams(final Map<String, Object> params) {
+        }
+
+        @Override
+        public void setReportData(final Collection<BenchItem> data) {
+        }
+
+        @Override
+        public void setReportData(final Iterator<? extends BenchItem> data) {
+        }
+
+        @Override
+        public byte[] generateReport() throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean generateReport(final File file) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean generateReport(final OutputStream outputStream) throws Exception {
+            if (latch != null) {
+                latch.await();
+            }
+            outputStream.write(content.getBytes("UTF-8"));
+            return true;
+        }
+    }
+}
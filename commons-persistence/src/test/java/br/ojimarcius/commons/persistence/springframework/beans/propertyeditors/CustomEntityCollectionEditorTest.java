@@ -0,0 +1,149 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.springframework.beans.propertyeditors;
+
+import br.ojimarcius.commons.persistence.dao.AbstractEntityDaoBean;
+import br.ojimarcius.commons.persistence.dao.BenchGroup;
+import br.ojimarcius.commons.persistence.dao.BenchItem;
+import br.ojimarcius.commons.persistence.service.AbstractEntityServiceBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the binding of {@link CustomEntityCollectionEditor} on an embedded H2 database.
+ */
+public class CustomEntityCollectionEditorTest {
+
+    private SessionFactory sessionFactory;
+    private ItemService service;
+    private List<Long> ids;
+
+    @Before
+    public void setUp() {
+        final Configuration configuration = new Configuration().addAnnotatedClass(BenchItem.class).addAnnotatedClass(BenchGroup.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:editor;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.id.new_generator_mappings", "true")
+                .setProperty("hibernate.current_session_context_class", "thread");
+        final ServiceRegistry registry = new ServiceRegistryBuilder().applySettings(configuration.getProperties())
+                .buildServiceRegistry();
+        sessionFactory = configuration.buildSessionFactory(registry);
+        final ItemDao dao = new ItemDao();
+        dao.setSessionFactory(sessionFactory);
+        service = new ItemService(dao);
+        final Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        ids = new ArrayList<Long>();
+        for (int i = 0; i < 3; i++) {
+            ids.add((Long) session.save(new BenchItem("item" + i, i)));
+        }
+        session.getTransaction().commit();
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testSetAsText() {
+        final CustomEntityCollectionEditor<BenchItem> editor = new CustomEntityCollectionEditor<BenchItem>(service);
+        editor.setAsText(ids.get(2) + ", " + ids.get(0) + ",," + ids.get(2));
+        final List<BenchItem> items = getItems(editor);
+        assertEquals(1, service.findByIds);
+        assertEquals(3, items.size());
+        assertEquals(ids.get(2), items.get(0).getId());
+        assertEquals(ids.get(0), items.get(1).getId());
+        assertSame(items.get(0), items.get(2));
+        assertEquals(ids.get(2) + "," + ids.get(0) + "," + ids.get(2), editor.getAsText());
+
+        editor.setAsText(" ");
+        assertTrue(getItems(editor).isEmpty());
+        assertEquals("", editor.getAsText());
+        assertEquals(1, service.findByIds);
+    }
+
+    @Test
+    public void testSetValue() {
+        final CustomEntityCollectionEditor<BenchItem> editor = new CustomEntityCollectionEditor<BenchItem>(service);
+        // the values of a multi-valued request parameter
+        editor.setValue(new String[]{ids.get(1).toString(), "", ids.get(0).toString()});
+        List<BenchItem> items = getItems(editor);
+        assertEquals(2, items.size());
+        assertEquals(ids.get(1), items.get(0).getId());
+        assertEquals(ids.get(0), items.get(1).getId());
+
+        // ids and missing ids
+        editor.setValue(Arrays.asList(ids.get(0), -1L, null));
+        items = getItems(editor);
+        assertEquals(1, items.size());
+        assertEquals(ids.get(0), items.get(0).getId());
+        assertEquals(2, service.findByIds);
+
+        // entities are kept
+        editor.setValue(items);
+        assertSame(items, editor.getValue());
+        assertEquals(2, service.findByIds);
+        editor.setValue(null);
+        assertNull(editor.getValue());
+        assertEquals("", editor.getAsText());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<BenchItem> getItems(final CustomEntityCollectionEditor<BenchItem> editor) {
+        return (List<BenchItem>) editor.getValue();
+    }
+
+    private static final class ItemDao extends AbstractEntityDaoBean<Long, BenchItem> {
+
+        @Override
+        public void setSessionFactory(final SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+    }
+
+    private static final class ItemService extends AbstractEntityServiceBean<Long, BenchItem> {
+
+        private int findByIds;
+
+        ItemService(final ItemDao dao) {
+            setDao(dao);
+        }
+
+        @Override
+        public List<BenchItem> findByIds(final Collection<Long> ids) {
+            findByIds++;
+            return super.findByIds(ids);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * commons-persistence - Copyright (c) 2009-2012 MSF. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+package br.ojimarcius.commons.persistence.springframework.validation;
+
+import br.ojimarcius.commons.persistence.dao.AbstractEntityDaoBean;
+import br.ojimarcius.commons.persistence.dao.BenchGroup;
+import br.ojimarcius.commons.persistence.dao.BenchItem;
+import br.ojimarcius.commons.persistence.model.Entity;
+import br.ojimarcius.commons.persistence.service.AbstractEntityServiceBean;
+import br.ojimarcius.commons.persistence.service.EntityService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+/**
+ * Tests the batch validations of {@link AnnotatedEntityValidator} on an embedded H2 database.
+ */
+public class AnnotatedEntityValidatorTest {
+
+    private SessionFactory sessionFactory;
+    private GroupService groupService;
+    private ItemValidator validator;
+
+    @Before
+    public void setUp() {
+        final Configuration configuration = new Configuration().addAnnotatedClass(BenchItem.class).addAnnotatedClass(BenchGroup.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:validator;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.id.new_generator_mappings", "true")
+                .setProperty("hibernate.current_session_context_class", "thread");
+        final ServiceRegistry registry = new ServiceRegistryBuilder().applySettings(configuration.getProperties())
+                .buildServiceRegistry();
+        sessionFactory = configuration.buildSessionFactory(registry);
+        final GroupDao dao = new GroupDao();
+        dao.setSessionFactory(sessionFactory);
+        groupService = new GroupService(dao);
+        validator = new ItemValidator(new GroupValidator(groupService));
+        final Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        session.save(new BenchGroup("g0"));
+        session.getTransaction().commit();
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testValidateAllSubvalidatedUnique() {
+        final List<Errors> errors = validator.validateAll(Arrays.asList(item(new BenchGroup("g0")), item(new BenchGroup("g1")),
+                                                                         item(new BenchGroup("g1")), item(null)));
+        // one query for all the subvalidated groups, none per group
+        assertEquals(0, groupService.findByProperty.get());
+        assertEquals(1, groupService.findIdsByPropertyValues.get());
+        assertTrue(errors.get(0).hasFieldErrors("group.name"));
+        assertFalse(errors.get(1).hasFieldErrors("group.name"));
+        assertTrue(errors.get(2).hasFieldErrors("group.name"));
+        assertFalse(errors.get(3).hasErrors());
+        // a single validation checks the value on its own
+        final BenchItem target = item(new BenchGroup("g0"));
+        final Errors single = new BeanPropertyBindingResult(target, "benchItem");
+        validator.validateCommand(target, single);
+        assertTrue(single.hasFieldErrors("group.name"));
+        assertEquals(1, groupService.findByProperty.get());
+    }
+
+    @Test
+    public void testValidateAllOnExecutor() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            validator.setExecutor(executor);
+            validator.setChunkSize(1);
+            final List<BenchItem> targets = new ArrayList<BenchItem>();
+            for (int i = 0; i < 6; i++) {
+                targets.add(item(new BenchGroup("g" + (i % 3))));
+            }
+            final List<Errors> errors = validator.validateAll(targets);
+            assertTrue(errors.get(0).hasFieldErrors("group.name"));
+            assertFalse(errors.get(1).hasFieldErrors("group.name"));
+            assertTrue(errors.get(4).hasFieldErrors("group.name"));
+            // the services and the complementar validations run on the calling thread, in the order of the targets
+            assertEquals(Collections.singleton(Thread.currentThread()), groupService.threads);
+            assertEquals(Collections.singleton(Thread.currentThread()), validator.groupValidator.threads);
+            assertEquals(6, validator.groupValidator.validated.size());
+            for (int i = 0; i < targets.size(); i++) {
+                assertSame(targets.get(i).getGroup(), validator.groupValidator.validated.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFieldChecksOnExecutor() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            validator.setExecutor(executor);
+            validator.setChunkSize(1);
+            final char[] chars = new char[300];
+            Arrays.fill(chars, 'x');
+            final String tooLong = new String(chars);
+            final List<BenchItem> targets = new ArrayList<BenchItem>();
+            final List<ThreadRecordingErrors> errors = new ArrayList<ThreadRecordingErrors>();
+            for (int i = 0; i < 4; i++) {
+                final BenchItem target = item(new BenchGroup((i % 2 == 0) ? tooLong : "new" + i));
+                target.setName((i < 2) ? tooLong : "item");
+                targets.add(target);
+                errors.add(new ThreadRecordingErrors(target));
+            }
+            validator.validateCommands(targets, errors);
+            // the checks run on the executor, the values are rejected on the calling thread
+            assertTrue(errors.get(0).hasFieldErrors("name"));
+            assertTrue(errors.get(0).hasFieldErrors("group.name"));
+            assertEquals(tooLong, errors.get(0).getFieldValue("group.name"));
+            assertTrue(errors.get(1).hasFieldErrors("name"));
+            assertFalse(errors.get(1).hasFieldErrors("group.name"));
+            assertFalse(errors.get(2).hasFieldErrors("name"));
+            assertTrue(errors.get(2).hasFieldErrors("group.name"));
+            assertFalse(errors.get(3).hasErrors());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Collections.singleton(Thread.currentThread()), errors.get(i).threads);
+            }
+            // a value rejected before the validation is not checked again
+            final BenchItem target = item(null);
+            target.setName(tooLong);
+            final Errors bound = new BeanPropertyBindingResult(target, "benchItem");
+            bound.rejectValue("name", "typeMismatch");
+            validator.validateCommands(Collections.singletonList(target), Collections.singletonList(bound));
+            assertEquals(1, bound.getFieldErrorCount("name"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BenchItem item(final BenchGroup group) {
+        final BenchItem item = new BenchItem("item", 1);
+        item.setGroup(group);
+        return item;
+    }
+
+    /**
+     * Records the threads rejecting values.
+     */
+    private static final class ThreadRecordingErrors extends BeanPropertyBindingResult {
+
+        private static final long serialVersionUID = 1L;
+        private final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        ThreadRecordingErrors(final BenchItem target) {
+            super(target, "benchItem");
+        }
+
+        @Override
+        public void rejectValue(final String field, final String errorCode, final Object[] errorArgs, final String defaultMessage) {
+            threads.add(Thread.currentThread());
+            super.rejectValue(field, errorCode, errorArgs, defaultMessage);
+        }
+    }
+
+    private static final class ItemValidator extends AnnotatedEntityValidator<Long, BenchItem> {
+
+        private final GroupValidator groupValidator;
+
+        ItemValidator(final GroupValidator groupValidator) {
+            this.groupValidator = groupValidator;
+        }
+
+        @Override
+        protected AnnotatedEntityValidator getValidatorFor(final Class<? extends Entity> entityClass) {
+            return BenchGroup.class.equals(entityClass) ? groupValidator : null;
+        }
+    }
+
+    private static final class GroupValidator extends AnnotatedEntityValidator<Long, BenchGroup> {
+
+        private final GroupService service;
+        private final Set<Thread> threads = new HashSet<Thread>();
+        private final List<BenchGroup> validated = new ArrayList<BenchGroup>();
+
+        GroupValidator(final GroupService service) {
+            this.service = service;
+        }
+
+        @Override
+        protected EntityService<Long, BenchGroup> getCommandService() {
+            return service;
+        }
+
+        @Override
+        public void complementarValidation(final String pathPrefix, final BenchGroup target, final Errors errors) {
+            threads.add(Thread.currentThread());
+            validated.add(target);
+        }
+    }
+
+    /**
+     * Counts the uniqueness queries.
+     */
+    private static final class GroupService extends AbstractEntityServiceBean<Long, BenchGroup> {
+
+        private final AtomicInteger findByProperty = new AtomicInteger();
+        private final AtomicInteger findIdsByPropertyValues = new AtomicInteger();
+        private final Set<Thread> threads = new HashSet<Thread>();
+
+        GroupService(final GroupDao dao) {
+            setDao(dao);
+        }
+
+        @Override
+        public Collection<BenchGroup> findByProperty(final String propertyName, final Object propertyValue) {
+            findByProperty.incrementAndGet();
+            threads.add(Thread.currentThread());
+            return super.findByProperty(propertyName, propertyValue);
+        }
+
+        @Override
+        public Map<Object, List<Long>> findIdsByPropertyValues(final String propertyName, final Collection<?> values) {
+            findIdsByPropertyValues.incrementAndGet();
+            threads.add(Thread.currentThread());
+            return super.findIdsByPropertyValues(propertyName, values);
+        }
+    }
+
+    private static final class GroupDao extends AbstractEntityDaoBean<Long, BenchGroup> {
+
+        @Override
+        public void setSessionFactory(final SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+    }
+}